@@ -0,0 +1,134 @@
+package benchmark;
+
+import game.BitBoard;
+import game.ReversiBoard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.MoveException;
+
+import java.awt.*;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures single operations of {@link ReversiBoard} over a fixed set of positions from one phase of the game.
+ * Each call moves on to the next position, so the branch predictor cannot learn a single position.
+ *
+ * @author Brock Dyer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class BoardBenchmark {
+
+    /**
+     * The phase of the game the positions come from.
+     */
+    @Param({"OPENING", "MIDGAME", "ENDGAME"})
+    public Positions.Phase phase;
+
+    /**
+     * The positions.
+     */
+    private ReversiBoard[] positions;
+
+    /**
+     * A legal move in each position.
+     */
+    private int[] moves;
+
+    /**
+     * The position the next call uses.
+     */
+    private int index;
+
+    /**
+     * Make the positions.
+     */
+    @Setup
+    public void setup() {
+        positions = Positions.of(phase);
+        moves = Positions.moves(positions, phase.ordinal());
+    }
+
+    /**
+     * Step to the next position.
+     *
+     * @return the index of the position to use.
+     */
+    private int next() {
+        index = (index + 1) & (Positions.SIZE - 1);
+        return index;
+    }
+
+    /**
+     * The legacy move set with a {@link Point} for each move.
+     *
+     * @return the moves.
+     */
+    @Benchmark
+    public Set<Point> getPossibleMoves() {
+        return positions[next()].getPossibleMoves();
+    }
+
+    /**
+     * The moves as a bitboard.
+     *
+     * @return the move mask.
+     */
+    @Benchmark
+    public long getMoveMask() {
+        return positions[next()].getMoveMask();
+    }
+
+    /**
+     * Copying a board, the baseline for {@link #move()}.
+     *
+     * @return the copy.
+     */
+    @Benchmark
+    public ReversiBoard copy() {
+        return new ReversiBoard(positions[next()]);
+    }
+
+    /**
+     * A checked move with observer notification, made on a copy so the position does not change.
+     *
+     * @return the board after the move.
+     * @throws MoveException never, every move is legal.
+     */
+    @Benchmark
+    public ReversiBoard move() throws MoveException {
+        int i = next();
+        ReversiBoard board = new ReversiBoard(positions[i]);
+        board.move(BitBoard.row(moves[i]), BitBoard.col(moves[i]));
+        return board;
+    }
+
+    /**
+     * A search move and its undo.
+     *
+     * @return the hash after the move.
+     */
+    @Benchmark
+    public long makeUnmakeMove() {
+        int i = next();
+        ReversiBoard board = positions[i];
+        board.makeMove(moves[i]);
+        long hash = board.getHash();
+        board.unmakeMove();
+        return hash;
+    }
+}
@@ -0,0 +1,164 @@
+package benchmark;
+
+import game.BitBoard;
+import game.ReversiBoard;
+import game.ReversiGame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.MoveException;
+
+import java.awt.*;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures whole random games from the start position, played three ways: through {@link ReversiGame}, with the
+ * legacy board API, and with make/unmake. <br>
+ * The moves come from a seeded generator, so each fork plays the same sequence of games.
+ *
+ * @author Brock Dyer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class GameBenchmark {
+
+    /**
+     * The game played through {@link ReversiGame#makeMove(int, int)}.
+     */
+    private ReversiGame game;
+
+    /**
+     * The board used by the other playouts.
+     */
+    private ReversiBoard board;
+
+    /**
+     * The state of the move generator.
+     */
+    private long seed;
+
+    /**
+     * Create the game and board.
+     */
+    @Setup
+    public void setup() {
+        game = new ReversiGame();
+        board = new ReversiBoard();
+        seed = 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Get the next random number.
+     *
+     * @param bound the number of choices.
+     * @return a number from 0 up to the bound.
+     */
+    private int random(int bound) {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (int) ((seed >>> 33) % bound);
+    }
+
+    /**
+     * Pick a random square from a move mask.
+     *
+     * @param moves the legal moves. Must not be 0.
+     * @return the square of the move.
+     */
+    private int randomMove(long moves) {
+        for (int skip = random(Long.bitCount(moves)); skip > 0; skip--) {
+            moves &= moves - 1;
+        }
+        return Long.numberOfTrailingZeros(moves);
+    }
+
+    /**
+     * A game through {@link ReversiGame}, including its check for a player who has to pass.
+     *
+     * @return the final black score.
+     * @throws MoveException never, every move is legal.
+     */
+    @Benchmark
+    public int gamePlayout() throws MoveException {
+        game.restart();
+        while (!game.isGameOver()) {
+            long moves = game.getMoveMask();
+            if (moves == 0) {
+                game.pass();
+                continue;
+            }
+            int sq = randomMove(moves);
+            game.makeMove(BitBoard.row(sq), BitBoard.col(sq));
+        }
+        return game.getBlackScore();
+    }
+
+    /**
+     * A game with {@link ReversiBoard#getPossibleMoves()} and {@link ReversiBoard#move(int, int)}.
+     *
+     * @return the final number of black discs.
+     * @throws MoveException never, every move is legal.
+     */
+    @Benchmark
+    public int legacyPlayout() throws MoveException {
+        board.reset();
+        boolean passed = false;
+        while (true) {
+            Set<Point> moves = board.getPossibleMoves();
+            if (moves.isEmpty()) {
+                if (passed) {
+                    break;
+                }
+                passed = true;
+                board.changeTurn();
+                continue;
+            }
+
+            Iterator<Point> it = moves.iterator();
+            for (int skip = random(moves.size()); skip > 0; skip--) {
+                it.next();
+            }
+            Point p = it.next();
+            board.move(p.x, p.y);
+            board.changeTurn();
+            passed = false;
+        }
+        return board.getNumBlack();
+    }
+
+    /**
+     * A game with {@link ReversiBoard#makeMove(int)} and the move mask.
+     *
+     * @return the final number of black discs.
+     */
+    @Benchmark
+    public int makeMovePlayout() {
+        board.reset();
+        while (true) {
+            long moves = board.getMoveMask();
+            if (moves == 0) {
+                if (board.getPassCount() > 0) {
+                    break;
+                }
+                board.makePass();
+                continue;
+            }
+            board.makeMove(randomMove(moves));
+        }
+        return board.getNumBlack();
+    }
+}
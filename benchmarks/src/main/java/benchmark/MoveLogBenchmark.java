@@ -0,0 +1,118 @@
+package benchmark;
+
+import game.GameReplay;
+import game.MoveLog;
+import game.ReversiBoard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures saving and loading whole games in the {@link MoveLog} format, and viewing them with a
+ * {@link GameReplay}. <br>
+ * The games are random and played to the end from a fixed seed.
+ *
+ * @author Brock Dyer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class MoveLogBenchmark {
+
+    /**
+     * The games, and each one encoded.
+     */
+    private MoveLog[] logs;
+    private byte[][] encoded;
+
+    /**
+     * A replay of each game.
+     */
+    private GameReplay[] replays;
+
+    /**
+     * The game the next call uses.
+     */
+    private int next;
+
+    /**
+     * Play and encode the games.
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        logs = new MoveLog[Positions.SIZE];
+        encoded = new byte[Positions.SIZE][];
+        replays = new GameReplay[Positions.SIZE];
+
+        for (int i = 0; i < Positions.SIZE; i++) {
+            MoveLog log = new MoveLog();
+            ReversiBoard board = log.startBoard();
+            while (true) {
+                long moves = board.getMoveMask();
+                if (moves == 0) {
+                    if (board.getPassCount() > 0) {
+                        break;
+                    }
+                    board.makePass();
+                    log.addPass();
+                    continue;
+                }
+                for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                    moves &= moves - 1;
+                }
+                int square = Long.numberOfTrailingZeros(moves);
+                board.makeMove(square);
+                log.addMove(square);
+            }
+            logs[i] = log;
+            encoded[i] = log.encode();
+            replays[i] = new GameReplay(log);
+        }
+    }
+
+    /**
+     * Encode a finished game.
+     *
+     * @return the bytes.
+     */
+    @Benchmark
+    public byte[] save() {
+        return logs[next++ & (Positions.SIZE - 1)].encode();
+    }
+
+    /**
+     * Decode a finished game and replay it to the final position, checking every move.
+     *
+     * @return the final position.
+     */
+    @Benchmark
+    public ReversiBoard load() {
+        return MoveLog.decode(encoded[next++ & (Positions.SIZE - 1)]).replay();
+    }
+
+    /**
+     * Jump to a ply of a replay, each call to a different game and ply.
+     *
+     * @return the black discs at the ply.
+     */
+    @Benchmark
+    public long seek() {
+        GameReplay replay = replays[next & (Positions.SIZE - 1)];
+        replay.seek((next++ * 7) % (replay.size() + 1));
+        return replay.getBlack();
+    }
+}
@@ -0,0 +1,127 @@
+package benchmark;
+
+import game.ReversiBoard;
+
+import java.util.Random;
+
+/**
+ * Fixed sets of test positions for the benchmarks. <br>
+ * The positions come from random games with a fixed seed, so every run and every machine measures the same
+ * positions. Every position has at least one legal move.
+ *
+ * @author Brock Dyer.
+ */
+public final class Positions {
+
+    /**
+     * The number of positions in each set. A power of two so benchmarks can cycle through them with a mask.
+     */
+    public static final int SIZE = 64;
+
+    /**
+     * The stages of the game a set can be taken from.
+     */
+    public enum Phase {
+        /**
+         * Six moves in.
+         */
+        OPENING(6),
+
+        /**
+         * Twenty-four moves in.
+         */
+        MIDGAME(24),
+
+        /**
+         * Forty-six moves in, with about fourteen empty squares.
+         */
+        ENDGAME(46);
+
+        /**
+         * The number of moves played from the start.
+         */
+        private final int plies;
+
+        /**
+         * Create a phase.
+         *
+         * @param plies the number of moves played from the start.
+         */
+        Phase(int plies) {
+            this.plies = plies;
+        }
+    }
+
+    /**
+     * This class only holds static helpers.
+     */
+    private Positions() {
+    }
+
+    /**
+     * Make the positions for a phase.
+     *
+     * @param phase the stage of the game.
+     * @return {@link #SIZE} positions, each with a legal move for the player to move.
+     */
+    public static ReversiBoard[] of(Phase phase) {
+        Random random = new Random(phase.ordinal() + 1);
+        ReversiBoard[] positions = new ReversiBoard[SIZE];
+
+        int count = 0;
+        while (count < SIZE) {
+            ReversiBoard board = new ReversiBoard();
+            board.reset();
+
+            int plies = 0;
+            while (plies < phase.plies) {
+                long moves = board.getMoveMask();
+                if (moves == 0) {
+                    if (board.getPassCount() > 0) {
+                        break;
+                    }
+                    board.makePass();
+                    continue;
+                }
+                board.makeMove(randomMove(moves, random));
+                plies++;
+            }
+
+            if (plies == phase.plies && board.getMoveMask() != 0) {
+                positions[count++] = new ReversiBoard(board);
+            }
+        }
+
+        return positions;
+    }
+
+    /**
+     * Pick a random move for each position.
+     *
+     * @param positions the positions.
+     * @param seed      the seed for the choices.
+     * @return the square of a legal move in each position.
+     */
+    public static int[] moves(ReversiBoard[] positions, long seed) {
+        Random random = new Random(seed);
+        int[] moves = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            moves[i] = randomMove(positions[i].getMoveMask(), random);
+        }
+        return moves;
+    }
+
+    /**
+     * Pick a random square from a move mask.
+     *
+     * @param moves  the legal moves. Must not be 0.
+     * @param random where to get the choice from.
+     * @return the square of the move.
+     */
+    private static int randomMove(long moves, Random random) {
+        for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+            moves &= moves - 1;
+        }
+        return Long.numberOfTrailingZeros(moves);
+    }
+}
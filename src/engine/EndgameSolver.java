@@ -0,0 +1,716 @@
+package engine;
+
+import game.BitBoard;
+import game.PieceColor;
+import game.ReversiBoard;
+import game.Zobrist;
+
+/**
+ * An exact endgame solver. Plays every line to the end of the game and returns the final disc difference under
+ * perfect play. <br>
+ * Scores count empty squares for the winner, so a 40 to 20 win with 4 empty squares scores 24.
+ * <p>
+ * The solver works directly on the two disc masks and allocates nothing while searching:
+ * </p>
+ * <ul>
+ * <li>With many empty squares, moves that leave the opponent the fewest replies are searched first (fastest
+ * first).</li>
+ * <li>With fewer empty squares, moves in board quadrants with an odd number of empty squares are searched first
+ * (parity), since the player who moves last in a region usually gains from it.</li>
+ * <li>Discs that can never be flipped bound the best possible score, which cuts off hopeless lines early.</li>
+ * <li>The last four empty squares are handled by unrolled routines with no move lists.</li>
+ * </ul>
+ *
+ * @author Brock Dyer.
+ */
+public class EndgameSolver {
+
+    /**
+     * The largest number of empty squares worth trying to solve, however much time there is.
+     */
+    public static final int MAX_EMPTIES = 26;
+
+    /**
+     * The number of empty squares the solver usually finishes within a second. Each further empty square takes
+     * about twice as long.
+     */
+    private static final int SECOND_EMPTIES = 18;
+
+    /**
+     * Larger than any final disc difference.
+     */
+    private static final int INFINITY = 65;
+
+    /**
+     * The number of empty squares at which fastest first ordering replaces plain parity ordering.
+     */
+    private static final int FASTEST_FIRST_EMPTIES = 7;
+
+    /**
+     * The number of empty squares from which positions are stored in the transposition table.
+     */
+    private static final int TABLE_EMPTIES = 10;
+
+    /**
+     * The limits are checked every time the node count passes a multiple of this plus one.
+     */
+    private static final int CHECK_INTERVAL = 4095;
+
+    /**
+     * The four quadrants of the board, used for parity ordering.
+     */
+    private static final long[] QUADRANTS = {0x000000000F0F0F0FL, 0x00000000F0F0F0F0L,
+            0x0F0F0F0F00000000L, 0xF0F0F0F000000000L};
+
+    /**
+     * The edge squares of the board.
+     */
+    private static final long EDGES = 0xFF818181818181FFL;
+
+    /**
+     * Every row, column and diagonal with at least 3 squares, for finding full lines.
+     */
+    private static final long[] ROWS = new long[8], COLS = new long[8], DIAGONALS = new long[11],
+            ANTI_DIAGONALS = new long[11];
+
+    static {
+        for (int sq = 0; sq < BitBoard.SQUARES; sq++) {
+            int row = BitBoard.row(sq), col = BitBoard.col(sq);
+            ROWS[row] |= 1L << sq;
+            COLS[col] |= 1L << sq;
+
+            int diagonal = row - col + 5;
+            if (diagonal >= 0 && diagonal < DIAGONALS.length) {
+                DIAGONALS[diagonal] |= 1L << sq;
+            }
+            int antiDiagonal = row + col - 2;
+            if (antiDiagonal >= 0 && antiDiagonal < ANTI_DIAGONALS.length) {
+                ANTI_DIAGONALS[antiDiagonal] |= 1L << sq;
+            }
+        }
+    }
+
+    /**
+     * The table for positions with many empty squares, or null to search without one.
+     */
+    private final TranspositionTable table;
+
+    /**
+     * Move lists and ordering scores, indexed by the number of empty squares.
+     */
+    private final int[][] moveLists, moveScores;
+
+    /**
+     * The nodes visited in this solve.
+     */
+    private long nodes;
+
+    /**
+     * The node limit of this solve.
+     */
+    private long nodeLimit;
+
+    /**
+     * The time at which this solve must give up, from {@link System#nanoTime()}.
+     */
+    private long deadline;
+
+    /**
+     * Set to stop the solve from another thread.
+     */
+    private volatile boolean stopRequested;
+
+    /**
+     * True when the solve ran out of time or nodes.
+     */
+    private boolean aborted;
+
+    /**
+     * Create a solver.
+     *
+     * @param table the table to store solved positions in, or null. Must not be shared with a {@link SearchEngine},
+     *              since the scores mean different things.
+     */
+    public EndgameSolver(TranspositionTable table) {
+        this.table = table;
+        this.moveLists = new int[BitBoard.SQUARES + 1][BitBoard.SQUARES];
+        this.moveScores = new int[BitBoard.SQUARES + 1][BitBoard.SQUARES];
+    }
+
+    /**
+     * Get the largest number of empty squares the solver usually finishes in the given time. Past that a solve
+     * mostly runs out of time and only takes it from the search.
+     *
+     * @param millis the time for the solve.
+     * @return the number of empty squares, at most {@link #MAX_EMPTIES}.
+     */
+    public static int solvableEmpties(long millis) {
+        if (millis <= 0) {
+            return 0;
+        }
+        int doublings = (int) Math.floor(Math.log(millis / 1000.0) / Math.log(2));
+        return Math.max(0, Math.min(MAX_EMPTIES, SECOND_EMPTIES + doublings));
+    }
+
+    /**
+     * Solve a position.
+     *
+     * @param position the position to solve. It is not changed.
+     * @param limits   the time and node limits. The depth limit is ignored.
+     * @return the best move and the exact final disc difference for the player to move, or null if the limits ran
+     * out first. The depth of the result is the number of empty squares.
+     */
+    public SearchResult solve(ReversiBoard position, SearchLimits limits) {
+        long start = System.nanoTime();
+        this.nodes = 0;
+        this.nodeLimit = limits.getMaxNodes();
+        long millis = limits.getMaxMillis();
+        this.deadline = millis >= Long.MAX_VALUE / 1_000_000 ? Long.MAX_VALUE : start + millis * 1_000_000;
+        this.stopRequested = false;
+        this.aborted = false;
+        if (table != null) {
+            table.newSearch();
+        }
+
+        boolean blackToMove = position.getCurrentPlayer() == PieceColor.BLACK;
+        long own = blackToMove ? position.getBlack() : position.getWhite();
+        long opp = blackToMove ? position.getWhite() : position.getBlack();
+        int empties = Long.bitCount(~(own | opp));
+
+        long moves = BitBoard.moves(own, opp);
+        if (moves == 0) {
+            int score = -solve(opp, own, -INFINITY, INFINITY, empties, true);
+            return aborted ? null : new SearchResult(-1, score, empties, nodes, System.nanoTime() - start,
+                    new int[]{-1});
+        }
+
+        int count = orderMoves(own, opp, moves, empties);
+        int[] list = moveLists[empties];
+        int alpha = -INFINITY;
+        int bestMove = list[0];
+
+        for (int i = 0; i < count; i++) {
+            int sq = list[i];
+            long flipped = BitBoard.flips(own, opp, sq);
+            long nextOwn = own | flipped | (1L << sq);
+            long nextOpp = opp & ~flipped;
+
+            int score;
+            if (i == 0) {
+                score = -solve(nextOpp, nextOwn, -INFINITY, -alpha, empties - 1, false);
+            } else {
+                score = -solve(nextOpp, nextOwn, -alpha - 1, -alpha, empties - 1, false);
+                if (score > alpha) {
+                    score = -solve(nextOpp, nextOwn, -INFINITY, -score + 1, empties - 1, false);
+                }
+            }
+
+            if (aborted) {
+                return null;
+            }
+            if (score > alpha) {
+                alpha = score;
+                bestMove = sq;
+            }
+        }
+
+        return new SearchResult(bestMove, alpha, empties, nodes, System.nanoTime() - start, new int[]{bestMove});
+    }
+
+    /**
+     * Stop a running solve. It returns null.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Solve a position with more than four empty squares.
+     *
+     * @param own     the discs of the player to move.
+     * @param opp     the discs of the opponent.
+     * @param alpha   the lower bound.
+     * @param beta    the upper bound.
+     * @param empties the number of empty squares.
+     * @param passed  true if the opponent just passed.
+     * @return the final disc difference for the player to move.
+     */
+    private int solve(long own, long opp, int alpha, int beta, int empties, boolean passed) {
+        if (empties <= 4) {
+            return solveLast(own, opp, alpha, beta, empties, passed);
+        }
+
+        if ((++nodes & CHECK_INTERVAL) == 0) {
+            checkLimits();
+        }
+        if (aborted) {
+            return 0;
+        }
+
+        // Stable opponent discs are lost for good, which caps the score. Only worth working out when the cap
+        // could be low enough to matter.
+        if (alpha >= 64 - 2 * Long.bitCount(opp)) {
+            int upper = 64 - 2 * Long.bitCount(stableDiscs(opp, own));
+            if (upper <= alpha) {
+                return upper;
+            }
+            beta = Math.min(beta, upper);
+        }
+
+        long moves = BitBoard.moves(own, opp);
+        if (moves == 0) {
+            if (passed) {
+                return finalScore(own, opp);
+            }
+            return -solve(opp, own, -beta, -alpha, empties, true);
+        }
+
+        long hash = 0;
+        boolean useTable = table != null && empties >= TABLE_EMPTIES;
+        if (useTable) {
+            hash = Zobrist.hash(own, opp, PieceColor.BLACK);
+            long entry = table.probe(hash);
+            if (entry != TranspositionTable.MISS) {
+                int score = TranspositionTable.score(entry);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT
+                        || (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+                        || (bound == TranspositionTable.BOUND_UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int count = orderMoves(own, opp, moves, empties);
+        int[] list = moveLists[empties];
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = TranspositionTable.NO_MOVE;
+
+        for (int i = 0; i < count; i++) {
+            int sq = list[i];
+            long flipped = BitBoard.flips(own, opp, sq);
+            long nextOwn = own | flipped | (1L << sq);
+            long nextOpp = opp & ~flipped;
+
+            int score;
+            if (i == 0) {
+                score = -solve(nextOpp, nextOwn, -beta, -alpha, empties - 1, false);
+            } else {
+                score = -solve(nextOpp, nextOwn, -alpha - 1, -alpha, empties - 1, false);
+                if (score > alpha && score < beta) {
+                    score = -solve(nextOpp, nextOwn, -beta, -alpha, empties - 1, false);
+                }
+            }
+
+            if (aborted) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = sq;
+                if (score > alpha) {
+                    alpha = score;
+                    if (score >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (useTable) {
+            int bound = bestScore <= originalAlpha ? TranspositionTable.BOUND_UPPER
+                    : (bestScore >= beta ? TranspositionTable.BOUND_LOWER : TranspositionTable.BOUND_EXACT);
+            table.store(hash, empties, bound, bestScore, bestMove);
+        }
+
+        return bestScore;
+    }
+
+    /**
+     * Fill in and sort the move list for a position. With many empty squares moves are sorted fastest first, with
+     * few empty squares by parity only.
+     *
+     * @param own     the discs of the player to move.
+     * @param opp     the discs of the opponent.
+     * @param moves   the legal moves.
+     * @param empties the number of empty squares, which picks the list to fill.
+     * @return the number of moves.
+     */
+    private int orderMoves(long own, long opp, long moves, int empties) {
+        int[] list = moveLists[empties];
+        int[] scores = moveScores[empties];
+        long oddRegions = oddRegions(~(own | opp));
+        int count = 0;
+
+        while (moves != 0) {
+            int sq = Long.numberOfTrailingZeros(moves);
+            long bit = moves & -moves;
+            moves ^= bit;
+
+            int score = (oddRegions & bit) != 0 ? 1 : 0;
+            if (empties >= FASTEST_FIRST_EMPTIES) {
+                long flipped = BitBoard.flips(own, opp, sq);
+                long replies = BitBoard.moves(opp & ~flipped, own | flipped | bit);
+                score -= Long.bitCount(replies) << 4;
+                // Replies in corners count twice.
+                score -= Long.bitCount(replies & 0x8100000000000081L) << 4;
+            }
+
+            // Insertion sort, best first. Lists are short.
+            int i = count++;
+            while (i > 0 && scores[i - 1] < score) {
+                list[i] = list[i - 1];
+                scores[i] = scores[i - 1];
+                i--;
+            }
+            list[i] = sq;
+            scores[i] = score;
+        }
+
+        return count;
+    }
+
+    /**
+     * Solve a position with at most four empty squares. The squares are handed to the unrolled routines with the
+     * squares of odd regions first.
+     *
+     * @param own     the discs of the player to move.
+     * @param opp     the discs of the opponent.
+     * @param alpha   the lower bound.
+     * @param beta    the upper bound.
+     * @param empties the number of empty squares.
+     * @param passed  true if the opponent just passed.
+     * @return the final disc difference for the player to move.
+     */
+    private int solveLast(long own, long opp, int alpha, int beta, int empties, boolean passed) {
+        long empty = ~(own | opp);
+        long odd = oddRegions(empty);
+        long first = empty & odd, second = empty & ~odd;
+
+        int sq1 = -1, sq2 = -1, sq3 = -1, sq4 = -1;
+        for (int i = 0; i < empties; i++) {
+            int sq;
+            if (first != 0) {
+                sq = Long.numberOfTrailingZeros(first);
+                first &= first - 1;
+            } else {
+                sq = Long.numberOfTrailingZeros(second);
+                second &= second - 1;
+            }
+
+            switch (i) {
+                case 0:
+                    sq1 = sq;
+                    break;
+                case 1:
+                    sq2 = sq;
+                    break;
+                case 2:
+                    sq3 = sq;
+                    break;
+                default:
+                    sq4 = sq;
+                    break;
+            }
+        }
+
+        switch (empties) {
+            case 4:
+                return last4(own, opp, alpha, beta, sq1, sq2, sq3, sq4, passed);
+            case 3:
+                return last3(own, opp, alpha, beta, sq1, sq2, sq3, passed);
+            case 2:
+                return last2(own, opp, alpha, beta, sq1, sq2, passed);
+            case 1:
+                return last1(own, opp, sq1);
+            default:
+                return finalScore(own, opp);
+        }
+    }
+
+    /**
+     * Solve a position with four empty squares.
+     *
+     * @param own    the discs of the player to move.
+     * @param opp    the discs of the opponent.
+     * @param alpha  the lower bound.
+     * @param beta   the upper bound.
+     * @param sq1    the first empty square to try.
+     * @param sq2    the second empty square to try.
+     * @param sq3    the third empty square to try.
+     * @param sq4    the fourth empty square to try.
+     * @param passed true if the opponent just passed.
+     * @return the final disc difference for the player to move.
+     */
+    private int last4(long own, long opp, int alpha, int beta, int sq1, int sq2, int sq3, int sq4,
+                      boolean passed) {
+        nodes++;
+        int best = -INFINITY;
+        long flipped;
+
+        if ((flipped = BitBoard.flips(own, opp, sq1)) != 0) {
+            best = -last3(opp & ~flipped, own | flipped | (1L << sq1), -beta, -alpha, sq2, sq3, sq4, false);
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+        if ((flipped = BitBoard.flips(own, opp, sq2)) != 0) {
+            int score = -last3(opp & ~flipped, own | flipped | (1L << sq2), -beta, -alpha, sq1, sq3, sq4, false);
+            if (score >= beta) {
+                return score;
+            }
+            best = Math.max(best, score);
+            alpha = Math.max(alpha, score);
+        }
+        if ((flipped = BitBoard.flips(own, opp, sq3)) != 0) {
+            int score = -last3(opp & ~flipped, own | flipped | (1L << sq3), -beta, -alpha, sq1, sq2, sq4, false);
+            if (score >= beta) {
+                return score;
+            }
+            best = Math.max(best, score);
+            alpha = Math.max(alpha, score);
+        }
+        if ((flipped = BitBoard.flips(own, opp, sq4)) != 0) {
+            int score = -last3(opp & ~flipped, own | flipped | (1L << sq4), -beta, -alpha, sq1, sq2, sq3, false);
+            best = Math.max(best, score);
+        }
+
+        if (best == -INFINITY) {
+            if (passed) {
+                return finalScore(own, opp);
+            }
+            return -last4(opp, own, -beta, -alpha, sq1, sq2, sq3, sq4, true);
+        }
+        return best;
+    }
+
+    /**
+     * Solve a position with three empty squares.
+     *
+     * @param own    the discs of the player to move.
+     * @param opp    the discs of the opponent.
+     * @param alpha  the lower bound.
+     * @param beta   the upper bound.
+     * @param sq1    the first empty square to try.
+     * @param sq2    the second empty square to try.
+     * @param sq3    the third empty square to try.
+     * @param passed true if the opponent just passed.
+     * @return the final disc difference for the player to move.
+     */
+    private int last3(long own, long opp, int alpha, int beta, int sq1, int sq2, int sq3, boolean passed) {
+        nodes++;
+        int best = -INFINITY;
+        long flipped;
+
+        if ((flipped = BitBoard.flips(own, opp, sq1)) != 0) {
+            best = -last2(opp & ~flipped, own | flipped | (1L << sq1), -beta, -alpha, sq2, sq3, false);
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+        if ((flipped = BitBoard.flips(own, opp, sq2)) != 0) {
+            int score = -last2(opp & ~flipped, own | flipped | (1L << sq2), -beta, -alpha, sq1, sq3, false);
+            if (score >= beta) {
+                return score;
+            }
+            best = Math.max(best, score);
+            alpha = Math.max(alpha, score);
+        }
+        if ((flipped = BitBoard.flips(own, opp, sq3)) != 0) {
+            int score = -last2(opp & ~flipped, own | flipped | (1L << sq3), -beta, -alpha, sq1, sq2, false);
+            best = Math.max(best, score);
+        }
+
+        if (best == -INFINITY) {
+            if (passed) {
+                return finalScore(own, opp);
+            }
+            return -last3(opp, own, -beta, -alpha, sq1, sq2, sq3, true);
+        }
+        return best;
+    }
+
+    /**
+     * Solve a position with two empty squares.
+     *
+     * @param own    the discs of the player to move.
+     * @param opp    the discs of the opponent.
+     * @param alpha  the lower bound.
+     * @param beta   the upper bound.
+     * @param sq1    the first empty square to try.
+     * @param sq2    the second empty square to try.
+     * @param passed true if the opponent just passed.
+     * @return the final disc difference for the player to move.
+     */
+    private int last2(long own, long opp, int alpha, int beta, int sq1, int sq2, boolean passed) {
+        nodes++;
+        int best = -INFINITY;
+        long flipped;
+
+        if ((flipped = BitBoard.flips(own, opp, sq1)) != 0) {
+            best = -last1(opp & ~flipped, own | flipped | (1L << sq1), sq2);
+            if (best >= beta) {
+                return best;
+            }
+        }
+        if ((flipped = BitBoard.flips(own, opp, sq2)) != 0) {
+            int score = -last1(opp & ~flipped, own | flipped | (1L << sq2), sq1);
+            best = Math.max(best, score);
+        }
+
+        if (best == -INFINITY) {
+            if (passed) {
+                return finalScore(own, opp);
+            }
+            return -last2(opp, own, -beta, -alpha, sq1, sq2, true);
+        }
+        return best;
+    }
+
+    /**
+     * Solve a position with one empty square.
+     *
+     * @param own the discs of the player to move.
+     * @param opp the discs of the opponent.
+     * @param sq  the empty square.
+     * @return the final disc difference for the player to move.
+     */
+    private int last1(long own, long opp, int sq) {
+        nodes++;
+
+        long flipped = BitBoard.flips(own, opp, sq);
+        if (flipped != 0) {
+            return 2 * (Long.bitCount(own | flipped) + 1) - 64;
+        }
+
+        flipped = BitBoard.flips(opp, own, sq);
+        if (flipped != 0) {
+            return 64 - 2 * (Long.bitCount(opp | flipped) + 1);
+        }
+
+        return finalScore(own, opp);
+    }
+
+    /**
+     * Find the squares in board quadrants that have an odd number of empty squares.
+     *
+     * @param empty the empty squares.
+     * @return a mask of the squares in odd quadrants.
+     */
+    private static long oddRegions(long empty) {
+        long odd = 0;
+        for (long quadrant : QUADRANTS) {
+            if ((Long.bitCount(empty & quadrant) & 1) != 0) {
+                odd |= quadrant;
+            }
+        }
+        return odd;
+    }
+
+    /**
+     * Find discs that can never be flipped. This is a safe under-estimate: a disc counts as stable when, along each
+     * of the four lines through it, the line is full or one neighbour on the line is the board edge or another
+     * stable disc of the same color.
+     *
+     * @param own   the discs to check.
+     * @param other the discs of the other color.
+     * @return a mask of the stable discs in {@code own}.
+     */
+    static long stableDiscs(long own, long other) {
+        long occupied = own | other;
+        long fullRows = fullLines(occupied, ROWS);
+        long fullCols = fullLines(occupied, COLS);
+        long fullDiagonals = fullLines(occupied, DIAGONALS);
+        long fullAntiDiagonals = fullLines(occupied, ANTI_DIAGONALS);
+
+        long stable = 0;
+        while (true) {
+            long horizontal = fullRows | EDGES | ((stable << 1) & 0xFEFEFEFEFEFEFEFEL)
+                    | ((stable >>> 1) & 0x7F7F7F7F7F7F7F7FL);
+            long vertical = fullCols | EDGES | (stable << 8) | (stable >>> 8);
+            long diagonal = fullDiagonals | EDGES | ((stable << 9) & 0xFEFEFEFEFEFEFEFEL)
+                    | ((stable >>> 9) & 0x7F7F7F7F7F7F7F7FL);
+            long antiDiagonal = fullAntiDiagonals | EDGES | ((stable << 7) & 0x7F7F7F7F7F7F7F7FL)
+                    | ((stable >>> 7) & 0xFEFEFEFEFEFEFEFEL);
+
+            long next = own & horizontal & vertical & diagonal & antiDiagonal;
+            // Edge squares are only protected by the edge itself along the lines that run off the board.
+            next &= edgeSafe(stable, fullRows, fullCols, fullDiagonals, fullAntiDiagonals) | ~EDGES;
+            if (next == stable) {
+                return stable;
+            }
+            stable = next;
+        }
+    }
+
+    /**
+     * Work out which edge squares are protected along the lines that run along the edge. An edge square is only
+     * next to the board edge on the lines that cross the edge, so along the edge itself it still needs a full line
+     * or a stable neighbour.
+     *
+     * @param stable            the discs known to be stable so far.
+     * @param fullRows          the squares on full rows.
+     * @param fullCols          the squares on full columns.
+     * @param fullDiagonals     the squares on full diagonals.
+     * @param fullAntiDiagonals the squares on full anti-diagonals.
+     * @return the edge squares that are safe along every line.
+     */
+    private static long edgeSafe(long stable, long fullRows, long fullCols, long fullDiagonals,
+                                 long fullAntiDiagonals) {
+        long corners = 0x8100000000000081L;
+        long horizontalNeighbour = ((stable << 1) & 0xFEFEFEFEFEFEFEFEL) | ((stable >>> 1) & 0x7F7F7F7F7F7F7F7FL);
+        long verticalNeighbour = (stable << 8) | (stable >>> 8);
+
+        // Top and bottom edges run horizontally, left and right edges run vertically.
+        long topBottom = 0xFF000000000000FFL & ~corners;
+        long leftRight = 0x0081818181818100L;
+
+        return corners
+                | (topBottom & (fullRows | horizontalNeighbour))
+                | (leftRight & (fullCols | verticalNeighbour));
+    }
+
+    /**
+     * Find the squares on lines that have no empty squares.
+     *
+     * @param occupied the occupied squares.
+     * @param lines    the lines to check.
+     * @return the squares of every full line.
+     */
+    private static long fullLines(long occupied, long[] lines) {
+        long full = 0;
+        for (long line : lines) {
+            if ((occupied & line) == line) {
+                full |= line;
+            }
+        }
+        return full;
+    }
+
+    /**
+     * Score a finished game, giving the empty squares to the winner.
+     *
+     * @param own the discs of the player to move.
+     * @param opp the discs of the opponent.
+     * @return the final disc difference for the player to move.
+     */
+    private static int finalScore(long own, long opp) {
+        int ownCount = Long.bitCount(own);
+        int oppCount = Long.bitCount(opp);
+        int diff = ownCount - oppCount;
+        int empties = 64 - ownCount - oppCount;
+        return diff > 0 ? diff + empties : (diff < 0 ? diff - empties : 0);
+    }
+
+    /**
+     * Check if the solve has run out of time or nodes, or has been told to stop.
+     */
+    private void checkLimits() {
+        if (stopRequested || nodes >= nodeLimit || System.nanoTime() >= deadline) {
+            aborted = true;
+        }
+    }
+}
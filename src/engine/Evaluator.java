@@ -0,0 +1,104 @@
+package engine;
+
+import game.BitBoard;
+
+/**
+ * A static evaluation of reversi positions for the search. <br>
+ * Scores are from the point of view of the player to move: positive is good for that player.
+ *
+ * @author Brock Dyer.
+ */
+public final class Evaluator {
+
+    /**
+     * The score of a won game, before the final disc difference is added.
+     */
+    public static final int WIN = 10000;
+
+    /**
+     * The largest score the static evaluation can give. Always below any finished game.
+     */
+    public static final int MAX_EVAL = WIN / 2;
+
+    /**
+     * The four corner squares.
+     */
+    private static final long CORNERS = 0x8100000000000081L;
+
+    /**
+     * The X squares, diagonally next to a corner, for each corner in {@link #CORNER_SQUARES}.
+     */
+    private static final long[] X_SQUARES = {1L << 9, 1L << 14, 1L << 49, 1L << 54};
+
+    /**
+     * The C squares, next to a corner along an edge, for each corner in {@link #CORNER_SQUARES}.
+     */
+    private static final long[] C_SQUARES = {(1L << 1) | (1L << 8), (1L << 6) | (1L << 15),
+            (1L << 48) | (1L << 57), (1L << 55) | (1L << 62)};
+
+    /**
+     * The corner squares, in the same order as {@link #X_SQUARES} and {@link #C_SQUARES}.
+     */
+    private static final int[] CORNER_SQUARES = {0, 7, 56, 63};
+
+    /**
+     * The number of empty squares at which the disc count starts to count towards the score.
+     */
+    private static final int ENDGAME_EMPTIES = 14;
+
+    /**
+     * This class only holds static helpers.
+     */
+    private Evaluator() {
+    }
+
+    /**
+     * Evaluate a position that is still being played.
+     *
+     * @param own the discs of the player to move.
+     * @param opp the discs of the opponent.
+     * @return the score of the position for the player to move.
+     */
+    public static int evaluate(long own, long opp) {
+        long empty = ~(own | opp);
+
+        int ownMobility = Long.bitCount(BitBoard.moves(own, opp));
+        int oppMobility = Long.bitCount(BitBoard.moves(opp, own));
+        int score = 80 * (ownMobility - oppMobility);
+
+        score += 500 * (Long.bitCount(own & CORNERS) - Long.bitCount(opp & CORNERS));
+
+        // Squares next to an empty corner give the opponent a way into that corner.
+        long risky = 0, edgeRisky = 0;
+        for (int i = 0; i < CORNER_SQUARES.length; i++) {
+            if ((empty & (1L << CORNER_SQUARES[i])) != 0) {
+                risky |= X_SQUARES[i];
+                edgeRisky |= C_SQUARES[i];
+            }
+        }
+        score -= 200 * (Long.bitCount(own & risky) - Long.bitCount(opp & risky));
+        score -= 60 * (Long.bitCount(own & edgeRisky) - Long.bitCount(opp & edgeRisky));
+
+        // Discs next to empty squares give the opponent more moves later on.
+        long frontier = BitBoard.neighbours(empty);
+        score -= 20 * (Long.bitCount(own & frontier) - Long.bitCount(opp & frontier));
+
+        if (Long.bitCount(empty) <= ENDGAME_EMPTIES) {
+            score += 30 * (Long.bitCount(own) - Long.bitCount(opp));
+        }
+
+        return Math.max(-MAX_EVAL, Math.min(MAX_EVAL, score));
+    }
+
+    /**
+     * Score a finished game.
+     *
+     * @param own the discs of the player to move.
+     * @param opp the discs of the opponent.
+     * @return {@link #WIN} plus the disc difference for a win, minus that for a loss, 0 for a draw.
+     */
+    public static int finalScore(long own, long opp) {
+        int diff = Long.bitCount(own) - Long.bitCount(opp);
+        return diff > 0 ? WIN + diff : (diff < 0 ? -WIN + diff : 0);
+    }
+}
@@ -0,0 +1,144 @@
+package engine;
+
+import game.ReversiBoard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Searches one position on several threads at once with Lazy SMP. <br>
+ * Every thread runs its own {@link SearchEngine} on the same position and they all share one transposition table.
+ * The threads never talk to each other directly: the helpers fill the table with results the main thread finds
+ * when it reaches the same positions. Half of the helpers search one ply deeper than the main thread so the
+ * threads spread out over different parts of the tree.
+ * <p>
+ * The main thread's result is the one returned. Its limits decide when the search ends, and the helpers are
+ * stopped as soon as it finishes.
+ * </p>
+ *
+ * @author Brock Dyer.
+ */
+public class LazySmpSearch {
+
+    /**
+     * The engines, one per thread. Engine 0 is the main thread.
+     */
+    private final SearchEngine[] engines;
+
+    /**
+     * The threads the helper engines run on.
+     */
+    private final ExecutorService helpers;
+
+    /**
+     * The table shared by every engine.
+     */
+    private final TranspositionTable table;
+
+    /**
+     * Create a parallel search.
+     *
+     * @param table   the table for every thread to share.
+     * @param threads the number of threads to search on, at least 1.
+     */
+    public LazySmpSearch(TranspositionTable table, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one search thread is needed.");
+        }
+
+        this.table = table;
+        this.engines = new SearchEngine[threads];
+        for (int i = 0; i < threads; i++) {
+            engines[i] = new SearchEngine(table);
+            engines[i].setDepthOffset(i & 1);
+        }
+
+        this.helpers = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, r -> {
+            Thread t = new Thread(r, "reversi-search-helper");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Find the best move in a position.
+     *
+     * @param position the position to search. It is copied, not changed.
+     * @param limits   when to stop searching. Applies to the main thread.
+     * @return the main thread's result, with the nodes of every thread added together.
+     */
+    public SearchResult search(ReversiBoard position, SearchLimits limits) {
+        table.newSearch();
+        for (SearchEngine engine : engines) {
+            engine.clearStop();
+        }
+
+        SearchLimits helperLimits = new SearchLimits(SearchEngine.MAX_PLY, Long.MAX_VALUE, limits.getMaxMillis());
+        List<Future<SearchResult>> running = new ArrayList<>();
+        for (int i = 1; i < engines.length; i++) {
+            SearchEngine helper = engines[i];
+            running.add(helpers.submit(() -> helper.runSearch(position, helperLimits)));
+        }
+
+        SearchResult main = engines[0].runSearch(position, limits);
+
+        for (int i = 1; i < engines.length; i++) {
+            engines[i].stop();
+        }
+
+        long nodes = main.getNodes();
+        for (Future<SearchResult> helper : running) {
+            try {
+                nodes += helper.get().getNodes();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ee) {
+                ee.printStackTrace();
+            }
+        }
+
+        return new SearchResult(main.getBestMove(), main.getScore(), main.getDepth(), nodes,
+                main.getNanos(), main.getPv());
+    }
+
+    /**
+     * Stop a running search on every thread.
+     */
+    public void stop() {
+        for (SearchEngine engine : engines) {
+            engine.stop();
+        }
+    }
+
+    /**
+     * Stop the helper threads for good.
+     */
+    public void shutdown() {
+        stop();
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    /**
+     * Get the number of threads this search uses.
+     *
+     * @return the thread count.
+     */
+    public int getThreads() {
+        return engines.length;
+    }
+
+    /**
+     * Get the table shared by the threads.
+     *
+     * @return the transposition table.
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+}
@@ -0,0 +1,264 @@
+package engine;
+
+import game.MoveRecord;
+import game.ReversiBoard;
+import util.MoveException;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Counts the positions reached at each depth from the start position and checks them against the published
+ * counts. <br>
+ * This is both a correctness check for move generation and a repeatable measure of its speed. A pass counts as a
+ * move, and a position where neither player can move counts as a single leaf at any depth.
+ *
+ * @author Brock Dyer.
+ */
+public class Perft {
+
+    /**
+     * The known number of leaves from the start position, indexed by depth.
+     */
+    private static final long[] KNOWN = {1L, 4L, 12L, 56L, 244L, 1396L, 8200L, 55092L, 390216L, 3005288L,
+            24571284L, 212258800L, 1939886636L, 18429641748L, 184042084512L};
+
+    /**
+     * The number of subtrees to give each thread in parallel mode, so one slow subtree does not leave the other
+     * threads idle at the end.
+     */
+    private static final int TASKS_PER_THREAD = 16;
+
+    /**
+     * Count the leaves below a position with make/unmake and the move mask.
+     *
+     * @param board the position. It is back in the same state when this returns.
+     * @param depth the number of moves to look ahead.
+     * @return the number of leaves.
+     */
+    public static long perft(ReversiBoard board, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        long moves = board.getMoveMask();
+        if (moves == 0) {
+            if (board.getPassCount() > 0) {
+                return 1;
+            }
+            board.makePass();
+            long nodes = perft(board, depth - 1);
+            board.unmakeMove();
+            return nodes;
+        }
+
+        if (depth == 1) {
+            return Long.bitCount(moves);
+        }
+
+        long nodes = 0;
+        while (moves != 0) {
+            int sq = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+
+            board.makeMove(sq);
+            nodes += perft(board, depth - 1);
+            board.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Count the leaves below a position the way the game plays: copying the board and calling
+     * {@link ReversiBoard#move(int, int)} and {@link ReversiBoard#getPossibleMoves()}.
+     *
+     * @param board  the position.
+     * @param depth  the number of moves to look ahead.
+     * @param passed true if the move into this position was a pass.
+     * @return the number of leaves.
+     * @throws MoveException if a move in the move set is refused, which means the two disagree.
+     */
+    public static long legacyPerft(ReversiBoard board, int depth, boolean passed) throws MoveException {
+        if (depth == 0) {
+            return 1;
+        }
+
+        Set<Point> moves = board.getPossibleMoves();
+        if (moves.isEmpty()) {
+            if (passed) {
+                return 1;
+            }
+            ReversiBoard next = new ReversiBoard(board);
+            next.changeTurn();
+            return legacyPerft(next, depth - 1, true);
+        }
+
+        long nodes = 0;
+        for (Point p : moves) {
+            ReversiBoard next = new ReversiBoard(board);
+            next.move(p.x, p.y);
+            next.changeTurn();
+            nodes += legacyPerft(next, depth - 1, false);
+        }
+        return nodes;
+    }
+
+    /**
+     * Count the leaves below the start position on several threads. The tree is split a few moves deep into
+     * subtrees, and the threads take subtrees until none are left.
+     *
+     * @param depth   the number of moves to look ahead.
+     * @param threads the number of threads to count with.
+     * @param legacy  true to count with {@link #legacyPerft(ReversiBoard, int, boolean)}.
+     * @return the number of leaves.
+     * @throws MoveException if the legacy count finds a move it cannot make.
+     */
+    public static long parallelPerft(int depth, int threads, boolean legacy) throws MoveException {
+        ReversiBoard start = new ReversiBoard();
+        start.reset();
+
+        int split = 1;
+        while (split < depth && perft(start, split) < (long) threads * TASKS_PER_THREAD) {
+            split++;
+        }
+
+        List<int[]> paths = new ArrayList<>();
+        collect(start, Math.min(split, depth), new int[split], 0, paths);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> counts = new ArrayList<>();
+            for (int[] path : paths) {
+                counts.add(pool.submit(() -> {
+                    ReversiBoard board = new ReversiBoard();
+                    board.reset();
+                    for (int sq : path) {
+                        if (sq == MoveRecord.PASS) {
+                            board.makePass();
+                        } else {
+                            board.makeMove(sq);
+                        }
+                    }
+
+                    int left = depth - path.length;
+                    return legacy ? legacyPerft(new ReversiBoard(board), left, board.getPassCount() > 0)
+                            : perft(board, left);
+                }));
+            }
+
+            long nodes = 0;
+            for (Future<Long> count : counts) {
+                nodes += count.get();
+            }
+            return nodes;
+
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ie);
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof MoveException) {
+                throw (MoveException) ee.getCause();
+            }
+            throw new IllegalStateException(ee.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Collect the moves leading to every position a number of moves below a position. Games that end sooner are
+     * collected where they end.
+     *
+     * @param board  the position.
+     * @param plies  the number of moves still to make.
+     * @param path   the moves made so far.
+     * @param length the number of moves made so far.
+     * @param paths  the list to add the finished paths to.
+     */
+    private static void collect(ReversiBoard board, int plies, int[] path, int length, List<int[]> paths) {
+        long moves = board.getMoveMask();
+        if (plies == 0 || (moves == 0 && board.getPassCount() > 0)) {
+            int[] done = new int[length];
+            System.arraycopy(path, 0, done, 0, length);
+            paths.add(done);
+            return;
+        }
+
+        if (moves == 0) {
+            board.makePass();
+            path[length] = MoveRecord.PASS;
+            collect(board, plies - 1, path, length + 1, paths);
+            board.unmakeMove();
+            return;
+        }
+
+        while (moves != 0) {
+            int sq = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+
+            board.makeMove(sq);
+            path[length] = sq;
+            collect(board, plies - 1, path, length + 1, paths);
+            board.unmakeMove();
+        }
+    }
+
+    /**
+     * Run perft for every depth up to the one given.
+     *
+     * @param args cmd-line args. Expects the depth, and optionally the number of threads and "legacy" to count
+     *             with the old move API.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 3) {
+            System.out.println("Usage: java Perft #depth [#threads] [legacy]");
+            System.exit(-1);
+        }
+
+        int maxDepth = Integer.parseInt(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        boolean legacy = args.length > 2 && args[2].equals("legacy");
+
+        System.out.println("Perft from the start position, " + threads + " thread(s), "
+                + (legacy ? "legacy move set" : "move mask"));
+        System.out.printf("%5s %14s %12s %14s  %s%n", "depth", "nodes", "time (ms)", "nodes/s", "check");
+
+        boolean failed = false;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            long start = System.nanoTime();
+            long nodes;
+            try {
+                if (threads > 1) {
+                    nodes = parallelPerft(depth, threads, legacy);
+                } else {
+                    ReversiBoard board = new ReversiBoard();
+                    board.reset();
+                    nodes = legacy ? legacyPerft(board, depth, false) : perft(board, depth);
+                }
+            } catch (MoveException me) {
+                System.out.println(me.getMessage());
+                System.exit(-1);
+                return;
+            }
+            long nanos = System.nanoTime() - start;
+
+            String check = "unknown";
+            if (depth < KNOWN.length) {
+                check = nodes == KNOWN[depth] ? "ok" : "WRONG, expected " + KNOWN[depth];
+                failed |= nodes != KNOWN[depth];
+            }
+            System.out.printf("%5d %14d %12.1f %14d  %s%n", depth, nodes, nanos / 1e6,
+                    (long) (nodes * 1e9 / Math.max(1, nanos)), check);
+        }
+
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
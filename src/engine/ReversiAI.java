@@ -0,0 +1,306 @@
+package engine;
+
+import engine.book.OpeningBook;
+import game.BitBoard;
+import game.PieceColor;
+import game.ReversiBoard;
+import game.ReversiGame;
+import game.ReversiPlayer;
+import game.observer.ReversiEventBus;
+import game.observer.ReversiObserver;
+import gui.ReversiGUI;
+import gui.events.ReversiEvent;
+import gui.events.ReversiMoveEvent;
+import javafx.application.Platform;
+import util.MoveException;
+
+import java.awt.*;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A local game against the computer. The person using the GUI plays black and the search engine plays white.
+ * <p>
+ * The engine searches on a background thread so the JavaFX thread is never blocked. When it finishes, its move is
+ * played on the JavaFX thread, which is the only thread that changes the game.
+ * </p>
+ *
+ * @author Brock Dyer.
+ */
+public class ReversiAI implements ReversiPlayer, ReversiObserver {
+
+    /**
+     * How long the computer thinks about each move by default, in milliseconds.
+     */
+    public static final long DEFAULT_MOVE_MILLIS = 2000;
+
+    /**
+     * The size of the transposition table in megabytes.
+     */
+    private static final int TABLE_MEGABYTES = 64;
+
+    /**
+     * The fewest games a book move must have been played in before the computer trusts it.
+     */
+    private static final int MIN_BOOK_GAMES = 10;
+
+    /**
+     * The color of the person playing.
+     */
+    private static final PieceColor HUMAN = PieceColor.BLACK;
+
+    /**
+     * The game logic.
+     */
+    private final ReversiGame game;
+
+    /**
+     * The gui that this player is using.
+     */
+    private final ReversiGUI gui;
+
+    /**
+     * The search that picks the computer's moves.
+     */
+    private final LazySmpSearch engine;
+
+    /**
+     * The solver used once few enough squares are empty.
+     */
+    private final EndgameSolver solver;
+
+    /**
+     * The opening book, or null to always search.
+     */
+    private final OpeningBook book;
+
+    /**
+     * How long the computer may think about each move, in milliseconds.
+     */
+    private final long millisPerMove;
+
+    /**
+     * The thread the engine searches on.
+     */
+    private final ExecutorService searchThread;
+
+    /**
+     * Counts the searches started. A search whose number is no longer current was started before a restart and its
+     * result is ignored.
+     */
+    private int searchId;
+
+    /**
+     * True while the computer is thinking.
+     */
+    private boolean thinking;
+
+    /**
+     * Start a game against the computer.
+     *
+     * @param gui           the gui to display the game on.
+     * @param millisPerMove how long the computer may think about each move.
+     * @param threads       the number of threads to search with.
+     * @param book          the opening book to play from, or null for none.
+     * @param asyncEvents   true to update the board through a {@link ReversiEventBus}, off the thread making moves.
+     */
+    public ReversiAI(ReversiGUI gui, long millisPerMove, int threads, OpeningBook book, boolean asyncEvents) {
+        this.gui = gui;
+        this.game = asyncEvents ? new ReversiGame(new ReversiEventBus()) : new ReversiGame();
+        this.engine = new LazySmpSearch(new TranspositionTable(TABLE_MEGABYTES), threads);
+        this.solver = new EndgameSolver(new TranspositionTable(TABLE_MEGABYTES));
+        this.book = book;
+        this.millisPerMove = millisPerMove;
+        this.searchThread = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "reversi-ai");
+            t.setDaemon(true);
+            return t;
+        });
+        this.game.registerPlayerWithBoard(this);
+    }
+
+    @Override
+    public void handle(ReversiEvent re) {
+        gui.updateBoard(re.getRow(), re.getCol(), re.getColor());
+    }
+
+    @Override
+    public void handleMove(ReversiMoveEvent move) {
+        gui.updateBoard(move);
+    }
+
+    @Override
+    public void makeMove(int row, int col) throws MoveException {
+        if (thinking || game.getCurrentPlayer() != HUMAN) {
+            throw new MoveException("Wait for the computer to make its move.");
+        }
+
+        game.makeMove(row, col);
+        nextTurn();
+    }
+
+    /**
+     * Update the GUI after a move and let the computer move if it is its turn.
+     */
+    private void nextTurn() {
+        gui.updateScore(game.getBlackScore(), game.getWhiteScore());
+
+        if (game.isGameOver()) {
+            gui.updateIndicatorLabel(game.getWinner());
+            return;
+        }
+
+        if (game.getCurrentPlayer() == HUMAN) {
+            gui.updateIndicatorLabel("Your turn");
+            gui.showAvailableMoves();
+        } else {
+            gui.updateIndicatorLabel("Computer is thinking...");
+            startSearch();
+        }
+    }
+
+    /**
+     * Search the current position on the background thread, then play the result on the JavaFX thread.
+     */
+    private void startSearch() {
+        thinking = true;
+        int id = ++searchId;
+        ReversiBoard position = game.copyBoard();
+
+        searchThread.submit(() -> {
+            SearchResult result = think(position);
+            Platform.runLater(() -> playComputerMove(id, result));
+        });
+    }
+
+    /**
+     * Pick a move. A move from the opening book is played straight away. Once few enough squares are empty for the
+     * solver to finish in time, it gets the first three quarters of the time to find the perfect move. If it cannot
+     * finish, the normal search uses the rest.
+     *
+     * @param position the position to move in.
+     * @return the book move, or the result of the solver or the search.
+     */
+    private SearchResult think(ReversiBoard position) {
+        if (book != null) {
+            int move = book.bestMove(position, MIN_BOOK_GAMES);
+            if (move >= 0) {
+                return new SearchResult(move, 0, 0, 0, 0, new int[]{move});
+            }
+        }
+
+        int empties = 64 - position.getNumBlack() - position.getNumWhite();
+
+        long solveMillis = millisPerMove * 3 / 4;
+
+        if (empties <= EndgameSolver.solvableEmpties(solveMillis)) {
+            SearchResult solved = solver.solve(position, SearchLimits.time(solveMillis));
+            if (solved != null) {
+                return solved;
+            }
+            return engine.search(position, SearchLimits.time(millisPerMove - solveMillis));
+        }
+
+        return engine.search(position, SearchLimits.time(millisPerMove));
+    }
+
+    /**
+     * Play the move the engine found.
+     *
+     * @param id     the number of the search that found it.
+     * @param result the result of the search.
+     */
+    private void playComputerMove(int id, SearchResult result) {
+        if (id != searchId) {
+            return;
+        }
+        thinking = false;
+
+        int move = result.getBestMove();
+        // Book moves are not searched, so they have no statistics to show.
+        gui.updateStatusLabel(result.getNodes() == 0 ? "Book move " + BitBoard.name(move) : "Search: " + result);
+        if (move < 0) {
+            game.pass();
+        } else {
+            try {
+                game.makeMove(BitBoard.row(move), BitBoard.col(move));
+            } catch (MoveException me) {
+                System.out.println(me.getMessage());
+                return;
+            }
+        }
+
+        nextTurn();
+    }
+
+    @Override
+    public String getColor() {
+        return HUMAN.toString();
+    }
+
+    @Override
+    public Set<Point> getMoves() {
+        if (thinking || game.getCurrentPlayer() != HUMAN) {
+            return new HashSet<>();
+        }
+        return game.getPossibleMoves();
+    }
+
+    @Override
+    public void pass() {
+        if (!thinking && game.getCurrentPlayer() == HUMAN) {
+            game.pass();
+            nextTurn();
+        }
+    }
+
+    @Override
+    public void restart() {
+        engine.stop();
+        solver.stop();
+        searchId++;
+        thinking = false;
+        game.restart();
+        nextTurn();
+    }
+
+    @Override
+    public void save(String filename) {
+        try {
+            game.saveGame(filename);
+        } catch (IOException ioe) {
+            System.out.println("Could not save the game. " + ioe.getMessage());
+        }
+    }
+
+    @Override
+    public void load(String filename) {
+        try {
+            game.loadGame(filename);
+        } catch (IOException ioe) {
+            System.out.println("Could not load the game. " + ioe.getMessage());
+            return;
+        }
+
+        // Any search in progress was of the old position.
+        engine.stop();
+        solver.stop();
+        searchId++;
+        thinking = false;
+
+        ReversiBoard position = game.copyBoard();
+        gui.updateBoard(position.getBlack(), position.getWhite());
+        nextTurn();
+    }
+
+    @Override
+    public void quit() {
+        solver.stop();
+        engine.shutdown();
+        searchThread.shutdownNow();
+        game.quit();
+    }
+}
@@ -0,0 +1,113 @@
+package engine;
+
+import game.ReversiBoard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how much faster {@link LazySmpSearch} reaches a fixed depth as threads are added. <br>
+ * A fixed set of positions is searched to the same depth once for every thread count, each time with a fresh
+ * table, and the total time to depth is compared with the single thread time.
+ *
+ * @author Brock Dyer.
+ */
+public class SearchBenchmark {
+
+    /**
+     * The number of test positions.
+     */
+    private static final int POSITIONS = 8;
+
+    /**
+     * The number of random moves played from the start to make each test position.
+     */
+    private static final int OPENING_MOVES = 12;
+
+    /**
+     * Make the test positions. The seed is fixed so every run searches the same positions.
+     *
+     * @return the positions to search.
+     */
+    private static List<ReversiBoard> positions() {
+        Random random = new Random(20);
+        List<ReversiBoard> positions = new ArrayList<>();
+
+        while (positions.size() < POSITIONS) {
+            ReversiBoard board = new ReversiBoard();
+            board.reset();
+
+            for (int i = 0; i < OPENING_MOVES && board.getMoveMask() != 0; i++) {
+                long moves = board.getMoveMask();
+                for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                    moves &= moves - 1;
+                }
+                board.makeMove(Long.numberOfTrailingZeros(moves));
+            }
+
+            if (board.getMoveMask() != 0) {
+                positions.add(new ReversiBoard(board));
+            }
+        }
+
+        return positions;
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args cmd-line args. Expects the depth, the table size in megabytes, and optionally the thread counts
+     *             to try.
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java SearchBenchmark #depth #tableMegabytes [#threads ...]");
+            System.exit(-1);
+        }
+
+        int depth = Integer.parseInt(args[0]);
+        int megabytes = Integer.parseInt(args[1]);
+        int[] threadCounts = {1, 2, 4, 8, 16};
+        if (args.length > 2) {
+            threadCounts = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) {
+                threadCounts[i - 2] = Integer.parseInt(args[i]);
+            }
+        }
+
+        List<ReversiBoard> positions = positions();
+        TranspositionTable table = new TranspositionTable(megabytes);
+
+        // Let the JIT compile the search before anything is timed.
+        SearchEngine warmup = new SearchEngine(table);
+        for (ReversiBoard position : positions) {
+            warmup.search(position, SearchLimits.depth(depth));
+        }
+
+        System.out.println("Time to depth " + depth + " over " + positions.size() + " positions, "
+                + Runtime.getRuntime().availableProcessors() + " cores available");
+        System.out.printf("%8s %12s %8s %14s%n", "threads", "time (ms)", "speedup", "nodes/s");
+
+        double baseline = 0;
+        for (int threads : threadCounts) {
+            LazySmpSearch search = new LazySmpSearch(table, threads);
+            table.clear();
+
+            long nanos = 0, nodes = 0;
+            for (ReversiBoard position : positions) {
+                SearchResult result = search.search(position, SearchLimits.depth(depth));
+                nanos += result.getNanos();
+                nodes += result.getNodes();
+            }
+            search.shutdown();
+
+            double millis = nanos / 1e6;
+            if (baseline == 0) {
+                baseline = millis;
+            }
+            System.out.printf("%8d %12.1f %8.2f %14d%n", threads, millis, baseline / millis,
+                    nodes * 1_000_000_000L / Math.max(1, nanos));
+        }
+    }
+}
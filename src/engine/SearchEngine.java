@@ -0,0 +1,502 @@
+package engine;
+
+import game.BitBoard;
+import game.PieceColor;
+import game.ReversiBoard;
+
+import java.util.Arrays;
+
+/**
+ * An iterative deepening principal variation search. <br>
+ * Moves are ordered by the transposition table move, then killer moves, then the history heuristic. Iterations
+ * after the first few start with an aspiration window around the last score.
+ * <p>
+ * One engine runs one search at a time on the thread that calls {@link #search(ReversiBoard, SearchLimits)}. The
+ * search works on its own copy of the position and never touches the board it was given.
+ * </p>
+ *
+ * @author Brock Dyer.
+ */
+public class SearchEngine {
+
+    /**
+     * The deepest ply the search can reach, counting passes.
+     */
+    public static final int MAX_PLY = 128;
+
+    /**
+     * A score larger than any real score.
+     */
+    private static final int INFINITY = 32000;
+
+    /**
+     * Half the width of the aspiration window.
+     */
+    private static final int ASPIRATION = 60;
+
+    /**
+     * The first depth to use an aspiration window for.
+     */
+    private static final int ASPIRATION_DEPTH = 3;
+
+    /**
+     * The limits are checked every time the node count passes a multiple of this plus one.
+     */
+    private static final int CHECK_INTERVAL = 1023;
+
+    /**
+     * Move ordering scores for the transposition table move and the two killer moves.
+     */
+    private static final int TT_MOVE_SCORE = 1 << 30, KILLER_SCORE = 1 << 28;
+
+    /**
+     * The table shared with any other engines searching the same games.
+     */
+    private final TranspositionTable table;
+
+    /**
+     * Two moves per ply that recently caused a beta cutoff.
+     */
+    private final int[][] killers;
+
+    /**
+     * How often each move caused a beta cutoff, per color, weighted by depth.
+     */
+    private final int[][] history;
+
+    /**
+     * The moves at each ply, and their ordering scores.
+     */
+    private final int[][] moveLists, moveScores;
+
+    /**
+     * The principal variation found at each ply.
+     */
+    private final int[][] pvTable;
+
+    /**
+     * The length of the principal variation at each ply.
+     */
+    private final int[] pvLength;
+
+    /**
+     * Added to the depth of every iteration. Helper threads in a {@link LazySmpSearch} search one ply deeper than
+     * the main thread, so between them they fill the shared table with more useful entries.
+     */
+    private int depthOffset;
+
+    /**
+     * The position being searched.
+     */
+    private ReversiBoard board;
+
+    /**
+     * The nodes visited in this search.
+     */
+    private long nodes;
+
+    /**
+     * The node limit of this search.
+     */
+    private long nodeLimit;
+
+    /**
+     * The time at which this search must stop, from {@link System#nanoTime()}.
+     */
+    private long deadline;
+
+    /**
+     * Set to stop the search from another thread.
+     */
+    private volatile boolean stopRequested;
+
+    /**
+     * True once the limits may stop the search. The first iteration always finishes so there is a move to play.
+     */
+    private boolean canAbort;
+
+    /**
+     * True when the current iteration was cut short and its result must be thrown away.
+     */
+    private boolean aborted;
+
+    /**
+     * Create a search engine.
+     *
+     * @param table the transposition table to use.
+     */
+    public SearchEngine(TranspositionTable table) {
+        this.table = table;
+        this.killers = new int[MAX_PLY][2];
+        this.history = new int[2][BitBoard.SQUARES];
+        this.moveLists = new int[MAX_PLY][BitBoard.SQUARES];
+        this.moveScores = new int[MAX_PLY][BitBoard.SQUARES];
+        this.pvTable = new int[MAX_PLY][MAX_PLY];
+        this.pvLength = new int[MAX_PLY];
+    }
+
+    /**
+     * Find the best move in a position.
+     *
+     * @param position the position to search. It is copied, not changed.
+     * @param limits   when to stop searching.
+     * @return the best move found, with the depth, score, node count and principal variation.
+     */
+    public SearchResult search(ReversiBoard position, SearchLimits limits) {
+        this.stopRequested = false;
+        table.newSearch();
+        return runSearch(position, limits);
+    }
+
+    /**
+     * Run a search without clearing a pending stop or starting a new table generation. Used by
+     * {@link LazySmpSearch}, which does both once for all of its threads before any of them start.
+     *
+     * @param position the position to search. It is copied, not changed.
+     * @param limits   when to stop searching.
+     * @return the best move found.
+     */
+    SearchResult runSearch(ReversiBoard position, SearchLimits limits) {
+        long start = System.nanoTime();
+        prepare(position, limits, start);
+
+        if (board.getMoveMask() == 0) {
+            return new SearchResult(-1, 0, 0, 0, System.nanoTime() - start, new int[]{-1});
+        }
+
+        int bestMove = Long.numberOfTrailingZeros(board.getMoveMask());
+        int bestScore = 0;
+        int depthDone = 0;
+        int[] pv = {bestMove};
+        int empties = 64 - Long.bitCount(board.getBlack() | board.getWhite());
+
+        for (int depth = 1; depth <= limits.getMaxDepth() && depth < MAX_PLY; depth++) {
+            int score = aspirationSearch(depth + depthOffset, bestScore);
+            if (aborted) {
+                break;
+            }
+
+            bestScore = score;
+            bestMove = pvTable[0][0];
+            pv = Arrays.copyOf(pvTable[0], pvLength[0]);
+            depthDone = depth + depthOffset;
+            canAbort = true;
+
+            // Nothing more to learn once the game has been searched to the end.
+            if (depth >= empties || Math.abs(score) >= Evaluator.WIN) {
+                break;
+            }
+        }
+
+        return new SearchResult(bestMove, bestScore, depthDone, nodes, System.nanoTime() - start, pv);
+    }
+
+    /**
+     * Stop a running search. It returns the result of its last finished iteration.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Clear a pending stop so the next {@link #runSearch(ReversiBoard, SearchLimits)} can run.
+     */
+    void clearStop() {
+        stopRequested = false;
+    }
+
+    /**
+     * Set the number of plies added to every iteration.
+     *
+     * @param depthOffset the extra depth.
+     */
+    void setDepthOffset(int depthOffset) {
+        this.depthOffset = depthOffset;
+    }
+
+    /**
+     * Reset the per-search state.
+     *
+     * @param position the position to search.
+     * @param limits   the limits of the search.
+     * @param start    the start time of the search.
+     */
+    private void prepare(ReversiBoard position, SearchLimits limits, long start) {
+        this.board = new ReversiBoard(position);
+        this.nodes = 0;
+        this.nodeLimit = limits.getMaxNodes();
+        long millis = limits.getMaxMillis();
+        this.deadline = millis >= Long.MAX_VALUE / 1_000_000 ? Long.MAX_VALUE : start + millis * 1_000_000;
+        this.canAbort = false;
+        this.aborted = false;
+
+        for (int[] pair : killers) {
+            pair[0] = TranspositionTable.NO_MOVE;
+            pair[1] = TranspositionTable.NO_MOVE;
+        }
+        for (int[] colorHistory : history) {
+            for (int sq = 0; sq < colorHistory.length; sq++) {
+                colorHistory[sq] >>= 2;
+            }
+        }
+    }
+
+    /**
+     * Search the root to a fixed depth, starting with a narrow window around the last score and widening it when
+     * the score falls outside.
+     *
+     * @param depth     the depth to search.
+     * @param lastScore the score of the previous iteration.
+     * @return the score of the root position.
+     */
+    private int aspirationSearch(int depth, int lastScore) {
+        int alpha = -INFINITY, beta = INFINITY;
+        if (depth >= ASPIRATION_DEPTH) {
+            alpha = lastScore - ASPIRATION;
+            beta = lastScore + ASPIRATION;
+        }
+
+        while (true) {
+            int score = pvs(depth, alpha, beta, 0);
+            if (aborted) {
+                return score;
+            }
+
+            if (score <= alpha) {
+                alpha = -INFINITY;
+            } else if (score >= beta) {
+                beta = INFINITY;
+            } else {
+                return score;
+            }
+        }
+    }
+
+    /**
+     * Principal variation search. The first move is searched with the full window, the rest with a null window
+     * that is only widened when a move turns out to be better.
+     *
+     * @param depth the remaining depth.
+     * @param alpha the lower bound.
+     * @param beta  the upper bound.
+     * @param ply   the distance from the root.
+     * @return the score of the position for the player to move.
+     */
+    private int pvs(int depth, int alpha, int beta, int ply) {
+        pvLength[ply] = ply;
+
+        if ((++nodes & CHECK_INTERVAL) == 0) {
+            checkLimits();
+        }
+        if (aborted) {
+            return 0;
+        }
+
+        boolean blackToMove = board.getCurrentPlayer() == PieceColor.BLACK;
+        long own = blackToMove ? board.getBlack() : board.getWhite();
+        long opp = blackToMove ? board.getWhite() : board.getBlack();
+        long moves = BitBoard.moves(own, opp);
+
+        if (moves == 0) {
+            if (BitBoard.moves(opp, own) == 0) {
+                return Evaluator.finalScore(own, opp);
+            }
+            if (ply + 1 >= MAX_PLY) {
+                return Evaluator.evaluate(own, opp);
+            }
+
+            board.makePass();
+            int score = -pvs(depth, -beta, -alpha, ply + 1);
+            board.unmakeMove();
+
+            updatePv(ply, -1);
+            return score;
+        }
+
+        if (depth <= 0 || ply + 1 >= MAX_PLY) {
+            return Evaluator.evaluate(own, opp);
+        }
+
+        boolean pvNode = beta - alpha > 1;
+        long hash = board.getHash();
+        int ttMove = TranspositionTable.NO_MOVE;
+        long entry = table.probe(hash);
+        if (entry != TranspositionTable.MISS) {
+            ttMove = TranspositionTable.move(entry);
+            if (!pvNode && TranspositionTable.depth(entry) >= depth) {
+                int score = TranspositionTable.score(entry);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT
+                        || (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+                        || (bound == TranspositionTable.BOUND_UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int side = blackToMove ? 0 : 1;
+        int count = scoreMoves(moves, ply, ttMove, side);
+        int[] list = moveLists[ply];
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = TranspositionTable.NO_MOVE;
+
+        for (int i = 0; i < count; i++) {
+            pickMove(ply, i, count);
+            int sq = list[i];
+
+            board.makeMove(sq);
+            int score;
+            if (i == 0) {
+                score = -pvs(depth - 1, -beta, -alpha, ply + 1);
+            } else {
+                score = -pvs(depth - 1, -alpha - 1, -alpha, ply + 1);
+                if (score > alpha && score < beta) {
+                    score = -pvs(depth - 1, -beta, -alpha, ply + 1);
+                }
+            }
+            board.unmakeMove();
+
+            if (aborted) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = sq;
+
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, sq);
+
+                    if (score >= beta) {
+                        addKiller(ply, sq);
+                        history[side][sq] += depth * depth;
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = bestScore <= originalAlpha ? TranspositionTable.BOUND_UPPER
+                : (bestScore >= beta ? TranspositionTable.BOUND_LOWER : TranspositionTable.BOUND_EXACT);
+        table.store(hash, depth, bound, bestScore, bestMove);
+
+        return bestScore;
+    }
+
+    /**
+     * Fill in the move list for a ply and give each move an ordering score.
+     *
+     * @param moves  the legal moves.
+     * @param ply    the ply of the list.
+     * @param ttMove the move from the transposition table, or {@link TranspositionTable#NO_MOVE}.
+     * @param side   0 for black, 1 for white.
+     * @return the number of moves.
+     */
+    private int scoreMoves(long moves, int ply, int ttMove, int side) {
+        int[] list = moveLists[ply];
+        int[] scores = moveScores[ply];
+        int[] killer = killers[ply];
+        int count = 0;
+
+        while (moves != 0) {
+            int sq = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+
+            int score;
+            if (sq == ttMove) {
+                score = TT_MOVE_SCORE;
+            } else if (sq == killer[0]) {
+                score = KILLER_SCORE;
+            } else if (sq == killer[1]) {
+                score = KILLER_SCORE - 1;
+            } else {
+                score = history[side][sq];
+            }
+
+            list[count] = sq;
+            scores[count] = score;
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Move the best scoring move left in the list to the given index. A selection sort done one step at a time,
+     * so moves after a cutoff are never sorted.
+     *
+     * @param ply   the ply of the list.
+     * @param index the index to fill.
+     * @param count the number of moves in the list.
+     */
+    private void pickMove(int ply, int index, int count) {
+        int[] list = moveLists[ply];
+        int[] scores = moveScores[ply];
+
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+
+        int move = list[best];
+        list[best] = list[index];
+        list[index] = move;
+        int score = scores[best];
+        scores[best] = scores[index];
+        scores[index] = score;
+    }
+
+    /**
+     * Remember a move that caused a beta cutoff.
+     *
+     * @param ply the ply of the cutoff.
+     * @param sq  the move that caused it.
+     */
+    private void addKiller(int ply, int sq) {
+        int[] killer = killers[ply];
+        if (killer[0] != sq) {
+            killer[1] = killer[0];
+            killer[0] = sq;
+        }
+    }
+
+    /**
+     * Make a move the start of the principal variation at a ply, followed by the variation of the next ply.
+     *
+     * @param ply  the ply of the move.
+     * @param move the move square, or -1 for a pass.
+     */
+    private void updatePv(int ply, int move) {
+        int[] line = pvTable[ply];
+        int[] child = pvTable[ply + 1];
+        line[ply] = move;
+        int length = pvLength[ply + 1];
+        for (int i = ply + 1; i < length; i++) {
+            line[i] = child[i];
+        }
+        pvLength[ply] = Math.max(length, ply + 1);
+    }
+
+    /**
+     * Check if the search has run out of time or nodes, or has been told to stop.
+     */
+    private void checkLimits() {
+        if (canAbort && (stopRequested || nodes >= nodeLimit || System.nanoTime() >= deadline)) {
+            aborted = true;
+        }
+    }
+
+    /**
+     * Get the transposition table this engine uses.
+     *
+     * @return the table.
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+}
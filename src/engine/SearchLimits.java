@@ -0,0 +1,84 @@
+package engine;
+
+/**
+ * How far a search is allowed to go. The search stops at whichever limit it reaches first.
+ *
+ * @author Brock Dyer.
+ */
+public class SearchLimits {
+
+    /**
+     * The deepest iteration to search.
+     */
+    private final int maxDepth;
+
+    /**
+     * The most nodes to visit.
+     */
+    private final long maxNodes;
+
+    /**
+     * The longest time to search for, in milliseconds.
+     */
+    private final long maxMillis;
+
+    /**
+     * Create a set of limits.
+     *
+     * @param maxDepth  the deepest iteration to search.
+     * @param maxNodes  the most nodes to visit, {@link Long#MAX_VALUE} for no limit.
+     * @param maxMillis the longest time to search for in milliseconds, {@link Long#MAX_VALUE} for no limit.
+     */
+    public SearchLimits(int maxDepth, long maxNodes, long maxMillis) {
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * Create limits that only bound the search time.
+     *
+     * @param millis the longest time to search for in milliseconds.
+     * @return the limits.
+     */
+    public static SearchLimits time(long millis) {
+        return new SearchLimits(SearchEngine.MAX_PLY, Long.MAX_VALUE, millis);
+    }
+
+    /**
+     * Create limits that only bound the search depth.
+     *
+     * @param depth the deepest iteration to search.
+     * @return the limits.
+     */
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Get the deepest iteration to search.
+     *
+     * @return the depth limit.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Get the most nodes to visit.
+     *
+     * @return the node limit.
+     */
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * Get the longest time to search for.
+     *
+     * @return the time limit in milliseconds.
+     */
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+}
@@ -0,0 +1,147 @@
+package engine;
+
+import game.BitBoard;
+
+/**
+ * The outcome of a search: the move to play and how the search got there.
+ *
+ * @author Brock Dyer.
+ */
+public class SearchResult {
+
+    /**
+     * The best move square, or -1 if the player has to pass.
+     */
+    private final int bestMove;
+
+    /**
+     * The score of the best move for the player to move.
+     */
+    private final int score;
+
+    /**
+     * The deepest iteration that was completed.
+     */
+    private final int depth;
+
+    /**
+     * The number of nodes visited.
+     */
+    private final long nodes;
+
+    /**
+     * The time the search took, in nanoseconds.
+     */
+    private final long nanos;
+
+    /**
+     * The principal variation, starting with the best move.
+     */
+    private final int[] pv;
+
+    /**
+     * Create a search result.
+     *
+     * @param bestMove the best move square, or -1 to pass.
+     * @param score    the score of the best move.
+     * @param depth    the deepest completed iteration.
+     * @param nodes    the number of nodes visited.
+     * @param nanos    the time taken in nanoseconds.
+     * @param pv       the principal variation.
+     */
+    public SearchResult(int bestMove, int score, int depth, long nodes, long nanos, int[] pv) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.nanos = nanos;
+        this.pv = pv;
+    }
+
+    /**
+     * Get the best move.
+     *
+     * @return the square of the best move, or -1 if the player has to pass.
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * Get the score of the best move.
+     *
+     * @return the score for the player to move.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Get the deepest iteration that was completed.
+     *
+     * @return the depth reached.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Get the number of nodes visited.
+     *
+     * @return the node count.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the time the search took.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getMillis() {
+        return nanos / 1_000_000;
+    }
+
+    /**
+     * Get the time the search took.
+     *
+     * @return the time in nanoseconds.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Get the search speed.
+     *
+     * @return the number of nodes visited per second.
+     */
+    public long getNodesPerSecond() {
+        return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+    }
+
+    /**
+     * Get the principal variation.
+     *
+     * @return the expected line of play, as squares. A pass is shown as -1.
+     */
+    public int[] getPv() {
+        return pv.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("depth ").append(depth)
+                .append(" score ").append(score)
+                .append(" nodes ").append(nodes)
+                .append(" time ").append(getMillis()).append("ms")
+                .append(" nps ").append(getNodesPerSecond())
+                .append(" pv");
+        for (int move : pv) {
+            sb.append(" ").append(move < 0 ? "pass" : BitBoard.name(move));
+        }
+        return sb.toString();
+    }
+}
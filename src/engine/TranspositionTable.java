@@ -0,0 +1,367 @@
+package engine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size transposition table shared by every search thread. <br>
+ * Entries live off-heap in direct byte buffers, so a large table adds nothing for the garbage collector to scan.
+ * <p>
+ * Each entry is two 64-bit words: the packed data and the position hash XORed with that data. The words are read
+ * and written without locks, and a reader only accepts an entry when {@code word0 ^ word1} gives back the hash it
+ * asked for. An entry torn by two threads writing at once fails that check and is treated as a miss.
+ * </p>
+ * <p>
+ * Entries are grouped in buckets of two. The first slot keeps the deepest result and the second slot is always
+ * replaced, so shallow results cannot push out expensive deep ones.
+ * </p>
+ *
+ * @author Brock Dyer.
+ */
+public class TranspositionTable {
+
+    /**
+     * The score is exact.
+     */
+    public static final int BOUND_EXACT = 1;
+
+    /**
+     * The score is a lower bound: the search failed high.
+     */
+    public static final int BOUND_LOWER = 2;
+
+    /**
+     * The score is an upper bound: the search failed low.
+     */
+    public static final int BOUND_UPPER = 3;
+
+    /**
+     * The move stored when there is no best move.
+     */
+    public static final int NO_MOVE = 0xFF;
+
+    /**
+     * Returned by {@link #probe(long)} when the position is not in the table.
+     */
+    public static final long MISS = 0;
+
+    /**
+     * The number of bytes in one entry.
+     */
+    private static final int ENTRY_BYTES = 16;
+
+    /**
+     * The number of entries in one bucket.
+     */
+    private static final int BUCKET_ENTRIES = 2;
+
+    /**
+     * The largest buffer to allocate. Direct buffers are indexed with an int, so bigger tables are split.
+     */
+    private static final int MAX_SHARD_BYTES = 1 << 30;
+
+    /**
+     * Atomic access to the longs in the buffers.
+     */
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+
+    /*
+     * Layout of the data word, from the low bits up:
+     * score (16, signed) | depth (8) | bound (2) | move (8) | generation (8).
+     * The bound is never 0 for a stored entry, so the data word of a used entry is never 0.
+     */
+    private static final int DEPTH_SHIFT = 16;
+    private static final int BOUND_SHIFT = 24;
+    private static final int MOVE_SHIFT = 26;
+    private static final int GEN_SHIFT = 34;
+
+    /**
+     * The buffers holding the entries.
+     */
+    private final ByteBuffer[] shards;
+
+    /**
+     * The number of buckets in each shard, minus one. The shard size is a power of two.
+     */
+    private final int shardMask;
+
+    /**
+     * The number of bits of a bucket index that select the bucket within a shard.
+     */
+    private final int shardBits;
+
+    /**
+     * The total number of buckets, minus one.
+     */
+    private final long bucketMask;
+
+    /**
+     * The generation of the current search. Entries from older searches are replaced first.
+     */
+    private volatile int generation;
+
+    /**
+     * Usage statistics.
+     */
+    private final LongAdder probes, hits, collisions, stores, replacements;
+
+    /**
+     * Create a table.
+     *
+     * @param megabytes the size of the table in megabytes. Rounded down to a power of two.
+     */
+    public TranspositionTable(long megabytes) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("The table must be at least 1 MB.");
+        }
+
+        long bytes = Long.highestOneBit(megabytes) << 20;
+        long buckets = bytes / (ENTRY_BYTES * BUCKET_ENTRIES);
+        long shardBuckets = Math.min(buckets, MAX_SHARD_BYTES / (ENTRY_BYTES * BUCKET_ENTRIES));
+
+        this.shardBits = Long.numberOfTrailingZeros(shardBuckets);
+        this.shardMask = (int) shardBuckets - 1;
+        this.bucketMask = buckets - 1;
+        this.shards = new ByteBuffer[(int) (buckets / shardBuckets)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = ByteBuffer.allocateDirect((int) shardBuckets * ENTRY_BYTES * BUCKET_ENTRIES)
+                    .order(ByteOrder.nativeOrder());
+        }
+
+        this.probes = new LongAdder();
+        this.hits = new LongAdder();
+        this.collisions = new LongAdder();
+        this.stores = new LongAdder();
+        this.replacements = new LongAdder();
+    }
+
+    /**
+     * Look up a position.
+     *
+     * @param hash the hash of the position.
+     * @return the packed entry, or {@link #MISS}. Unpack it with {@link #score(long)}, {@link #depth(long)},
+     * {@link #bound(long)} and {@link #move(long)}.
+     */
+    public long probe(long hash) {
+        probes.increment();
+
+        ByteBuffer shard = shard(hash);
+        int offset = offset(hash);
+        boolean occupied = false;
+
+        for (int i = 0; i < BUCKET_ENTRIES; i++, offset += ENTRY_BYTES) {
+            long check = (long) LONGS.getOpaque(shard, offset);
+            long data = (long) LONGS.getOpaque(shard, offset + 8);
+
+            if (data != 0 && (check ^ data) == hash) {
+                hits.increment();
+                return data;
+            }
+            occupied |= data != 0;
+        }
+
+        if (occupied) {
+            collisions.increment();
+        }
+        return MISS;
+    }
+
+    /**
+     * Store the result of a search.
+     *
+     * @param hash  the hash of the position.
+     * @param depth the depth that was searched, 0 to 255.
+     * @param bound one of {@link #BOUND_EXACT}, {@link #BOUND_LOWER} or {@link #BOUND_UPPER}.
+     * @param score the score, which must fit in a short.
+     * @param move  the best move square, or {@link #NO_MOVE}.
+     */
+    public void store(long hash, int depth, int bound, int score, int move) {
+        stores.increment();
+
+        int gen = generation & 0xFF;
+        long data = (score & 0xFFFFL)
+                | ((long) (depth & 0xFF) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) (move & 0xFF) << MOVE_SHIFT)
+                | ((long) gen << GEN_SHIFT);
+
+        ByteBuffer shard = shard(hash);
+        int deep = offset(hash);
+        int always = deep + ENTRY_BYTES;
+
+        long oldCheck = (long) LONGS.getOpaque(shard, deep);
+        long oldData = (long) LONGS.getOpaque(shard, deep + 8);
+
+        int target;
+        if (oldData == 0 || (oldCheck ^ oldData) == hash || generation(oldData) != gen || depth >= depth(oldData)) {
+            target = deep;
+        } else {
+            target = always;
+            oldData = (long) LONGS.getOpaque(shard, always + 8);
+        }
+
+        if (oldData != 0 && ((long) LONGS.getOpaque(shard, target) ^ oldData) != hash) {
+            replacements.increment();
+        }
+
+        LONGS.setOpaque(shard, target, hash ^ data);
+        LONGS.setOpaque(shard, target + 8, data);
+    }
+
+    /**
+     * Start a new search. Entries from earlier searches become the first to be replaced.
+     */
+    public void newSearch() {
+        generation++;
+    }
+
+    /**
+     * Empty the table and reset the statistics.
+     */
+    public void clear() {
+        for (ByteBuffer shard : shards) {
+            for (int i = 0; i < shard.capacity(); i += 8) {
+                LONGS.setOpaque(shard, i, 0L);
+            }
+        }
+        probes.reset();
+        hits.reset();
+        collisions.reset();
+        stores.reset();
+        replacements.reset();
+    }
+
+    /**
+     * Find the buffer holding the bucket of a hash.
+     *
+     * @param hash the position hash.
+     * @return the shard for the hash.
+     */
+    private ByteBuffer shard(long hash) {
+        return shards[(int) ((hash & bucketMask) >>> shardBits)];
+    }
+
+    /**
+     * Find the byte offset of the bucket of a hash within its shard.
+     *
+     * @param hash the position hash.
+     * @return the offset of the first entry in the bucket.
+     */
+    private int offset(long hash) {
+        return ((int) hash & shardMask) * ENTRY_BYTES * BUCKET_ENTRIES;
+    }
+
+    /**
+     * Get the score of an entry.
+     *
+     * @param entry an entry returned by {@link #probe(long)}.
+     * @return the stored score.
+     */
+    public static int score(long entry) {
+        return (short) entry;
+    }
+
+    /**
+     * Get the search depth of an entry.
+     *
+     * @param entry an entry returned by {@link #probe(long)}.
+     * @return the stored depth.
+     */
+    public static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Get the bound type of an entry.
+     *
+     * @param entry an entry returned by {@link #probe(long)}.
+     * @return one of {@link #BOUND_EXACT}, {@link #BOUND_LOWER} or {@link #BOUND_UPPER}.
+     */
+    public static int bound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT) & 0x3;
+    }
+
+    /**
+     * Get the best move of an entry.
+     *
+     * @param entry an entry returned by {@link #probe(long)}.
+     * @return the stored move square, or {@link #NO_MOVE}.
+     */
+    public static int move(long entry) {
+        return (int) (entry >>> MOVE_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Get the generation of an entry.
+     *
+     * @param entry a packed entry.
+     * @return the generation the entry was stored in.
+     */
+    private static int generation(long entry) {
+        return (int) (entry >>> GEN_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Get the size of the table.
+     *
+     * @return the number of entries the table can hold.
+     */
+    public long getCapacity() {
+        return (bucketMask + 1) * BUCKET_ENTRIES;
+    }
+
+    /**
+     * Get the number of lookups.
+     *
+     * @return the number of calls to {@link #probe(long)}.
+     */
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    /**
+     * Get the number of lookups that found their position.
+     *
+     * @return the number of hits.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups that missed while the bucket held other positions.
+     *
+     * @return the number of collisions.
+     */
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    /**
+     * Get the number of stores.
+     *
+     * @return the number of calls to {@link #store(long, int, int, int, int)}.
+     */
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * Get the number of stores that overwrote a different position.
+     *
+     * @return the number of replacements.
+     */
+    public long getReplacements() {
+        return replacements.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TT %d entries: %d probes, %d hits, %d collisions, %d stores, %d replacements",
+                getCapacity(), getProbes(), getHits(), getCollisions(), getStores(), getReplacements());
+    }
+}
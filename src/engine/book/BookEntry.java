@@ -0,0 +1,105 @@
+package engine.book;
+
+import game.PieceColor;
+
+/**
+ * The statistics stored in the opening book for one position: how the games that reached it ended.
+ *
+ * @author Brock Dyer.
+ */
+public class BookEntry {
+
+    /**
+     * The number of games that reached the position.
+     */
+    private final int games;
+
+    /**
+     * The number of those games won by black, won by white and drawn.
+     */
+    private final int blackWins, whiteWins, draws;
+
+    /**
+     * The sum of the final black minus white disc difference over those games.
+     */
+    private final long discSum;
+
+    /**
+     * Create an entry.
+     *
+     * @param games     the number of games.
+     * @param blackWins the games won by black.
+     * @param whiteWins the games won by white.
+     * @param draws     the drawn games.
+     * @param discSum   the sum of the final disc differences, black minus white.
+     */
+    public BookEntry(int games, int blackWins, int whiteWins, int draws, long discSum) {
+        this.games = games;
+        this.blackWins = blackWins;
+        this.whiteWins = whiteWins;
+        this.draws = draws;
+        this.discSum = discSum;
+    }
+
+    /**
+     * Get the number of games that reached the position.
+     *
+     * @return the game count.
+     */
+    public int getGames() {
+        return games;
+    }
+
+    /**
+     * Get the number of games black won.
+     *
+     * @return black's wins.
+     */
+    public int getBlackWins() {
+        return blackWins;
+    }
+
+    /**
+     * Get the number of games white won.
+     *
+     * @return white's wins.
+     */
+    public int getWhiteWins() {
+        return whiteWins;
+    }
+
+    /**
+     * Get the number of drawn games.
+     *
+     * @return the draws.
+     */
+    public int getDraws() {
+        return draws;
+    }
+
+    /**
+     * Get the sum of the final disc differences.
+     *
+     * @return the sum of black minus white at the end of each game.
+     */
+    public long getDiscSum() {
+        return discSum;
+    }
+
+    /**
+     * Get the share of points a player scored from this position, counting a draw as half a win.
+     *
+     * @param color the player.
+     * @return the score rate between 0 and 1.
+     */
+    public double getScoreRate(PieceColor color) {
+        int wins = color == PieceColor.BLACK ? blackWins : whiteWins;
+        return games == 0 ? 0 : (wins + draws / 2.0) / games;
+    }
+
+    @Override
+    public String toString() {
+        return games + " games, black " + blackWins + " white " + whiteWins + " draws " + draws
+                + ", average disc difference " + (games == 0 ? 0 : (double) discSum / games);
+    }
+}
@@ -0,0 +1,190 @@
+package engine.book;
+
+import game.BitBoard;
+import game.PieceColor;
+import game.ReversiBoard;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only opening book, memory mapped from a file written by {@link OpeningBookBuilder}. <br>
+ * Opening a book only maps the file, so it is instant no matter how big the book is, and every JVM on a machine
+ * shares the same pages through the OS cache.
+ * <p>
+ * The file is an open addressing hash table keyed by the canonical hash of each position (see {@link Symmetry}),
+ * so a lookup reads one or two slots:
+ * </p>
+ * <pre>
+ * header: int magic, int version, int slot count (a power of two), int entry count
+ * slot:   long key (0 when empty), int games, int black wins, int white wins, int draws, long disc sum
+ * </pre>
+ *
+ * @author Brock Dyer.
+ */
+public class OpeningBook {
+
+    /**
+     * The first bytes of every book file: "RVBK".
+     */
+    static final int MAGIC = 0x5256424B;
+
+    /**
+     * The version of the file format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The size of the header in bytes.
+     */
+    static final int HEADER_BYTES = 16;
+
+    /**
+     * The size of a slot in bytes.
+     */
+    static final int SLOT_BYTES = 32;
+
+    /**
+     * The mapped file.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The number of slots, minus one.
+     */
+    private final int slotMask;
+
+    /**
+     * The number of positions in the book.
+     */
+    private final int entries;
+
+    /**
+     * Create a book over a mapped file.
+     *
+     * @param buffer the mapped file.
+     * @throws IOException if the file is not a book.
+     */
+    private OpeningBook(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an opening book file.");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported opening book version " + buffer.getInt(4) + ".");
+        }
+
+        int slots = buffer.getInt(8);
+        if (Integer.bitCount(slots) != 1 || HEADER_BYTES + (long) slots * SLOT_BYTES > buffer.capacity()) {
+            throw new IOException("Opening book file is damaged.");
+        }
+
+        this.buffer = buffer;
+        this.slotMask = slots - 1;
+        this.entries = buffer.getInt(12);
+    }
+
+    /**
+     * Open a book file.
+     *
+     * @param path the path of the book.
+     * @return the book.
+     * @throws IOException if the file cannot be mapped or is not a book.
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new OpeningBook(buffer);
+        }
+    }
+
+    /**
+     * Look up a position.
+     *
+     * @param black  the black discs.
+     * @param white  the white discs.
+     * @param toMove the player to move.
+     * @return the statistics of the position, or null if it is not in the book.
+     */
+    public BookEntry lookup(long black, long white, PieceColor toMove) {
+        long key = slotKey(Symmetry.canonicalHash(black, white, toMove));
+
+        // A full or damaged table may have no empty slot to stop at, so each slot is tried at most once.
+        int slot = (int) key & slotMask;
+        for (int probe = 0; probe <= slotMask; probe++, slot = (slot + 1) & slotMask) {
+            int offset = HEADER_BYTES + slot * SLOT_BYTES;
+            long stored = buffer.getLong(offset);
+            if (stored == 0) {
+                return null;
+            }
+            if (stored == key) {
+                return new BookEntry(buffer.getInt(offset + 8), buffer.getInt(offset + 12),
+                        buffer.getInt(offset + 16), buffer.getInt(offset + 20), buffer.getLong(offset + 24));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Pick the book move with the best results for the player to move.
+     *
+     * @param position the position to move in.
+     * @param minGames the fewest games a move must have been played in to be trusted.
+     * @return the square of the best book move, or -1 if no legal move is in the book often enough.
+     */
+    public int bestMove(ReversiBoard position, int minGames) {
+        PieceColor mover = position.getCurrentPlayer();
+        PieceColor other = mover == PieceColor.BLACK ? PieceColor.WHITE : PieceColor.BLACK;
+        boolean blackToMove = mover == PieceColor.BLACK;
+        long own = blackToMove ? position.getBlack() : position.getWhite();
+        long opp = blackToMove ? position.getWhite() : position.getBlack();
+
+        int bestMove = -1;
+        double bestRate = -1;
+        int bestGames = 0;
+
+        long moves = BitBoard.moves(own, opp);
+        while (moves != 0) {
+            int sq = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+
+            long flipped = BitBoard.flips(own, opp, sq);
+            long nextOwn = own | flipped | (1L << sq);
+            long nextOpp = opp & ~flipped;
+            BookEntry entry = blackToMove ? lookup(nextOwn, nextOpp, other) : lookup(nextOpp, nextOwn, other);
+
+            if (entry != null && entry.getGames() >= minGames) {
+                double rate = entry.getScoreRate(mover);
+                if (rate > bestRate || (rate == bestRate && entry.getGames() > bestGames)) {
+                    bestMove = sq;
+                    bestRate = rate;
+                    bestGames = entry.getGames();
+                }
+            }
+        }
+
+        return bestMove;
+    }
+
+    /**
+     * Get the number of positions in the book.
+     *
+     * @return the entry count.
+     */
+    public int size() {
+        return entries;
+    }
+
+    /**
+     * Turn a hash into the key stored in a slot. 0 marks an empty slot, so it is never used as a key.
+     *
+     * @param hash the canonical position hash.
+     * @return the slot key.
+     */
+    static long slotKey(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+}
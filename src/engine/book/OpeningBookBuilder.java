@@ -0,0 +1,262 @@
+package engine.book;
+
+import game.BitBoard;
+import game.ReversiBoard;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds an {@link OpeningBook} file from recorded games. <br>
+ * Every game is replayed from the start position, and each position reached in its first few moves is credited
+ * with the game's result.
+ *
+ * @author Brock Dyer.
+ */
+public class OpeningBookBuilder {
+
+    /**
+     * How many moves of each game go into the book by default.
+     */
+    public static final int DEFAULT_PLIES = 16;
+
+    /**
+     * How many moves of each game go into the book.
+     */
+    private final int plies;
+
+    /**
+     * The statistics of each position: games, black wins, white wins, draws and disc sum.
+     */
+    private final Map<Long, long[]> positions;
+
+    /**
+     * The number of games added.
+     */
+    private long games;
+
+    /**
+     * Create a builder.
+     *
+     * @param plies how many moves of each game to put in the book.
+     */
+    public OpeningBookBuilder(int plies) {
+        this.plies = plies;
+        this.positions = new HashMap<>();
+    }
+
+    /**
+     * Replay a game and add its opening positions to the book. Passes are made automatically when the player to
+     * move has no legal move.
+     *
+     * @param moves the squares played, in order.
+     * @param count the number of moves in the array to use.
+     * @return false if the game contains an illegal move, in which case nothing is added.
+     */
+    public boolean addGame(int[] moves, int count) {
+        ReversiBoard board = new ReversiBoard();
+        board.reset();
+
+        long[] keys = new long[Math.min(plies, count)];
+        for (int i = 0; i < count; i++) {
+            if (board.getMoveMask() == 0) {
+                board.makePass();
+            }
+
+            int sq = moves[i];
+            if (sq < 0 || sq >= BitBoard.SQUARES || (board.getMoveMask() & (1L << sq)) == 0) {
+                return false;
+            }
+            board.makeMove(sq);
+
+            if (i < keys.length) {
+                keys[i] = Symmetry.canonicalHash(board.getBlack(), board.getWhite(), board.getCurrentPlayer());
+            }
+        }
+
+        int diff = board.getNumBlack() - board.getNumWhite();
+        for (long key : keys) {
+            add(key, diff);
+        }
+        games++;
+        return true;
+    }
+
+    /**
+     * Add a game replayed elsewhere, crediting its opening positions with its result.
+     *
+     * @param keys  the canonical hash of the position after each move.
+     * @param count the number of moves of the game. Only the first moves that go into the book are used.
+     * @param diff  the final disc difference of the game, black minus white.
+     */
+    public void addGame(long[] keys, int count, int diff) {
+        for (int i = 0; i < Math.min(count, plies); i++) {
+            add(keys[i], diff);
+        }
+        games++;
+    }
+
+    /**
+     * Credit a position with one game result.
+     *
+     * @param key  the canonical hash of the position.
+     * @param diff the final disc difference of the game, black minus white.
+     */
+    public void add(long key, int diff) {
+        long[] stats = positions.computeIfAbsent(OpeningBook.slotKey(key), k -> new long[5]);
+        stats[0]++;
+        stats[diff > 0 ? 1 : (diff < 0 ? 2 : 3)]++;
+        stats[4] += diff;
+    }
+
+    /**
+     * Add every position of another builder to this one.
+     *
+     * @param other the builder to merge in.
+     */
+    public void merge(OpeningBookBuilder other) {
+        for (Map.Entry<Long, long[]> entry : other.positions.entrySet()) {
+            long[] stats = positions.computeIfAbsent(entry.getKey(), k -> new long[5]);
+            long[] more = entry.getValue();
+            for (int i = 0; i < stats.length; i++) {
+                stats[i] += more[i];
+            }
+        }
+        games += other.games;
+    }
+
+    /**
+     * Write the book file.
+     *
+     * @param path where to write the book. An existing file is replaced.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        int slots = Integer.highestOneBit(Math.max(2, positions.size() * 2 - 1)) << 1;
+        long size = OpeningBook.HEADER_BYTES + (long) slots * OpeningBook.SLOT_BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Opening book is too large: " + positions.size() + " positions.");
+        }
+
+        Files.deleteIfExists(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            buffer.putInt(0, OpeningBook.MAGIC);
+            buffer.putInt(4, OpeningBook.VERSION);
+            buffer.putInt(8, slots);
+            buffer.putInt(12, positions.size());
+
+            int mask = slots - 1;
+            for (Map.Entry<Long, long[]> entry : positions.entrySet()) {
+                long key = entry.getKey();
+                int slot = (int) key & mask;
+                while (buffer.getLong(OpeningBook.HEADER_BYTES + slot * OpeningBook.SLOT_BYTES) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+
+                long[] stats = entry.getValue();
+                int offset = OpeningBook.HEADER_BYTES + slot * OpeningBook.SLOT_BYTES;
+                buffer.putLong(offset, key);
+                buffer.putInt(offset + 8, (int) stats[0]);
+                buffer.putInt(offset + 12, (int) stats[1]);
+                buffer.putInt(offset + 16, (int) stats[2]);
+                buffer.putInt(offset + 20, (int) stats[3]);
+                buffer.putLong(offset + 24, stats[4]);
+            }
+
+            buffer.force();
+        }
+    }
+
+    /**
+     * Get the number of games added.
+     *
+     * @return the game count.
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Get the number of positions collected.
+     *
+     * @return the position count.
+     */
+    public int size() {
+        return positions.size();
+    }
+
+    /**
+     * Parse a game written as a list of square names in the usual notation, such as "f5d6c3d3c4", see
+     * {@link BitBoard#parse(String)}. Spaces are ignored.
+     *
+     * @param line  the game.
+     * @param moves the array to put the squares in. Must hold at least 60 moves.
+     * @return the number of moves, or -1 if the line is not a valid game.
+     */
+    public static int parseGame(String line, int[] moves) {
+        String text = line.replaceAll("\\s", "");
+        if (text.length() % 2 != 0 || text.length() / 2 > moves.length) {
+            return -1;
+        }
+
+        int count = 0;
+        for (int i = 0; i < text.length(); i += 2) {
+            int sq = BitBoard.parse(text.substring(i, i + 2));
+            if (sq < 0) {
+                return -1;
+            }
+            moves[count++] = sq;
+        }
+        return count;
+    }
+
+    /**
+     * Build a book from a text file with one game per line.
+     *
+     * @param args cmd-line args. Expects the games file, the book file to write, and optionally the number of
+     *             moves of each game to use.
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            System.out.println("Usage: java OpeningBookBuilder games.txt book.bin [#plies]");
+            System.exit(-1);
+        }
+
+        int plies = args.length == 3 ? Integer.parseInt(args[2]) : DEFAULT_PLIES;
+        OpeningBookBuilder builder = new OpeningBookBuilder(plies);
+        int[] moves = new int[BitBoard.SQUARES];
+        int bad = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                int count = parseGame(line, moves);
+                if (count < 0 || !builder.addGame(moves, count)) {
+                    bad++;
+                }
+            }
+
+            builder.write(Paths.get(args[1]));
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            System.exit(-1);
+        }
+
+        System.out.println("Added " + builder.getGames() + " games, " + builder.size() + " positions. Skipped "
+                + bad + " bad games.");
+    }
+}
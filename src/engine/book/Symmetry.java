@@ -0,0 +1,164 @@
+package engine.book;
+
+import game.BitBoard;
+import game.PieceColor;
+import game.Zobrist;
+
+/**
+ * The 8 symmetries of the board, used to store each opening position once no matter how it is rotated or
+ * reflected. <br>
+ * A symmetry is a number from 0 to 7. Bit 1 transposes the board (swaps rows and columns), bit 2 mirrors the
+ * columns and bit 4 mirrors the rows, applied in that order.
+ *
+ * @author Brock Dyer.
+ */
+public final class Symmetry {
+
+    /**
+     * The number of symmetries.
+     */
+    public static final int COUNT = 8;
+
+    /**
+     * The symmetry that undoes each symmetry.
+     */
+    private static final int[] INVERSE = new int[COUNT];
+
+    static {
+        for (int sym = 0; sym < COUNT; sym++) {
+            for (int inverse = 0; inverse < COUNT; inverse++) {
+                boolean undoes = true;
+                for (int sq = 0; sq < BitBoard.SQUARES && undoes; sq++) {
+                    undoes = square(square(sq, sym), inverse) == sq;
+                }
+                if (undoes) {
+                    INVERSE[sym] = inverse;
+                }
+            }
+        }
+    }
+
+    /**
+     * This class only holds static helpers.
+     */
+    private Symmetry() {
+    }
+
+    /**
+     * Apply a symmetry to a mask.
+     *
+     * @param mask the squares to move.
+     * @param sym  the symmetry.
+     * @return the moved squares.
+     */
+    public static long apply(long mask, int sym) {
+        if ((sym & 1) != 0) {
+            mask = transpose(mask);
+        }
+        if ((sym & 2) != 0) {
+            mask = mirrorColumns(mask);
+        }
+        if ((sym & 4) != 0) {
+            mask = Long.reverseBytes(mask);
+        }
+        return mask;
+    }
+
+    /**
+     * Apply a symmetry to a square.
+     *
+     * @param square the square index.
+     * @param sym    the symmetry.
+     * @return the moved square.
+     */
+    public static int square(int square, int sym) {
+        int row = BitBoard.row(square), col = BitBoard.col(square);
+        if ((sym & 1) != 0) {
+            int swap = row;
+            row = col;
+            col = swap;
+        }
+        if ((sym & 2) != 0) {
+            col = 7 - col;
+        }
+        if ((sym & 4) != 0) {
+            row = 7 - row;
+        }
+        return BitBoard.square(row, col);
+    }
+
+    /**
+     * Get the symmetry that undoes another.
+     *
+     * @param sym the symmetry.
+     * @return the inverse symmetry.
+     */
+    public static int inverse(int sym) {
+        return INVERSE[sym];
+    }
+
+    /**
+     * Find the symmetry that gives a position its canonical form: the one with the smallest hash.
+     *
+     * @param black  the black discs.
+     * @param white  the white discs.
+     * @param toMove the player to move.
+     * @return the canonical symmetry.
+     */
+    public static int canonical(long black, long white, PieceColor toMove) {
+        int best = 0;
+        long bestKey = Zobrist.hash(black, white, toMove);
+        for (int sym = 1; sym < COUNT; sym++) {
+            long key = Zobrist.hash(apply(black, sym), apply(white, sym), toMove);
+            if (Long.compareUnsigned(key, bestKey) < 0) {
+                bestKey = key;
+                best = sym;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Get the hash of a position in its canonical form. Every rotation and reflection of a position has the same
+     * canonical hash.
+     *
+     * @param black  the black discs.
+     * @param white  the white discs.
+     * @param toMove the player to move.
+     * @return the canonical hash.
+     */
+    public static long canonicalHash(long black, long white, PieceColor toMove) {
+        int sym = canonical(black, white, toMove);
+        return Zobrist.hash(apply(black, sym), apply(white, sym), toMove);
+    }
+
+    /**
+     * Swap the rows and columns of a mask.
+     *
+     * @param x the mask.
+     * @return the transposed mask.
+     */
+    private static long transpose(long x) {
+        long t;
+        t = 0x0F0F0F0F00000000L & (x ^ (x << 28));
+        x ^= t ^ (t >>> 28);
+        t = 0x3333000033330000L & (x ^ (x << 14));
+        x ^= t ^ (t >>> 14);
+        t = 0x5500550055005500L & (x ^ (x << 7));
+        x ^= t ^ (t >>> 7);
+        return x;
+    }
+
+    /**
+     * Mirror the columns of a mask, so column 0 becomes column 7.
+     *
+     * @param x the mask.
+     * @return the mirrored mask.
+     */
+    private static long mirrorColumns(long x) {
+        x = ((x >>> 1) & 0x5555555555555555L) | ((x & 0x5555555555555555L) << 1);
+        x = ((x >>> 2) & 0x3333333333333333L) | ((x & 0x3333333333333333L) << 2);
+        x = ((x >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((x & 0x0F0F0F0F0F0F0F0FL) << 4);
+        return x;
+    }
+}
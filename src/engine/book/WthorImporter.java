@@ -0,0 +1,357 @@
+package engine.book;
+
+import game.BitBoard;
+import game.MoveLog;
+import game.PieceColor;
+import game.ReversiBoard;
+import game.archive.GameArchive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Imports game databases in the WTHOR format (.wtb files) into an {@link OpeningBook}, and optionally a
+ * {@link GameArchive}. <br>
+ * Each file is memory mapped and its games are read straight from the mapping, one record at a time, so a file is
+ * never copied onto the heap. The files are imported in parallel, one per thread, each into its own
+ * {@link OpeningBookBuilder}, and the builders are merged at the end. Games for the archive are collected and added
+ * in batches, so the threads do not take turns adding them one at a time.
+ * <p>
+ * A WTHOR file is a 16 byte header followed by 68 byte game records, little endian:
+ * </p>
+ * <pre>
+ * header: byte century, byte year, byte month, byte day, int games, short count, short year of the games,
+ *         byte board size (0 or 8), byte game type, byte depth, byte reserved
+ * game:   short tournament, short black player, short white player, byte black discs at the end,
+ *         byte theoretical black discs, 60 bytes of moves (10 * row + column, from 1, with a for column 1; 0 ends)
+ * </pre>
+ * WTHOR uses the usual start position, which is this board's mirrored left to right, so columns are mirrored as the
+ * moves are read, see {@link BitBoard#standardSquare(int, int)}.
+ *
+ * @author Brock Dyer.
+ */
+public class WthorImporter {
+
+    /**
+     * The size of a file header in bytes.
+     */
+    static final int HEADER_BYTES = 16;
+
+    /**
+     * The size of a game record in bytes.
+     */
+    static final int GAME_BYTES = 68;
+
+    /**
+     * Where the moves start in a game record.
+     */
+    private static final int MOVES_OFFSET = 8;
+
+    /**
+     * The number of rows and of columns.
+     */
+    private static final int SIZE = 8;
+
+    /**
+     * The most moves a game record holds.
+     */
+    private static final int MAX_MOVES = 60;
+
+    /**
+     * The number of games handed to the archive at once.
+     */
+    private static final int ARCHIVE_BATCH = 4096;
+
+    /**
+     * How many moves of each game go into the book.
+     */
+    private final int plies;
+
+    /**
+     * Where every game is added as well, or null.
+     */
+    private final GameArchive archive;
+
+    /**
+     * The number of games left out for having an illegal move.
+     */
+    private final AtomicLong skipped;
+
+    /**
+     * Create an importer.
+     *
+     * @param plies   how many moves of each game to put in the book.
+     * @param archive an archive to add every game to as well, or null.
+     */
+    public WthorImporter(int plies, GameArchive archive) {
+        this.plies = plies;
+        this.archive = archive;
+        this.skipped = new AtomicLong();
+    }
+
+    /**
+     * Import files in parallel.
+     *
+     * @param files   the WTHOR files.
+     * @param threads the number of files to import at once.
+     * @return the statistics of all the games.
+     * @throws IOException if a file cannot be read or is not a WTHOR game file.
+     */
+    public OpeningBookBuilder importAll(List<Path> files, int threads) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, files.size())), r -> {
+            Thread t = new Thread(r, "reversi-wthor");
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            List<Future<OpeningBookBuilder>> parts = new ArrayList<>();
+            for (Path file : files) {
+                parts.add(pool.submit(() -> importFile(file)));
+            }
+
+            OpeningBookBuilder total = new OpeningBookBuilder(plies);
+            for (Future<OpeningBookBuilder> part : parts) {
+                total.merge(part.get());
+            }
+            return total;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted importing games.", ie);
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof IOException) {
+                throw (IOException) ee.getCause();
+            }
+            throw new IOException("Failed to import games.", ee.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Import one file.
+     *
+     * @param file the WTHOR file.
+     * @return the statistics of its games. Games with an illegal move are left out and counted, see
+     * {@link #getSkipped()}.
+     * @throws IOException if the file cannot be read or is not a WTHOR game file.
+     */
+    public OpeningBookBuilder importFile(Path file) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            data = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        int boardSize = data.capacity() < HEADER_BYTES ? -1 : data.get(12);
+        if (boardSize != 0 && boardSize != SIZE) {
+            throw new IOException(file + " is not a WTHOR game file for an 8x8 board.");
+        }
+
+        // The count in the header is not always right, so the records are counted by the size of the file.
+        int games = (data.capacity() - HEADER_BYTES) / GAME_BYTES;
+
+        OpeningBookBuilder builder = new OpeningBookBuilder(plies);
+        ReversiBoard board = new ReversiBoard();
+        long[] keys = new long[plies];
+        List<MoveLog> logs = new ArrayList<>();
+        MoveLog log = archive == null ? null : new MoveLog();
+
+        for (int game = 0; game < games; game++) {
+            int record = HEADER_BYTES + game * GAME_BYTES;
+            int blackDiscs = data.get(record + 6) & 0xFF;
+            int count = replay(data, record + MOVES_OFFSET, board, keys, log);
+            if (count < 0 || blackDiscs > BitBoard.SQUARES) {
+                skipped.incrementAndGet();
+                continue;
+            }
+
+            // Empty squares go to the winner, so the discs always add up to 64.
+            builder.addGame(keys, count, 2 * blackDiscs - BitBoard.SQUARES);
+
+            if (log != null) {
+                logs.add(log);
+                log = new MoveLog();
+                if (logs.size() == ARCHIVE_BATCH) {
+                    archive.appendAll(logs);
+                    logs.clear();
+                }
+            }
+        }
+
+        if (!logs.isEmpty()) {
+            archive.appendAll(logs);
+        }
+        return builder;
+    }
+
+    /**
+     * Get the number of games left out for having an illegal move.
+     *
+     * @return the skipped game count.
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * Play the moves of a game record from the start position.
+     *
+     * @param data  the file.
+     * @param moves where the moves of the game start.
+     * @param board the board to play on. Reset first.
+     * @param keys  given the canonical hash after each of the first moves.
+     * @param log   given the moves and passes, or null.
+     * @return the number of moves, or -1 if one is illegal.
+     */
+    private static int replay(ByteBuffer data, int moves, ReversiBoard board, long[] keys, MoveLog log) {
+        board.reset();
+        if (log != null) {
+            log.clear();
+        }
+
+        int count = 0;
+        while (count < MAX_MOVES) {
+            int move = data.get(moves + count);
+            if (move == 0) {
+                break;
+            }
+
+            int row = move / 10 - 1, col = move % 10 - 1;
+            if (row < 0 || row >= SIZE || col < 0 || col >= SIZE) {
+                return -1;
+            }
+            int square = BitBoard.standardSquare(row, col);
+
+            if (board.getMoveMask() == 0) {
+                board.makePass();
+                if (log != null) {
+                    log.addPass();
+                }
+            }
+            if ((board.getMoveMask() & (1L << square)) == 0) {
+                return -1;
+            }
+            board.makeMove(square);
+            if (log != null) {
+                log.addMove(square);
+            }
+
+            if (count < keys.length) {
+                keys[count] = Symmetry.canonicalHash(board.getBlack(), board.getWhite(), board.getCurrentPlayer());
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Find the WTHOR files named on the command line. A directory stands for the .wtb files in it.
+     *
+     * @param names the files and directories.
+     * @return the files.
+     * @throws IOException if a directory cannot be listed.
+     */
+    private static List<Path> files(List<String> names) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String name : names) {
+            Path path = Paths.get(name);
+            if (!Files.isDirectory(path)) {
+                files.add(path);
+                continue;
+            }
+
+            try (DirectoryStream<Path> found = Files.newDirectoryStream(path, "*.{wtb,WTB}")) {
+                for (Path file : found) {
+                    files.add(file);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Print how the replies to the first move have scored, from a book. The moves are in the usual notation, see
+     * {@link BitBoard#name(int)}, so a line can be fed back to {@link OpeningBookBuilder#parseGame(String, int[])}.
+     *
+     * @param book the book.
+     */
+    private static void printOpenings(OpeningBook book) {
+        // Every first move is the same up to symmetry, so one is shown.
+        ReversiBoard board = new ReversiBoard();
+        board.reset();
+        int first = Long.numberOfTrailingZeros(board.getMoveMask());
+        board.makeMove(first);
+
+        long replies = board.getMoveMask();
+        while (replies != 0) {
+            int reply = Long.numberOfTrailingZeros(replies);
+            replies &= replies - 1;
+
+            board.makeMove(reply);
+            BookEntry entry = book.lookup(board.getBlack(), board.getWhite(), board.getCurrentPlayer());
+            board.unmakeMove();
+
+            if (entry != null) {
+                System.out.printf("  %s%s: white scores %.1f%% over %s%n", BitBoard.name(first), BitBoard.name(reply),
+                        100 * entry.getScoreRate(PieceColor.WHITE), entry);
+            }
+        }
+    }
+
+    /**
+     * Import WTHOR files into an opening book, and optionally an archive.
+     *
+     * @param args cmd-line args. Expects the book file to write, the number of moves of each game to put in it, an
+     *             archive directory to add the games to (- for none), and the WTHOR files or directories of them.
+     */
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.out.println("Usage: java WthorImporter book.bin #plies archiveDir|- games.wtb|directory ...");
+            System.exit(-1);
+        }
+
+        long start = System.nanoTime();
+        int threads = Runtime.getRuntime().availableProcessors();
+        WthorImporter importer;
+        OpeningBookBuilder builder;
+        try (GameArchive archive = args[2].equals("-") ? null : GameArchive.open(Paths.get(args[2]))) {
+            List<Path> files = files(List.of(args).subList(3, args.length));
+            System.out.println("Importing " + files.size() + " files on " + Math.min(threads, files.size())
+                    + " threads");
+
+            importer = new WthorImporter(Integer.parseInt(args[1]), archive);
+            builder = importer.importAll(files, threads);
+            builder.write(Paths.get(args[0]));
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            System.exit(-1);
+            return;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Added %d games, %d positions in %.2f s: %.0f games/s. Skipped %d bad games.%n",
+                builder.getGames(), builder.size(), seconds, builder.getGames() / seconds, importer.getSkipped());
+
+        try {
+            printOpenings(OpeningBook.open(Paths.get(args[0])));
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package game;
+
+/**
+ * Bitboard helpers for the reversi board. <br>
+ * A position is held in two 64-bit masks, one for each color. Bit {@code row * 8 + col} is set when that square is
+ * occupied by the mask's color, so bit 0 is the top left square and bit 63 is the bottom right square.
+ *
+ * @author Brock Dyer.
+ */
+public final class BitBoard {
+
+    /**
+     * The number of squares on the board.
+     */
+    public static final int SQUARES = 64;
+
+    /**
+     * A mask of every square except the first column. Used to stop shifts from wrapping onto the next row.
+     */
+    static final long NOT_COL_0 = 0xFEFEFEFEFEFEFEFEL;
+
+    /**
+     * A mask of every square except the last column. Used to stop shifts from wrapping onto the previous row.
+     */
+    static final long NOT_COL_7 = 0x7F7F7F7F7F7F7F7FL;
+
+    /**
+     * A mask of every square that is not on the first or last column.
+     */
+    static final long INNER_COLS = NOT_COL_0 & NOT_COL_7;
+
+    /**
+     * This class only holds static helpers.
+     */
+    private BitBoard() {
+    }
+
+    /**
+     * Get the square index of a row and column.
+     *
+     * @param row the row of the square.
+     * @param col the column of the square.
+     * @return the square index, between 0 and 63.
+     */
+    public static int square(int row, int col) {
+        return (row << 3) | col;
+    }
+
+    /**
+     * Get the row of a square index.
+     *
+     * @param square the square index.
+     * @return the row of the square.
+     */
+    public static int row(int square) {
+        return square >>> 3;
+    }
+
+    /**
+     * Get the column of a square index.
+     *
+     * @param square the square index.
+     * @return the column of the square.
+     */
+    public static int col(int square) {
+        return square & 7;
+    }
+
+    /**
+     * Get the square index of a row and column in the usual notation. <br>
+     * The usual start position is this board's mirrored left to right, so the usual columns run the other way:
+     * column 0 there is column 7 here. Mirroring twice is a no-op, so this also turns a square index back into the
+     * usual row and column.
+     *
+     * @param row the row of the square.
+     * @param col the column of the square in the usual notation.
+     * @return the square index, between 0 and 63.
+     */
+    public static int standardSquare(int row, int col) {
+        return square(row, 7 - col);
+    }
+
+    /**
+     * Get the name of a square in the usual notation, a column letter followed by a row number. Columns are
+     * mirrored, see {@link #standardSquare(int, int)}, so the first moves from the start are f5, d3, c4 and e6.
+     *
+     * @param square the square index.
+     * @return the name of the square, from "h1" for square 0 to "a8" for square 63.
+     */
+    public static String name(int square) {
+        int usual = standardSquare(row(square), col(square));
+        return "" + (char) ('a' + col(usual)) + (char) ('1' + row(usual));
+    }
+
+    /**
+     * Parse the name of a square in the usual notation.
+     *
+     * @param name a square name such as "f5", as made by {@link #name(int)}. Case is ignored.
+     * @return the square index, or -1 if the name is not a square.
+     */
+    public static int parse(String name) {
+        if (name.length() != 2) {
+            return -1;
+        }
+        int col = Character.toLowerCase(name.charAt(0)) - 'a';
+        int row = name.charAt(1) - '1';
+        return col >= 0 && col < 8 && row >= 0 && row < 8 ? standardSquare(row, col) : -1;
+    }
+
+    /**
+     * Find every square next to one of the given squares, in any of the 8 directions.
+     *
+     * @param mask the squares to look around.
+     * @return a mask of the neighbouring squares. May include squares in the given mask.
+     */
+    public static long neighbours(long mask) {
+        long sideways = ((mask << 1) & NOT_COL_0) | ((mask >>> 1) & NOT_COL_7) | mask;
+        return sideways | (sideways << 8) | (sideways >>> 8);
+    }
+
+    /**
+     * Find the discs that are flipped when the player owning {@code own} plays on the given square.
+     *
+     * @param own    the discs of the player making the move.
+     * @param opp    the discs of the opponent.
+     * @param square the square being played. Assumed to be empty.
+     * @return a mask of the opponent discs that would be flipped, 0 if the move flips nothing.
+     */
+    public static long flips(long own, long opp, int square) {
+        long move = 1L << square;
+        long oppInner = opp & INNER_COLS;
+
+        return flipsLeft(move, own, oppInner, 1)
+                | flipsLeft(move, own, opp, 8)
+                | flipsLeft(move, own, oppInner, 7)
+                | flipsLeft(move, own, oppInner, 9)
+                | flipsRight(move, own, oppInner, 1)
+                | flipsRight(move, own, opp, 8)
+                | flipsRight(move, own, oppInner, 7)
+                | flipsRight(move, own, oppInner, 9);
+    }
+
+    /**
+     * Find every legal move for the player owning {@code own}.
+     * <p>
+     * Each direction is handled with a Kogge-Stone style parallel prefix fill: the lines of opponent discs touching
+     * one of the player's discs are grown in steps of 1, 2 and 4 squares, and the empty square just past the end of
+     * a line is a legal move. No loops or allocation are needed.
+     * </p>
+     *
+     * @param own the discs of the player to move.
+     * @param opp the discs of the opponent.
+     * @return a mask with one bit set for every legal move, 0 if the player has to pass.
+     */
+    public static long moves(long own, long opp) {
+        long empty = ~(own | opp);
+        long oppInner = opp & INNER_COLS;
+
+        long moves = movesLeft(own, oppInner, 1)
+                | movesLeft(own, opp, 8)
+                | movesLeft(own, oppInner, 7)
+                | movesLeft(own, oppInner, 9)
+                | movesRight(own, oppInner, 1)
+                | movesRight(own, opp, 8)
+                | movesRight(own, oppInner, 7)
+                | movesRight(own, oppInner, 9);
+
+        return moves & empty;
+    }
+
+    /**
+     * Fill along lines of opponent discs towards the higher square indices.
+     * <p>
+     * As with {@link #flipsLeft(long, long, long, int)}, the opponent mask for the sideways and diagonal directions
+     * must have the edge columns removed so that the fill cannot wrap onto another row.
+     * </p>
+     *
+     * @param own   the discs of the player to move.
+     * @param opp   the (possibly masked) discs of the opponent.
+     * @param shift the number of bits to shift by for one step in this direction.
+     * @return the squares just past a line of opponent discs, which may still be occupied.
+     */
+    private static long movesLeft(long own, long opp, int shift) {
+        long fill = (own << shift) & opp;
+        long pro = opp;
+
+        fill |= pro & (fill << shift);
+        pro &= pro << shift;
+        fill |= pro & (fill << (shift << 1));
+        pro &= pro << (shift << 1);
+        fill |= pro & (fill << (shift << 2));
+
+        return fill << shift;
+    }
+
+    /**
+     * Fill along lines of opponent discs towards the lower square indices.
+     *
+     * @param own   the discs of the player to move.
+     * @param opp   the (possibly masked) discs of the opponent.
+     * @param shift the number of bits to shift by for one step in this direction.
+     * @return the squares just past a line of opponent discs, which may still be occupied.
+     * @see #movesLeft(long, long, int)
+     */
+    private static long movesRight(long own, long opp, int shift) {
+        long fill = (own >>> shift) & opp;
+        long pro = opp;
+
+        fill |= pro & (fill >>> shift);
+        pro &= pro >>> shift;
+        fill |= pro & (fill >>> (shift << 1));
+        pro &= pro >>> (shift << 1);
+        fill |= pro & (fill >>> (shift << 2));
+
+        return fill >>> shift;
+    }
+
+    /**
+     * Walk a line of opponent discs towards the higher square indices.
+     * <p>
+     * The opponent mask passed for the sideways and diagonal directions must have the edge columns removed. A line
+     * of flipped discs can never end on an edge column in those directions, so this stops the walk from wrapping
+     * around to the other side of the board.
+     * </p>
+     *
+     * @param move  the bit of the move.
+     * @param own   the discs of the player making the move.
+     * @param opp   the (possibly masked) discs of the opponent.
+     * @param shift the number of bits to shift by for one step in this direction.
+     * @return the discs flipped in this direction.
+     */
+    private static long flipsLeft(long move, long own, long opp, int shift) {
+        long flipped = 0;
+        long x = move << shift;
+        while ((x & opp) != 0) {
+            flipped |= x;
+            x <<= shift;
+        }
+        return (x & own) != 0 ? flipped : 0;
+    }
+
+    /**
+     * Walk a line of opponent discs towards the lower square indices.
+     *
+     * @param move  the bit of the move.
+     * @param own   the discs of the player making the move.
+     * @param opp   the (possibly masked) discs of the opponent.
+     * @param shift the number of bits to shift by for one step in this direction.
+     * @return the discs flipped in this direction.
+     * @see #flipsLeft(long, long, long, int)
+     */
+    private static long flipsRight(long move, long own, long opp, int shift) {
+        long flipped = 0;
+        long x = move >>> shift;
+        while ((x & opp) != 0) {
+            flipped |= x;
+            x >>>= shift;
+        }
+        return (x & own) != 0 ? flipped : 0;
+    }
+
+}
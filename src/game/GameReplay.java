@@ -0,0 +1,290 @@
+package game;
+
+/**
+ * A recorded game that can be viewed at any ply, for game viewers and analysis. <br>
+ * The game is played once when the replay is built. Each ply's flipped discs are kept, along with the whole
+ * position every few plies. Going to any ply starts from the nearest of those positions, so it takes at most half an
+ * interval of steps however long the game is. Stepping one ply forward or back applies or takes back one ply's
+ * flips. Nothing is ever played through a {@link ReversiBoard}, so no observers are told.
+ *
+ * @author Brock Dyer.
+ */
+public final class GameReplay {
+
+    /**
+     * The number of plies between kept positions, by default.
+     */
+    public static final int DEFAULT_INTERVAL = 8;
+
+    /**
+     * The number of plies between kept positions.
+     */
+    private final int interval;
+
+    /**
+     * The square of each ply, or {@link MoveLog#PASS}.
+     */
+    private final int[] plies;
+
+    /**
+     * The discs each ply flipped.
+     */
+    private final long[] flips;
+
+    /**
+     * The black and white discs at every interval'th ply, in pairs.
+     */
+    private final long[] snapshots;
+
+    /**
+     * The player to move at the start.
+     */
+    private final PieceColor startPlayer;
+
+    /**
+     * The position being viewed.
+     */
+    private long black, white;
+
+    /**
+     * The number of plies played to reach the position being viewed.
+     */
+    private int ply;
+
+    /**
+     * Build a replay with the default interval between kept positions.
+     *
+     * @param moves the game.
+     * @throws IllegalArgumentException if a move is illegal.
+     */
+    public GameReplay(MoveLog moves) {
+        this(moves, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Build a replay, viewing the start of the game.
+     *
+     * @param moves    the game.
+     * @param interval the number of plies between kept positions. Smaller is faster to seek and takes more memory.
+     * @throws IllegalArgumentException if a move is illegal or the interval is not positive.
+     */
+    public GameReplay(MoveLog moves, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("The interval must be positive: " + interval);
+        }
+
+        int size = moves.size();
+        ReversiBoard start = moves.startBoard();
+        this.interval = interval;
+        this.plies = new int[size];
+        this.flips = new long[size];
+        this.snapshots = new long[2 * (size / interval + 1)];
+        this.startPlayer = start.getCurrentPlayer();
+
+        this.black = start.getBlack();
+        this.white = start.getWhite();
+        for (int i = 0; i < size; i++) {
+            if (i % interval == 0) {
+                snapshots[2 * (i / interval)] = black;
+                snapshots[2 * (i / interval) + 1] = white;
+            }
+
+            int square = moves.get(i);
+            plies[i] = square;
+            if (square != MoveLog.PASS) {
+                boolean blackMoves = toMove(i) == PieceColor.BLACK;
+                long own = blackMoves ? black : white;
+                long opp = blackMoves ? white : black;
+                long flipped = ((own | opp) & (1L << square)) == 0 ? BitBoard.flips(own, opp, square) : 0;
+                if (flipped == 0) {
+                    throw new IllegalArgumentException("Illegal move " + BitBoard.name(square) + " at ply " + i + ".");
+                }
+                flips[i] = flipped;
+            }
+
+            this.ply = i;
+            apply();
+        }
+        if (size % interval == 0) {
+            snapshots[2 * (size / interval)] = black;
+            snapshots[2 * (size / interval) + 1] = white;
+        }
+
+        seek(0);
+    }
+
+    /**
+     * Get the number of plies in the game.
+     *
+     * @return the ply count.
+     */
+    public int size() {
+        return plies.length;
+    }
+
+    /**
+     * Get the number of plies played to reach the position being viewed.
+     *
+     * @return the ply, from 0 at the start to {@link #size()} at the end.
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * Get the square played at a ply.
+     *
+     * @param ply the ply, from 0.
+     * @return the square, or {@link MoveLog#PASS}.
+     */
+    public int getMove(int ply) {
+        return plies[ply];
+    }
+
+    /**
+     * Get the discs flipped at a ply.
+     *
+     * @param ply the ply, from 0.
+     * @return the flipped discs as a bitboard, 0 for a pass.
+     */
+    public long getFlipped(int ply) {
+        return flips[ply];
+    }
+
+    /**
+     * Get the black discs of the position being viewed.
+     *
+     * @return the discs as a bitboard.
+     */
+    public long getBlack() {
+        return black;
+    }
+
+    /**
+     * Get the white discs of the position being viewed.
+     *
+     * @return the discs as a bitboard.
+     */
+    public long getWhite() {
+        return white;
+    }
+
+    /**
+     * Get the player to move in the position being viewed.
+     *
+     * @return the color.
+     */
+    public PieceColor getCurrentPlayer() {
+        return toMove(ply);
+    }
+
+    /**
+     * View the position after a number of plies.
+     *
+     * @param ply the ply, from 0 at the start to {@link #size()} at the end.
+     * @throws IndexOutOfBoundsException if there is no such ply.
+     */
+    public void seek(int ply) {
+        if (ply < 0 || ply > plies.length) {
+            throw new IndexOutOfBoundsException("Ply " + ply + " of a game of " + plies.length + " plies.");
+        }
+
+        // Start from the nearest kept position, going back from the next one if it is closer and exists.
+        int snapshot = (ply + interval / 2) / interval;
+        if (snapshot * interval > plies.length) {
+            snapshot = ply / interval;
+        }
+        this.black = snapshots[2 * snapshot];
+        this.white = snapshots[2 * snapshot + 1];
+        this.ply = snapshot * interval;
+
+        while (this.ply < ply) {
+            forward();
+        }
+        while (this.ply > ply) {
+            back();
+        }
+    }
+
+    /**
+     * View the position one ply later.
+     *
+     * @return false if the end of the game was already being viewed.
+     */
+    public boolean forward() {
+        if (ply == plies.length) {
+            return false;
+        }
+        apply();
+        return true;
+    }
+
+    /**
+     * View the position one ply earlier.
+     *
+     * @return false if the start of the game was already being viewed.
+     */
+    public boolean back() {
+        if (ply == 0) {
+            return false;
+        }
+        ply--;
+
+        int square = plies[ply];
+        if (square != MoveLog.PASS) {
+            long flipped = flips[ply];
+            long placed = (1L << square) | flipped;
+            if (toMove(ply) == PieceColor.BLACK) {
+                black &= ~placed;
+                white |= flipped;
+            } else {
+                white &= ~placed;
+                black |= flipped;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get a board set up at the position being viewed.
+     *
+     * @return a new board with no observers or move history.
+     */
+    public ReversiBoard toBoard() {
+        ReversiBoard board = new ReversiBoard();
+        board.setPosition(black, white, getCurrentPlayer());
+        return board;
+    }
+
+    /**
+     * Play the ply after the position being viewed.
+     */
+    private void apply() {
+        int square = plies[ply];
+        if (square != MoveLog.PASS) {
+            long flipped = flips[ply];
+            long placed = (1L << square) | flipped;
+            if (toMove(ply) == PieceColor.BLACK) {
+                black |= placed;
+                white &= ~flipped;
+            } else {
+                white |= placed;
+                black &= ~flipped;
+            }
+        }
+        ply++;
+    }
+
+    /**
+     * Find the player to move after a number of plies. Passes are plies, so every ply hands the turn over.
+     *
+     * @param ply the ply.
+     * @return the color.
+     */
+    private PieceColor toMove(int ply) {
+        if ((ply & 1) == 0) {
+            return startPlayer;
+        }
+        return startPlayer == PieceColor.BLACK ? PieceColor.WHITE : PieceColor.BLACK;
+    }
+}
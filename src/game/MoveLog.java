@@ -0,0 +1,374 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * A game kept as the list of its plies, with a compact binary format for saving it. <br>
+ * Loading replays the plies with {@link #replay()}, which checks every move, so a loaded game is always one that
+ * could have been played. The format is:
+ * <pre>
+ * offset  bytes  contents
+ * 0       2      the magic number "RV"
+ * 2       1      the format version, 1
+ * 3       1      flags: 1 if a start position follows, 2 if white moves first from it
+ * 4       1      the number of plies, n
+ * 5       16     the black and then the white discs of the start position, big-endian, only with flag 1
+ * then    n      one byte per ply: the square row * 8 + col, or {@value #PASS} for a pass
+ * </pre>
+ * A game from the usual start position takes {@value #HEADER_BYTES} bytes plus one per ply, so 65 bytes for a game
+ * of 60 moves with no passes.
+ *
+ * @author Brock Dyer.
+ */
+public final class MoveLog {
+
+    /**
+     * The byte written for a pass.
+     */
+    public static final int PASS = 0x40;
+
+    /**
+     * The length of the header without a start position.
+     */
+    public static final int HEADER_BYTES = 5;
+
+    /**
+     * The most plies a log can hold. A game has at most 60 moves and never more than one pass in a row between
+     * them.
+     */
+    public static final int MAX_PLIES = 2 * BitBoard.SQUARES;
+
+    /**
+     * The first two bytes of every log.
+     */
+    private static final int MAGIC = ('R' << 8) | 'V';
+
+    /**
+     * The version of the format written.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The flags in the header.
+     */
+    private static final int START_POSITION = 1, WHITE_FIRST = 2;
+
+    /**
+     * The discs of the usual start position.
+     */
+    private static final long START_BLACK = (1L << BitBoard.square(3, 3)) | (1L << BitBoard.square(4, 4));
+    private static final long START_WHITE = (1L << BitBoard.square(3, 4)) | (1L << BitBoard.square(4, 3));
+
+    /**
+     * The plies, each a square or {@link #PASS}.
+     */
+    private final byte[] plies;
+
+    /**
+     * The number of plies.
+     */
+    private int size;
+
+    /**
+     * The position the game started from.
+     */
+    private long startBlack, startWhite;
+    private PieceColor startPlayer;
+
+    /**
+     * Create an empty log of a game from the usual start position.
+     */
+    public MoveLog() {
+        this.plies = new byte[MAX_PLIES];
+        clear();
+    }
+
+    /**
+     * Create a copy of another log.
+     *
+     * @param other the log to copy.
+     */
+    public MoveLog(MoveLog other) {
+        this.plies = Arrays.copyOf(other.plies, MAX_PLIES);
+        this.size = other.size;
+        this.startBlack = other.startBlack;
+        this.startWhite = other.startWhite;
+        this.startPlayer = other.startPlayer;
+    }
+
+    /**
+     * Empty the log for a new game from the usual start position.
+     */
+    public void clear() {
+        clear(START_BLACK, START_WHITE, PieceColor.BLACK);
+    }
+
+    /**
+     * Empty the log for a new game from another position.
+     *
+     * @param black  the black discs.
+     * @param white  the white discs.
+     * @param toMove the player to move first.
+     */
+    public void clear(long black, long white, PieceColor toMove) {
+        this.size = 0;
+        this.startBlack = black;
+        this.startWhite = white;
+        this.startPlayer = toMove;
+    }
+
+    /**
+     * Add a move.
+     *
+     * @param square the square of the move, see {@link BitBoard#square(int, int)}.
+     * @throws IllegalStateException if the log is full.
+     */
+    public void addMove(int square) {
+        add(square);
+    }
+
+    /**
+     * Add a pass.
+     *
+     * @throws IllegalStateException if the log is full.
+     */
+    public void addPass() {
+        add(PASS);
+    }
+
+    /**
+     * Add a ply.
+     *
+     * @param ply the square or {@link #PASS}.
+     */
+    private void add(int ply) {
+        if (size == MAX_PLIES) {
+            throw new IllegalStateException("Move log is full.");
+        }
+        plies[size++] = (byte) ply;
+    }
+
+    /**
+     * Get the number of plies.
+     *
+     * @return the number of moves and passes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get one ply.
+     *
+     * @param ply the index of the ply, from 0.
+     * @return the square of the move, or {@link #PASS}.
+     */
+    public int get(int ply) {
+        if (ply < 0 || ply >= size) {
+            throw new IndexOutOfBoundsException("Ply " + ply + " of " + size + ".");
+        }
+        return plies[ply];
+    }
+
+    /**
+     * Check whether the game started from the usual start position with black to move.
+     *
+     * @return true for the usual start.
+     */
+    public boolean isUsualStart() {
+        return startBlack == START_BLACK && startWhite == START_WHITE && startPlayer == PieceColor.BLACK;
+    }
+
+    /**
+     * Get a new board set up at the position the game started from.
+     *
+     * @return the board, with no observers.
+     */
+    public ReversiBoard startBoard() {
+        ReversiBoard board = new ReversiBoard();
+        board.setPosition(startBlack, startWhite, startPlayer);
+        return board;
+    }
+
+    /**
+     * Play the whole game, checking that every move is legal. <br>
+     * The plies are played on bitboards rather than a {@link ReversiBoard}, so only the final position is built.
+     *
+     * @return a new board at the end of the log, with no observers or move history.
+     * @throws IllegalArgumentException if a move is illegal.
+     */
+    public ReversiBoard replay() {
+        long own = startPlayer == PieceColor.BLACK ? startBlack : startWhite;
+        long opp = startPlayer == PieceColor.BLACK ? startWhite : startBlack;
+
+        for (int i = 0; i < size; i++) {
+            int ply = plies[i];
+            if (ply != PASS) {
+                long bit = 1L << ply;
+                long flipped = ((own | opp) & bit) == 0 ? BitBoard.flips(own, opp, ply) : 0;
+                if (flipped == 0) {
+                    throw new IllegalArgumentException("Illegal move " + BitBoard.name(ply) + " at ply " + i + ".");
+                }
+                own |= bit | flipped;
+                opp &= ~flipped;
+            }
+
+            long temp = own;
+            own = opp;
+            opp = temp;
+        }
+
+        // Every ply hands the turn over, so the player to move depends only on the number of plies.
+        boolean startToMove = (size & 1) == 0;
+        PieceColor toMove = startToMove ? startPlayer :
+                startPlayer == PieceColor.BLACK ? PieceColor.WHITE : PieceColor.BLACK;
+        ReversiBoard board = new ReversiBoard();
+        board.setPosition(toMove == PieceColor.BLACK ? own : opp, toMove == PieceColor.BLACK ? opp : own, toMove);
+        return board;
+    }
+
+    /**
+     * Count the passes at the end of the log.
+     *
+     * @return the number of passes since the last move.
+     */
+    public int trailingPasses() {
+        int passes = 0;
+        while (passes < size && plies[size - 1 - passes] == PASS) {
+            passes++;
+        }
+        return passes;
+    }
+
+    /**
+     * Get the length of the encoded log.
+     *
+     * @return the number of bytes {@link #encode()} returns.
+     */
+    public int encodedLength() {
+        return HEADER_BYTES + (isUsualStart() ? 0 : 16) + size;
+    }
+
+    /**
+     * Encode the log in the binary format.
+     *
+     * @return the bytes.
+     */
+    public byte[] encode() {
+        byte[] out = new byte[encodedLength()];
+        encode(out, 0);
+        return out;
+    }
+
+    /**
+     * Encode the log in the binary format into a buffer.
+     *
+     * @param out    where to write.
+     * @param offset where the log starts.
+     * @return the number of bytes written, {@link #encodedLength()}.
+     */
+    public int encode(byte[] out, int offset) {
+        boolean usual = isUsualStart();
+        int pos = offset;
+        out[pos++] = (byte) (MAGIC >>> 8);
+        out[pos++] = (byte) MAGIC;
+        out[pos++] = VERSION;
+        out[pos++] = (byte) (usual ? 0 : START_POSITION | (startPlayer == PieceColor.WHITE ? WHITE_FIRST : 0));
+        out[pos++] = (byte) size;
+        if (!usual) {
+            pos = putLong(out, pos, startBlack);
+            pos = putLong(out, pos, startWhite);
+        }
+        System.arraycopy(plies, 0, out, pos, size);
+        return pos + size - offset;
+    }
+
+    /**
+     * Decode a log. The moves are not checked, see {@link #replay()}.
+     *
+     * @param in the encoded log.
+     * @return the log.
+     * @throws IllegalArgumentException if the bytes are not a log.
+     */
+    public static MoveLog decode(byte[] in) {
+        return decode(in, 0, in.length);
+    }
+
+    /**
+     * Decode a log from part of a buffer. The moves are not checked, see {@link #replay()}.
+     *
+     * @param in     the buffer.
+     * @param offset where the log starts.
+     * @param length the number of bytes of the log.
+     * @return the log.
+     * @throws IllegalArgumentException if the bytes are not a log.
+     */
+    public static MoveLog decode(byte[] in, int offset, int length) {
+        if (length < HEADER_BYTES || ((in[offset] & 0xFF) << 8 | (in[offset + 1] & 0xFF)) != MAGIC) {
+            throw new IllegalArgumentException("Not a move log.");
+        }
+        if (in[offset + 2] != VERSION) {
+            throw new IllegalArgumentException("Unknown move log version " + in[offset + 2] + ".");
+        }
+
+        int flags = in[offset + 3];
+        int size = in[offset + 4] & 0xFF;
+        int pos = offset + HEADER_BYTES;
+
+        MoveLog log = new MoveLog();
+        if ((flags & START_POSITION) != 0) {
+            if (length < HEADER_BYTES + 16) {
+                throw new IllegalArgumentException("Move log is cut short.");
+            }
+            long black = getLong(in, pos), white = getLong(in, pos + 8);
+            if ((black & white) != 0) {
+                throw new IllegalArgumentException("Start position has two discs on one square.");
+            }
+            log.clear(black, white, (flags & WHITE_FIRST) != 0 ? PieceColor.WHITE : PieceColor.BLACK);
+            pos += 16;
+        }
+
+        if (size > MAX_PLIES || pos + size - offset != length) {
+            throw new IllegalArgumentException("Move log of " + length + " bytes cannot hold " + size + " plies.");
+        }
+        for (int i = 0; i < size; i++) {
+            int ply = in[pos + i];
+            if (ply < 0 || ply > PASS) {
+                throw new IllegalArgumentException("Bad ply " + ply + ".");
+            }
+        }
+        System.arraycopy(in, pos, log.plies, 0, size);
+        log.size = size;
+        return log;
+    }
+
+    /**
+     * Write a long, big-endian.
+     *
+     * @param out   where to write.
+     * @param pos   where the long starts.
+     * @param value the long.
+     * @return the position after the long.
+     */
+    private static int putLong(byte[] out, int pos, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out[pos++] = (byte) (value >>> shift);
+        }
+        return pos;
+    }
+
+    /**
+     * Read a long, big-endian.
+     *
+     * @param in  the buffer.
+     * @param pos where the long starts.
+     * @return the long.
+     */
+    private static long getLong(byte[] in, int pos) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | (in[pos + i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,118 @@
+package game;
+
+/**
+ * The information needed to take back a move made with {@link ReversiBoard#makeMove(int)} or
+ * {@link ReversiBoard#makePass()}. <br>
+ * Records are owned and reused by the board that created them, so they are only valid until that move is unmade.
+ *
+ * @author Brock Dyer.
+ */
+public final class MoveRecord {
+
+    /**
+     * The square that was played, or {@link #PASS} if the player passed.
+     */
+    public static final int PASS = -1;
+
+    /**
+     * The square of the move, or {@link #PASS}.
+     */
+    private int square;
+
+    /**
+     * The discs flipped by the move.
+     */
+    private long flipped;
+
+    /**
+     * The color of the player who made the move.
+     */
+    private PieceColor mover;
+
+    /**
+     * The number of consecutive passes before the move was made.
+     */
+    private int passCount;
+
+    /**
+     * The hash of the position before the move was made.
+     */
+    private long hash;
+
+    /**
+     * Records are only created by the board.
+     */
+    MoveRecord() {
+    }
+
+    /**
+     * Fill in this record.
+     *
+     * @param square    the square of the move, or {@link #PASS}.
+     * @param flipped   the discs flipped by the move.
+     * @param mover     the color of the player who made the move.
+     * @param passCount the number of consecutive passes before the move.
+     * @param hash      the hash of the position before the move.
+     */
+    void set(int square, long flipped, PieceColor mover, int passCount, long hash) {
+        this.square = square;
+        this.flipped = flipped;
+        this.mover = mover;
+        this.passCount = passCount;
+        this.hash = hash;
+    }
+
+    /**
+     * Get the square that was played.
+     *
+     * @return the square index, or {@link #PASS} if the player passed.
+     */
+    public int getSquare() {
+        return square;
+    }
+
+    /**
+     * Get the discs flipped by the move.
+     *
+     * @return a mask of the flipped discs, 0 for a pass.
+     */
+    public long getFlipped() {
+        return flipped;
+    }
+
+    /**
+     * Get the color of the player who made the move.
+     *
+     * @return the color of the mover.
+     */
+    public PieceColor getMover() {
+        return mover;
+    }
+
+    /**
+     * Get the number of consecutive passes before the move was made.
+     *
+     * @return the pass count before the move.
+     */
+    public int getPassCount() {
+        return passCount;
+    }
+
+    /**
+     * Get the hash of the position before the move was made.
+     *
+     * @return the Zobrist hash before the move.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Check if this record is for a pass.
+     *
+     * @return true if the player passed.
+     */
+    public boolean isPass() {
+        return square == PASS;
+    }
+}
@@ -1,11 +1,14 @@
 package game;
 
+import game.observer.ReversiEventBus;
 import game.observer.ReversiObserver;
 import gui.ReversiGUI;
 import gui.events.ReversiEvent;
+import gui.events.ReversiMoveEvent;
 import util.MoveException;
 
 import java.awt.*;
+import java.io.IOException;
 import java.util.Set;
 
 /**
@@ -34,8 +37,18 @@ public class Reversi implements ReversiPlayer, ReversiObserver {
      * Start the game locally.
      */
     public Reversi(ReversiGUI gui) {
+        this(gui, false);
+    }
+
+    /**
+     * Start the game locally.
+     *
+     * @param gui         the gui to display the game on.
+     * @param asyncEvents true to update the board through a {@link ReversiEventBus}, off the thread making moves.
+     */
+    public Reversi(ReversiGUI gui, boolean asyncEvents) {
         this.gui = gui;
-        this.game = new ReversiGame();
+        this.game = asyncEvents ? new ReversiGame(new ReversiEventBus()) : new ReversiGame();
         this.color = PieceColor.BLACK;
         this.game.registerPlayerWithBoard(this);
     }
@@ -49,6 +62,11 @@ public class Reversi implements ReversiPlayer, ReversiObserver {
         gui.updateBoard(row, col, color);
     }
 
+    @Override
+    public void handleMove(ReversiMoveEvent move) {
+        gui.updateBoard(move);
+    }
+
     @Override
     public void makeMove(int row, int col) throws MoveException {
         game.makeMove(row, col);
@@ -95,12 +113,36 @@ public class Reversi implements ReversiPlayer, ReversiObserver {
 
     @Override
     public void save(String filename) {
-
+        try {
+            game.saveGame(filename);
+        } catch (IOException ioe) {
+            System.out.println("Could not save the game. " + ioe.getMessage());
+        }
     }
 
     @Override
     public void load(String filename) {
+        try {
+            game.loadGame(filename);
+        } catch (IOException ioe) {
+            System.out.println("Could not load the game. " + ioe.getMessage());
+            return;
+        }
+
+        ReversiBoard position = game.copyBoard();
+        this.color = game.getCurrentPlayer();
+
+        gui.updateBoard(position.getBlack(), position.getWhite());
+        gui.updateScore(game.getBlackScore(), game.getWhiteScore());
 
+        if (game.isGameOver()) {
+            gui.updateIndicatorLabel(game.getWinner());
+            return;
+        }
+
+        String player = color.toString();
+        gui.updateIndicatorLabel(player.substring(0, 1) + player.substring(1).toLowerCase() + "'s Turn");
+        gui.showAvailableMoves();
     }
 
     @Override
@@ -3,6 +3,7 @@ package game;
 import game.observer.ReversiObserver;
 import game.observer.ReversiSubscriber;
 import gui.events.ReversiEvent;
+import gui.events.ReversiMoveEvent;
 import util.MoveException;
 
 import java.awt.*;
@@ -17,9 +18,14 @@ import java.util.List;
 public class ReversiBoard implements ReversiSubscriber {
 
     /**
-     * A 2D array of pieces that represents the board.
+     * The squares occupied by black pieces, one bit per square.
      */
-    private ReversiPiece[][] board;
+    private long black;
+
+    /**
+     * The squares occupied by white pieces, one bit per square.
+     */
+    private long white;
 
     /**
      * The list of objects that are observing this board.
@@ -32,9 +38,25 @@ public class ReversiBoard implements ReversiSubscriber {
     private PieceColor currentPlayer;
 
     /**
-     * The number of white and black pieces on the board respectively.
+     * The Zobrist hash of the position and the player to move. Kept up to date with every change to the board.
      */
-    private int numWhite, numBlack;
+    private long hash;
+
+    /**
+     * The number of consecutive passes made with {@link #makePass()}.
+     */
+    private int passCount;
+
+    /**
+     * The undo records for moves made with {@link #makeMove(int)} and {@link #makePass()}.<br>
+     * A game has at most 60 moves and never more than one pass in a row between them, so this never has to grow.
+     */
+    private MoveRecord[] undoStack;
+
+    /**
+     * The number of records on the undo stack.
+     */
+    private int undoSize;
 
     /**
      * Create an empty board.
@@ -43,26 +65,43 @@ public class ReversiBoard implements ReversiSubscriber {
         this.observers = new ArrayList<>();
     }
 
+    /**
+     * Create a copy of another board's position for searching. Observers and move history are not copied.
+     *
+     * @param other the board to copy.
+     */
+    public ReversiBoard(ReversiBoard other) {
+        this();
+        this.black = other.black;
+        this.white = other.white;
+        this.currentPlayer = other.currentPlayer;
+        this.hash = other.hash;
+        this.passCount = 0;
+    }
+
     /**
      * A helper method to setup the defualt board.
      */
     private void initBoard() {
-        this.board = new ReversiPiece[8][8];
-        board[3][3] = new ReversiPiece(PieceColor.BLACK);
+        this.black = 0;
+        this.white = 0;
+
+        black |= 1L << BitBoard.square(3, 3);
         alertObservers(3, 3, PieceColor.BLACK, "Initial");
 
-        board[3][4] = new ReversiPiece(PieceColor.WHITE);
+        white |= 1L << BitBoard.square(3, 4);
         alertObservers(3, 4, PieceColor.WHITE, "Initial");
 
-        board[4][3] = new ReversiPiece(PieceColor.WHITE);
+        white |= 1L << BitBoard.square(4, 3);
         alertObservers(4, 3, PieceColor.WHITE, "Initial");
 
-        board[4][4] = new ReversiPiece(PieceColor.BLACK);
+        black |= 1L << BitBoard.square(4, 4);
         alertObservers(4, 4, PieceColor.BLACK, "Initial");
 
         this.currentPlayer = PieceColor.BLACK;
-        this.numBlack = 2;
-        this.numWhite = 2;
+        this.hash = Zobrist.hash(black, white, currentPlayer);
+        this.passCount = 0;
+        this.undoSize = 0;
     }
 
     /**
@@ -72,6 +111,23 @@ public class ReversiBoard implements ReversiSubscriber {
         initBoard();
     }
 
+    /**
+     * Replace the position, for example with one sent by a server. Observers are not told and the move history is
+     * cleared.
+     *
+     * @param black  the black discs.
+     * @param white  the white discs.
+     * @param toMove the player to move.
+     */
+    public void setPosition(long black, long white, PieceColor toMove) {
+        this.black = black;
+        this.white = white;
+        this.currentPlayer = toMove;
+        this.hash = Zobrist.hash(black, white, toMove);
+        this.passCount = 0;
+        this.undoSize = 0;
+    }
+
     @Override
     public void register(ReversiObserver observer) {
         this.observers.add(observer);
@@ -96,14 +152,22 @@ public class ReversiBoard implements ReversiSubscriber {
     }
 
     /**
-     * Alert all observers subscribing to this board that a change has been made.
+     * Alert all observers subscribing to this board that a move has been made. Every observer gets the same event.
      *
-     * @param row   the row of the change.
-     * @param col   the column of the change.
-     * @param color the color of the piece that changed.
+     * @param row     the row of the move.
+     * @param col     the column of the move.
+     * @param color   the color of the player who moved.
+     * @param flipped the discs the move flipped.
      */
-    private void alertObservers(int row, int col, PieceColor color) {
-        alertObservers(row, col, color, "");
+    private void alertObservers(int row, int col, PieceColor color, long flipped) {
+        if (observers.isEmpty()) {
+            return;
+        }
+
+        ReversiMoveEvent event = new ReversiMoveEvent(row, col, color, flipped);
+        for (ReversiObserver observer : observers) {
+            observer.handleMove(event);
+        }
     }
 
 
@@ -112,6 +176,7 @@ public class ReversiBoard implements ReversiSubscriber {
      */
     public void changeTurn() {
         this.currentPlayer = currentPlayer == PieceColor.BLACK ? PieceColor.WHITE : PieceColor.BLACK;
+        this.hash ^= Zobrist.WHITE_TO_MOVE;
     }
 
     /**
@@ -131,7 +196,40 @@ public class ReversiBoard implements ReversiSubscriber {
      * @return the piece at the requested position, null if there is no piece there.
      */
     public ReversiPiece getPiece(int row, int col) {
-        return board[row][col];
+        PieceColor color = getColor(BitBoard.square(row, col));
+        return color == null ? null : new ReversiPiece(color);
+    }
+
+    /**
+     * Get the color of the piece on a square.
+     *
+     * @param square the square index, see {@link BitBoard#square(int, int)}.
+     * @return the color of the piece on the square, null if the square is empty.
+     */
+    public PieceColor getColor(int square) {
+        long bit = 1L << square;
+        if ((black & bit) != 0) {
+            return PieceColor.BLACK;
+        }
+        return (white & bit) != 0 ? PieceColor.WHITE : null;
+    }
+
+    /**
+     * Get the squares occupied by black pieces.
+     *
+     * @return a mask with one bit set for every black piece.
+     */
+    public long getBlack() {
+        return black;
+    }
+
+    /**
+     * Get the squares occupied by white pieces.
+     *
+     * @return a mask with one bit set for every white piece.
+     */
+    public long getWhite() {
+        return white;
     }
 
     /**
@@ -143,36 +241,28 @@ public class ReversiBoard implements ReversiSubscriber {
     public void move(int row, int col) throws MoveException {
 
         if (row >= 0 && row < 8 && col >= 0 && col < 8) {
-            ReversiPiece piece = board[row][col];
+            int square = BitBoard.square(row, col);
+            long bit = 1L << square;
 
-            if (piece == null) {
+            if (((black | white) & bit) == 0) {
 
-                List<Map<ReversiPiece, int[]>> toFlip = findOpponentsToFlip(row, col);
+                boolean blackToMove = currentPlayer == PieceColor.BLACK;
+                long own = blackToMove ? black : white;
+                long opp = blackToMove ? white : black;
+                long flipped = BitBoard.flips(own, opp, square);
 
-                if (toFlip.size() == 0) {
+                if (flipped == 0) {
                     throw new MoveException("Invalid move by " + currentPlayer +
                             ". That move will not flip any opponent pieces.");
                 }
 
-                board[row][col] = new ReversiPiece(currentPlayer);
-                numWhite += currentPlayer == PieceColor.WHITE ? 1 : 0;
-                numBlack += currentPlayer == PieceColor.BLACK ? 1 : 0;
-                alertObservers(row, col, board[row][col].getColor());
-
-                for (Map<ReversiPiece, int[]> map : toFlip) {
-                    for (ReversiPiece key : map.keySet()) {
-                        int[] coords = map.get(key);
-                        if (currentPlayer == PieceColor.WHITE) {
-                            numBlack--;
-                            numWhite++;
-                        } else {
-                            numBlack++;
-                            numWhite--;
-                        }
-                        key.toggle();
-                        alertObservers(coords[0], coords[1], key.getColor());
-                    }
-                }
+                own |= bit | flipped;
+                opp &= ~flipped;
+                this.black = blackToMove ? own : opp;
+                this.white = blackToMove ? opp : own;
+                this.hash ^= Zobrist.disc(currentPlayer, square) ^ Zobrist.flip(flipped);
+
+                alertObservers(row, col, currentPlayer, flipped);
 
                 return;
 
@@ -186,174 +276,153 @@ public class ReversiBoard implements ReversiSubscriber {
 
     }
 
-
     /**
-     * Find the pieces that will be flipped if a move is played in the specified row and column.
+     * Make a move for the current player and hand the turn to the other player.<br>
+     * This is meant for searching: the move is not checked and observers are not told about it. It can be taken back
+     * with {@link #unmakeMove()}. Do not mix this with {@link #move(int, int)} without a {@link #reset()} in between.
      *
-     * @param row the row the move is being made in.
-     * @param col the column the move is being made in.
-     * @return an array list of pieces that should be flipped if a piece is played in the given row and col.
+     * @param square the square to move in. Must be one of the moves in {@link #getMoveMask()}.
+     * @return the undo record for the move. It is reused once the move is unmade.
      */
-    private List<Map<ReversiPiece, int[]>> findOpponentsToFlip(int row, int col) {
-
-        List<Map<ReversiPiece, int[]>> toFlip = new ArrayList<>();
-        Map<ReversiPiece, int[]> flippable;
+    public MoveRecord makeMove(int square) {
+        boolean blackToMove = currentPlayer == PieceColor.BLACK;
+        long own = blackToMove ? black : white;
+        long opp = blackToMove ? white : black;
+        long flipped = BitBoard.flips(own, opp, square);
 
-        for (Compass dir : Compass.values()) {
+        MoveRecord record = pushRecord(square, flipped);
 
-            flippable = searchDirection(row, col, dir);
-            if (flippable.keySet().size() > 0) {
-                toFlip.add(flippable);
-            }
+        own |= (1L << square) | flipped;
+        opp &= ~flipped;
+        this.black = blackToMove ? own : opp;
+        this.white = blackToMove ? opp : own;
+        this.hash ^= Zobrist.disc(currentPlayer, square) ^ Zobrist.flip(flipped);
 
-        }
+        this.passCount = 0;
+        changeTurn();
 
-        return toFlip;
+        return record;
     }
 
     /**
-     * Find all the pieces that can be flipped in one direction from the starting move.
+     * Pass the turn to the other player without moving. Can be taken back with {@link #unmakeMove()}.
      *
-     * @param row the row of the move.
-     * @param col the column of the move.
-     * @param dir the compass direction to check in.
-     * @return a list of pieces in that direction that should be flipped. An empty list if there are none.
+     * @return the undo record for the pass. It is reused once the pass is unmade.
      */
-    private Map<ReversiPiece, int[]> searchDirection(int row, int col, Compass dir) {
-
-        Map<ReversiPiece, int[]> toFlip = new HashMap<>();
+    public MoveRecord makePass() {
+        MoveRecord record = pushRecord(MoveRecord.PASS, 0);
 
-        while ((row += dir.getX()) < 8 && row >= 0 && (col += dir.getY()) < 8 && col >= 0) {
+        this.passCount++;
+        changeTurn();
 
-            ReversiPiece dPiece = board[row][col];
-            if (dPiece != null) {
-
-                if (dPiece.getColor() != currentPlayer) {
-                    toFlip.put(dPiece, new int[]{row, col});
-                } else {
-
-                    if (toFlip.size() != 0) {
-                        return toFlip;
-                    } else {
-                        toFlip.clear();
-                        return toFlip;
-                    }
+        return record;
+    }
 
-                }
+    /**
+     * Take back the last move made with {@link #makeMove(int)} or {@link #makePass()}.
+     */
+    public void unmakeMove() {
+        MoveRecord record = undoStack[--undoSize];
+
+        long flipped = record.getFlipped();
+        if (!record.isPass()) {
+            long placed = 1L << record.getSquare();
+            if (record.getMover() == PieceColor.BLACK) {
+                black &= ~(placed | flipped);
+                white |= flipped;
             } else {
-
-                toFlip.clear();
-                return toFlip;
-
+                white &= ~(placed | flipped);
+                black |= flipped;
             }
-
         }
 
-        toFlip.clear();
-        return toFlip;
+        this.passCount = record.getPassCount();
+        this.currentPlayer = record.getMover();
+        this.hash = record.getHash();
     }
 
     /**
-     * Get a set of the locations of all possible moves the current player can make.
+     * Push a record onto the undo stack.
      *
-     * @return a set of integer arrays containing the row and col of a possible move. Empty set if no moves are
-     * possible for the current player.
+     * @param square  the square of the move, or {@link MoveRecord#PASS}.
+     * @param flipped the discs flipped by the move.
+     * @return the record that was filled in.
      */
-    public Set<Point> getPossibleMoves() {
-        Set<Point> possibleMoves = new HashSet<>();
-
-        for (int r = 0; r < board.length; r++) {
-
-            ReversiPiece[] row = board[r];
-
-            for (int c = 0; c < row.length; c++) {
-
-                if (row[c] != null) {
-                    possibleMoves.addAll(findMovesFromPiece(r, c));
-                }
-
+    private MoveRecord pushRecord(int square, long flipped) {
+        if (undoStack == null) {
+            undoStack = new MoveRecord[2 * BitBoard.SQUARES];
+            for (int i = 0; i < undoStack.length; i++) {
+                undoStack[i] = new MoveRecord();
             }
         }
 
-        return possibleMoves;
+        MoveRecord record = undoStack[undoSize++];
+        record.set(square, flipped, currentPlayer, passCount, hash);
+        return record;
     }
 
     /**
-     * Find all possible moves for the current player from a given piece. Assumes the given location contains a piece.
+     * Get the Zobrist hash of the position and the player to move.
      *
-     * @param row the row of the piece to check.
-     * @param col the column of the piece to check.
-     * @return a set of the locations of all possible moves for the current player from the piece at the specified
-     * location.
+     * @return the 64-bit hash of the position.
+     * @see Zobrist
      */
-    private Set<Point> findMovesFromPiece(int row, int col) {
-
-        Set<Point> possibleMoves = new HashSet<>();
-
-        // Return if the piece here is not the current player's color.
-        if (board[row][col].getColor() != currentPlayer) {
-            return possibleMoves;
-        }
-
-        for (Compass dir : Compass.values()) {
-            Point moveLoc = searchMoveDir(row, col, dir);
-            if (moveLoc != null) {
-                possibleMoves.add(moveLoc);
-            }
-        }
-
-        return possibleMoves;
-
+    public long getHash() {
+        return hash;
     }
 
     /**
-     * Search outward in all directions from the location given to find a possible location the current player
-     * could move. Assumes that the piece at the location specified is the current player's color and is not empty.
+     * Get the number of consecutive passes made with {@link #makePass()}. Two passes in a row end the game.
      *
-     * @param row the row to start at.
-     * @param col the column to start at.
-     * @param dir the direction to search in.
-     * @return an point containing the row and col of the possible move.
+     * @return the number of consecutive passes.
      */
-    private Point searchMoveDir(int row, int col, Compass dir) {
-
-        int couldFlip = 0;
-
-        while ((row += dir.getX()) < 8 && row >= 0 && (col += dir.getY()) < 8 && col >= 0) {
-
-            ReversiPiece dPiece = board[row][col];
-
-            if (dPiece == null) {
-                if (couldFlip != 0) {
-                    return new Point(row, col);
-                } else {
-                    return null;
-                }
-            }
+    public int getPassCount() {
+        return passCount;
+    }
 
-            if (dPiece.getColor() == currentPlayer) {
-                return null;
-            }
+    /**
+     * Get every legal move for the current player as a bitboard.
+     *
+     * @return a mask with the bit {@code row * 8 + col} set for every possible move, 0 if the current player cannot
+     * move.
+     */
+    public long getMoveMask() {
+        return currentPlayer == PieceColor.BLACK ? BitBoard.moves(black, white) : BitBoard.moves(white, black);
+    }
 
-            couldFlip++;
+    /**
+     * Get a set of the locations of all possible moves the current player can make. <br>
+     * This builds a new set every call, so code that only needs the moves should prefer {@link #getMoveMask()}.
+     *
+     * @return a set of points containing the row (x) and col (y) of a possible move. Empty set if no moves are
+     * possible for the current player.
+     */
+    public Set<Point> getPossibleMoves() {
+        Set<Point> possibleMoves = new HashSet<>();
 
+        long moves = getMoveMask();
+        while (moves != 0) {
+            int sq = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            possibleMoves.add(new Point(BitBoard.row(sq), BitBoard.col(sq)));
         }
 
-        return null;
+        return possibleMoves;
     }
 
     @Override
     public String toString() {
 
         StringBuilder sb = new StringBuilder();
-        for (ReversiPiece[] row : board) {
+        for (int row = 0; row < 8; row++) {
 
-            for (ReversiPiece piece : row) {
+            for (int col = 0; col < 8; col++) {
                 sb.append("|");
-                if (piece == null) {
+                PieceColor color = getColor(BitBoard.square(row, col));
+                if (color == null) {
                     sb.append(" ");
                 } else {
-                    sb.append(piece.toString());
+                    sb.append(color == PieceColor.BLACK ? "B" : "W");
                 }
             }
 
@@ -371,7 +440,7 @@ public class ReversiBoard implements ReversiSubscriber {
      * @return the number of white pieces.
      */
     public int getNumWhite() {
-        return numWhite;
+        return Long.bitCount(white);
     }
 
     /**
@@ -380,7 +449,7 @@ public class ReversiBoard implements ReversiSubscriber {
      * @return the number of black pieces.
      */
     public int getNumBlack() {
-        return numBlack;
+        return Long.bitCount(black);
     }
 
 }
@@ -1,9 +1,14 @@
 package game;
 
+import game.observer.ReversiEventBus;
 import game.observer.ReversiObserver;
+import game.observer.ReversiSubscriber;
 import util.MoveException;
 
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Set;
 
 /**
@@ -20,6 +25,11 @@ public class ReversiGame {
      */
     private ReversiBoard board;
 
+    /**
+     * Where players register for the board's events: the board itself, or an event bus in front of it.
+     */
+    private final ReversiSubscriber events;
+
     /**
      * The total number of spaces available for play.
      */
@@ -36,11 +46,32 @@ public class ReversiGame {
      */
     private int passCount;
 
+    /**
+     * Every move and pass made since the game started, for saving.
+     */
+    private MoveLog log;
+
     /**
      * Initialize the game state.
      */
     public ReversiGame() {
         this.board = new ReversiBoard();
+        this.events = board;
+        this.log = new MoveLog();
+        this.gameOver = false;
+    }
+
+    /**
+     * Initialize the game state, with the board's events delivered to players through a bus. Each player then
+     * handles them on a thread of its own, so a slow player does not hold up the moves.
+     *
+     * @param bus the bus to deliver events through.
+     */
+    public ReversiGame(ReversiEventBus bus) {
+        this.board = new ReversiBoard();
+        this.board.register(bus);
+        this.events = bus;
+        this.log = new MoveLog();
         this.gameOver = false;
     }
 
@@ -50,7 +81,7 @@ public class ReversiGame {
      * @param player the player to register. Player must implement ReversiObserver.
      */
     public void registerPlayerWithBoard(ReversiObserver player) {
-        this.board.register(player);
+        this.events.register(player);
         board.reset();
     }
 
@@ -121,6 +152,7 @@ public class ReversiGame {
     public void makeMove(int row, int col) throws MoveException {
 
         board.move(row, col);
+        log.addMove(BitBoard.square(row, col));
 
         passCount = 0;
 
@@ -132,9 +164,7 @@ public class ReversiGame {
 
         board.changeTurn();
 
-        int numMoves = board.getPossibleMoves().size();
-
-        if (numMoves == 0) {
+        if (board.getMoveMask() == 0) {
             pass();
         }
 
@@ -144,6 +174,7 @@ public class ReversiGame {
      * Pass the current player's turn to the other player.
      */
     public void pass() {
+        log.addPass();
         passCount++;
 
         if (passCount == 2) {
@@ -163,29 +194,125 @@ public class ReversiGame {
         return board.getPossibleMoves();
     }
 
+    /**
+     * Get the color of the player whose turn it is.
+     *
+     * @return the color of the current player.
+     */
+    public PieceColor getCurrentPlayer() {
+        return board.getCurrentPlayer();
+    }
+
+    /**
+     * Get a copy of the current position that can be searched without changing the game.
+     *
+     * @return a new board with the same position and player to move.
+     */
+    public ReversiBoard copyBoard() {
+        return new ReversiBoard(board);
+    }
+
+    /**
+     * Get the possible moves for the current player as a bitboard.
+     *
+     * @return a mask with the bit {@code row * 8 + col} set for every possible move, 0 if no moves are possible.
+     */
+    public long getMoveMask() {
+        return board.getMoveMask();
+    }
+
+    /**
+     * Continue the game from another position.
+     *
+     * @param black  the black discs.
+     * @param white  the white discs.
+     * @param toMove the player to move.
+     */
+    public void setPosition(long black, long white, PieceColor toMove) {
+        board.setPosition(black, white, toMove);
+        log.clear(black, white, toMove);
+        this.passCount = 0;
+        this.gameOver = false;
+    }
+
     /**
      * Restart the game with a new board.
      */
     public void restart() {
         this.board.reset();
+        this.log.clear();
+        this.gameOver = false;
+        this.passCount = 0;
     }
 
     /**
-     * Load a saved reversi game.
+     * Get the moves and passes made so far.
      *
-     * @param filename the name of the board file.
+     * @return a copy of the move log.
      */
-    public void loadGame(String filename) {
+    public MoveLog getMoveLog() {
+        return new MoveLog(log);
+    }
 
+    /**
+     * Get the number of moves and passes made so far. A move can add a pass after it, see
+     * {@link #makeMove(int, int)}.
+     *
+     * @return the number of plies.
+     */
+    public int getPlyCount() {
+        return log.size();
     }
 
     /**
-     * Save the current game to the file system.
+     * Get one move or pass made so far.
      *
-     * @param filename the name of the file to save the game to.
+     * @param index the index of the ply, from 0.
+     * @return the square of the move, or {@link MoveLog#PASS}.
+     */
+    public int getPly(int index) {
+        return log.get(index);
+    }
+
+    /**
+     * Continue a game from a move log. The moves are replayed to reach the position, so observers are not told
+     * about the new position.
+     *
+     * @param moves the moves of the game.
+     * @throws IllegalArgumentException if a move is illegal. The game is not changed.
      */
-    public void saveGame(String filename) {
+    public void loadGame(MoveLog moves) {
+        ReversiBoard end = moves.replay();
+
+        board.setPosition(end.getBlack(), end.getWhite(), end.getCurrentPlayer());
+        this.log = new MoveLog(moves);
+        this.passCount = moves.trailingPasses();
+        this.gameOver = passCount >= 2 || end.getNumBlack() + end.getNumWhite() == numSquares;
+    }
 
+    /**
+     * Load a saved reversi game. The saved moves are replayed to reach the position, so observers are not told
+     * about the new position.
+     *
+     * @param filename the name of the board file.
+     * @throws IOException if the file cannot be read or is not a saved game. The game is not changed.
+     */
+    public void loadGame(String filename) throws IOException {
+        try {
+            loadGame(MoveLog.decode(Files.readAllBytes(Paths.get(filename))));
+        } catch (IllegalArgumentException iae) {
+            throw new IOException(filename + " is not a saved game. " + iae.getMessage(), iae);
+        }
+    }
+
+    /**
+     * Save the current game to the file system, in the {@link MoveLog} format.
+     *
+     * @param filename the name of the file to save the game to.
+     * @throws IOException if the file cannot be written.
+     */
+    public void saveGame(String filename) throws IOException {
+        Files.write(Paths.get(filename), log.encode());
     }
 
     /**
@@ -0,0 +1,106 @@
+package game;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist keys for hashing reversi positions. <br>
+ * The hash of a position is the XOR of one key for every disc on the board, plus {@link #WHITE_TO_MOVE} when it is
+ * white's turn. Flipping a disc only has to XOR in {@link #flip(long)} of that disc, so the hash can be kept up to
+ * date with every move.
+ * <p>
+ * The keys come from a fixed seed so that every JVM computes the same hash for the same position. Hashes are saved
+ * in files, so the seed must never change.
+ * </p>
+ *
+ * @author Brock Dyer.
+ */
+public final class Zobrist {
+
+    /**
+     * The seed used to generate the keys.
+     */
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+
+    /**
+     * The key of a black disc on each square.
+     */
+    private static final long[] BLACK = new long[BitBoard.SQUARES];
+
+    /**
+     * The key of a white disc on each square.
+     */
+    private static final long[] WHITE = new long[BitBoard.SQUARES];
+
+    /**
+     * The change in hash when the disc on each square changes color.
+     */
+    private static final long[] FLIP = new long[BitBoard.SQUARES];
+
+    /**
+     * The key XORed into the hash when it is white's turn.
+     */
+    public static final long WHITE_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int sq = 0; sq < BitBoard.SQUARES; sq++) {
+            BLACK[sq] = random.nextLong();
+            WHITE[sq] = random.nextLong();
+            FLIP[sq] = BLACK[sq] ^ WHITE[sq];
+        }
+        WHITE_TO_MOVE = random.nextLong();
+    }
+
+    /**
+     * This class only holds static helpers.
+     */
+    private Zobrist() {
+    }
+
+    /**
+     * Get the key of a disc.
+     *
+     * @param color  the color of the disc.
+     * @param square the square the disc is on.
+     * @return the key of the disc.
+     */
+    public static long disc(PieceColor color, int square) {
+        return color == PieceColor.BLACK ? BLACK[square] : WHITE[square];
+    }
+
+    /**
+     * Get the change in hash when a set of discs changes color.
+     *
+     * @param flipped a mask of the discs that changed color.
+     * @return the value to XOR into the hash.
+     */
+    public static long flip(long flipped) {
+        long key = 0;
+        while (flipped != 0) {
+            key ^= FLIP[Long.numberOfTrailingZeros(flipped)];
+            flipped &= flipped - 1;
+        }
+        return key;
+    }
+
+    /**
+     * Compute the hash of a position from scratch.
+     *
+     * @param black  the black discs.
+     * @param white  the white discs.
+     * @param toMove the color of the player to move.
+     * @return the hash of the position.
+     */
+    public static long hash(long black, long white, PieceColor toMove) {
+        long key = toMove == PieceColor.WHITE ? WHITE_TO_MOVE : 0;
+        while (black != 0) {
+            key ^= BLACK[Long.numberOfTrailingZeros(black)];
+            black &= black - 1;
+        }
+        while (white != 0) {
+            key ^= WHITE[Long.numberOfTrailingZeros(white)];
+            white &= white - 1;
+        }
+        return key;
+    }
+}
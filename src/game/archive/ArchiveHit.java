@@ -0,0 +1,80 @@
+package game.archive;
+
+/**
+ * A game that reached a position, found through the {@link GameArchive} position index, and how it ended.
+ *
+ * @author Brock Dyer.
+ */
+public class ArchiveHit {
+
+    /**
+     * The id of the game.
+     */
+    private final long gameId;
+
+    /**
+     * The number of plies played when the game reached the position.
+     */
+    private final int ply;
+
+    /**
+     * The final number of discs of each color.
+     */
+    private final int blackDiscs, whiteDiscs;
+
+    /**
+     * Create a hit.
+     *
+     * @param gameId     the id of the game.
+     * @param ply        the number of plies played when the game reached the position.
+     * @param blackDiscs the final number of black discs.
+     * @param whiteDiscs the final number of white discs.
+     */
+    public ArchiveHit(long gameId, int ply, int blackDiscs, int whiteDiscs) {
+        this.gameId = gameId;
+        this.ply = ply;
+        this.blackDiscs = blackDiscs;
+        this.whiteDiscs = whiteDiscs;
+    }
+
+    /**
+     * Get the id of the game.
+     *
+     * @return the game id, see {@link GameArchive#get(long)}.
+     */
+    public long getGameId() {
+        return gameId;
+    }
+
+    /**
+     * Get when the game reached the position.
+     *
+     * @return the number of moves and passes played before it.
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * Get the final number of black discs.
+     *
+     * @return black's score.
+     */
+    public int getBlackDiscs() {
+        return blackDiscs;
+    }
+
+    /**
+     * Get the final number of white discs.
+     *
+     * @return white's score.
+     */
+    public int getWhiteDiscs() {
+        return whiteDiscs;
+    }
+
+    @Override
+    public String toString() {
+        return "game " + gameId + " ply " + ply + " ended " + blackDiscs + "-" + whiteDiscs;
+    }
+}
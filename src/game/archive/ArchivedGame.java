@@ -0,0 +1,77 @@
+package game.archive;
+
+import game.MoveLog;
+
+/**
+ * A finished game read back from a {@link GameArchive}.
+ *
+ * @author Brock Dyer.
+ */
+public class ArchivedGame {
+
+    /**
+     * The id of the game.
+     */
+    private final long id;
+
+    /**
+     * The final number of discs of each color.
+     */
+    private final int blackDiscs, whiteDiscs;
+
+    /**
+     * The moves of the game.
+     */
+    private final MoveLog moves;
+
+    /**
+     * Create a game.
+     *
+     * @param id         the id of the game.
+     * @param blackDiscs the final number of black discs.
+     * @param whiteDiscs the final number of white discs.
+     * @param moves      the moves of the game.
+     */
+    public ArchivedGame(long id, int blackDiscs, int whiteDiscs, MoveLog moves) {
+        this.id = id;
+        this.blackDiscs = blackDiscs;
+        this.whiteDiscs = whiteDiscs;
+        this.moves = moves;
+    }
+
+    /**
+     * Get the id of the game.
+     *
+     * @return the game id.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Get the final number of black discs.
+     *
+     * @return black's score.
+     */
+    public int getBlackDiscs() {
+        return blackDiscs;
+    }
+
+    /**
+     * Get the final number of white discs.
+     *
+     * @return white's score.
+     */
+    public int getWhiteDiscs() {
+        return whiteDiscs;
+    }
+
+    /**
+     * Get the moves of the game.
+     *
+     * @return the move log.
+     */
+    public MoveLog getMoves() {
+        return moves;
+    }
+}
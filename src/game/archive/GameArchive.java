@@ -0,0 +1,899 @@
+package game.archive;
+
+import game.BitBoard;
+import game.MoveLog;
+import game.PieceColor;
+import game.ReversiBoard;
+import game.Zobrist;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent, append-only store of finished games with an index from position to the games that reached it. <br>
+ * Games are appended to the newest segment file in a directory. Once a segment holds {@value #SEGMENT_GAMES} games it
+ * is sealed: forced to the disk, memory mapped for reading, and given a {@link PositionIndex} sorted by position
+ * hash. The index lets {@link #find(long, long, PieceColor)} answer "which games reached this position and how did
+ * they end" with a binary search per segment instead of a scan. The games of the open segment are indexed in memory.
+ * <p>
+ * Sealed segments are merged in the background, {@value #MERGE_FACTOR} of a similar size at a time, so the number
+ * of segments a lookup searches stays small. Merging also drops deleted games. A merged segment names the segments
+ * it replaced, so a merge interrupted by a crash is finished or undone when the archive is next opened. A record
+ * only partly written by a crash is cut off.
+ * </p>
+ * <p>
+ * Appends are not forced to the disk one by one: the archive holds finished games for analysis, not state that must
+ * survive a crash. Every method may be called from any thread.
+ * </p>
+ *
+ * @author Brock Dyer.
+ */
+public class GameArchive implements AutoCloseable {
+
+    /**
+     * The number of games after which a segment is sealed.
+     */
+    public static final int SEGMENT_GAMES = 4096;
+
+    /**
+     * The number of segments of a similar size merged at once.
+     */
+    public static final int MERGE_FACTOR = 8;
+
+    /**
+     * Segments are merged up to this level. A segment at level n has at least SEGMENT_GAMES * MERGE_FACTOR^n games,
+     * so the index of the largest merged segment still fits in one mapped buffer.
+     */
+    public static final int MAX_LEVEL = 2;
+
+    /**
+     * The location of a deleted game.
+     */
+    private static final long DELETED = -1;
+
+    /**
+     * The directory of the segment files.
+     */
+    private final Path dir;
+
+    /**
+     * The sealed segments, oldest first. Replaced, never changed, so it can be read without the lock.
+     */
+    private volatile List<Segment> sealed;
+
+    /**
+     * Every segment by number, including the open one.
+     */
+    private final Map<Integer, Segment> segments;
+
+    /**
+     * The segment games are appended to.
+     */
+    private Segment active;
+
+    /**
+     * The location of each game by id: the segment number in the high 32 bits and the offset in the low ones, 0 if
+     * there is no such game, or {@link #DELETED}.
+     */
+    private long[] locations;
+
+    /**
+     * The next game id, and the number of games not deleted.
+     */
+    private long nextId, liveGames;
+
+    /**
+     * The number of the next segment to create.
+     */
+    private int nextSegment;
+
+    /**
+     * The index of the open segment: the hash and posting of each position of its games.
+     */
+    private long[] activeHashes, activePostings;
+    private int activeEntries;
+
+    /**
+     * Used to replay games as they are appended.
+     */
+    private final ReversiBoard scratch;
+    private final long[] scratchHashes;
+
+    /**
+     * Runs the merges, one at a time.
+     */
+    private final ExecutorService compactor;
+
+    /**
+     * True if a merge has been asked for and not started. Guarded by this.
+     */
+    private boolean compactionQueued;
+
+    /**
+     * Only lets one merge run at a time.
+     */
+    private final Object compactionLock;
+
+    /**
+     * Create an empty archive over a directory. Segments are added by {@link #open(Path)}.
+     *
+     * @param dir the directory.
+     */
+    private GameArchive(Path dir) {
+        this.dir = dir;
+        this.sealed = Collections.emptyList();
+        this.segments = new HashMap<>();
+        this.locations = new long[1024];
+        this.nextId = 1;
+        this.activeHashes = new long[1024];
+        this.activePostings = new long[1024];
+        this.scratch = new ReversiBoard();
+        this.scratchHashes = new long[MoveLog.MAX_PLIES + 1];
+        this.compactionLock = new Object();
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "reversi-archive");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Open an archive, creating the directory if needed.
+     *
+     * @param dir the directory of the archive.
+     * @return the archive.
+     * @throws IOException if the directory cannot be read or a sealed segment is damaged.
+     */
+    public static GameArchive open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        GameArchive archive = new GameArchive(dir);
+        try {
+            archive.load();
+        } catch (IOException | RuntimeException e) {
+            archive.close();
+            throw e;
+        }
+        return archive;
+    }
+
+    /**
+     * Read every segment, finishing what a crash interrupted.
+     *
+     * @throws IOException if a file cannot be read or a sealed segment is damaged.
+     */
+    private synchronized void load() throws IOException {
+        TreeMap<Integer, Segment> found = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    // Left by a merge that did not finish. Its sources are still there.
+                    Files.delete(file);
+                } else if (name.endsWith(".games")) {
+                    int number = Integer.parseInt(name.substring(0, name.indexOf('.')));
+                    found.put(number, Segment.open(dir, number));
+                    nextSegment = Math.max(nextSegment, number + 1);
+                }
+            }
+        }
+
+        // A merge that was interrupted between putting its index and its games in place left an index alone.
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.index")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!found.containsKey(Integer.parseInt(name.substring(0, name.indexOf('.'))))) {
+                    Files.delete(file);
+                }
+            }
+        }
+
+        // A merge that was interrupted after its segment was in place still has to delete what it replaced.
+        for (Segment segment : new ArrayList<>(found.values())) {
+            for (int source : segment.sources) {
+                Segment replaced = found.remove(source);
+                if (replaced != null) {
+                    replaced.delete();
+                }
+            }
+        }
+
+        Segment last = null;
+        for (Segment segment : found.values()) {
+            if (segment.getIndex() == null) {
+                last = segment;
+            }
+        }
+
+        Set<Long> deletions = new HashSet<>();
+        List<Segment> loaded = new ArrayList<>();
+        for (Segment segment : found.values()) {
+            int end = segment.scan((type, id, offset, length) -> {
+                nextId = Math.max(nextId, id + 1);
+                if (type == Segment.GAME) {
+                    locate(id, location(segment.number, offset));
+                } else {
+                    deletions.add(id);
+                }
+            });
+
+            if (end < segment.size()) {
+                if (segment != last) {
+                    throw new IOException(segment.gamesPath + " is damaged at offset " + end + ".");
+                }
+                System.out.println("Dropping " + (segment.size() - end) + " bytes of a partly written game from "
+                        + segment.gamesPath + ".");
+                segment.truncate(end);
+            }
+
+            segments.put(segment.number, segment);
+            if (segment.getIndex() != null) {
+                loaded.add(segment);
+            } else if (segment != last) {
+                // Sealing was interrupted before the index was written.
+                seal(segment);
+                loaded.add(segment);
+            }
+        }
+
+        for (long id : deletions) {
+            if (id < locations.length && locations[(int) id] != 0) {
+                locations[(int) id] = DELETED;
+            }
+        }
+        for (int id = 1; id < nextId && id < locations.length; id++) {
+            if (locations[id] > 0) {
+                liveGames++;
+            }
+        }
+
+        loaded.sort(Comparator.comparingInt(segment -> segment.number));
+        sealed = Collections.unmodifiableList(loaded);
+
+        if (last != null) {
+            active = last;
+            indexActive();
+        } else {
+            newActive();
+        }
+        scheduleCompaction();
+    }
+
+    /**
+     * Add a finished game to the archive.
+     *
+     * @param moves the moves of the game.
+     * @return the id of the game.
+     * @throws IOException              if the game cannot be written.
+     * @throws IllegalArgumentException if the log has an illegal move.
+     */
+    public synchronized long append(MoveLog moves) throws IOException {
+        int plies = replay(moves);
+        return write(moves, scratchHashes, plies, scratch.getNumBlack(), scratch.getNumWhite());
+    }
+
+    /**
+     * Add finished games to the archive, with consecutive ids. The games are replayed before the archive is locked,
+     * so threads adding batches at the same time only wait for each other to write them.
+     *
+     * @param games the moves of each game.
+     * @return the id of the first game.
+     * @throws IOException              if a game cannot be written.
+     * @throws IllegalArgumentException if a log has an illegal move. No game of the batch is added then.
+     */
+    public long appendAll(List<MoveLog> games) throws IOException {
+        ReversiBoard board = new ReversiBoard();
+        long[][] hashes = new long[games.size()][];
+        int[] plies = new int[games.size()], discs = new int[2 * games.size()];
+        for (int i = 0; i < games.size(); i++) {
+            hashes[i] = new long[games.get(i).size() + 1];
+            plies[i] = replay(board, hashes[i], games.get(i));
+            discs[2 * i] = board.getNumBlack();
+            discs[2 * i + 1] = board.getNumWhite();
+        }
+
+        synchronized (this) {
+            long first = nextId;
+            for (int i = 0; i < games.size(); i++) {
+                write(games.get(i), hashes[i], plies[i], discs[2 * i], discs[2 * i + 1]);
+            }
+            return first;
+        }
+    }
+
+    /**
+     * Write a replayed game and index its positions. Only called holding the lock.
+     *
+     * @param moves  the moves of the game.
+     * @param hashes the hash of each position of the game, from the start.
+     * @param plies  the number of plies.
+     * @param black  the black discs at the end.
+     * @param white  the white discs at the end.
+     * @return the id of the game.
+     * @throws IOException if the game cannot be written.
+     */
+    private long write(MoveLog moves, long[] hashes, int plies, int black, int white) throws IOException {
+        long id = nextId;
+        int offset = active.append(Segment.gameRecord(id, black, white, moves));
+        nextId++;
+        liveGames++;
+        locate(id, location(active.number, offset));
+
+        int first = moves.isUsualStart() ? 1 : 0;
+        for (int ply = first; ply <= plies; ply++) {
+            addActiveEntry(hashes[ply], posting(id, ply, black, white));
+        }
+
+        if (active.getGames() >= SEGMENT_GAMES) {
+            writeIndex(active, activeHashes, activePostings, activeEntries);
+            sealed = withSegment(sealed, active, Collections.emptyList());
+            newActive();
+            scheduleCompaction();
+        }
+        return id;
+    }
+
+    /**
+     * Play a game on the scratch board, keeping the hash of each position.
+     *
+     * @param moves the moves.
+     * @return the number of plies.
+     * @throws IllegalArgumentException if there is an illegal move.
+     */
+    private int replay(MoveLog moves) {
+        return replay(scratch, scratchHashes, moves);
+    }
+
+    /**
+     * Play a game on a board, keeping the hash of each position.
+     *
+     * @param board  the board to play on. Left at the end of the game.
+     * @param hashes given the hash of each position, from the start. Must hold one more than the plies.
+     * @param moves  the moves.
+     * @return the number of plies.
+     * @throws IllegalArgumentException if there is an illegal move.
+     */
+    private static int replay(ReversiBoard board, long[] hashes, MoveLog moves) {
+        ReversiBoard start = moves.startBoard();
+        board.setPosition(start.getBlack(), start.getWhite(), start.getCurrentPlayer());
+        hashes[0] = board.getHash();
+
+        for (int i = 0; i < moves.size(); i++) {
+            int ply = moves.get(i);
+            if (ply == MoveLog.PASS) {
+                board.makePass();
+            } else if ((board.getMoveMask() & (1L << ply)) != 0) {
+                board.makeMove(ply);
+            } else {
+                throw new IllegalArgumentException("Illegal move " + BitBoard.name(ply) + " at ply " + i + ".");
+            }
+            hashes[i + 1] = board.getHash();
+        }
+        return moves.size();
+    }
+
+    /**
+     * Delete a game. It is no longer returned, and its space is reclaimed when its segment is next merged.
+     *
+     * @param id the id of the game.
+     * @return false if there was no such game.
+     * @throws IOException if the deletion cannot be written.
+     */
+    public synchronized boolean delete(long id) throws IOException {
+        if (location(id) <= 0) {
+            return false;
+        }
+
+        active.append(Segment.deleteRecord(id));
+        locations[(int) id] = DELETED;
+        liveGames--;
+        return true;
+    }
+
+    /**
+     * Read a game.
+     *
+     * @param id the id of the game.
+     * @return the game, or null if there is no such game or it was deleted.
+     * @throws IOException if the game cannot be read.
+     */
+    public synchronized ArchivedGame get(long id) throws IOException {
+        long location = location(id);
+        if (location <= 0) {
+            return null;
+        }
+        return segments.get((int) (location >>> 32)).read((int) location);
+    }
+
+    /**
+     * Find the games that reached a position.
+     *
+     * @param black  the black discs.
+     * @param white  the white discs.
+     * @param toMove the player to move.
+     * @return every game that reached the position, and the ply it did so at.
+     */
+    public List<ArchiveHit> find(long black, long white, PieceColor toMove) {
+        return find(Zobrist.hash(black, white, toMove));
+    }
+
+    /**
+     * Find the games that reached a position.
+     *
+     * @param hash the Zobrist hash of the position, see {@link ReversiBoard#getHash()}.
+     * @return every game that reached the position, and the ply it did so at.
+     */
+    public List<ArchiveHit> find(long hash) {
+        List<Long> postings = new ArrayList<>();
+        for (Segment segment : sealed) {
+            segment.getIndex().find(hash, postings::add);
+        }
+
+        List<ArchiveHit> hits = new ArrayList<>();
+        synchronized (this) {
+            for (int i = 0; i < activeEntries; i++) {
+                if (activeHashes[i] == hash) {
+                    postings.add(activePostings[i]);
+                }
+            }
+
+            for (long posting : postings) {
+                long id = posting >>> 24;
+                if (location(id) > 0) {
+                    hits.add(new ArchiveHit(id, (int) (posting >>> 16) & 0xFF, (int) (posting >>> 8) & 0xFF,
+                            (int) posting & 0xFF));
+                }
+            }
+        }
+
+        // Several segments can hold copies of a game while a merge is being put in place.
+        Set<Long> seen = new HashSet<>();
+        hits.removeIf(hit -> !seen.add(hit.getGameId() << 8 | hit.getPly()));
+        hits.sort(Comparator.comparingLong(ArchiveHit::getGameId));
+        return hits;
+    }
+
+    /**
+     * Get the number of games in the archive.
+     *
+     * @return the number of games not deleted.
+     */
+    public synchronized long size() {
+        return liveGames;
+    }
+
+    /**
+     * Get the number of sealed segments a lookup searches.
+     *
+     * @return the sealed segment count.
+     */
+    public int getSealedSegments() {
+        return sealed.size();
+    }
+
+    /**
+     * Merge sealed segments until no level has {@value #MERGE_FACTOR} of them. This is done in the background after
+     * a segment is sealed, and only needs calling directly to wait for it.
+     *
+     * @throws IOException if a merge fails. The archive is left as it was before that merge.
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            while (true) {
+                List<Segment> sources = pickMerge();
+                if (sources == null) {
+                    return;
+                }
+                merge(sources);
+            }
+        }
+    }
+
+    /**
+     * Pick the oldest {@value #MERGE_FACTOR} sealed segments of the lowest level that has that many.
+     *
+     * @return the segments, or null if nothing needs merging.
+     */
+    private List<Segment> pickMerge() {
+        for (int level = 0; level < MAX_LEVEL; level++) {
+            List<Segment> candidates = new ArrayList<>();
+            for (Segment segment : sealed) {
+                if (level(segment.getGames()) == level) {
+                    candidates.add(segment);
+                    if (candidates.size() == MERGE_FACTOR) {
+                        return candidates;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the level of a segment.
+     *
+     * @param games the number of games in the segment.
+     * @return the level: 0 for a sealed segment that was never merged.
+     */
+    static int level(long games) {
+        int level = 0;
+        for (long limit = (long) SEGMENT_GAMES * MERGE_FACTOR; games >= limit; limit *= MERGE_FACTOR) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Merge sealed segments into a new one, dropping deleted games.
+     *
+     * @param sources the segments to merge.
+     * @throws IOException if the merged segment cannot be written.
+     */
+    private void merge(List<Segment> sources) throws IOException {
+        int number;
+        synchronized (this) {
+            number = nextSegment++;
+        }
+
+        // The games the sources hold, and which of those have been deleted.
+        Set<Long> held = new HashSet<>();
+        for (Segment source : sources) {
+            source.scan((type, id, offset, length) -> {
+                if (type == Segment.GAME) {
+                    held.add(id);
+                }
+            });
+        }
+        Set<Long> dropped = new HashSet<>();
+        synchronized (this) {
+            for (long id : held) {
+                if (location(id) == DELETED) {
+                    dropped.add(id);
+                }
+            }
+        }
+
+        int[] sourceNumbers = new int[sources.size()];
+        List<PositionIndex> indexes = new ArrayList<>();
+        for (int i = 0; i < sourceNumbers.length; i++) {
+            sourceNumbers[i] = sources.get(i).number;
+            indexes.add(sources.get(i).getIndex());
+        }
+
+        Path gamesPath = Segment.gamesPath(dir, number), indexPath = Segment.indexPath(dir, number);
+        Path gamesTemp = Paths.get(gamesPath + ".tmp"), indexTemp = Paths.get(indexPath + ".tmp");
+        long[] moved = new long[held.size() * 2];
+        int movedCount = 0;
+
+        try {
+            try (FileChannel out = FileChannel.open(gamesTemp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                out.write(Segment.header(sourceNumbers));
+                for (Segment source : sources) {
+                    int[] count = {movedCount};
+                    source.scan((type, id, offset, length) -> {
+                        // A deletion whose game is in another segment has to be kept.
+                        boolean keep = type == Segment.GAME ? !dropped.contains(id) : !held.contains(id);
+                        if (keep) {
+                            if (type == Segment.GAME) {
+                                moved[2 * count[0]] = id;
+                                moved[2 * count[0] + 1] = out.position();
+                                count[0]++;
+                            }
+                            out.write(source.record(offset, length));
+                        }
+                    });
+                    movedCount = count[0];
+                }
+                out.force(true);
+            }
+
+            PositionIndex.merge(indexes, posting -> !dropped.contains(posting >>> 24), indexTemp);
+
+            // The index goes first, so the merged segment is sealed as soon as it appears.
+            Files.move(indexTemp, indexPath, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(gamesTemp, gamesPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(gamesTemp);
+            Files.deleteIfExists(indexTemp);
+            Files.deleteIfExists(indexPath);
+            throw e;
+        }
+
+        Segment merged = Segment.open(dir, number);
+        merged.scan((type, id, offset, length) -> {
+        });
+
+        synchronized (this) {
+            for (int i = 0; i < movedCount; i++) {
+                long id = moved[2 * i];
+                if (location(id) != DELETED) {
+                    locate(id, location(number, (int) moved[2 * i + 1]));
+                }
+            }
+            for (Segment source : sources) {
+                segments.remove(source.number);
+            }
+            segments.put(number, merged);
+            sealed = withSegment(sealed, merged, sources);
+        }
+
+        for (Segment source : sources) {
+            source.delete();
+        }
+    }
+
+    /**
+     * Make a new list of sealed segments.
+     *
+     * @param list    the current list.
+     * @param added   the segment to add.
+     * @param removed the segments to remove.
+     * @return the new list, sorted by number.
+     */
+    private static List<Segment> withSegment(List<Segment> list, Segment added, List<Segment> removed) {
+        List<Segment> updated = new ArrayList<>(list);
+        updated.removeAll(removed);
+        updated.add(added);
+        updated.sort(Comparator.comparingInt(segment -> segment.number));
+        return Collections.unmodifiableList(updated);
+    }
+
+    /**
+     * Ask for a merge in the background, unless one is already waiting.
+     */
+    private synchronized void scheduleCompaction() {
+        if (compactionQueued || compactor.isShutdown()) {
+            return;
+        }
+        compactionQueued = true;
+        compactor.execute(() -> {
+            synchronized (this) {
+                compactionQueued = false;
+            }
+            try {
+                compact();
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Seal a segment whose sealing was interrupted, writing its position index from its games.
+     *
+     * @param segment the segment.
+     * @throws IOException if the index cannot be written.
+     */
+    private void seal(Segment segment) throws IOException {
+        long[][] entries = {new long[1024], new long[1024]};
+        int[] count = {0};
+        segment.scan((type, id, offset, length) -> {
+            if (type != Segment.GAME) {
+                return;
+            }
+            ArchivedGame game = segment.read(offset);
+            int plies = replay(game.getMoves());
+            int first = game.getMoves().isUsualStart() ? 1 : 0;
+            for (int ply = first; ply <= plies; ply++) {
+                if (count[0] == entries[0].length) {
+                    entries[0] = Arrays.copyOf(entries[0], count[0] * 2);
+                    entries[1] = Arrays.copyOf(entries[1], count[0] * 2);
+                }
+                entries[0][count[0]] = scratchHashes[ply];
+                entries[1][count[0]++] = posting(id, ply, game.getBlackDiscs(), game.getWhiteDiscs());
+            }
+        });
+
+        writeIndex(segment, entries[0], entries[1], count[0]);
+    }
+
+    /**
+     * Write the position index of a segment and seal it.
+     *
+     * @param segment  the segment.
+     * @param hashes   the hash of each position of its games. Sorted in place.
+     * @param postings the posting of each position.
+     * @param count    the number of positions.
+     * @throws IOException if the index cannot be written.
+     */
+    private void writeIndex(Segment segment, long[] hashes, long[] postings, int count) throws IOException {
+        Path temp = Paths.get(segment.indexPath + ".tmp");
+        PositionIndex.write(temp, hashes, postings, count);
+        Files.move(temp, segment.indexPath, StandardCopyOption.ATOMIC_MOVE);
+        segment.seal(PositionIndex.open(segment.indexPath));
+    }
+
+    /**
+     * Start a new segment to append to.
+     *
+     * @throws IOException if the file cannot be created.
+     */
+    private void newActive() throws IOException {
+        active = Segment.create(dir, nextSegment++);
+        segments.put(active.number, active);
+        activeEntries = 0;
+    }
+
+    /**
+     * Index the games already in the open segment.
+     *
+     * @throws IOException if the segment cannot be read.
+     */
+    private void indexActive() throws IOException {
+        activeEntries = 0;
+        active.scan((type, id, offset, length) -> {
+            if (type != Segment.GAME) {
+                return;
+            }
+            ArchivedGame game = active.read(offset);
+            int plies = replay(game.getMoves());
+            int first = game.getMoves().isUsualStart() ? 1 : 0;
+            for (int ply = first; ply <= plies; ply++) {
+                addActiveEntry(scratchHashes[ply], posting(id, ply, game.getBlackDiscs(), game.getWhiteDiscs()));
+            }
+        });
+    }
+
+    /**
+     * Add a position to the index of the open segment.
+     *
+     * @param hash    the hash of the position.
+     * @param posting the posting.
+     */
+    private void addActiveEntry(long hash, long posting) {
+        if (activeEntries == activeHashes.length) {
+            activeHashes = Arrays.copyOf(activeHashes, activeEntries * 2);
+            activePostings = Arrays.copyOf(activePostings, activeEntries * 2);
+        }
+        activeHashes[activeEntries] = hash;
+        activePostings[activeEntries++] = posting;
+    }
+
+    /**
+     * Pack what the index stores for one position of a game.
+     *
+     * @param id         the game id.
+     * @param ply        the number of plies played when the game reached the position.
+     * @param blackDiscs the final number of black discs.
+     * @param whiteDiscs the final number of white discs.
+     * @return the id in the high 40 bits, then a byte each for the ply and the final discs.
+     */
+    static long posting(long id, int ply, int blackDiscs, int whiteDiscs) {
+        return id << 24 | (long) ply << 16 | blackDiscs << 8 | whiteDiscs;
+    }
+
+    /**
+     * Pack the location of a record.
+     *
+     * @param segment the segment number.
+     * @param offset  the offset in the segment.
+     * @return the location.
+     */
+    private static long location(int segment, int offset) {
+        return (long) segment << 32 | offset;
+    }
+
+    /**
+     * Get the location of a game.
+     *
+     * @param id the game id.
+     * @return the location, 0 if there is no such game, or {@link #DELETED}.
+     */
+    private long location(long id) {
+        return id > 0 && id < locations.length ? locations[(int) id] : 0;
+    }
+
+    /**
+     * Set the location of a game.
+     *
+     * @param id       the game id.
+     * @param location the location.
+     */
+    private void locate(long id, long location) {
+        if (id >= Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Game id " + id + " is too large.");
+        }
+        if (id >= locations.length) {
+            locations = Arrays.copyOf(locations, (int) Math.min(Integer.MAX_VALUE - 8,
+                    Math.max(id + 1, locations.length * 2L)));
+        }
+        locations[(int) id] = location;
+    }
+
+    /**
+     * Stop merging and close the files. The open segment is forced to the disk.
+     *
+     * @throws IOException if a file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            if (active != null) {
+                active.force();
+            }
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+        }
+    }
+
+    /**
+     * Show what an archive holds, and optionally the games that reached a position. No host should be archiving
+     * games to the directory at the same time.
+     *
+     * @param args cmd-line args. Expects the archive directory, and optionally the moves that reach a position from
+     *             the start, as square names in the usual notation such as "f5d6", see
+     *             {@link BitBoard#parse(String)}.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: java GameArchive directory [moves, such as f5d6]");
+            System.exit(-1);
+        }
+
+        try (GameArchive archive = GameArchive.open(Paths.get(args[0]))) {
+            System.out.println(archive.size() + " games in " + (archive.getSealedSegments() + 1) + " segments.");
+            if (args.length < 2) {
+                return;
+            }
+
+            ReversiBoard board = new MoveLog().startBoard();
+            String moves = args[1];
+            for (int i = 0; i + 1 < moves.length(); i += 2) {
+                if (board.getMoveMask() == 0) {
+                    board.makePass();
+                }
+                int square = BitBoard.parse(moves.substring(i, i + 2));
+                if (square < 0 || (board.getMoveMask() & (1L << square)) == 0) {
+                    System.out.println(moves.substring(i, i + 2) + " is not a legal move.");
+                    return;
+                }
+                board.makeMove(square);
+            }
+
+            List<ArchiveHit> hits = archive.find(board.getHash());
+            int blackWins = 0, whiteWins = 0;
+            for (ArchiveHit hit : hits) {
+                if (hit.getBlackDiscs() > hit.getWhiteDiscs()) {
+                    blackWins++;
+                } else if (hit.getWhiteDiscs() > hit.getBlackDiscs()) {
+                    whiteWins++;
+                }
+            }
+            System.out.println(hits.size() + " games reached the position: " + blackWins + " won by black, "
+                    + whiteWins + " by white, " + (hits.size() - blackWins - whiteWins) + " drawn.");
+            for (ArchiveHit hit : hits.subList(0, Math.min(10, hits.size()))) {
+                System.out.println("  " + hit);
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            System.exit(-1);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package game.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * The position index of one sealed {@link GameArchive} segment, memory mapped from its file. <br>
+ * The file is a list of entries sorted by position hash, so the games that reached a position are found with a
+ * binary search and then read in one run:
+ * <pre>
+ * header: int magic, int version, long entry count
+ * entry:  long position hash, long posting (see {@link GameArchive#posting(long, int, int, int)})
+ * </pre>
+ *
+ * @author Brock Dyer.
+ */
+final class PositionIndex {
+
+    /**
+     * The first bytes of every index file: "RVPX".
+     */
+    static final int MAGIC = 0x52565058;
+
+    /**
+     * The version of the file format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The size of the header in bytes.
+     */
+    static final int HEADER_BYTES = 16;
+
+    /**
+     * The size of an entry in bytes.
+     */
+    static final int ENTRY_BYTES = 16;
+
+    /**
+     * The most entries an index can hold, so that it can be mapped in one buffer.
+     */
+    static final long MAX_ENTRIES = (Integer.MAX_VALUE - HEADER_BYTES) / ENTRY_BYTES;
+
+    /**
+     * Below this many entries a range is sorted by insertion.
+     */
+    private static final int INSERTION_SORT = 16;
+
+    /**
+     * The mapped file.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The number of entries.
+     */
+    private final int count;
+
+    /**
+     * Create an index over a mapped file.
+     *
+     * @param buffer the mapped file.
+     * @throws IOException if the file is not an index.
+     */
+    private PositionIndex(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a position index file.");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported position index version " + buffer.getInt(4) + ".");
+        }
+
+        long entries = buffer.getLong(8);
+        if (entries < 0 || HEADER_BYTES + entries * ENTRY_BYTES != buffer.capacity()) {
+            throw new IOException("Position index file is damaged.");
+        }
+
+        this.buffer = buffer;
+        this.count = (int) entries;
+    }
+
+    /**
+     * Open an index file.
+     *
+     * @param path the path of the index.
+     * @return the index.
+     * @throws IOException if the file cannot be mapped or is not an index.
+     */
+    static PositionIndex open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new PositionIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Get the number of entries.
+     *
+     * @return the entry count.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Get the position hash of an entry.
+     *
+     * @param entry the entry, from 0.
+     * @return the hash.
+     */
+    long hashAt(int entry) {
+        return buffer.getLong(HEADER_BYTES + entry * ENTRY_BYTES);
+    }
+
+    /**
+     * Get the posting of an entry.
+     *
+     * @param entry the entry, from 0.
+     * @return the posting.
+     */
+    long postingAt(int entry) {
+        return buffer.getLong(HEADER_BYTES + entry * ENTRY_BYTES + 8);
+    }
+
+    /**
+     * Find every posting of a position.
+     *
+     * @param hash     the hash of the position.
+     * @param postings given each posting.
+     */
+    void find(long hash, LongConsumer postings) {
+        // The first entry whose hash is not less than the one wanted.
+        int low = 0, high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (hashAt(mid) < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        for (int entry = low; entry < count && hashAt(entry) == hash; entry++) {
+            postings.accept(postingAt(entry));
+        }
+    }
+
+    /**
+     * Write an index file.
+     *
+     * @param path     where to write the index. An existing file is replaced.
+     * @param hashes   the position hashes. Sorted along with the postings.
+     * @param postings the postings.
+     * @param count    the number of entries in the arrays to use.
+     * @throws IOException if the file cannot be written.
+     */
+    static void write(Path path, long[] hashes, long[] postings, int count) throws IOException {
+        sort(hashes, postings, 0, count);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(
+                     channel)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(hashes[i]);
+                out.writeLong(postings[i]);
+            }
+            out.flush();
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Merge several indexes into a new index file.
+     *
+     * @param sources the indexes to merge.
+     * @param keep    tells whether to keep a posting.
+     * @param path    where to write the index. An existing file is replaced.
+     * @return the number of entries written.
+     * @throws IOException if the file cannot be written, or would be too large.
+     */
+    static long merge(List<PositionIndex> sources, LongPredicate keep, Path path) throws IOException {
+        int[] next = new int[sources.size()];
+        long written = 0;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(
+                     channel)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(0);
+
+            while (true) {
+                // Few indexes are merged at once, so the smallest next hash is found by looking at each.
+                int min = -1;
+                long minHash = 0;
+                for (int i = 0; i < next.length; i++) {
+                    if (next[i] < sources.get(i).count) {
+                        long hash = sources.get(i).hashAt(next[i]);
+                        if (min < 0 || hash < minHash) {
+                            min = i;
+                            minHash = hash;
+                        }
+                    }
+                }
+                if (min < 0) {
+                    break;
+                }
+
+                long posting = sources.get(min).postingAt(next[min]++);
+                if (keep.test(posting)) {
+                    if (written == MAX_ENTRIES) {
+                        throw new IOException("Merged position index is too large.");
+                    }
+                    out.writeLong(minHash);
+                    out.writeLong(posting);
+                    written++;
+                }
+            }
+
+            out.flush();
+            channel.write(ByteBuffer.allocate(8).putLong(0, written), 8);
+            channel.force(false);
+        }
+        return written;
+    }
+
+    /**
+     * Sort entries by hash, moving each posting with its hash.
+     *
+     * @param hashes   the hashes.
+     * @param postings the postings.
+     * @param from     the first entry to sort.
+     * @param to       one past the last entry to sort.
+     */
+    static void sort(long[] hashes, long[] postings, int from, int to) {
+        while (to - from > INSERTION_SORT) {
+            int mid = (from + to) >>> 1;
+            long pivot = median(hashes[from], hashes[mid], hashes[to - 1]);
+
+            int i = from, j = to - 1;
+            while (i <= j) {
+                while (hashes[i] < pivot) {
+                    i++;
+                }
+                while (hashes[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(hashes, postings, i++, j--);
+                }
+            }
+
+            // Recurse into the smaller side so the stack stays shallow.
+            if (j - from < to - i) {
+                sort(hashes, postings, from, j + 1);
+                from = i;
+            } else {
+                sort(hashes, postings, i, to);
+                to = j + 1;
+            }
+        }
+
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && hashes[j - 1] > hashes[j]; j--) {
+                swap(hashes, postings, j - 1, j);
+            }
+        }
+    }
+
+    /**
+     * Find the median of three values.
+     *
+     * @param a the first value.
+     * @param b the second value.
+     * @param c the third value.
+     * @return the middle value.
+     */
+    private static long median(long a, long b, long c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    /**
+     * Swap two entries.
+     *
+     * @param hashes   the hashes.
+     * @param postings the postings.
+     * @param i        one entry.
+     * @param j        the other entry.
+     */
+    private static void swap(long[] hashes, long[] postings, int i, int j) {
+        long hash = hashes[i];
+        hashes[i] = hashes[j];
+        hashes[j] = hash;
+
+        long posting = postings[i];
+        postings[i] = postings[j];
+        postings[j] = posting;
+    }
+}
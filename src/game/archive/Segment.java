@@ -0,0 +1,467 @@
+package game.archive;
+
+import game.MoveLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * One file of a {@link GameArchive}. Records are only ever appended, and once the segment is sealed it never changes
+ * again and has a {@link PositionIndex} beside it. The file is:
+ * <pre>
+ * header:  int magic, int version, int source count, then the number of each segment this one replaced
+ * record:  int payload length, int CRC-32 of the payload, payload
+ * payload: byte type, long game id, and for a game: byte black discs, byte white discs, the {@link MoveLog}
+ * </pre>
+ * A deletion record marks an earlier game as deleted. The sources are only set on segments written by compaction,
+ * so that if the replaced segments are still there when the archive is opened they can be removed.
+ *
+ * @author Brock Dyer.
+ */
+final class Segment {
+
+    /**
+     * The first bytes of every segment file: "RVGA".
+     */
+    static final int MAGIC = 0x52564741;
+
+    /**
+     * The version of the file format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The record types.
+     */
+    static final int GAME = 1, DELETE = 2;
+
+    /**
+     * The bytes before each payload.
+     */
+    static final int RECORD_HEADER = 8;
+
+    /**
+     * The bytes of a payload before the move log, and of a whole deletion payload.
+     */
+    private static final int GAME_FIXED = 11, DELETE_PAYLOAD = 9;
+
+    /**
+     * Told about each record found by {@link #scan(RecordVisitor)}.
+     */
+    interface RecordVisitor {
+
+        /**
+         * Visit a record.
+         *
+         * @param type   {@link #GAME} or {@link #DELETE}.
+         * @param id     the game id.
+         * @param offset where the record starts in the file.
+         * @param length the length of the whole record.
+         * @throws IOException if the visitor fails.
+         */
+        void visit(int type, long id, int offset, int length) throws IOException;
+    }
+
+    /**
+     * The number of the segment, which names its files.
+     */
+    final int number;
+
+    /**
+     * The paths of the records and of the index.
+     */
+    final Path gamesPath, indexPath;
+
+    /**
+     * The numbers of the segments this one replaced.
+     */
+    final int[] sources;
+
+    /**
+     * The offset of the first record.
+     */
+    private final int headerBytes;
+
+    /**
+     * The file, kept open for appending until the segment is sealed.
+     */
+    private FileChannel channel;
+
+    /**
+     * The length of the file.
+     */
+    private long size;
+
+    /**
+     * The file mapped for reading, from the start to at least the last record read.
+     */
+    private ByteBuffer data;
+
+    /**
+     * The position index, once sealed.
+     */
+    private PositionIndex index;
+
+    /**
+     * The number of games, including deleted ones.
+     */
+    private int games;
+
+    /**
+     * Create a segment over an open file.
+     *
+     * @param dir     the archive directory.
+     * @param number  the number of the segment.
+     * @param sources the numbers of the segments it replaced.
+     * @param channel the file.
+     * @throws IOException if the file cannot be read.
+     */
+    private Segment(Path dir, int number, int[] sources, FileChannel channel) throws IOException {
+        this.number = number;
+        this.gamesPath = gamesPath(dir, number);
+        this.indexPath = indexPath(dir, number);
+        this.sources = sources;
+        this.headerBytes = 12 + 4 * sources.length;
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    /**
+     * Get the path of a segment's records.
+     *
+     * @param dir    the archive directory.
+     * @param number the number of the segment.
+     * @return the path.
+     */
+    static Path gamesPath(Path dir, int number) {
+        return dir.resolve(String.format("%08d.games", number));
+    }
+
+    /**
+     * Get the path of a segment's index.
+     *
+     * @param dir    the archive directory.
+     * @param number the number of the segment.
+     * @return the path.
+     */
+    static Path indexPath(Path dir, int number) {
+        return dir.resolve(String.format("%08d.index", number));
+    }
+
+    /**
+     * Create a new, empty segment for appending.
+     *
+     * @param dir    the archive directory.
+     * @param number the number of the segment.
+     * @return the segment.
+     * @throws IOException if the file exists or cannot be written.
+     */
+    static Segment create(Path dir, int number) throws IOException {
+        FileChannel channel = FileChannel.open(gamesPath(dir, number), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.write(header(new int[0]), 0);
+        channel.force(true);
+        return new Segment(dir, number, new int[0], channel);
+    }
+
+    /**
+     * Open an existing segment. If it has an index it is sealed, otherwise it is open for appending.
+     *
+     * @param dir    the archive directory.
+     * @param number the number of the segment.
+     * @return the segment.
+     * @throws IOException if the file cannot be read or is not a segment.
+     */
+    static Segment open(Path dir, int number) throws IOException {
+        FileChannel channel = FileChannel.open(gamesPath(dir, number), StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            ByteBuffer start = ByteBuffer.allocate(12);
+            channel.read(start, 0);
+            if (start.position() < 12 || start.getInt(0) != MAGIC) {
+                throw new IOException(gamesPath(dir, number) + " is not an archive segment.");
+            }
+            if (start.getInt(4) != VERSION) {
+                throw new IOException("Unsupported archive segment version " + start.getInt(4) + ".");
+            }
+
+            int count = start.getInt(8);
+            if (count < 0 || 12 + 4L * count > channel.size()) {
+                throw new IOException(gamesPath(dir, number) + " is damaged.");
+            }
+            ByteBuffer numbers = ByteBuffer.allocate(4 * count);
+            channel.read(numbers, 12);
+            int[] sources = new int[count];
+            for (int i = 0; i < count; i++) {
+                sources[i] = numbers.getInt(4 * i);
+            }
+
+            Segment segment = new Segment(dir, number, sources, channel);
+            if (Files.exists(segment.indexPath)) {
+                segment.seal(PositionIndex.open(segment.indexPath));
+            }
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Make the header of a segment file.
+     *
+     * @param sources the numbers of the segments it replaces.
+     * @return the header.
+     */
+    static ByteBuffer header(int[] sources) {
+        ByteBuffer header = ByteBuffer.allocate(12 + 4 * sources.length);
+        header.putInt(MAGIC).putInt(VERSION).putInt(sources.length);
+        for (int source : sources) {
+            header.putInt(source);
+        }
+        return header.flip();
+    }
+
+    /**
+     * Make the record of a game.
+     *
+     * @param id         the game id.
+     * @param blackDiscs the final number of black discs.
+     * @param whiteDiscs the final number of white discs.
+     * @param moves      the moves.
+     * @return the record.
+     */
+    static byte[] gameRecord(long id, int blackDiscs, int whiteDiscs, MoveLog moves) {
+        byte[] record = new byte[RECORD_HEADER + GAME_FIXED + moves.encodedLength()];
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.position(RECORD_HEADER);
+        buffer.put((byte) GAME).putLong(id).put((byte) blackDiscs).put((byte) whiteDiscs);
+        moves.encode(record, RECORD_HEADER + GAME_FIXED);
+        return seal(record);
+    }
+
+    /**
+     * Make the record of a deletion.
+     *
+     * @param id the id of the deleted game.
+     * @return the record.
+     */
+    static byte[] deleteRecord(long id) {
+        byte[] record = new byte[RECORD_HEADER + DELETE_PAYLOAD];
+        ByteBuffer.wrap(record).position(RECORD_HEADER).put((byte) DELETE).putLong(id);
+        return seal(record);
+    }
+
+    /**
+     * Fill in the length and checksum of a record.
+     *
+     * @param record the record, with its payload filled in.
+     * @return the record.
+     */
+    private static byte[] seal(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record, RECORD_HEADER, record.length - RECORD_HEADER);
+        ByteBuffer.wrap(record).putInt(record.length - RECORD_HEADER).putInt((int) crc.getValue());
+        return record;
+    }
+
+    /**
+     * Add a record to the end of the file. It is not forced to the disk.
+     *
+     * @param record the record.
+     * @return where the record starts.
+     * @throws IOException if the file cannot be written.
+     */
+    int append(byte[] record) throws IOException {
+        int offset = (int) size;
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, size + buffer.position());
+        }
+        size += record.length;
+        if (record[RECORD_HEADER] == GAME) {
+            games++;
+        }
+        return offset;
+    }
+
+    /**
+     * Visit every record, stopping at the first one that is cut short or fails its checksum.
+     *
+     * @param visitor told about each record.
+     * @return the offset after the last good record.
+     * @throws IOException if the file cannot be mapped or the visitor fails.
+     */
+    int scan(RecordVisitor visitor) throws IOException {
+        ByteBuffer data = data();
+        int offset = headerBytes;
+        int count = 0;
+        CRC32 crc = new CRC32();
+
+        while (offset + RECORD_HEADER <= size) {
+            int length = data.getInt(offset);
+            if (length < DELETE_PAYLOAD || offset + RECORD_HEADER + (long) length > size) {
+                break;
+            }
+
+            crc.reset();
+            crc.update(data.duplicate().position(offset + RECORD_HEADER).limit(offset + RECORD_HEADER + length));
+            if ((int) crc.getValue() != data.getInt(offset + 4)) {
+                break;
+            }
+
+            int type = data.get(offset + RECORD_HEADER);
+            if (type == GAME) {
+                count++;
+            }
+            visitor.visit(type, data.getLong(offset + RECORD_HEADER + 1), offset, RECORD_HEADER + length);
+            offset += RECORD_HEADER + length;
+        }
+
+        this.games = count;
+        return offset;
+    }
+
+    /**
+     * Cut the file after the last good record, dropping a record that was only partly written.
+     *
+     * @param end the offset after the last good record.
+     * @throws IOException if the file cannot be truncated.
+     */
+    void truncate(int end) throws IOException {
+        channel.truncate(end);
+        channel.force(true);
+        size = end;
+        data = null;
+    }
+
+    /**
+     * Read a game.
+     *
+     * @param offset where its record starts.
+     * @return the game.
+     * @throws IOException if the record is not a game.
+     */
+    ArchivedGame read(int offset) throws IOException {
+        ByteBuffer data = data();
+        int length = data.getInt(offset);
+        int payload = offset + RECORD_HEADER;
+        if (data.get(payload) != GAME) {
+            throw new IOException("No game at " + offset + " in " + gamesPath + ".");
+        }
+
+        byte[] moves = new byte[length - GAME_FIXED];
+        data.get(payload + GAME_FIXED, moves);
+        try {
+            return new ArchivedGame(data.getLong(payload + 1), data.get(payload + 9), data.get(payload + 10),
+                    MoveLog.decode(moves));
+        } catch (IllegalArgumentException iae) {
+            throw new IOException("Bad game at " + offset + " in " + gamesPath + ". " + iae.getMessage(), iae);
+        }
+    }
+
+    /**
+     * Get a whole record.
+     *
+     * @param offset where the record starts.
+     * @param length the length of the record.
+     * @return the record, which is only valid until the next call.
+     * @throws IOException if the file cannot be mapped.
+     */
+    ByteBuffer record(int offset, int length) throws IOException {
+        return data().duplicate().position(offset).limit(offset + length);
+    }
+
+    /**
+     * Get the file mapped for reading, mapping it again if records have been appended since it was last mapped.
+     *
+     * @return the mapped file.
+     * @throws IOException if the file cannot be mapped.
+     */
+    private ByteBuffer data() throws IOException {
+        if (data == null || data.capacity() < size) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        return data;
+    }
+
+    /**
+     * Seal the segment: force it to the disk, map it for good and stop appending.
+     *
+     * @param index the position index of the segment.
+     * @throws IOException if the file cannot be forced or mapped.
+     */
+    void seal(PositionIndex index) throws IOException {
+        channel.force(true);
+        data();
+        channel.close();
+        channel = null;
+        this.index = index;
+    }
+
+    /**
+     * Force appended records to the disk.
+     *
+     * @throws IOException if the file cannot be forced.
+     */
+    void force() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Close the file. Mapped data stays readable until it is collected.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Delete the files of the segment.
+     *
+     * @throws IOException if a file cannot be deleted.
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(indexPath);
+        Files.deleteIfExists(gamesPath);
+    }
+
+    /**
+     * Get the position index.
+     *
+     * @return the index, or null if the segment is not sealed.
+     */
+    PositionIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Get the number of games, including deleted ones, as of the last scan or append.
+     *
+     * @return the game count.
+     */
+    int getGames() {
+        return games;
+    }
+
+    /**
+     * Get the length of the file.
+     *
+     * @return the size in bytes.
+     */
+    long size() {
+        return size;
+    }
+}
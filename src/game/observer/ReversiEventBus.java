@@ -0,0 +1,384 @@
+package game.observer;
+
+import gui.events.ReversiEvent;
+import gui.events.ReversiMoveEvent;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers board events to observers on their own threads, so a slow observer cannot slow down the game. <br>
+ * Register the bus with a board as an observer, then register the real observers with the bus. Each observer gets
+ * a preallocated ring buffer and a consumer thread. The board's thread only stores the event in each ring and
+ * moves on. The consumer drains everything published since its last pass before it tells the producer how far it
+ * got.
+ * <p>
+ * When an observer falls a full ring behind, the {@link Backpressure} policy decides what happens: the board waits
+ * for it, or the event is dropped for that observer only.
+ * </p>
+ * Events must be published from one thread at a time, which is the case for a board. A {@code ReversiGame} created
+ * with a bus registers it this way. The GUI's local and computer games use one when started with the async option.
+ *
+ * @author Brock Dyer.
+ */
+public class ReversiEventBus implements ReversiSubscriber, ReversiObserver, AutoCloseable {
+
+    /**
+     * What to do when an observer's ring is full.
+     */
+    public enum Backpressure {
+        /**
+         * Wait until the observer makes room.
+         */
+        BLOCK,
+
+        /**
+         * Drop the event for that observer and count it.
+         */
+        DROP
+    }
+
+    /**
+     * The default number of events each observer can fall behind.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * How many times a thread checks again before it parks, when it expects the other side to move soon.
+     */
+    private static final int SPINS = 100;
+
+    /**
+     * The number of events each observer can fall behind. A power of two.
+     */
+    private final int capacity;
+
+    /**
+     * What to do when an observer's ring is full.
+     */
+    private final Backpressure policy;
+
+    /**
+     * The consumer for each registered observer.
+     */
+    private final List<Consumer> consumers;
+
+    /**
+     * Create a bus.
+     *
+     * @param capacity the number of events each observer can fall behind. Rounded up to a power of two.
+     * @param policy   what to do when an observer is that far behind.
+     */
+    public ReversiEventBus(int capacity, Backpressure policy) {
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.policy = policy;
+        this.consumers = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Create a bus that makes the board wait for observers that fall {@link #DEFAULT_CAPACITY} events behind.
+     */
+    public ReversiEventBus() {
+        this(DEFAULT_CAPACITY, Backpressure.BLOCK);
+    }
+
+    @Override
+    public void register(ReversiObserver observer) {
+        Consumer consumer = new Consumer(observer, capacity);
+        consumers.add(consumer);
+        consumer.thread.start();
+    }
+
+    @Override
+    public void deregister(ReversiObserver observer) {
+        for (Consumer consumer : consumers) {
+            if (consumer.observer == observer) {
+                consumers.remove(consumer);
+                consumer.stop();
+            }
+        }
+    }
+
+    @Override
+    public void handle(ReversiEvent re) {
+        publish(re);
+    }
+
+    @Override
+    public void handleMove(ReversiMoveEvent move) {
+        publish(move);
+    }
+
+    /**
+     * Put an event in every observer's ring.
+     *
+     * @param event a {@link ReversiEvent} or a {@link ReversiMoveEvent}.
+     */
+    private void publish(Object event) {
+        for (Consumer consumer : consumers) {
+            consumer.offer(event, policy);
+        }
+    }
+
+    /**
+     * Wait until every observer has handled every event published so far.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public void flush() throws InterruptedException {
+        for (Consumer consumer : consumers) {
+            long target = consumer.published;
+            Thread current = Thread.currentThread();
+            consumer.waiters.add(current);
+            try {
+                while (consumer.consumed < target && !consumer.finished) {
+                    LockSupport.park(consumer);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            } finally {
+                consumer.waiters.remove(current);
+            }
+        }
+    }
+
+    /**
+     * Get the number of events dropped because an observer was too far behind.
+     *
+     * @return the total dropped over all observers.
+     */
+    public long getDropped() {
+        long dropped = 0;
+        for (Consumer consumer : consumers) {
+            dropped += consumer.dropped;
+        }
+        return dropped;
+    }
+
+    /**
+     * Stop every consumer thread once it has handled the events already published.
+     */
+    @Override
+    public void close() {
+        for (Consumer consumer : consumers) {
+            consumer.stop();
+        }
+        consumers.clear();
+    }
+
+    /**
+     * One observer's ring buffer and the thread that drains it. <br>
+     * The bus writes {@link #published} and the consumer thread writes {@link #consumed}. Both count events from
+     * the start, and an event's slot is its number modulo the capacity. Neither side polls: a thread that has to wait
+     * for the other spins briefly, then parks until the other side moves its count and unparks it.
+     */
+    private static final class Consumer implements Runnable {
+
+        /**
+         * The observer to deliver to.
+         */
+        private final ReversiObserver observer;
+
+        /**
+         * The events waiting to be delivered.
+         */
+        private final Object[] ring;
+
+        /**
+         * The capacity minus one.
+         */
+        private final int mask;
+
+        /**
+         * The thread delivering the events.
+         */
+        private final Thread thread;
+
+        /**
+         * The number of events put in the ring.
+         */
+        private volatile long published;
+
+        /**
+         * The number of events delivered.
+         */
+        private volatile long consumed;
+
+        /**
+         * True while the consumer is about to sleep, so the producer knows to wake it.
+         */
+        private volatile boolean waiting;
+
+        /**
+         * The threads parked until {@link #consumed} moves: a producer facing a full ring, or a flush.
+         */
+        private final Queue<Thread> waiters;
+
+        /**
+         * True once the thread has exited, so nothing waits on it any longer.
+         */
+        private volatile boolean finished;
+
+        /**
+         * False once the consumer should exit after delivering what is left.
+         */
+        private volatile boolean running;
+
+        /**
+         * The number of events dropped for this observer. Only written by the producer.
+         */
+        private volatile long dropped;
+
+        /**
+         * Create a consumer. The thread is not started.
+         *
+         * @param observer the observer to deliver to.
+         * @param capacity the size of the ring, a power of two.
+         */
+        private Consumer(ReversiObserver observer, int capacity) {
+            this.observer = observer;
+            this.ring = new Object[capacity];
+            this.mask = capacity - 1;
+            this.waiters = new ConcurrentLinkedQueue<>();
+            this.running = true;
+            this.thread = new Thread(this, "reversi-events-" + observer.getClass().getSimpleName());
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Put an event in the ring. Only called by the producer.
+         *
+         * @param event  the event.
+         * @param policy what to do if the ring is full.
+         */
+        private void offer(Object event, Backpressure policy) {
+            long seq = published;
+            if (seq - consumed >= ring.length) {
+                if (policy == Backpressure.DROP || !running || !awaitRoom(seq)) {
+                    dropped++;
+                    return;
+                }
+            }
+
+            ring[(int) seq & mask] = event;
+            published = seq + 1;
+
+            if (waiting) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        /**
+         * Wait until the consumer has made room in the ring. Spins briefly, since the consumer is usually partway
+         * through a batch, then parks until it moves {@link #consumed}.
+         *
+         * @param seq the number of the event to put in the ring.
+         * @return true if there is room, false if the consumer stopped first.
+         */
+        private boolean awaitRoom(long seq) {
+            for (int spin = 0; spin < SPINS; spin++) {
+                if (seq - consumed < ring.length) {
+                    return true;
+                }
+                Thread.onSpinWait();
+            }
+
+            Thread current = Thread.currentThread();
+            waiters.add(current);
+            try {
+                while (seq - consumed >= ring.length) {
+                    if (!running || finished) {
+                        return false;
+                    }
+                    LockSupport.park(this);
+                }
+                return true;
+            } finally {
+                waiters.remove(current);
+            }
+        }
+
+        /**
+         * Wake every thread waiting for {@link #consumed} to move.
+         */
+        private void wakeWaiters() {
+            for (Thread waiter : waiters) {
+                LockSupport.unpark(waiter);
+            }
+        }
+
+        /**
+         * Let the thread exit once it has delivered everything already published.
+         */
+        private void stop() {
+            running = false;
+            LockSupport.unpark(thread);
+            wakeWaiters();
+        }
+
+        @Override
+        public void run() {
+            try {
+                drain();
+            } finally {
+                finished = true;
+                wakeWaiters();
+            }
+        }
+
+        /**
+         * Deliver events until stopped.
+         */
+        private void drain() {
+            long next = consumed;
+            int spins = 0;
+
+            while (true) {
+                long available = published;
+
+                if (next == available) {
+                    if (!running) {
+                        break;
+                    }
+                    if (spins < SPINS) {
+                        spins++;
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    waiting = true;
+                    if (published == next && running) {
+                        LockSupport.park(this);
+                    }
+                    waiting = false;
+                    continue;
+                }
+                spins = 0;
+
+                while (next < available) {
+                    int slot = (int) next & mask;
+                    Object event = ring[slot];
+                    ring[slot] = null;
+                    next++;
+
+                    try {
+                        if (event instanceof ReversiMoveEvent) {
+                            observer.handleMove((ReversiMoveEvent) event);
+                        } else {
+                            observer.handle((ReversiEvent) event);
+                        }
+                    } catch (RuntimeException re) {
+                        re.printStackTrace();
+                    }
+                }
+                consumed = next;
+                if (!waiters.isEmpty()) {
+                    wakeWaiters();
+                }
+            }
+        }
+    }
+}
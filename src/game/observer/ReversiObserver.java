@@ -1,6 +1,8 @@
 package game.observer;
 
+import game.BitBoard;
 import gui.events.ReversiEvent;
+import gui.events.ReversiMoveEvent;
 
 /**
  * An interface defining the methods any observer of the reversi game should have.
@@ -15,4 +17,22 @@ public interface ReversiObserver {
      * @param re the reversi event that needs to be handled by the observer.
      */
     void handle(ReversiEvent re);
+
+    /**
+     * Handle a move. The board calls this once per move instead of once per changed disc. <br>
+     * By default the move is split into a {@link ReversiEvent} for the placed disc followed by one for each flipped
+     * disc, in square order. Observers that can deal with the whole move at once should override this.
+     *
+     * @param move the move that was made.
+     */
+    default void handleMove(ReversiMoveEvent move) {
+        handle(new ReversiEvent(move.getRow(), move.getCol(), move.getColor()));
+
+        long flipped = move.getFlipped();
+        while (flipped != 0) {
+            int sq = Long.numberOfTrailingZeros(flipped);
+            flipped &= flipped - 1;
+            handle(new ReversiEvent(BitBoard.row(sq), BitBoard.col(sq), move.getColor()));
+        }
+    }
 }
@@ -1,8 +1,11 @@
 package gui;
 
+import engine.ReversiAI;
+import engine.book.OpeningBook;
 import game.PieceColor;
 import game.Reversi;
 import game.ReversiPlayer;
+import gui.events.ReversiMoveEvent;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
@@ -18,11 +21,15 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
+import network.Capability;
 import network.client.ReversiClient;
 import util.MoveException;
 
 import java.awt.*;
 import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -81,6 +88,11 @@ public class ReversiGUI extends Application {
      */
     private Label indicator;
 
+    /**
+     * Label under the board for extra detail, such as what the computer's search found.
+     */
+    private Label status;
+
     /**
      * The control to display the board to the user.
      */
@@ -100,7 +112,10 @@ public class ReversiGUI extends Application {
     public void init() throws Exception {
 
         // get the command line args
-        List<String> args = getParameters().getRaw();
+        List<String> args = new ArrayList<>(getParameters().getRaw());
+
+        // Board updates go through an event bus instead of straight from the thread making the moves.
+        boolean asyncEvents = args.remove("async");
 
         scoreFont = new Font("Helvetica-Bold", 20);
 
@@ -139,27 +154,42 @@ public class ReversiGUI extends Application {
         indicator.setFont(scoreFont);
         indicator.setTextFill(Color.IVORY);
 
+        this.status = new Label("");
+        status.setFont(new Font("Helvetica", 12));
+        status.setTextFill(Color.IVORY);
+
         String gameType = args.get(0);
 
         if (gameType.equals("client")) {
-            if (args.size() != 3) {
-                System.out.println("Usage: java ReversiGUI \"client\" hostname #port");
+            if (args.size() < 3 || args.size() > 5) {
+                System.out.println("Usage: java ReversiGUI \"client\" hostname #port [binary] [local_moves]");
                 System.exit(-1);
             }
             int port = Integer.parseInt(args.get(2));
             Socket socket = new Socket(args.get(1), port);
 
-            this.player = new ReversiClient(socket, this);
+            Set<Capability> capabilities = EnumSet.of(Capability.MOVE_UPDATES);
+            for (String arg : args.subList(3, args.size())) {
+                capabilities.add(Capability.valueOf(arg.toUpperCase()));
+            }
+            this.player = new ReversiClient(socket, this, capabilities);
 
             Thread t = new Thread((ReversiClient) this.player);
             t.setDaemon(true);
             t.start();
 
         } else if (gameType.equals("ai")) {
-            // Setup ai here.
+            long millis = args.size() > 1 ? Long.parseLong(args.get(1)) : ReversiAI.DEFAULT_MOVE_MILLIS;
+            int threads = args.size() > 2 ? Integer.parseInt(args.get(2)) :
+                    Runtime.getRuntime().availableProcessors();
+            OpeningBook book = args.size() > 3 ? OpeningBook.open(Paths.get(args.get(3))) : null;
+
+            this.player = new ReversiAI(this, millis, threads, book, asyncEvents);
+            updateIndicatorLabel("Your turn");
+            showAvailableMoves();
 
         } else {
-            this.player = new Reversi(this);
+            this.player = new Reversi(this, asyncEvents);
             updateIndicatorLabel("Black's Turn");
             showAvailableMoves();
         }
@@ -183,8 +213,13 @@ public class ReversiGUI extends Application {
         hBox.setBackground(new Background(new BackgroundFill(Color.SADDLEBROWN, CornerRadii.EMPTY, Insets.EMPTY)));
 
 
+        HBox statusBox = new HBox();
+        statusBox.getChildren().add(status);
+        statusBox.setBackground(new Background(new BackgroundFill(Color.SADDLEBROWN, CornerRadii.EMPTY,
+                Insets.EMPTY)));
+
         VBox vBox = new VBox();
-        vBox.getChildren().addAll(hBox, boardPane);
+        vBox.getChildren().addAll(hBox, boardPane, statusBox);
         Scene scene = new Scene(vBox);
 
         stage.setTitle("Reversi");
@@ -200,10 +235,10 @@ public class ReversiGUI extends Application {
      * @param args command line arguments
      */
     public static void main(String[] args) {
-        if (args.length < 1 || args.length > 3) {
-            System.out.println("Usage: java ReversiGUI local");
-            System.out.println("Usage: java ReversiGUI \"client\" hostname #port");
-            System.out.println("Usage: java ReversiGUI ai");
+        if (args.length < 1 || args.length > 5) {
+            System.out.println("Usage: java ReversiGUI local [async]");
+            System.out.println("Usage: java ReversiGUI \"client\" hostname #port [binary] [local_moves]");
+            System.out.println("Usage: java ReversiGUI ai [#millisPerMove [#threads [bookFile]]] [async]");
             System.exit(-1);
         } else {
             Application.launch(args);
@@ -257,6 +292,53 @@ public class ReversiGUI extends Application {
         }
     }
 
+    /**
+     * Update every square a move changed at once.
+     *
+     * @param move the move to show.
+     */
+    public void updateBoard(ReversiMoveEvent move) {
+        String pieceString = move.getColor() == PieceColor.BLACK ? BLACK : WHITE;
+        long changed = move.getChanged();
+
+        Runnable update = () -> {
+            long squares = changed;
+            while (squares != 0) {
+                int index = Long.numberOfTrailingZeros(squares);
+                squares &= squares - 1;
+                this.updateImage((Button) boardPane.getChildren().get(index), pieceString);
+            }
+        };
+
+        if (Platform.isFxApplicationThread()) {
+            update.run();
+        } else {
+            Platform.runLater(update);
+        }
+    }
+
+    /**
+     * Redraw every square, for example after a game is loaded.
+     *
+     * @param black the black discs.
+     * @param white the white discs.
+     */
+    public void updateBoard(long black, long white) {
+        Runnable update = () -> {
+            for (int index = 0; index < BOARD_SIZE * BOARD_SIZE; index++) {
+                long bit = 1L << index;
+                String pieceString = (black & bit) != 0 ? BLACK : (white & bit) != 0 ? WHITE : BLANK_OVERLAY;
+                this.updateImage((Button) boardPane.getChildren().get(index), pieceString);
+            }
+        };
+
+        if (Platform.isFxApplicationThread()) {
+            update.run();
+        } else {
+            Platform.runLater(update);
+        }
+    }
+
     /**
      * Update the graphic of the specified button.
      *
@@ -303,6 +385,15 @@ public class ReversiGUI extends Application {
         this.indicator.setText(text);
     }
 
+    /**
+     * Update the status label under the board.
+     *
+     * @param text the text to display on the status label.
+     */
+    public void updateStatusLabel(String text) {
+        this.status.setText(text);
+    }
+
     /**
      * Display the moves available to the player.
      */
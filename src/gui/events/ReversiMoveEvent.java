@@ -0,0 +1,77 @@
+package gui.events;
+
+import game.BitBoard;
+import game.PieceColor;
+
+/**
+ * An event for a whole move: the disc that was placed and every disc it flipped. <br>
+ * One of these is sent for each move, where the per-disc {@link ReversiEvent} needs one event per changed square.
+ *
+ * @author Brock Dyer.
+ */
+public class ReversiMoveEvent {
+
+    private final int row, col;
+    private final PieceColor color;
+    private final long flipped;
+
+    /**
+     * Construct a ReversiMoveEvent object.
+     *
+     * @param row     the row the disc was placed in.
+     * @param col     the column the disc was placed in.
+     * @param color   the color of the player who moved.
+     * @param flipped a mask with the bit {@code row * 8 + col} set for every disc the move flipped.
+     */
+    public ReversiMoveEvent(int row, int col, PieceColor color, long flipped) {
+        this.row = row;
+        this.col = col;
+        this.color = color;
+        this.flipped = flipped;
+    }
+
+    /**
+     * Get the row the disc was placed in.
+     *
+     * @return the row of the move.
+     */
+    public int getRow() {
+        return this.row;
+    }
+
+    /**
+     * Get the column the disc was placed in.
+     *
+     * @return the column of the move.
+     */
+    public int getCol() {
+        return this.col;
+    }
+
+    /**
+     * Get the color of the player who moved. Every flipped disc now has this color too.
+     *
+     * @return the color of the mover.
+     */
+    public PieceColor getColor() {
+        return this.color;
+    }
+
+    /**
+     * Get the discs the move flipped.
+     *
+     * @return a mask with the bit {@code row * 8 + col} set for every flipped disc.
+     */
+    public long getFlipped() {
+        return this.flipped;
+    }
+
+    /**
+     * Get every square that changed: the placed disc and the flipped discs.
+     *
+     * @return a mask with the bit {@code row * 8 + col} set for every changed square.
+     */
+    public long getChanged() {
+        return this.flipped | (1L << BitBoard.square(row, col));
+    }
+}
@@ -0,0 +1,194 @@
+package network;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.EnumSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A two-way communication system between sockets using the {@link BinaryProtocol}.
+ *
+ * @author Brock Dyer.
+ */
+public class BinaryDuplexer implements Transport {
+
+    /**
+     * The socket to communicate over.
+     */
+    private final Socket socket;
+
+    /**
+     * The stream frames are written to.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * The stream frames are read from.
+     */
+    private final DataInputStream in;
+
+    /**
+     * The buffer frames are read into.
+     */
+    private byte[] body;
+
+    /**
+     * The capabilities agreed for the connection, {@link Capability#BINARY} included.
+     */
+    private final Set<Capability> capabilities;
+
+    /**
+     * Creates a new BinaryDuplexer. The socket must already have agreed to speak the binary protocol, see
+     * {@link Handshake}.
+     *
+     * @param socket the socket to communicate over.
+     * @throws IOException if something goes wrong initializing io.
+     */
+    public BinaryDuplexer(Socket socket) throws IOException {
+        this(socket, EnumSet.of(Capability.BINARY));
+    }
+
+    /**
+     * Creates a new BinaryDuplexer. The socket must already have agreed to speak the binary protocol, see
+     * {@link Handshake}.
+     *
+     * @param socket       the socket to communicate over.
+     * @param capabilities the capabilities agreed in the handshake.
+     * @throws IOException if something goes wrong initializing io.
+     */
+    public BinaryDuplexer(Socket socket, Set<Capability> capabilities) throws IOException {
+        this.socket = socket;
+        this.capabilities = capabilities;
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.body = new byte[64];
+    }
+
+    /**
+     * Connect to a server and ask it for the binary protocol.
+     *
+     * @param socket the connected socket.
+     * @return the duplexer.
+     * @throws IOException if the handshake fails, or the server does not agree to the binary protocol.
+     */
+    public static BinaryDuplexer connect(Socket socket) throws IOException {
+        return connect(socket, EnumSet.of(Capability.BINARY));
+    }
+
+    /**
+     * Connect to a server and ask it for the binary protocol and other capabilities.
+     *
+     * @param socket       the connected socket.
+     * @param capabilities the capabilities to ask for. {@link Capability#BINARY} is added.
+     * @return the duplexer.
+     * @throws IOException if the handshake fails, or the server does not agree to the binary protocol.
+     */
+    public static BinaryDuplexer connect(Socket socket, Set<Capability> capabilities) throws IOException {
+        Set<Capability> wanted = EnumSet.copyOf(capabilities);
+        wanted.add(Capability.BINARY);
+        Set<Capability> agreed = Handshake.request(socket, wanted);
+        if (!agreed.contains(Capability.BINARY)) {
+            throw new IOException("The server did not agree to the binary protocol.");
+        }
+        return new BinaryDuplexer(socket, agreed);
+    }
+
+    @Override
+    public Set<Capability> getCapabilities() {
+        return capabilities;
+    }
+
+    @Override
+    public void sendMessage(String msg) {
+        send(ReversiMessage.parse(msg));
+    }
+
+    @Override
+    public void queueMessage(String msg) {
+        queue(ReversiMessage.parse(msg));
+    }
+
+    @Override
+    public synchronized void queue(ReversiMessage msg) {
+        try {
+            out.write(BinaryProtocol.encode(msg));
+        } catch (IOException ioe) {
+            // Like a PrintWriter, a failed write is noticed by the next read.
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        try {
+            out.flush();
+        } catch (IOException ioe) {
+            // Like a PrintWriter, a failed write is noticed by the next read.
+        }
+    }
+
+    @Override
+    public String receiveMessage() {
+        return receive().toText();
+    }
+
+    @Override
+    public ReversiMessage receive() {
+        try {
+            int length = in.readUnsignedShort();
+            if (length > body.length) {
+                body = new byte[length];
+            }
+            in.readFully(body, 0, length);
+            return BinaryProtocol.decode(body, 0, length);
+        } catch (IOException ioe) {
+            throw new NoSuchElementException("Connection closed.");
+        }
+    }
+
+    /**
+     * Check whether the peer has closed the connection, by reading ahead one byte with the shortest timeout. The
+     * byte is kept for the next frame.
+     *
+     * @return true if the connection is closed.
+     */
+    @Override
+    public boolean isClosed() {
+        if (socket.isClosed()) {
+            return true;
+        }
+
+        try {
+            if (in.available() > 0) {
+                return false;
+            }
+            int timeout = socket.getSoTimeout();
+            socket.setSoTimeout(1);
+            try {
+                in.mark(1);
+                if (in.read() < 0) {
+                    return true;
+                }
+                in.reset();
+            } catch (SocketTimeoutException ste) {
+                // Nothing sent, but still there.
+            } finally {
+                socket.setSoTimeout(timeout);
+            }
+            return false;
+        } catch (IOException ioe) {
+            return true;
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        flush();
+        socket.close();
+    }
+}
@@ -0,0 +1,260 @@
+package network;
+
+import game.BitBoard;
+import game.PieceColor;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary form of the {@link ReversiProtocol}. <br>
+ * A client asks for it with the {@link Capability#BINARY} capability in its {@link Handshake}. After that, every
+ * message in both directions is a frame:
+ * <pre>
+ * u16 length of the rest of the frame, u8 opcode, payload
+ * </pre>
+ * Squares are one byte, {@code row * 8 + col}, colors are one byte, 0 for black and 1 for white, and square sets are
+ * 8-byte masks, all big-endian:
+ * <pre>
+ * MAKE_MOVE      moves mask, or nothing if there are no moves
+ * MOVE           square
+ * MOVE_MADE      black score, white score
+ * PIECE_UPDATE   square, color
+ * PIECES_UPDATE  square, color, flipped mask
+ * BOARD          black mask, white mask, color to move
+ * TEXT           any other message as UTF-8 text
+ * </pre>
+ *
+ * @author Brock Dyer.
+ */
+public final class BinaryProtocol {
+
+    /**
+     * The opcodes.
+     */
+    public static final byte MAKE_MOVE = 1, MOVE = 2, MOVE_MADE = 3, PIECE_UPDATE = 4, PIECES_UPDATE = 5,
+            BOARD = 6, TEXT = 0x7F;
+
+    /**
+     * The size of the length field in bytes.
+     */
+    public static final int LENGTH_BYTES = 2;
+
+    /**
+     * The longest frame body, opcode included.
+     */
+    public static final int MAX_FRAME_BYTES = 0xFFFF;
+
+    /**
+     * This class only holds static helpers.
+     */
+    private BinaryProtocol() {
+    }
+
+    /**
+     * Encode a message as a frame.
+     *
+     * @param msg the message.
+     * @return the frame, length field included.
+     */
+    public static byte[] encode(ReversiMessage msg) {
+        byte[] frame;
+        switch (msg.getType()) {
+            case ReversiProtocol.MAKE_MOVE:
+                if (msg.getMoves() == 0) {
+                    frame = frame(MAKE_MOVE, 0);
+                } else {
+                    frame = frame(MAKE_MOVE, 8);
+                    putLong(frame, 3, msg.getMoves());
+                }
+                break;
+
+            case ReversiProtocol.MOVE:
+                frame = frame(MOVE, 1);
+                frame[3] = (byte) BitBoard.square(msg.getRow(), msg.getCol());
+                break;
+
+            case ReversiProtocol.MOVE_MADE:
+                frame = frame(MOVE_MADE, 2);
+                frame[3] = (byte) msg.getBlackScore();
+                frame[4] = (byte) msg.getWhiteScore();
+                break;
+
+            case ReversiProtocol.PIECE_UPDATE:
+                frame = frame(PIECE_UPDATE, 2);
+                frame[3] = (byte) BitBoard.square(msg.getRow(), msg.getCol());
+                frame[4] = color(msg.getColor());
+                break;
+
+            case ReversiProtocol.PIECES_UPDATE:
+                frame = frame(PIECES_UPDATE, 10);
+                frame[3] = (byte) BitBoard.square(msg.getRow(), msg.getCol());
+                frame[4] = color(msg.getColor());
+                putLong(frame, 5, msg.getFlipped());
+                break;
+
+            case ReversiProtocol.BOARD:
+                frame = frame(BOARD, 17);
+                putLong(frame, 3, msg.getBlack());
+                putLong(frame, 11, msg.getWhite());
+                frame[19] = color(msg.getColor());
+                break;
+
+            default:
+                byte[] text = msg.toText().getBytes(StandardCharsets.UTF_8);
+                if (text.length + 1 > MAX_FRAME_BYTES) {
+                    throw new IllegalArgumentException("Message too long: " + text.length + " bytes.");
+                }
+                frame = frame(TEXT, text.length);
+                System.arraycopy(text, 0, frame, 3, text.length);
+                break;
+        }
+        return frame;
+    }
+
+    /**
+     * Decode the body of a frame: the opcode and the payload.
+     *
+     * @param body   the bytes.
+     * @param offset where the opcode is.
+     * @param length the length of the body, opcode included.
+     * @return the message.
+     * @throws IllegalArgumentException if the frame is badly formed.
+     */
+    public static ReversiMessage decode(byte[] body, int offset, int length) {
+        if (length < 1) {
+            throw new IllegalArgumentException("Empty frame.");
+        }
+
+        int p = offset + 1;
+        switch (body[offset]) {
+            case MAKE_MOVE:
+                if (length == 1) {
+                    return ReversiMessage.makeMove(0);
+                }
+                expect(length, 9);
+                return ReversiMessage.makeMove(getLong(body, p));
+
+            case MOVE:
+                expect(length, 2);
+                int square = square(body[p]);
+                return ReversiMessage.move(BitBoard.row(square), BitBoard.col(square));
+
+            case MOVE_MADE:
+                expect(length, 3);
+                return ReversiMessage.moveMade(body[p] & 0xFF, body[p + 1] & 0xFF);
+
+            case PIECE_UPDATE:
+                expect(length, 3);
+                square = square(body[p]);
+                return ReversiMessage.pieceUpdate(BitBoard.row(square), BitBoard.col(square), color(body[p + 1]));
+
+            case PIECES_UPDATE:
+                expect(length, 11);
+                square = square(body[p]);
+                return ReversiMessage.piecesUpdate(BitBoard.row(square), BitBoard.col(square), color(body[p + 1]),
+                        getLong(body, p + 2));
+
+            case BOARD:
+                expect(length, 18);
+                return ReversiMessage.board(getLong(body, p), getLong(body, p + 8), color(body[p + 16]));
+
+            case TEXT:
+                return ReversiMessage.parse(new String(body, p, length - 1, StandardCharsets.UTF_8));
+
+            default:
+                throw new IllegalArgumentException("Unknown opcode " + body[offset] + ".");
+        }
+    }
+
+    /**
+     * Start a frame.
+     *
+     * @param opcode  the opcode.
+     * @param payload the size of the payload.
+     * @return the frame with the length and opcode filled in.
+     */
+    private static byte[] frame(byte opcode, int payload) {
+        byte[] frame = new byte[LENGTH_BYTES + 1 + payload];
+        frame[0] = (byte) ((payload + 1) >>> 8);
+        frame[1] = (byte) (payload + 1);
+        frame[2] = opcode;
+        return frame;
+    }
+
+    /**
+     * Check the length of a frame body.
+     *
+     * @param length   the length.
+     * @param expected the length its opcode needs.
+     */
+    private static void expect(int length, int expected) {
+        if (length != expected) {
+            throw new IllegalArgumentException("Frame of " + length + " bytes, expected " + expected + ".");
+        }
+    }
+
+    /**
+     * Check a square byte.
+     *
+     * @param b the byte.
+     * @return the square.
+     */
+    private static int square(byte b) {
+        if (b < 0 || b >= BitBoard.SQUARES) {
+            throw new IllegalArgumentException("Square out of range: " + b);
+        }
+        return b;
+    }
+
+    /**
+     * Encode a color.
+     *
+     * @param color the color.
+     * @return 0 for black, 1 for white.
+     */
+    private static byte color(PieceColor color) {
+        return (byte) (color == PieceColor.BLACK ? 0 : 1);
+    }
+
+    /**
+     * Decode a color.
+     *
+     * @param b the byte.
+     * @return the color.
+     */
+    private static PieceColor color(byte b) {
+        if (b != 0 && b != 1) {
+            throw new IllegalArgumentException("Bad color: " + b);
+        }
+        return b == 0 ? PieceColor.BLACK : PieceColor.WHITE;
+    }
+
+    /**
+     * Write a big-endian long.
+     *
+     * @param bytes  the array.
+     * @param offset where to write.
+     * @param value  the value.
+     */
+    private static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    /**
+     * Read a big-endian long.
+     *
+     * @param bytes  the array.
+     * @param offset where to read.
+     * @return the value.
+     */
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
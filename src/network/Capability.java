@@ -0,0 +1,28 @@
+package network;
+
+/**
+ * An optional feature of the {@link ReversiProtocol} a client can ask for in its {@link ReversiProtocol#HELLO}. A
+ * server that does not know a capability ignores it.
+ *
+ * @author Brock Dyer.
+ */
+public enum Capability {
+
+    /**
+     * Speak the {@link BinaryProtocol} instead of text.
+     */
+    BINARY,
+
+    /**
+     * The client works out its own legal moves from the board updates, so MAKE_MOVE is sent without them. The
+     * server still checks every move. Only agreed together with {@link #MOVE_UPDATES}, which says which disc was
+     * placed.
+     */
+    LOCAL_MOVES,
+
+    /**
+     * The client understands {@link ReversiProtocol#PIECES_UPDATE}, one message per move. Other clients get a
+     * {@link ReversiProtocol#PIECE_UPDATE} for each changed disc.
+     */
+    MOVE_UPDATES
+}
@@ -1,29 +1,61 @@
 package network;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.util.Scanner;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
- * A two-way communication system between sockets. Uses a text-based protocol to communicate.
+ * A two-way communication system between sockets. Uses a text-based protocol to communicate. <br>
+ * Output is buffered until {@link #flush()}, and input is split into lines straight out of the bytes read from the
+ * socket.
  *
  * @author Brock Dyer.
  */
-public class Duplexer implements AutoCloseable {
+public class Duplexer implements Transport {
+
+    /**
+     * The size of the read and write buffers in bytes.
+     */
+    private static final int BUFFER_BYTES = 8192;
+
+    /**
+     * The longest line accepted, in bytes. A peer that sends a longer one is disconnected, so it cannot fill the
+     * heap with a line that never ends.
+     */
+    private static final int MAX_LINE_BYTES = BUFFER_BYTES;
 
     /**
      * The socket to communicate over.
      */
     private Socket socket;
     /**
-     * The writer to write text to the output stream of the socket.
+     * The buffered stream text is written to.
+     */
+    private OutputStream out;
+    /**
+     * The socket's input stream.
+     */
+    private InputStream in;
+    /**
+     * The bytes read from the socket but not yet returned as lines.
+     */
+    private final byte[] buffer;
+    /**
+     * The start of the next line in the buffer, where to look for its line break, and the end of the bytes read.
      */
-    private PrintWriter writer;
+    private int position, scan, limit;
+
     /**
-     * A scanner to read text input from the socket's input stream.
+     * The capabilities agreed for the connection.
      */
-    private Scanner scanner;
+    private final Set<Capability> capabilities;
 
     /**
      * Creates a new Duplexer.
@@ -32,19 +64,61 @@ public class Duplexer implements AutoCloseable {
      * @throws IOException if something goes wrong initializing io.
      */
     public Duplexer(Socket socket) throws IOException {
+        this(socket, EnumSet.noneOf(Capability.class));
+    }
+
+    /**
+     * Creates a new Duplexer.
+     *
+     * @param socket       the socket to communicate over.
+     * @param capabilities the capabilities agreed in the {@link Handshake}.
+     * @throws IOException if something goes wrong initializing io.
+     */
+    public Duplexer(Socket socket, Set<Capability> capabilities) throws IOException {
         this.socket = socket;
-        this.writer = new PrintWriter(socket.getOutputStream());
-        this.scanner = new Scanner(socket.getInputStream());
+        this.capabilities = capabilities;
+        this.out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_BYTES);
+        this.in = socket.getInputStream();
+        this.buffer = new byte[MAX_LINE_BYTES];
     }
 
     /**
-     * Send a message over the output stream.
+     * Send a message over the output stream, along with any queued before it.
      *
      * @param msg the message to send.
      */
+    @Override
     public void sendMessage(String msg) {
-        writer.println(msg);
-        writer.flush();
+        queueMessage(msg);
+        flush();
+    }
+
+    /**
+     * Add a message to the output buffer. It is written once the buffer fills or on the next {@link #flush()}.
+     *
+     * @param msg the message to send.
+     */
+    @Override
+    public void queueMessage(String msg) {
+        try {
+            out.write((msg + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ioe) {
+            // Like a PrintWriter, a failed write is noticed by the next read.
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException ioe) {
+            // Like a PrintWriter, a failed write is noticed by the next read.
+        }
+    }
+
+    @Override
+    public Set<Capability> getCapabilities() {
+        return capabilities;
     }
 
     /**
@@ -52,15 +126,96 @@ public class Duplexer implements AutoCloseable {
      * called until it receives a message.
      *
      * @return the message received.
+     * @throws NoSuchElementException if the connection is closed, or the line is too long.
      */
+    @Override
     public String receiveMessage() {
-        return scanner.nextLine();
+        while (true) {
+            for (int i = scan; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    int end = i > position && buffer[i - 1] == '\r' ? i - 1 : i;
+                    String line = new String(buffer, position, end - position, StandardCharsets.UTF_8);
+                    position = scan = i + 1;
+                    return line;
+                }
+            }
+            scan = limit;
+            fill();
+        }
+    }
+
+    /**
+     * Read more bytes from the socket, first making room for them.
+     *
+     * @throws NoSuchElementException if the connection is closed, or was closed for a line over
+     *                                {@value #MAX_LINE_BYTES} bytes.
+     */
+    private void fill() {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            scan -= position;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            try {
+                socket.close();
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+            throw new NoSuchElementException("Line longer than " + MAX_LINE_BYTES + " bytes.");
+        }
+
+        int read;
+        try {
+            read = in.read(buffer, limit, buffer.length - limit);
+        } catch (IOException ioe) {
+            throw new NoSuchElementException("Connection closed.");
+        }
+        if (read < 0) {
+            throw new NoSuchElementException("No line found");
+        }
+        limit += read;
+    }
+
+    /**
+     * Check whether the peer has closed the connection, by reading what it has sent with the shortest timeout. The
+     * bytes read are kept for the next line.
+     *
+     * @return true if the connection is closed.
+     */
+    @Override
+    public boolean isClosed() {
+        if (socket.isClosed()) {
+            return true;
+        }
+        if (limit == buffer.length) {
+            return false;
+        }
+
+        try {
+            int timeout = socket.getSoTimeout();
+            socket.setSoTimeout(1);
+            try {
+                int read = in.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    return true;
+                }
+                limit += read;
+            } catch (SocketTimeoutException ste) {
+                // Nothing sent, but still there.
+            } finally {
+                socket.setSoTimeout(timeout);
+            }
+            return false;
+        } catch (IOException ioe) {
+            return true;
+        }
     }
 
     @Override
     public void close() throws Exception {
-        writer.close();
-        scanner.close();
+        flush();
         socket.close();
     }
 }
@@ -0,0 +1,281 @@
+package network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The first line of a connection, where a client asks for {@link Capability}s, and may reclaim its seat in a game a
+ * host was playing before it restarted. The server answers at once with the capabilities it agreed to:
+ * <pre>
+ * client: HELLO capability ... [RESUME #game token]
+ * server: HELLO capability ...
+ * </pre>
+ * Both sides switch to the agreed capabilities after the answer. A client only speaks binary once the answer says
+ * so, so a late request, or a server from before the handshake, fails the connection instead of leaving the two
+ * sides speaking different protocols. Clients from before the handshake send nothing, since they say nothing until
+ * it is their turn. A server waits a short time for the line and speaks plain text to a client that stays silent.
+ *
+ * @author Brock Dyer.
+ */
+public final class Handshake {
+
+    /**
+     * How long a server waits for the HELLO line, in milliseconds.
+     */
+    public static final int TIMEOUT_MILLIS = 250;
+
+    /**
+     * How long a client waits for the server's answer, in milliseconds.
+     */
+    public static final int ANSWER_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * The longest HELLO line read, in bytes.
+     */
+    private static final int MAX_LINE_BYTES = 128;
+
+    /**
+     * The capabilities the client asked for that this server knows.
+     */
+    private final Set<Capability> capabilities;
+
+    /**
+     * The game and seat token the client wants to resume, or 0 and 0.
+     */
+    private final long resumeGame, resumeToken;
+
+    /**
+     * Create the result of a handshake.
+     *
+     * @param capabilities the capabilities asked for.
+     * @param resumeGame   the game to resume, or 0.
+     * @param resumeToken  the seat token, see {@link ReversiProtocol#RESUME}.
+     */
+    private Handshake(Set<Capability> capabilities, long resumeGame, long resumeToken) {
+        this.capabilities = capabilities;
+        this.resumeGame = resumeGame;
+        this.resumeToken = resumeToken;
+    }
+
+    /**
+     * Connect to a server with the transport for the capabilities it agrees to.
+     *
+     * @param socket       the connected socket, before anything else is sent.
+     * @param capabilities the capabilities wanted.
+     * @return a {@link BinaryDuplexer} if the server agreed to {@link Capability#BINARY}, a {@link Duplexer}
+     * otherwise.
+     * @throws IOException if the handshake fails.
+     */
+    public static Transport connect(Socket socket, Set<Capability> capabilities) throws IOException {
+        return connect(socket, capabilities, 0, 0);
+    }
+
+    /**
+     * Connect to a server with the transport for the capabilities it agrees to, and ask for a seat in a game it was
+     * playing before it restarted.
+     *
+     * @param socket       the connected socket, before anything else is sent.
+     * @param capabilities the capabilities wanted.
+     * @param game         the game to resume, or 0 for a new game.
+     * @param token        the seat token the server sent, see {@link ReversiProtocol#RESUME}.
+     * @return a {@link BinaryDuplexer} if the server agreed to {@link Capability#BINARY}, a {@link Duplexer}
+     * otherwise.
+     * @throws IOException if the handshake fails.
+     */
+    public static Transport connect(Socket socket, Set<Capability> capabilities, long game, long token)
+            throws IOException {
+        Set<Capability> agreed = request(socket, capabilities, game, token);
+        if (agreed.contains(Capability.BINARY)) {
+            return new BinaryDuplexer(socket, agreed);
+        }
+        return new Duplexer(socket, agreed);
+    }
+
+    /**
+     * Ask a server for capabilities and wait for its answer.
+     *
+     * @param socket       the connected socket, before anything else is sent.
+     * @param capabilities the capabilities wanted.
+     * @return the capabilities the server agreed to, maybe none.
+     * @throws IOException if the line cannot be sent, or the server does not answer it.
+     */
+    public static Set<Capability> request(Socket socket, Set<Capability> capabilities) throws IOException {
+        return request(socket, capabilities, 0, 0);
+    }
+
+    /**
+     * Ask a server for capabilities and for a seat in a game it was playing before it restarted, and wait for its
+     * answer.
+     *
+     * @param socket       the connected socket, before anything else is sent.
+     * @param capabilities the capabilities wanted.
+     * @param game         the game to resume, or 0 for a new game.
+     * @param token        the seat token the server sent, see {@link ReversiProtocol#RESUME}.
+     * @return the capabilities the server agreed to, maybe none.
+     * @throws IOException if the line cannot be sent, or the server does not answer it.
+     */
+    public static Set<Capability> request(Socket socket, Set<Capability> capabilities, long game, long token)
+            throws IOException {
+        StringBuilder sb = new StringBuilder(ReversiProtocol.HELLO);
+        for (Capability capability : capabilities) {
+            sb.append(' ').append(capability);
+        }
+        if (game != 0) {
+            sb.append(' ').append(ReversiProtocol.RESUME).append(' ').append(game).append(' ')
+                    .append(Long.toHexString(token));
+        }
+        sb.append('\n');
+
+        OutputStream out = socket.getOutputStream();
+        out.write(sb.toString().getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+
+        int timeout = socket.getSoTimeout();
+        String answer;
+        socket.setSoTimeout(ANSWER_TIMEOUT_MILLIS);
+        try {
+            answer = readLine(socket.getInputStream());
+        } catch (SocketTimeoutException ste) {
+            throw new IOException("The server did not answer the handshake.", ste);
+        } finally {
+            socket.setSoTimeout(timeout);
+        }
+
+        String[] tokens = answer == null ? new String[]{""} : answer.split(" ");
+        if (!tokens[0].equals(ReversiProtocol.HELLO)) {
+            throw new IOException("The server did not answer the handshake: " + answer);
+        }
+
+        Set<Capability> agreed = EnumSet.noneOf(Capability.class);
+        for (int i = 1; i < tokens.length; i++) {
+            try {
+                agreed.add(Capability.valueOf(tokens[i]));
+            } catch (IllegalArgumentException iae) {
+                throw new IOException("The server agreed to an unknown capability: " + tokens[i]);
+            }
+        }
+        if (!capabilities.containsAll(agreed)) {
+            throw new IOException("The server agreed to capabilities that were not asked for: " + answer);
+        }
+        return agreed;
+    }
+
+    /**
+     * Wait a short time for a client to ask for capabilities, and answer it with the ones agreed.
+     *
+     * @param socket        the client's socket, before anything else reads from it.
+     * @param timeoutMillis how long to wait.
+     * @return what the client asked for. No capabilities and no game if the client sent nothing.
+     * @throws IOException if the socket fails.
+     */
+    public static Handshake accept(Socket socket, int timeoutMillis) throws IOException {
+        Set<Capability> capabilities = EnumSet.noneOf(Capability.class);
+        String line;
+        socket.setSoTimeout(timeoutMillis);
+        try {
+            line = readLine(socket.getInputStream());
+        } catch (SocketTimeoutException ste) {
+            return new Handshake(capabilities, 0, 0);
+        } finally {
+            socket.setSoTimeout(0);
+        }
+
+        String[] tokens = line == null ? new String[]{""} : line.split(" ");
+        if (!tokens[0].equals(ReversiProtocol.HELLO)) {
+            return new Handshake(capabilities, 0, 0);
+        }
+
+        long game = 0, token = 0;
+        for (int i = 1; i < tokens.length; i++) {
+            if (tokens[i].equals(ReversiProtocol.RESUME) && i + 2 < tokens.length) {
+                try {
+                    game = Long.parseLong(tokens[i + 1]);
+                    token = Long.parseUnsignedLong(tokens[i + 2], 16);
+                } catch (NumberFormatException nfe) {
+                    game = 0;
+                }
+                i += 2;
+                continue;
+            }
+            try {
+                capabilities.add(Capability.valueOf(tokens[i]));
+            } catch (IllegalArgumentException iae) {
+                // A capability from a newer client.
+            }
+        }
+
+        // Per-disc updates do not say which disc was placed, so a client cannot follow the game from them.
+        if (!capabilities.contains(Capability.MOVE_UPDATES)) {
+            capabilities.remove(Capability.LOCAL_MOVES);
+        }
+
+        StringBuilder answer = new StringBuilder(ReversiProtocol.HELLO);
+        for (Capability capability : capabilities) {
+            answer.append(' ').append(capability);
+        }
+        answer.append('\n');
+        OutputStream out = socket.getOutputStream();
+        out.write(answer.toString().getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+
+        return new Handshake(capabilities, game, token);
+    }
+
+    /**
+     * Read one line. A byte at a time, so nothing after the line is taken from the transport that reads next.
+     *
+     * @param in the stream.
+     * @return the line without its line break, or null if the stream ended first.
+     * @throws IOException if the stream fails, or the line is too long.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        byte[] line = new byte[MAX_LINE_BYTES];
+        int length = 0;
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                return length == 0 ? null : new String(line, 0, length, StandardCharsets.US_ASCII).strip();
+            }
+            if (b == '\n') {
+                return new String(line, 0, length, StandardCharsets.US_ASCII).strip();
+            }
+            if (length == line.length) {
+                throw new IOException("Handshake line too long.");
+            }
+            line[length++] = (byte) b;
+        }
+    }
+
+    /**
+     * Get the capabilities the client asked for.
+     *
+     * @return the capabilities this server knows, maybe none.
+     */
+    public Set<Capability> getCapabilities() {
+        return capabilities;
+    }
+
+    /**
+     * Get the game the client wants to resume.
+     *
+     * @return the game, or 0 if the client wants a new one.
+     */
+    public long getResumeGame() {
+        return resumeGame;
+    }
+
+    /**
+     * Get the seat token the client sent with {@link #getResumeGame()}.
+     *
+     * @return the token.
+     */
+    public long getResumeToken() {
+        return resumeToken;
+    }
+}
@@ -0,0 +1,499 @@
+package network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A non-blocking connection served by a {@link NioEventLoop}. <br>
+ * The loop reads into a direct buffer and splits the bytes into lines, or into frames for the
+ * {@link BinaryProtocol}, itself, then queues each complete message for {@link #receiveMessage()}. Sent messages are
+ * queued until {@link #flush()} and written by the loop as the socket takes them, so a slow client never blocks the
+ * sender. At most {@value #INBOX_MESSAGES} messages wait to be received: past that the loop stops reading the
+ * connection until the receiver catches up, so a client that floods short lines cannot fill the heap.
+ *
+ * @author Brock Dyer.
+ */
+public class NioConnection implements Transport {
+
+    /**
+     * The size of the read and write buffers in bytes.
+     */
+    private static final int BUFFER_BYTES = 1024;
+
+    /**
+     * The longest line or frame accepted, in bytes. A client that sends a longer one is disconnected.
+     */
+    private static final int MAX_LINE_BYTES = 8192;
+
+    /**
+     * The most messages that wait to be received before the loop stops reading.
+     */
+    private static final int INBOX_MESSAGES = 64;
+
+    /**
+     * Put in the inbox when the connection closes, to wake up a waiting reader.
+     */
+    private static final Object CLOSED = new Object();
+
+    /**
+     * The loop serving this connection.
+     */
+    private final NioEventLoop loop;
+
+    /**
+     * The channel.
+     */
+    private final SocketChannel channel;
+
+    /**
+     * The capabilities agreed for the connection.
+     */
+    private final Set<Capability> capabilities;
+
+    /**
+     * True if the connection speaks the {@link BinaryProtocol}.
+     */
+    private final boolean binary;
+
+    /**
+     * The buffer the loop reads into.
+     */
+    private final ByteBuffer readBuffer;
+
+    /**
+     * The buffer the loop writes from.
+     */
+    private final ByteBuffer writeBuffer;
+
+    /**
+     * Complete messages waiting to be received: lines as strings, or decoded frames.
+     */
+    private final BlockingQueue<Object> inbox;
+
+    /**
+     * Encoded messages waiting to be written.
+     */
+    private final Queue<byte[]> outbox;
+
+    /**
+     * True while a flush is queued with the loop.
+     */
+    private final AtomicBoolean flushScheduled;
+
+    /**
+     * True while the loop is asked to start reading again.
+     */
+    private final AtomicBoolean resumeScheduled;
+
+    /**
+     * True while the loop has stopped reading because the inbox is full. Set by the loop.
+     */
+    private volatile boolean paused;
+
+    /**
+     * True while some output waits for the channel to be writable. Only used by the loop.
+     */
+    private boolean writeWaiting;
+
+    /**
+     * The bytes of the line or frame being read. Only used by the loop.
+     */
+    private byte[] line;
+
+    /**
+     * The number of bytes in {@link #line}.
+     */
+    private int lineLength;
+
+    /**
+     * A message only partly copied into the write buffer, and how much of it was copied. Only used by the loop.
+     */
+    private byte[] pending;
+    private int pendingOffset;
+
+    /**
+     * The connection's key with the selector, null until the loop registers it.
+     */
+    private SelectionKey key;
+
+    /**
+     * True once {@link #close()} has been handled, so the channel closes when the output is written. Only used by
+     * the loop.
+     */
+    private boolean closing;
+
+    /**
+     * True once the connection is closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Create a connection. Use {@link NioEventLoop#register(SocketChannel, Set)}.
+     *
+     * @param loop         the loop serving the connection.
+     * @param channel      the non-blocking channel.
+     * @param capabilities the capabilities agreed in the {@link Handshake}.
+     */
+    NioConnection(NioEventLoop loop, SocketChannel channel, Set<Capability> capabilities) {
+        this.loop = loop;
+        this.channel = channel;
+        this.capabilities = capabilities;
+        this.binary = capabilities.contains(Capability.BINARY);
+        this.readBuffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        this.writeBuffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        // Room for CLOSED on top of a full inbox.
+        this.inbox = new LinkedBlockingQueue<>(INBOX_MESSAGES + 1);
+        this.outbox = new ConcurrentLinkedQueue<>();
+        this.flushScheduled = new AtomicBoolean();
+        this.resumeScheduled = new AtomicBoolean();
+        this.line = new byte[128];
+    }
+
+    @Override
+    public void sendMessage(String msg) {
+        queueMessage(msg);
+        flush();
+    }
+
+    @Override
+    public void queueMessage(String msg) {
+        if (binary) {
+            queue(ReversiMessage.parse(msg));
+        } else {
+            queueBytes((msg + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public void queue(ReversiMessage msg) {
+        queueBytes(binary ? BinaryProtocol.encode(msg) : (msg.toText() + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Add encoded bytes to the output waiting for the next {@link #flush()}.
+     *
+     * @param bytes the bytes.
+     */
+    private void queueBytes(byte[] bytes) {
+        if (!closed) {
+            outbox.add(bytes);
+        }
+    }
+
+    /**
+     * Ask the loop to write everything queued. The loop copies as many messages as fit into one buffer before each
+     * write, so a turn's messages usually leave in a single write.
+     */
+    @Override
+    public void flush() {
+        if (!closed && !outbox.isEmpty() && flushScheduled.compareAndSet(false, true)) {
+            loop.scheduleFlush(this);
+        }
+    }
+
+    @Override
+    public Set<Capability> getCapabilities() {
+        return capabilities;
+    }
+
+    @Override
+    public String receiveMessage() {
+        Object msg = take();
+        return msg instanceof String ? (String) msg : ((ReversiMessage) msg).toText();
+    }
+
+    @Override
+    public ReversiMessage receive() {
+        Object msg = take();
+        return msg instanceof ReversiMessage ? (ReversiMessage) msg : ReversiMessage.parse((String) msg);
+    }
+
+    /**
+     * Wait for the next message.
+     *
+     * @return a line, or a decoded frame.
+     */
+    private Object take() {
+        Object msg;
+        try {
+            msg = inbox.take();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new NoSuchElementException("Interrupted while waiting for a message.");
+        }
+
+        if (msg == CLOSED) {
+            inbox.add(CLOSED);
+            throw new NoSuchElementException("Connection closed.");
+        }
+        if (paused && resumeScheduled.compareAndSet(false, true)) {
+            loop.scheduleResume(this);
+        }
+        return msg;
+    }
+
+    /**
+     * Check if the connection is closed.
+     *
+     * @return true once either side has closed it.
+     */
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Close the connection once the messages already sent are written.
+     */
+    @Override
+    public void close() {
+        loop.scheduleClose(this);
+    }
+
+    /**
+     * Get the channel.
+     *
+     * @return the channel.
+     */
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Set the key once the loop has registered the channel.
+     *
+     * @param key the selection key.
+     */
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Read what the channel has and queue every complete message. Called by the loop.
+     */
+    void read() {
+        try {
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                closeNow();
+                return;
+            }
+        } catch (IOException ioe) {
+            closeNow();
+            return;
+        }
+
+        readBuffer.flip();
+        parse();
+        readBuffer.compact();
+    }
+
+    /**
+     * Queue the messages in the bytes read while the inbox was full, and start reading again if they all fit.
+     * Called by the loop once the receiver has taken a message.
+     */
+    void resume() {
+        resumeScheduled.set(false);
+        if (closed || !paused) {
+            return;
+        }
+
+        paused = false;
+        readBuffer.flip();
+        parse();
+        readBuffer.compact();
+        updateInterest();
+    }
+
+    /**
+     * Split the bytes in the read buffer into messages and queue them, until the bytes run out or the inbox is full.
+     */
+    private void parse() {
+        while (readBuffer.hasRemaining() && !paused && !closed) {
+            byte b = readBuffer.get();
+            if (binary) {
+                if (!readFrameByte(b)) {
+                    closeNow();
+                    return;
+                }
+            } else if (b == '\n') {
+                int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+                deliver(new String(line, 0, length, StandardCharsets.UTF_8));
+                lineLength = 0;
+            } else {
+                if (lineLength == line.length) {
+                    if (line.length == MAX_LINE_BYTES) {
+                        closeNow();
+                        return;
+                    }
+                    byte[] bigger = new byte[Math.min(line.length * 2, MAX_LINE_BYTES)];
+                    System.arraycopy(line, 0, bigger, 0, lineLength);
+                    line = bigger;
+                }
+                line[lineLength++] = b;
+            }
+        }
+    }
+
+    /**
+     * Queue a complete message, and stop reading if that fills the inbox.
+     *
+     * @param msg a line, or a decoded frame.
+     */
+    private void deliver(Object msg) {
+        inbox.add(msg);
+        if (inbox.size() < INBOX_MESSAGES) {
+            return;
+        }
+
+        // Set before checking again, so a receiver that takes a message in between either sees it or is seen.
+        paused = true;
+        if (inbox.size() < INBOX_MESSAGES) {
+            paused = false;
+            return;
+        }
+        updateInterest();
+    }
+
+    /**
+     * Add a byte to the frame being read, and queue the frame once it is complete.
+     *
+     * @param b the byte.
+     * @return false if the frame is too long or badly formed.
+     */
+    private boolean readFrameByte(byte b) {
+        if (lineLength == line.length) {
+            if (line.length == MAX_LINE_BYTES) {
+                return false;
+            }
+            byte[] bigger = new byte[Math.min(line.length * 2, MAX_LINE_BYTES)];
+            System.arraycopy(line, 0, bigger, 0, lineLength);
+            line = bigger;
+        }
+        line[lineLength++] = b;
+
+        if (lineLength > BinaryProtocol.LENGTH_BYTES) {
+            int length = ((line[0] & 0xFF) << 8) | (line[1] & 0xFF);
+            if (lineLength == BinaryProtocol.LENGTH_BYTES + length) {
+                try {
+                    deliver(BinaryProtocol.decode(line, BinaryProtocol.LENGTH_BYTES, length));
+                } catch (IllegalArgumentException iae) {
+                    return false;
+                }
+                lineLength = 0;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write the queued output. Called by the loop when a flush is scheduled and when the channel is writable.
+     */
+    void drain() {
+        flushScheduled.set(false);
+        if (closed) {
+            return;
+        }
+
+        try {
+            if (write() && closing) {
+                closeNow();
+            }
+        } catch (IOException ioe) {
+            closeNow();
+        }
+    }
+
+    /**
+     * Close the connection once the queued output is written. Called by the loop.
+     */
+    void closeGracefully() {
+        closing = true;
+        drain();
+    }
+
+    /**
+     * Write as much of the queued output as the channel takes. If some is left, wait for the channel to be
+     * writable.
+     *
+     * @return true if everything was written.
+     * @throws IOException if the write fails.
+     */
+    private boolean write() throws IOException {
+        while (true) {
+            while (writeBuffer.hasRemaining()) {
+                if (pending == null) {
+                    pending = outbox.poll();
+                    pendingOffset = 0;
+                    if (pending == null) {
+                        break;
+                    }
+                }
+                int length = Math.min(writeBuffer.remaining(), pending.length - pendingOffset);
+                writeBuffer.put(pending, pendingOffset, length);
+                pendingOffset += length;
+                if (pendingOffset == pending.length) {
+                    pending = null;
+                }
+            }
+
+            writeBuffer.flip();
+            if (!writeBuffer.hasRemaining()) {
+                writeBuffer.clear();
+                writeWaiting = false;
+                updateInterest();
+                return true;
+            }
+
+            channel.write(writeBuffer);
+            if (writeBuffer.hasRemaining()) {
+                writeBuffer.compact();
+                writeWaiting = true;
+                updateInterest();
+                return false;
+            }
+            writeBuffer.clear();
+        }
+    }
+
+    /**
+     * Ask the selector to report what the connection is waiting for: more input unless the inbox is full, and room
+     * for output if some is waiting.
+     */
+    private void updateInterest() {
+        if (key != null && key.isValid()) {
+            key.interestOps((paused ? 0 : SelectionKey.OP_READ) | (writeWaiting ? SelectionKey.OP_WRITE : 0));
+        }
+    }
+
+    /**
+     * Close the channel now, dropping any unwritten output, and wake up any thread waiting for a message. Called by
+     * the loop.
+     */
+    void closeNow() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+        inbox.add(CLOSED);
+    }
+}
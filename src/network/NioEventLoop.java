@@ -0,0 +1,198 @@
+package network;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One thread that does all the reading and writing for many {@link NioConnection}s with a selector. <br>
+ * Other threads never touch a channel. They hand work to the loop through its queues and wake the selector, so a
+ * connection that is idle or slow costs a few buffers but no thread.
+ *
+ * @author Brock Dyer.
+ */
+public class NioEventLoop implements Runnable, AutoCloseable {
+
+    /**
+     * Numbers the loop threads.
+     */
+    private static final AtomicInteger LOOPS = new AtomicInteger();
+
+    /**
+     * Waits for channels to be ready.
+     */
+    private final Selector selector;
+
+    /**
+     * The thread running the loop.
+     */
+    private final Thread thread;
+
+    /**
+     * Channels waiting to be registered with the selector.
+     */
+    private final Queue<NioConnection> registrations;
+
+    /**
+     * Connections with messages waiting to be written.
+     */
+    private final Queue<NioConnection> flushes;
+
+    /**
+     * Connections whose receiver has made room in a full inbox.
+     */
+    private final Queue<NioConnection> resumes;
+
+    /**
+     * Connections waiting to be closed.
+     */
+    private final Queue<NioConnection> closes;
+
+    /**
+     * False once the loop should stop.
+     */
+    private volatile boolean running;
+
+    /**
+     * Create and start a loop.
+     *
+     * @throws IOException if the selector cannot be opened.
+     */
+    public NioEventLoop() throws IOException {
+        this.selector = Selector.open();
+        this.registrations = new ConcurrentLinkedQueue<>();
+        this.flushes = new ConcurrentLinkedQueue<>();
+        this.resumes = new ConcurrentLinkedQueue<>();
+        this.closes = new ConcurrentLinkedQueue<>();
+        this.running = true;
+
+        this.thread = new Thread(this, "reversi-nio-" + LOOPS.incrementAndGet());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Hand a connected channel to this loop.
+     *
+     * @param channel      the channel. It is switched to non-blocking mode.
+     * @param capabilities the capabilities agreed in the {@link Handshake}, which say whether the channel speaks
+     *                     the {@link BinaryProtocol} or text.
+     * @return the connection, ready to send and receive.
+     * @throws IOException if the channel cannot be made non-blocking.
+     */
+    public NioConnection register(SocketChannel channel, Set<Capability> capabilities) throws IOException {
+        channel.configureBlocking(false);
+        NioConnection connection = new NioConnection(this, channel, capabilities);
+        registrations.add(connection);
+        selector.wakeup();
+        return connection;
+    }
+
+    /**
+     * Ask the loop to write a connection's queued messages.
+     *
+     * @param connection the connection.
+     */
+    void scheduleFlush(NioConnection connection) {
+        flushes.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Ask the loop to start reading a connection again after its inbox was full.
+     *
+     * @param connection the connection.
+     */
+    void scheduleResume(NioConnection connection) {
+        resumes.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Ask the loop to close a connection.
+     *
+     * @param connection the connection.
+     */
+    void scheduleClose(NioConnection connection) {
+        closes.add(connection);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+                break;
+            }
+
+            NioConnection connection;
+            while ((connection = registrations.poll()) != null) {
+                try {
+                    connection.setKey(connection.getChannel().register(selector, SelectionKey.OP_READ, connection));
+                } catch (ClosedChannelException cce) {
+                    connection.closeNow();
+                }
+            }
+
+            while ((connection = flushes.poll()) != null) {
+                connection.drain();
+            }
+
+            while ((connection = resumes.poll()) != null) {
+                connection.resume();
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+
+                connection = (NioConnection) key.attachment();
+                if (key.isValid() && key.isReadable()) {
+                    connection.read();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    connection.drain();
+                }
+            }
+
+            while ((connection = closes.poll()) != null) {
+                connection.closeGracefully();
+            }
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            ((NioConnection) key.attachment()).closeNow();
+        }
+        try {
+            selector.close();
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+
+    /**
+     * Stop the loop and close every connection on it. If the calling thread is interrupted while waiting, the loop
+     * still stops on its own and the interrupt is kept.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
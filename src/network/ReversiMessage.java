@@ -0,0 +1,329 @@
+package network;
+
+import game.BitBoard;
+import game.PieceColor;
+
+/**
+ * One message of the {@link ReversiProtocol}, already parsed. <br>
+ * The text and binary forms of the protocol both decode to this, so the server and client handle messages the same
+ * way whichever form the connection uses. Messages with their own binary form keep their values in fields. Every
+ * other message keeps its text tokens.
+ *
+ * @author Brock Dyer.
+ */
+public class ReversiMessage {
+
+    private final String type;
+    private final int row, col;
+    private final PieceColor color;
+    private final long first, second;
+    private final String[] tokens;
+
+    /**
+     * Create a message.
+     *
+     * @param type   the protocol name of the message.
+     * @param row    the row, for messages about one square.
+     * @param col    the column, for messages about one square.
+     * @param color  the color, for messages that have one.
+     * @param first  the first number or mask.
+     * @param second the second number or mask.
+     * @param tokens the text tokens, starting with the type.
+     */
+    private ReversiMessage(String type, int row, int col, PieceColor color, long first, long second,
+                           String[] tokens) {
+        this.type = type;
+        this.row = row;
+        this.col = col;
+        this.color = color;
+        this.first = first;
+        this.second = second;
+        this.tokens = tokens;
+    }
+
+    /**
+     * Tell a client it is their turn.
+     *
+     * @param moves the moves they can make, as a bitboard.
+     * @return the message.
+     */
+    public static ReversiMessage makeMove(long moves) {
+        return new ReversiMessage(ReversiProtocol.MAKE_MOVE, 0, 0, null, moves, 0, null);
+    }
+
+    /**
+     * Ask the server to make a move.
+     *
+     * @param row the row to move in.
+     * @param col the column to move in.
+     * @return the message.
+     */
+    public static ReversiMessage move(int row, int col) {
+        return new ReversiMessage(ReversiProtocol.MOVE, row, col, null, 0, 0, null);
+    }
+
+    /**
+     * Tell a client the scores after a move.
+     *
+     * @param black black's score.
+     * @param white white's score.
+     * @return the message.
+     */
+    public static ReversiMessage moveMade(int black, int white) {
+        return new ReversiMessage(ReversiProtocol.MOVE_MADE, 0, 0, null, black, white, null);
+    }
+
+    /**
+     * Tell a client one square changed.
+     *
+     * @param row   the row of the square.
+     * @param col   the column of the square.
+     * @param color the color now on the square.
+     * @return the message.
+     */
+    public static ReversiMessage pieceUpdate(int row, int col, PieceColor color) {
+        return new ReversiMessage(ReversiProtocol.PIECE_UPDATE, row, col, color, 0, 0, null);
+    }
+
+    /**
+     * Tell a client a move was made.
+     *
+     * @param row     the row of the move.
+     * @param col     the column of the move.
+     * @param color   the color of the mover.
+     * @param flipped the discs the move flipped.
+     * @return the message.
+     */
+    public static ReversiMessage piecesUpdate(int row, int col, PieceColor color, long flipped) {
+        return new ReversiMessage(ReversiProtocol.PIECES_UPDATE, row, col, color, flipped, 0, null);
+    }
+
+    /**
+     * Tell a client the whole position.
+     *
+     * @param black  the black discs.
+     * @param white  the white discs.
+     * @param toMove the player to move.
+     * @return the message.
+     */
+    public static ReversiMessage board(long black, long white, PieceColor toMove) {
+        return new ReversiMessage(ReversiProtocol.BOARD, 0, 0, toMove, black, white, null);
+    }
+
+    /**
+     * Parse a text message.
+     *
+     * @param line the message, without the line break.
+     * @return the message.
+     * @throws IllegalArgumentException if a message of a known type is badly formed.
+     */
+    public static ReversiMessage parse(String line) {
+        String[] tokens = line.split(" ");
+
+        switch (tokens[0]) {
+            case ReversiProtocol.MAKE_MOVE:
+                if (tokens.length % 2 == 0) {
+                    throw new IllegalArgumentException("Missing a row col pair: " + line);
+                }
+                long moves = 0;
+                for (int i = 1; i < tokens.length; i += 2) {
+                    moves |= 1L << square(tokens[i], tokens[i + 1]);
+                }
+                return makeMove(moves);
+
+            case ReversiProtocol.MOVE:
+                expect(tokens, 3);
+                return move(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]));
+
+            case ReversiProtocol.MOVE_MADE:
+                expect(tokens, 3);
+                return moveMade(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]));
+
+            case ReversiProtocol.PIECE_UPDATE:
+                expect(tokens, 4);
+                return pieceUpdate(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]),
+                        PieceColor.valueOf(tokens[3]));
+
+            case ReversiProtocol.PIECES_UPDATE:
+                expect(tokens, 5);
+                return piecesUpdate(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]),
+                        PieceColor.valueOf(tokens[3]), Long.parseUnsignedLong(tokens[4], 16));
+
+            case ReversiProtocol.BOARD:
+                expect(tokens, 4);
+                return board(Long.parseUnsignedLong(tokens[1], 16), Long.parseUnsignedLong(tokens[2], 16),
+                        PieceColor.valueOf(tokens[3]));
+
+            default:
+                return new ReversiMessage(tokens[0], 0, 0, null, 0, 0, tokens);
+        }
+    }
+
+    /**
+     * Check a message has the right number of tokens.
+     *
+     * @param tokens the tokens.
+     * @param count  the number expected.
+     */
+    private static void expect(String[] tokens, int count) {
+        if (tokens.length != count) {
+            throw new IllegalArgumentException("Expected " + count + " tokens: " + String.join(" ", tokens));
+        }
+    }
+
+    /**
+     * Parse a row and column into a square.
+     *
+     * @param row the row.
+     * @param col the column.
+     * @return the square index.
+     */
+    private static int square(String row, String col) {
+        int r = Integer.parseInt(row), c = Integer.parseInt(col);
+        if (r < 0 || r > 7 || c < 0 || c > 7) {
+            throw new IllegalArgumentException("Square out of range: " + row + " " + col);
+        }
+        return BitBoard.square(r, c);
+    }
+
+    /**
+     * Format the message as text.
+     *
+     * @return the text message, without the line break.
+     */
+    public String toText() {
+        switch (type) {
+            case ReversiProtocol.MAKE_MOVE:
+                StringBuilder sb = new StringBuilder(type);
+                long moves = first;
+                while (moves != 0) {
+                    int square = Long.numberOfTrailingZeros(moves);
+                    moves &= moves - 1;
+                    sb.append(" ").append(BitBoard.row(square)).append(" ").append(BitBoard.col(square));
+                }
+                return sb.toString();
+
+            case ReversiProtocol.MOVE:
+                return type + " " + row + " " + col;
+
+            case ReversiProtocol.MOVE_MADE:
+                return type + " " + first + " " + second;
+
+            case ReversiProtocol.PIECE_UPDATE:
+                return type + " " + row + " " + col + " " + color;
+
+            case ReversiProtocol.PIECES_UPDATE:
+                return type + " " + row + " " + col + " " + color + " " + Long.toHexString(first);
+
+            case ReversiProtocol.BOARD:
+                return type + " " + Long.toHexString(first) + " " + Long.toHexString(second) + " " + color;
+
+            default:
+                return String.join(" ", tokens);
+        }
+    }
+
+    /**
+     * Get the protocol name of the message.
+     *
+     * @return one of the {@link ReversiProtocol} names.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Get the row of a MOVE, PIECE_UPDATE or PIECES_UPDATE.
+     *
+     * @return the row.
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Get the column of a MOVE, PIECE_UPDATE or PIECES_UPDATE.
+     *
+     * @return the column.
+     */
+    public int getCol() {
+        return col;
+    }
+
+    /**
+     * Get the color of a PIECE_UPDATE or PIECES_UPDATE, or the player to move of a BOARD.
+     *
+     * @return the color.
+     */
+    public PieceColor getColor() {
+        return color;
+    }
+
+    /**
+     * Get the moves of a MAKE_MOVE.
+     *
+     * @return the moves as a bitboard.
+     */
+    public long getMoves() {
+        return first;
+    }
+
+    /**
+     * Get the flipped discs of a PIECES_UPDATE.
+     *
+     * @return the flipped discs as a bitboard.
+     */
+    public long getFlipped() {
+        return first;
+    }
+
+    /**
+     * Get black's score in a MOVE_MADE.
+     *
+     * @return the score.
+     */
+    public int getBlackScore() {
+        return (int) first;
+    }
+
+    /**
+     * Get white's score in a MOVE_MADE.
+     *
+     * @return the score.
+     */
+    public int getWhiteScore() {
+        return (int) second;
+    }
+
+    /**
+     * Get the black discs of a BOARD.
+     *
+     * @return the black discs as a bitboard.
+     */
+    public long getBlack() {
+        return first;
+    }
+
+    /**
+     * Get the white discs of a BOARD.
+     *
+     * @return the white discs as a bitboard.
+     */
+    public long getWhite() {
+        return second;
+    }
+
+    /**
+     * Get the text tokens of a message with no binary form, starting with the type.
+     *
+     * @return the tokens.
+     */
+    public String[] getTokens() {
+        return tokens;
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+}
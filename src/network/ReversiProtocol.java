@@ -17,6 +17,7 @@ public interface ReversiProtocol {
      * Server to client.<br>
      * Tell the client it is their turn.<br>
      * Also send a set of available moves. This is done by sending each row and column separated by a space.
+     * Clients with the {@link Capability#LOCAL_MOVES} capability work out their moves themselves and get no list.<br>
      * Usage: MAKE_MOVE #row1 #col1 ... #rown #coln
      */
     String MAKE_MOVE = "MAKE_MOVE";
@@ -38,6 +39,39 @@ public interface ReversiProtocol {
      * Usage: PIECE_UPDATE #row #col PieceColor
      */
     String PIECE_UPDATE = "PIECE_UPDATE";
+    /**
+     * Server to client.<br>
+     * Tells a client that a move was made, with every disc it changed in one message. The mask is in hex and has
+     * the bit row * 8 + col set for each disc the move flipped. Only sent to clients with the
+     * {@link Capability#MOVE_UPDATES} capability.<br>
+     * Usage: PIECES_UPDATE #row #col PieceColor mask
+     */
+    String PIECES_UPDATE = "PIECES_UPDATE";
+    /**
+     * Server to client.<br>
+     * Sends the whole position. The masks are in hex and have the bit row * 8 + col set for each disc of that
+     * color.<br>
+     * Usage: BOARD black white PieceColor
+     */
+    String BOARD = "BOARD";
+    /**
+     * Two-way.<br>
+     * Client to server: the first message, asking for {@link Capability}s such as the binary form of the protocol.
+     * Clients that do not send it are spoken to in plain text.<br>
+     * Server to client: the answer, with the capabilities agreed. Both sides switch to them after it, see
+     * {@link Handshake}.<br>
+     * Usage: HELLO BINARY LOCAL_MOVES
+     */
+    String HELLO = "HELLO";
+    /**
+     * Two-way.<br>
+     * Server to client: how to reclaim this seat if the host restarts during the game. Sent at the start of a game
+     * by a host that journals its games. The token is in hex.<br>
+     * Client to server: the end of the {@link #HELLO} line of a client reclaiming its seat after a restart. The
+     * host closes the connection if there is no such seat.<br>
+     * Usage: RESUME #game token
+     */
+    String RESUME = "RESUME";
     /**
      * Client to server.<br>
      * Pass the current turn to the other player.<br>
@@ -65,7 +99,8 @@ public interface ReversiProtocol {
     /**
      * Two-way.<br>
      * Both players must agree.<br>
-     * Save the current game to the file system the server is running on.<br>
+     * Save the current game to the file system the server is running on, in its working directory as a
+     * {@link game.MoveLog}.<br>
      * Usage to server: SAVE (String) true/false <br>
      * Usage to client: SAVE
      */
@@ -73,7 +108,7 @@ public interface ReversiProtocol {
     /**
      * Two-way.<br>
      * Both players must agree.<br>
-     * Load a game from the file system the server is running on.
+     * Load a game from the file system the server is running on. The server then sends both players a BOARD.<br>
      * Usage to server: LOAD filename (String) true/false <br>
      * Usage to client: LOAD
      */
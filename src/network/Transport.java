@@ -0,0 +1,94 @@
+package network;
+
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A two-way connection that carries the {@link ReversiProtocol}. <br>
+ * Text transports carry one message per line. Transports for the {@link BinaryProtocol} override
+ * {@link #queue(ReversiMessage)} and {@link #receive()} to skip the text form. <br>
+ * Messages can be queued and then written together by {@link #flush()}, so everything a turn produces goes out in
+ * one write.
+ *
+ * @author Brock Dyer.
+ */
+public interface Transport extends AutoCloseable {
+
+    /**
+     * Send a message, along with any queued before it. This may return before the message is written.
+     *
+     * @param msg the message to send, without a line break.
+     */
+    void sendMessage(String msg);
+
+    /**
+     * Queue a message to be sent by the next {@link #flush()}. Transports that do not buffer send it straight away.
+     *
+     * @param msg the message to send, without a line break.
+     */
+    default void queueMessage(String msg) {
+        sendMessage(msg);
+    }
+
+    /**
+     * Queue a parsed message to be sent by the next {@link #flush()}.
+     *
+     * @param msg the message to send.
+     */
+    default void queue(ReversiMessage msg) {
+        queueMessage(msg.toText());
+    }
+
+    /**
+     * Send every queued message.
+     */
+    default void flush() {
+    }
+
+    /**
+     * Get the capabilities agreed for this connection.
+     *
+     * @return the capabilities.
+     */
+    Set<Capability> getCapabilities();
+
+    /**
+     * Check without blocking whether the connection is closed. A peer that closed its end is noticed once its close
+     * has arrived. Anything it sent before is kept for the next receive.
+     *
+     * @return true once the connection is known to be closed.
+     */
+    default boolean isClosed() {
+        return false;
+    }
+
+    /**
+     * Receive a message. This call will block the execution of the thread from which it was called until it
+     * receives a message.
+     *
+     * @return the message received, without the line break.
+     * @throws NoSuchElementException if the connection is closed.
+     */
+    String receiveMessage();
+
+    /**
+     * Send a parsed message, along with any queued before it.
+     *
+     * @param msg the message to send.
+     */
+    default void send(ReversiMessage msg) {
+        queue(msg);
+        flush();
+    }
+
+    /**
+     * Receive a message and parse it. This call will block until it receives a message.
+     *
+     * @return the message received.
+     * @throws NoSuchElementException   if the connection is closed.
+     * @throws IllegalArgumentException if the message is badly formed.
+     */
+    default ReversiMessage receive() {
+        return ReversiMessage.parse(receiveMessage());
+    }
+}
@@ -0,0 +1,291 @@
+package network.bot;
+
+import network.Capability;
+import network.Handshake;
+import network.Transport;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives a server with many {@link ReversiBot}s at once, for capacity planning. <br>
+ * A number of clients connect concurrently. Each plays a game, then reconnects for another, until the requested
+ * number of games have been played. The server pairs the bots however it likes. Bots whose connection drops try to
+ * get back into their game, so a host that journals its games can be restarted during a run. At the end the games
+ * per second, the percentiles of the move round trip, the reconnects and the errors are printed.
+ *
+ * @author Brock Dyer.
+ */
+public class LoadGenerator {
+
+    /**
+     * How long a bot waits for the server before giving up, in milliseconds.
+     */
+    public static final int READ_TIMEOUT_MILLIS = 30000;
+
+    /**
+     * The percentiles reported.
+     */
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    /**
+     * The server to connect to.
+     */
+    private final String host;
+    private final int port;
+
+    /**
+     * The number of bots connected at once.
+     */
+    private final int clients;
+
+    /**
+     * The number of connections to make in all, two per game.
+     */
+    private final int connections;
+
+    /**
+     * How the bots pick moves.
+     */
+    private final ReversiBot.Strategy strategy;
+
+    /**
+     * The capabilities the bots ask for.
+     */
+    private final Set<Capability> capabilities;
+
+    /**
+     * The number of connections started so far.
+     */
+    private final AtomicInteger claimed;
+
+    /**
+     * The move latencies of every finished bot. Guarded by this.
+     */
+    private final List<long[]> latencies;
+
+    /**
+     * How many times each result and each error happened. Guarded by this.
+     */
+    private final Map<String, Integer> results, errors;
+
+    /**
+     * The number of times a bot got back into its game. Guarded by this.
+     */
+    private int reconnects;
+
+    /**
+     * Create a load generator.
+     *
+     * @param host         the server's host name.
+     * @param port         the server's port.
+     * @param clients      the number of bots connected at once.
+     * @param games        the number of games to play.
+     * @param strategy     how the bots pick moves.
+     * @param capabilities the capabilities the bots ask for.
+     */
+    public LoadGenerator(String host, int port, int clients, int games, ReversiBot.Strategy strategy,
+                         Set<Capability> capabilities) {
+        this.host = host;
+        this.port = port;
+        this.clients = clients;
+        this.connections = 2 * games;
+        this.strategy = strategy;
+        this.capabilities = capabilities;
+        this.claimed = new AtomicInteger();
+        this.latencies = new ArrayList<>();
+        this.results = new TreeMap<>();
+        this.errors = new TreeMap<>();
+    }
+
+    /**
+     * Play every game and print the report.
+     *
+     * @throws InterruptedException if interrupted while waiting for the bots.
+     */
+    public void run() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(clients, r -> {
+            Thread t = new Thread(r, "reversi-bot");
+            t.setDaemon(true);
+            return t;
+        });
+
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            pool.execute(this::playGames);
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        long nanos = System.nanoTime() - start;
+
+        report(nanos);
+    }
+
+    /**
+     * Keep connecting bots until enough connections have been made.
+     */
+    private void playGames() {
+        Random random = new Random();
+        while (claimed.getAndIncrement() < connections) {
+            Transport coms;
+            try {
+                coms = connect(0, 0);
+            } catch (IOException ioe) {
+                record(null, "connect failed: " + ioe.getMessage(), new long[0], 0);
+                continue;
+            }
+
+            ReversiBot bot = new ReversiBot(coms, strategy, random, this::connect);
+            bot.run();
+            record(bot.getResult(), bot.getError(), bot.getLatencies(), bot.getReconnects());
+        }
+    }
+
+    /**
+     * Connect a bot to the server.
+     *
+     * @param game  the game to get back into, or 0 for a new one.
+     * @param token the bot's seat token in that game.
+     * @return the connection.
+     * @throws IOException if the server cannot be reached or the handshake fails.
+     */
+    private Transport connect(long game, long token) throws IOException {
+        Socket socket = new Socket(host, port);
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            return Handshake.connect(socket, capabilities, game, token);
+        } catch (IOException ioe) {
+            socket.close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * Add one bot's game to the totals.
+     *
+     * @param result     the result of the game, or null.
+     * @param error      what went wrong, or null.
+     * @param latencies  the bot's move latencies.
+     * @param reconnects the number of times the bot got back into its game.
+     */
+    private synchronized void record(String result, String error, long[] latencies, int reconnects) {
+        this.reconnects += reconnects;
+        if (result != null) {
+            results.merge(result, 1, Integer::sum);
+        }
+        if (error != null) {
+            errors.merge(error, 1, Integer::sum);
+        }
+        this.latencies.add(latencies);
+    }
+
+    /**
+     * Print the totals.
+     *
+     * @param nanos how long the run took.
+     */
+    private synchronized void report(long nanos) {
+        int finished = 0;
+        for (int count : results.values()) {
+            finished += count;
+        }
+        double seconds = nanos / 1e9;
+        System.out.printf("Played %d games in %.2f s: %.1f games/s%n", finished / 2, seconds,
+                finished / 2 / seconds);
+        System.out.println("Results: " + results);
+
+        int moves = 0;
+        for (long[] bot : latencies) {
+            moves += bot.length;
+        }
+        long[] all = new long[moves];
+        int n = 0;
+        for (long[] bot : latencies) {
+            System.arraycopy(bot, 0, all, n, bot.length);
+            n += bot.length;
+        }
+        Arrays.sort(all);
+
+        System.out.printf("Move round trip over %d moves (%.1f moves/s):", moves, moves / seconds);
+        if (moves > 0) {
+            for (double p : PERCENTILES) {
+                System.out.printf(" p%s %.3f ms", p == (int) p ? String.valueOf((int) p) : String.valueOf(p),
+                        percentile(all, p) / 1e6);
+            }
+            System.out.printf(" max %.3f ms", all[moves - 1] / 1e6);
+        }
+        System.out.println();
+        if (reconnects > 0) {
+            System.out.println("Reconnects: " + reconnects);
+        }
+
+        int errorCount = 0;
+        for (int count : errors.values()) {
+            errorCount += count;
+        }
+        System.out.println("Errors: " + errorCount);
+        for (Map.Entry<String, Integer> entry : errors.entrySet()) {
+            System.out.println("  " + entry.getValue() + " x " + entry.getKey());
+        }
+    }
+
+    /**
+     * Find a percentile of sorted values by the nearest rank.
+     *
+     * @param sorted the values, in order.
+     * @param p      the percentile, from 0 to 100.
+     * @return the value.
+     */
+    static long percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    /**
+     * Run a load test.
+     *
+     * @param args cmd-line args. Expects the server's host name and port, the number of bots connected at once and
+     *             the number of games to play, then optionally the strategy (random, the default, or greedy) and
+     *             capabilities to ask for: binary and local_moves.
+     */
+    public static void main(String[] args) {
+        if (args.length < 4 || args.length > 7) {
+            System.out.println("Usage: java LoadGenerator hostname #port #clients #games [random|greedy] [binary] "
+                    + "[local_moves]");
+            System.exit(-1);
+        }
+
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        int clients = Integer.parseInt(args[2]);
+        int games = Integer.parseInt(args[3]);
+        ReversiBot.Strategy strategy = args.length > 4 ? ReversiBot.Strategy.valueOf(args[4].toUpperCase()) :
+                ReversiBot.Strategy.RANDOM;
+        Set<Capability> capabilities = EnumSet.of(Capability.MOVE_UPDATES);
+        for (int i = 5; i < args.length; i++) {
+            capabilities.add(Capability.valueOf(args[i].toUpperCase()));
+        }
+
+        System.out.println("Playing " + games + " games with " + clients + " " + strategy.toString().toLowerCase()
+                + " bots at once against " + host + ":" + port + " with capabilities " + capabilities);
+
+        try {
+            new LoadGenerator(host, port, clients, games, strategy, capabilities).run();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
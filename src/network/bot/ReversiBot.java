@@ -0,0 +1,437 @@
+package network.bot;
+
+import engine.Evaluator;
+import game.BitBoard;
+import game.PieceColor;
+import network.Capability;
+import network.ReversiMessage;
+import network.ReversiProtocol;
+import network.Transport;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * A client that plays one game against a server with no GUI. <br>
+ * The bot keeps its own copy of the discs from the updates the server sends, so it can find its own moves if it
+ * has the {@link Capability#LOCAL_MOVES} capability. It picks its moves with a
+ * {@link Strategy}, and times each move from sending it to the server's answer. If the server sent a seat token and
+ * the connection drops, the bot keeps trying to reconnect to its game for {@value #RECONNECT_MILLIS} ms.
+ *
+ * @author Brock Dyer.
+ */
+public class ReversiBot implements Runnable {
+
+    /**
+     * How a bot picks its moves.
+     */
+    public enum Strategy {
+
+        /**
+         * Any legal move.
+         */
+        RANDOM,
+
+        /**
+         * The move with the best static evaluation one ply ahead.
+         */
+        GREEDY
+    }
+
+    /**
+     * Makes a new connection to a game a host was playing before it restarted.
+     */
+    public interface Reconnector {
+
+        /**
+         * Connect to a server again and ask for a seat in a game.
+         *
+         * @param game  the game.
+         * @param token the seat token the server sent.
+         * @return the connection.
+         * @throws IOException if the server cannot be reached.
+         */
+        Transport reconnect(long game, long token) throws IOException;
+    }
+
+    /**
+     * How long a bot keeps trying to get back into its game, in milliseconds.
+     */
+    public static final int RECONNECT_MILLIS = 30000;
+
+    /**
+     * How long a bot waits between tries to reconnect, in milliseconds.
+     */
+    private static final int RETRY_MILLIS = 250;
+
+    /**
+     * The connection to the server.
+     */
+    private Transport coms;
+
+    /**
+     * Reconnects the bot, or null if it never does.
+     */
+    private final Reconnector reconnector;
+
+    /**
+     * The game and seat token the server sent, or 0 and 0.
+     */
+    private long resumeGame, resumeToken;
+
+    /**
+     * When to give up reconnecting, by {@link System#nanoTime()}, or 0 while connected.
+     */
+    private long reconnectDeadline;
+
+    /**
+     * The number of times the bot got back into its game.
+     */
+    private int reconnects;
+
+    /**
+     * How moves are picked.
+     */
+    private final Strategy strategy;
+
+    /**
+     * Picks random moves, and breaks ties for greedy ones.
+     */
+    private final Random random;
+
+    /**
+     * True if the bot finds its own moves, see {@link Capability#LOCAL_MOVES}.
+     */
+    private final boolean localMoves;
+
+    /**
+     * The color of this bot, once the server has said.
+     */
+    private PieceColor myColor;
+
+    /**
+     * The discs of each color, as the server has reported them.
+     */
+    private long black, white;
+
+    /**
+     * When the last move was sent, or 0 if no answer is awaited.
+     */
+    private long sentAt;
+
+    /**
+     * The time in nanoseconds from sending each move to the server's answer.
+     */
+    private long[] latencies;
+    private int latencyCount;
+
+    /**
+     * The GAME_WON, GAME_LOST or GAME_TIED message that ended the game, or null.
+     */
+    private String result;
+
+    /**
+     * What went wrong, or null if nothing did.
+     */
+    private String error;
+
+    /**
+     * Create a bot.
+     *
+     * @param coms     the connection to the server. The bot closes it when the game ends.
+     * @param strategy how to pick moves.
+     * @param random   the random numbers to use.
+     */
+    public ReversiBot(Transport coms, Strategy strategy, Random random) {
+        this(coms, strategy, random, null);
+    }
+
+    /**
+     * Create a bot that reconnects to its game if the connection drops.
+     *
+     * @param coms        the connection to the server. The bot closes it when the game ends.
+     * @param strategy    how to pick moves.
+     * @param random      the random numbers to use.
+     * @param reconnector makes new connections with the same capabilities, or null to never reconnect.
+     */
+    public ReversiBot(Transport coms, Strategy strategy, Random random, Reconnector reconnector) {
+        this.coms = coms;
+        this.reconnector = reconnector;
+        this.strategy = strategy;
+        this.random = random;
+        this.localMoves = coms.getCapabilities().contains(Capability.LOCAL_MOVES);
+        this.latencies = new long[64];
+    }
+
+    /**
+     * Play until the game ends or the connection fails.
+     */
+    @Override
+    public void run() {
+        while (result == null && error == null) {
+            try {
+                handle(coms.receive());
+                if (reconnectDeadline != 0) {
+                    // Only a server that knows the seat answers.
+                    reconnects++;
+                    reconnectDeadline = 0;
+                }
+            } catch (NoSuchElementException nsee) {
+                if (!reconnect()) {
+                    error = "disconnected";
+                }
+            } catch (IllegalArgumentException iae) {
+                error = "bad message: " + iae.getMessage();
+            }
+        }
+
+        try {
+            coms.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Try to get back into the game after the connection dropped.
+     *
+     * @return true if the bot has a new connection.
+     */
+    private boolean reconnect() {
+        if (reconnector == null || resumeGame == 0) {
+            return false;
+        }
+        try {
+            coms.close();
+        } catch (Exception e) {
+            // The connection is already gone.
+        }
+
+        // A move sent before the drop is never answered, and the server says whose turn it is again.
+        sentAt = 0;
+
+        // A host that does not know the seat closes the connection at once, so only the first try is immediate.
+        boolean wait = reconnectDeadline != 0;
+        if (reconnectDeadline == 0) {
+            reconnectDeadline = System.nanoTime() + RECONNECT_MILLIS * 1_000_000L;
+        }
+
+        while (true) {
+            if (wait) {
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            if (System.nanoTime() - reconnectDeadline >= 0) {
+                return false;
+            }
+
+            try {
+                coms = reconnector.reconnect(resumeGame, resumeToken);
+                return true;
+            } catch (IOException ioe) {
+                wait = true;
+            }
+        }
+    }
+
+    /**
+     * Act on one message from the server.
+     *
+     * @param msg the message.
+     */
+    private void handle(ReversiMessage msg) {
+        switch (msg.getType()) {
+            case ReversiProtocol.WELCOME:
+                String[] tokens = msg.getTokens();
+                myColor = tokens.length > 1 && tokens[1].equals("true") ? PieceColor.BLACK : PieceColor.WHITE;
+                break;
+
+            case ReversiProtocol.MAKE_MOVE:
+                answered();
+                play(localMoves ? localMoves() : msg.getMoves());
+                break;
+
+            case ReversiProtocol.MOVE_MADE:
+                answered();
+                break;
+
+            case ReversiProtocol.PIECE_UPDATE:
+                place(msg.getColor(), 1L << BitBoard.square(msg.getRow(), msg.getCol()));
+                break;
+
+            case ReversiProtocol.PIECES_UPDATE:
+                place(msg.getColor(), msg.getFlipped() | (1L << BitBoard.square(msg.getRow(), msg.getCol())));
+                break;
+
+            case ReversiProtocol.BOARD:
+                black = msg.getBlack();
+                white = msg.getWhite();
+                break;
+
+            case ReversiProtocol.RESUME:
+                String[] seat = msg.getTokens();
+                if (seat.length == 3) {
+                    try {
+                        resumeGame = Long.parseLong(seat[1]);
+                        resumeToken = Long.parseUnsignedLong(seat[2], 16);
+                    } catch (NumberFormatException nfe) {
+                        error = "bad message: " + msg;
+                    }
+                }
+                break;
+
+            case ReversiProtocol.GAME_WON:
+            case ReversiProtocol.GAME_LOST:
+            case ReversiProtocol.GAME_TIED:
+                result = msg.getType();
+                break;
+
+            default:
+                error = "unexpected message: " + msg;
+                break;
+        }
+    }
+
+    /**
+     * Record the latency of the last move, if an answer was awaited.
+     */
+    private void answered() {
+        if (sentAt == 0) {
+            return;
+        }
+
+        if (latencyCount == latencies.length) {
+            latencies = Arrays.copyOf(latencies, latencyCount * 2);
+        }
+        latencies[latencyCount++] = System.nanoTime() - sentAt;
+        sentAt = 0;
+    }
+
+    /**
+     * Put discs of one color on squares.
+     *
+     * @param color   the color.
+     * @param squares the squares.
+     */
+    private void place(PieceColor color, long squares) {
+        if (color == PieceColor.BLACK) {
+            black |= squares;
+            white &= ~squares;
+        } else {
+            white |= squares;
+            black &= ~squares;
+        }
+    }
+
+    /**
+     * Find this bot's legal moves from its copy of the discs.
+     *
+     * @return the moves as a bitboard.
+     */
+    private long localMoves() {
+        return myColor == PieceColor.BLACK ? BitBoard.moves(black, white) : BitBoard.moves(white, black);
+    }
+
+    /**
+     * Pick a move and send it, or pass if there is none.
+     *
+     * @param moves the legal moves.
+     */
+    private void play(long moves) {
+        sentAt = System.nanoTime();
+        if (moves == 0) {
+            coms.sendMessage(ReversiProtocol.PASS);
+            // The server does not answer a pass, so it is not timed.
+            sentAt = 0;
+            return;
+        }
+
+        int square = strategy == Strategy.GREEDY ? greedyMove(moves) : randomMove(moves);
+        coms.send(ReversiMessage.move(BitBoard.row(square), BitBoard.col(square)));
+    }
+
+    /**
+     * Pick a legal move at random.
+     *
+     * @param moves the legal moves.
+     * @return the square.
+     */
+    private int randomMove(long moves) {
+        for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+            moves &= moves - 1;
+        }
+        return Long.numberOfTrailingZeros(moves);
+    }
+
+    /**
+     * Pick the move that leaves the opponent the worst position, by the static evaluation.
+     *
+     * @param moves the legal moves.
+     * @return the square.
+     */
+    private int greedyMove(long moves) {
+        long own = myColor == PieceColor.BLACK ? black : white;
+        long opp = myColor == PieceColor.BLACK ? white : black;
+
+        int best = -1, bestScore = Integer.MIN_VALUE, ties = 0;
+        while (moves != 0) {
+            int square = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+
+            long flips = BitBoard.flips(own, opp, square);
+            long newOwn = own | flips | (1L << square);
+            int score = -Evaluator.evaluate(opp & ~flips, newOwn);
+
+            if (score > bestScore) {
+                best = square;
+                bestScore = score;
+                ties = 1;
+            } else if (score == bestScore && random.nextInt(++ties) == 0) {
+                best = square;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Get the message that ended the game.
+     *
+     * @return GAME_WON, GAME_LOST or GAME_TIED, or null if the game did not finish.
+     */
+    public String getResult() {
+        return result;
+    }
+
+    /**
+     * Get what went wrong.
+     *
+     * @return a description of the error, or null if there was none.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Get the number of times the bot got back into its game after the connection dropped.
+     *
+     * @return the reconnect count.
+     */
+    public int getReconnects() {
+        return reconnects;
+    }
+
+    /**
+     * Get the move latencies.
+     *
+     * @return the time in nanoseconds from sending each move to the server's answer.
+     */
+    public long[] getLatencies() {
+        return Arrays.copyOf(latencies, latencyCount);
+    }
+}
@@ -1,11 +1,17 @@
 package network.client;
 
+import game.BitBoard;
 import game.PieceColor;
+import game.ReversiGame;
 import game.ReversiPlayer;
 import gui.ReversiGUI;
+import gui.events.ReversiMoveEvent;
 import javafx.application.Platform;
-import network.Duplexer;
+import network.Capability;
+import network.Handshake;
+import network.ReversiMessage;
 import network.ReversiProtocol;
+import network.Transport;
 import util.MoveException;
 
 import java.awt.*;
@@ -23,9 +29,9 @@ import java.util.Set;
 public class ReversiClient implements ReversiPlayer, Runnable {
 
     /**
-     * A duplexer to send and receive messages from the server.
+     * A transport to send and receive messages from the server.
      */
-    private final Duplexer coms;
+    private final Transport coms;
 
     /**
      * An instance of the GUI that this player is using.
@@ -52,15 +58,32 @@ public class ReversiClient implements ReversiPlayer, Runnable {
      */
     private Set<Point> moveSet;
 
+    /**
+     * A copy of the game kept up to date from the server's updates, to find this player's moves without the server.
+     * Null unless the client has the {@link Capability#LOCAL_MOVES} capability.
+     */
+    private final ReversiGame mirror;
+
     /**
      * Create a new reversi client, this is a player.
      *
-     * @param socket the socket to communicate with the server.
-     * @throws IOException thrown if a duplexer cannot be constructed from the given socket.
+     * @param socket       the socket to communicate with the server.
+     * @param gui          the GUI this player is using.
+     * @param capabilities the capabilities to ask the server for.
+     * @throws IOException thrown if the handshake fails or a duplexer cannot be constructed from the given socket.
      */
-    public ReversiClient(Socket socket, ReversiGUI gui) throws IOException {
+    public ReversiClient(Socket socket, ReversiGUI gui, Set<Capability> capabilities) throws IOException {
         this.moveSet = new HashSet<>();
-        this.coms = new Duplexer(socket);
+        socket.setTcpNoDelay(true);
+        this.coms = Handshake.connect(socket, capabilities);
+
+        // Only what the server agreed to counts.
+        if (coms.getCapabilities().contains(Capability.LOCAL_MOVES)) {
+            this.mirror = new ReversiGame();
+            this.mirror.restart();
+        } else {
+            this.mirror = null;
+        }
         this.gui = gui;
         this.sentinel = true;
         System.out.println("Constructed client");
@@ -75,7 +98,7 @@ public class ReversiClient implements ReversiPlayer, Runnable {
                 text.substring(1).toLowerCase() + "'s Turn"));
 
         moveSet.clear();
-        coms.sendMessage(ReversiProtocol.MOVE + " " + row + " " + col);
+        coms.send(ReversiMessage.move(row, col));
 
     }
 
@@ -125,18 +148,18 @@ public class ReversiClient implements ReversiPlayer, Runnable {
     }
 
     /**
-     * Read this player's available moves from the string tokens received from the server.
+     * Read this player's available moves from the bitboard received from the server.
      *
-     * @param tokens an array of strings representing the individual data sent to the client.
+     * @param moves the moves as a bitboard.
      */
-    private void readMoveSet(String[] tokens){
+    private void readMoveSet(long moves){
 
         this.moveSet.clear();
 
-        for(int i = 1; i < tokens.length; i += 2){
-            int row = Integer.parseInt(tokens[i]);
-            int col = Integer.parseInt(tokens[i + 1]);
-            this.moveSet.add(new Point(row, col));
+        while (moves != 0) {
+            int square = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            this.moveSet.add(new Point(BitBoard.row(square), BitBoard.col(square)));
         }
 
     }
@@ -146,120 +169,51 @@ public class ReversiClient implements ReversiPlayer, Runnable {
 
         while (sentinel) {
 
-            String fromServer;
+            ReversiMessage fromServer;
             try {
-                fromServer = coms.receiveMessage();
+                fromServer = coms.receive();
             } catch (NoSuchElementException nsee){
                 Platform.runLater(() -> gui.updateIndicatorLabel("Server closed connection."));
                 sentinel = false;
                 break;
+            } catch (IllegalArgumentException iae) {
+                closeOnError("Server sent bad packet! " + iae.getMessage());
+                break;
             }
-            String[] tokens = fromServer.split(" ");
 
             //System.out.println(fromServer);
 
-            switch (tokens[0]) {
+            switch (fromServer.getType()) {
 
                 case ReversiProtocol.WELCOME:
-                    if (tokens.length % 2 == 0) {
-
-                        String turn = tokens[1];
-                        if (turn.equals("true")) {
-                            this.isMyTurn = true;
-                            this.myColor = PieceColor.BLACK;
-
-                        } else if (turn.equals("false")) {
-                            this.isMyTurn = false;
-                            this.myColor = PieceColor.WHITE;
-                        } else {
-                            System.err.println("Server sent invalid command parameter! Closing connection...");
-                            Platform.runLater(() -> gui.updateIndicatorLabel("Connection closed!"));
-                            sentinel = false;
-                            break;
-                        }
-
-                        System.out.println(myColor.toString());
-
-                    } else {
-                        System.err.println("Server sent bad request! Closing connection...");
-                        Platform.runLater(() -> gui.updateIndicatorLabel("Connection closed!"));
-                        sentinel = false;
-                    }
+                    onWelcome(fromServer.getTokens());
                     break;
 
                 case ReversiProtocol.MAKE_MOVE:
-                    if(tokens.length % 2 == 0){
-                        System.err.println("Server sent bad request! Missing a row col pair. Closing connection...");
-                        Platform.runLater(() -> gui.updateIndicatorLabel("Connection closed!"));
-                        sentinel = false;
-                        break;
-                    }
-                    this.isMyTurn = true;
-                    Platform.runLater(() -> gui.updateIndicatorLabel("Your turn"));
-
-                    readMoveSet(tokens);
-                    Platform.runLater(gui::showAvailableMoves);
+                    onMakeMove(fromServer.getMoves());
                     break;
 
                 case ReversiProtocol.MOVE_MADE:
+                    onMoveMade(fromServer.getBlackScore(), fromServer.getWhiteScore());
+                    break;
 
-                    if (tokens.length != 3) {
-                        System.err.println("Server sent bad request! Closing connection...");
-                        Platform.runLater(() -> gui.updateIndicatorLabel("Connection closed!"));
-                        sentinel = false;
-                        break;
-                    }
-
-                    try {
-                        int black = Integer.parseInt(tokens[1]);
-                        int white = Integer.parseInt(tokens[2]);
-
-                        Platform.runLater(() -> gui.updateScore(black, white));
+                case ReversiProtocol.PIECE_UPDATE:
+                    onPieceUpdate(fromServer.getRow(), fromServer.getCol(), fromServer.getColor());
+                    break;
 
-                    } catch (NumberFormatException nfe){
-                        System.err.println("Server sent bad packet! Closing connection...");
-                        Platform.runLater(() -> gui.updateIndicatorLabel("Connection closed!"));
-                        sentinel = false;
-                    }
+                case ReversiProtocol.PIECES_UPDATE:
+                    onPiecesUpdate(new ReversiMoveEvent(fromServer.getRow(), fromServer.getCol(),
+                            fromServer.getColor(), fromServer.getFlipped()));
+                    break;
 
+                case ReversiProtocol.BOARD:
+                    onBoard(fromServer.getBlack(), fromServer.getWhite(), fromServer.getColor());
                     break;
 
-                case ReversiProtocol.PIECE_UPDATE:
+                case ReversiProtocol.RESUME:
+
+                    // This client does not reconnect, so it has no use for its seat token.
 
-                    if (tokens.length == 4) {
-
-                        try {
-                            int row = Integer.parseInt(tokens[1]);
-                            int col = Integer.parseInt(tokens[2]);
-                            String pieceColor = tokens[3];
-                            PieceColor color;
-                            if (pieceColor.equals("BLACK")) {
-                                color = PieceColor.BLACK;
-                            } else if (pieceColor.equals("WHITE")) {
-                                color = PieceColor.WHITE;
-                            } else {
-                                System.err.println("Server sent invalid color! Closing connection...");
-                                Platform.runLater(() -> gui.updateIndicatorLabel("Connection closed!"));
-                                sentinel = false;
-                                break;
-                            }
-
-                            gui.updateBoard(row, col, color);
-
-                            if (color == myColor) {
-                                isMyTurn = false;
-                            }
-                        } catch (NumberFormatException nfe){
-                            System.err.println("Server sent bad packet!");
-                            Platform.runLater(() -> gui.updateIndicatorLabel("Connection closed!"));
-                            sentinel = false;
-                        }
-
-                    } else {
-                        System.err.println("Server sent bad message! Closing connection...");
-                        Platform.runLater(() -> gui.updateIndicatorLabel("Connection closed!"));
-                        sentinel = false;
-                    }
                     break;
 
                 case ReversiProtocol.GAME_WON:
@@ -311,9 +265,7 @@ public class ReversiClient implements ReversiPlayer, Runnable {
                     break;
 
                 default:
-                    System.err.println("Server sent an unknown request! Closing connection...");
-                    Platform.runLater(() -> gui.updateIndicatorLabel("Connection closed!"));
-                    sentinel = false;
+                    closeOnError("Server sent an unknown request!");
                     break;
             }
 
@@ -326,4 +278,138 @@ public class ReversiClient implements ReversiPlayer, Runnable {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Learn which color this player is.
+     *
+     * @param tokens the tokens of the WELCOME message.
+     */
+    private void onWelcome(String[] tokens) {
+        if (tokens.length != 2) {
+            closeOnError("Server sent bad request!");
+            return;
+        }
+
+        String turn = tokens[1];
+        if (turn.equals("true")) {
+            this.isMyTurn = true;
+            this.myColor = PieceColor.BLACK;
+
+        } else if (turn.equals("false")) {
+            this.isMyTurn = false;
+            this.myColor = PieceColor.WHITE;
+        } else {
+            closeOnError("Server sent invalid command parameter!");
+            return;
+        }
+
+        System.out.println(myColor.toString());
+    }
+
+    /**
+     * Start this player's turn.
+     *
+     * @param moves the moves available, as a bitboard. Ignored if the client finds its own moves.
+     */
+    private void onMakeMove(long moves) {
+        this.isMyTurn = true;
+        Platform.runLater(() -> gui.updateIndicatorLabel("Your turn"));
+
+        if (mirror != null) {
+            // The opponent had no moves and passed.
+            if (mirror.getCurrentPlayer() != myColor) {
+                mirror.pass();
+            }
+            moves = mirror.getMoveMask();
+        }
+        readMoveSet(moves);
+        Platform.runLater(gui::showAvailableMoves);
+    }
+
+    /**
+     * Show the scores after a move.
+     *
+     * @param black black's score.
+     * @param white white's score.
+     */
+    private void onMoveMade(int black, int white) {
+        Platform.runLater(() -> gui.updateScore(black, white));
+    }
+
+    /**
+     * Show one square that changed.
+     *
+     * @param row   the row of the square.
+     * @param col   the column of the square.
+     * @param color the color now on the square.
+     */
+    private void onPieceUpdate(int row, int col, PieceColor color) {
+        gui.updateBoard(row, col, color);
+
+        if (color == myColor) {
+            isMyTurn = false;
+        }
+    }
+
+    /**
+     * Show a move and the discs it flipped.
+     *
+     * @param move the move.
+     */
+    private void onPiecesUpdate(ReversiMoveEvent move) {
+        gui.updateBoard(move);
+
+        if (move.getColor() == myColor) {
+            isMyTurn = false;
+        }
+
+        if (mirror != null) {
+            try {
+                if (mirror.getCurrentPlayer() != move.getColor()) {
+                    mirror.pass();
+                }
+                mirror.makeMove(move.getRow(), move.getCol());
+            } catch (MoveException me) {
+                closeOnError("Server sent a move this client thinks is illegal!");
+                return;
+            }
+
+            // Show the moves as soon as the opponent's move arrives, before MAKE_MOVE.
+            if (move.getColor() != myColor && mirror.getCurrentPlayer() == myColor && !mirror.isGameOver()) {
+                readMoveSet(mirror.getMoveMask());
+                Platform.runLater(gui::showAvailableMoves);
+            }
+        }
+    }
+
+    /**
+     * Show a whole position sent by the server.
+     *
+     * @param black  the black discs.
+     * @param white  the white discs.
+     * @param toMove the player to move.
+     */
+    private void onBoard(long black, long white, PieceColor toMove) {
+        // A loaded game can have empty squares where there were discs, so every square is redrawn.
+        gui.updateBoard(black, white);
+
+        int blackScore = Long.bitCount(black), whiteScore = Long.bitCount(white);
+        Platform.runLater(() -> gui.updateScore(blackScore, whiteScore));
+        isMyTurn = toMove == myColor;
+
+        if (mirror != null) {
+            mirror.setPosition(black, white, toMove);
+        }
+    }
+
+    /**
+     * Report a bad message from the server and stop listening.
+     *
+     * @param reason what was wrong.
+     */
+    private void closeOnError(String reason) {
+        System.err.println(reason + " Closing connection...");
+        Platform.runLater(() -> gui.updateIndicatorLabel("Connection closed!"));
+        sentinel = false;
+    }
 }
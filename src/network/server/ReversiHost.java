@@ -0,0 +1,791 @@
+package network.server;
+
+import game.MoveLog;
+import game.archive.GameArchive;
+import network.BinaryDuplexer;
+import network.Capability;
+import network.Duplexer;
+import network.Handshake;
+import network.NioEventLoop;
+import network.ReversiProtocol;
+import network.Transport;
+import network.server.journal.GameJournal;
+import network.server.journal.JournaledGame;
+import network.server.metrics.MetricsEndpoint;
+import network.server.metrics.ServerMetrics;
+
+import javax.management.JMException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hosts any number of games at once. <br>
+ * Clients are paired in the order they finish connecting: the first of each pair plays black. A client may ask for
+ * {@link Capability}s as it connects, see {@link Handshake}. The handshakes run on virtual threads, or on a pool of
+ * {@value #HANDSHAKE_THREADS} threads, so a slow client never holds up the accepting thread and a burst of
+ * connections does not start a burst of threads. Each pair gets a {@link ReversiServer} running on its own virtual
+ * thread when the JVM has them, or on a fixed pool of threads otherwise. Connections are either blocking
+ * {@link Duplexer}s and {@link BinaryDuplexer}s, or non-blocking connections shared out over a few
+ * {@link NioEventLoop}s.
+ * <p>
+ * The host is controlled through a text connection on localhost, served by a single non-blocking selector thread so
+ * it stays responsive however many games are running. Commands are one per line:
+ * </p>
+ * <pre>
+ * STATUS   reply with the number of running games, waiting clients, games waiting to be resumed, and games
+ *          started and finished
+ * STOP     stop accepting clients, end every game and shut down
+ * QUIT     close the admin connection
+ * </pre>
+ * <p>
+ * Every game records into one {@link ServerMetrics}, which is registered with JMX and can also be served over HTTP
+ * on localhost in the Prometheus format.
+ * </p>
+ * <p>
+ * A host may log its games to a {@link GameJournal}. Each player is then sent a seat token when the game starts, and
+ * no move is sent on until the journal has it. When the host starts again after dying, or after a STOP, the games
+ * in the journal wait {@value #RESUME_MINUTES} minutes for both players to reconnect with their tokens, see
+ * {@link Handshake}, and carry on from the last move.
+ * </p>
+ *
+ * @author Brock Dyer.
+ */
+public class ReversiHost {
+
+    /**
+     * Admin command to get the state of the host.
+     */
+    public static final String STATUS = "STATUS";
+
+    /**
+     * Admin command to shut the host down.
+     */
+    public static final String STOP = "STOP";
+
+    /**
+     * Admin command to close the admin connection.
+     */
+    public static final String QUIT = "QUIT";
+
+    /**
+     * The number of games run at once when there are no virtual threads, by default.
+     */
+    public static final int DEFAULT_MAX_GAMES = 256;
+
+    /**
+     * The number of threads that do handshakes when there are no virtual threads.
+     */
+    public static final int HANDSHAKE_THREADS = 16;
+
+    /**
+     * How long a game from the journal waits for its players to reconnect, in minutes.
+     */
+    public static final int RESUME_MINUTES = 5;
+
+    /**
+     * The longest admin command accepted, in bytes.
+     */
+    private static final int ADMIN_LINE_BYTES = 256;
+
+    /**
+     * The channel clients connect to. Accepts block.
+     */
+    private final ServerSocketChannel clientChannel;
+
+    /**
+     * The loops serving the client connections. Empty to give each client a blocking {@link Duplexer}.
+     */
+    private final NioEventLoop[] loops;
+
+    /**
+     * The loop the next client goes to.
+     */
+    private int nextLoop;
+
+    /**
+     * Waits for each new client to ask for capabilities.
+     */
+    private final ExecutorService handshakes;
+
+    /**
+     * The channel admins connect to.
+     */
+    private final ServerSocketChannel adminChannel;
+
+    /**
+     * Runs the games.
+     */
+    private final ExecutorService games;
+
+    /**
+     * True if {@link #games} runs each game on a virtual thread.
+     */
+    private final boolean virtualThreads;
+
+    /**
+     * The counters and timings of every game.
+     */
+    private final ServerMetrics metrics;
+
+    /**
+     * Serves {@link #metrics} over HTTP, or null.
+     */
+    private final MetricsEndpoint endpoint;
+
+    /**
+     * Where finished games are kept, or null.
+     */
+    private final GameArchive archive;
+
+    /**
+     * Where games are logged as they are played, or null.
+     */
+    private final GameJournal journal;
+
+    /**
+     * The games from the journal waiting for their players, by number. Guarded by this.
+     */
+    private final Map<Long, Suspended> suspended;
+
+    /**
+     * Makes the seat tokens.
+     */
+    private final SecureRandom tokens;
+
+    /**
+     * The games being played, by number.
+     */
+    private final Map<Integer, ReversiServer> running;
+
+    /**
+     * Numbers the games.
+     */
+    private final AtomicInteger nextGame;
+
+    /**
+     * Counts the games started and finished.
+     */
+    private final AtomicLong started, finished;
+
+    /**
+     * The client waiting for an opponent, or null. Only changed in {@link #pair(Transport)}.
+     */
+    private volatile Transport waiting;
+
+    /**
+     * False once the host is shutting down.
+     */
+    private volatile boolean accepting;
+
+    /**
+     * Create a host. Nothing is accepted until {@link #run()}.
+     *
+     * @param port        the port clients connect to.
+     * @param adminPort   the localhost port admins connect to.
+     * @param maxGames    the number of games to run at once if there are no virtual threads.
+     * @param nioLoops    the number of event loops to serve clients with, or 0 for blocking connections.
+     * @param metricsPort the localhost port to serve metrics on, or -1 for none.
+     * @throws IOException if a port cannot be bound.
+     */
+    public ReversiHost(int port, int adminPort, int maxGames, int nioLoops, int metricsPort) throws IOException {
+        this(port, adminPort, maxGames, nioLoops, metricsPort, null, null);
+    }
+
+    /**
+     * Create a host. Nothing is accepted until {@link #run()}.
+     *
+     * @param port        the port clients connect to.
+     * @param adminPort   the localhost port admins connect to.
+     * @param maxGames    the number of games to run at once if there are no virtual threads.
+     * @param nioLoops    the number of event loops to serve clients with, or 0 for blocking connections.
+     * @param metricsPort the localhost port to serve metrics on, or -1 for none.
+     * @param archiveDir  the directory of the archive to keep finished games in, or null to drop them.
+     * @param journalDir  the directory of the journal to log games to, or null to not log them.
+     * @throws IOException if a port cannot be bound, or the archive or journal cannot be opened.
+     */
+    public ReversiHost(int port, int adminPort, int maxGames, int nioLoops, int metricsPort, Path archiveDir,
+                       Path journalDir) throws IOException {
+        this.metrics = new ServerMetrics();
+        this.archive = archiveDir == null ? null : GameArchive.open(archiveDir);
+        this.journal = journalDir == null ? null : GameJournal.open(journalDir, GameJournal.DEFAULT_SHARDS, metrics);
+        this.clientChannel = ServerSocketChannel.open();
+        this.clientChannel.bind(new InetSocketAddress(port));
+
+        this.loops = new NioEventLoop[nioLoops];
+        for (int i = 0; i < nioLoops; i++) {
+            loops[i] = new NioEventLoop();
+        }
+
+        this.adminChannel = ServerSocketChannel.open();
+        this.adminChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), adminPort));
+        this.adminChannel.configureBlocking(false);
+
+        ExecutorService handshakeThreads = newVirtualThreadExecutor();
+        this.handshakes = handshakeThreads != null ? handshakeThreads :
+                Executors.newFixedThreadPool(HANDSHAKE_THREADS, r -> {
+                    Thread t = new Thread(r, "reversi-handshake");
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.games = virtualThreads ? virtual : Executors.newFixedThreadPool(maxGames, r -> {
+            Thread t = new Thread(r, "reversi-game");
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            metrics.register();
+        } catch (JMException jme) {
+            jme.printStackTrace();
+        }
+        this.endpoint = metricsPort < 0 ? null : new MetricsEndpoint(metrics, metricsPort);
+
+        this.running = new ConcurrentHashMap<>();
+        this.nextGame = new AtomicInteger();
+        this.suspended = new HashMap<>();
+        this.tokens = new SecureRandom();
+        if (journal != null) {
+            long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(RESUME_MINUTES);
+            for (JournaledGame game : journal.getGames()) {
+                suspended.put(game.getId(), new Suspended(game, deadline));
+                nextGame.set(Math.max(nextGame.get(), (int) game.getId()));
+            }
+        }
+        this.started = new AtomicLong();
+        this.finished = new AtomicLong();
+        this.accepting = true;
+    }
+
+    /**
+     * Make an executor that starts a virtual thread for each task. Looked up by reflection, so the host still runs on
+     * JVMs that do not have virtual threads.
+     *
+     * @return the executor, or null if virtual threads are not available.
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Accept and pair clients until the host is stopped. The admin channel is served on another thread.
+     */
+    public void run() {
+        Thread admin = new Thread(this::serveAdmin, "reversi-admin");
+        admin.setDaemon(true);
+        admin.start();
+
+        System.out.println("Hosting games on port " + clientChannel.socket().getLocalPort() + " using "
+                + (virtualThreads ? "virtual threads" : "a pool of threads") + " and "
+                + (loops.length == 0 ? "blocking connections" : loops.length + " event loop(s)"));
+        if (endpoint != null) {
+            System.out.println("Serving metrics on http://localhost:" + endpoint.getPort() + MetricsEndpoint.PATH);
+        }
+        if (journal != null) {
+            synchronized (this) {
+                System.out.println("Journaling games, with " + suspended.size() + " from the journal to resume");
+            }
+        }
+
+        while (accepting) {
+            try {
+                SocketChannel channel = clientChannel.accept();
+                channel.socket().setTcpNoDelay(true);
+                NioEventLoop loop = loops.length == 0 ? null : loops[nextLoop++ % loops.length];
+                handshakes.execute(() -> handshake(channel, loop));
+            } catch (IOException ioe) {
+                if (!accepting) {
+                    // The channel was closed by STOP.
+                    break;
+                }
+                ioe.printStackTrace();
+            }
+        }
+
+        shutdown();
+    }
+
+    /**
+     * Find out which capabilities a new client wants, wrap it in the matching transport and pair it, or seat it in
+     * the game it is resuming.
+     *
+     * @param channel the client's channel, still blocking.
+     * @param loop    the loop to serve the client on, or null for a blocking connection.
+     */
+    private void handshake(SocketChannel channel, NioEventLoop loop) {
+        metrics.connectionOpened();
+        try {
+            Handshake hello = Handshake.accept(channel.socket(), Handshake.TIMEOUT_MILLIS);
+            Set<Capability> capabilities = hello.getCapabilities();
+            Transport client;
+            if (loop != null) {
+                client = loop.register(channel, capabilities);
+            } else if (capabilities.contains(Capability.BINARY)) {
+                client = new BinaryDuplexer(channel.socket(), capabilities);
+            } else {
+                client = new Duplexer(channel.socket(), capabilities);
+            }
+
+            if (hello.getResumeGame() != 0) {
+                resume(client, hello.getResumeGame(), hello.getResumeToken());
+            } else {
+                pair(client);
+            }
+        } catch (IOException ioe) {
+            metrics.connectionClosed();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Make a client wait for an opponent, or start a game if one is already waiting.
+     *
+     * @param client the client that just connected.
+     */
+    private synchronized void pair(Transport client) {
+        if (!accepting) {
+            reject(client);
+            return;
+        }
+
+        // A client that left while waiting for an opponent would end the new player's game at once.
+        if (waiting != null && waiting.isClosed()) {
+            reject(waiting);
+            waiting = null;
+        }
+
+        if (waiting == null) {
+            client.sendMessage(ReversiProtocol.WELCOME + " true");
+            waiting = client;
+            return;
+        }
+
+        client.sendMessage(ReversiProtocol.WELCOME + " false");
+        int id = nextGame.incrementAndGet();
+        JournaledGame journaled = journal == null ? null :
+                new JournaledGame(id, tokens.nextLong(), tokens.nextLong(), new MoveLog());
+        ReversiServer server = new ReversiServer(waiting, client, metrics, archive, journal, journaled);
+        waiting = null;
+
+        start(id, server);
+    }
+
+    /**
+     * Seat a reconnecting client in a game from the journal, and start the game once both players are back.
+     *
+     * @param client the client.
+     * @param game   the game it asked for.
+     * @param token  the seat token it sent.
+     */
+    private synchronized void resume(Transport client, long game, long token) {
+        Suspended waitingGame = suspended.get(game);
+        boolean black = waitingGame != null && token == waitingGame.game.getBlackToken();
+        boolean white = waitingGame != null && token == waitingGame.game.getWhiteToken();
+        if (!accepting || !(black || white)) {
+            reject(client);
+            return;
+        }
+
+        // A player that reconnects twice replaces its first connection.
+        Transport replaced = black ? waitingGame.black : waitingGame.white;
+        if (replaced != null) {
+            reject(replaced);
+        }
+        client.sendMessage(ReversiProtocol.WELCOME + " " + black);
+        if (black) {
+            waitingGame.black = client;
+        } else {
+            waitingGame.white = client;
+        }
+
+        if (waitingGame.black != null && waitingGame.white != null) {
+            suspended.remove(game);
+            System.out.println("Resuming " + waitingGame.game + ".");
+            start((int) game, new ReversiServer(waitingGame.black, waitingGame.white, metrics, archive, journal,
+                    waitingGame.game));
+        }
+    }
+
+    /**
+     * Run a game.
+     *
+     * @param id     the number of the game.
+     * @param server the game.
+     */
+    private void start(int id, ReversiServer server) {
+        running.put(id, server);
+        started.incrementAndGet();
+
+        games.execute(() -> {
+            try {
+                server.run();
+            } finally {
+                running.remove(id);
+                finished.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Close a client's connection without playing.
+     *
+     * @param client the client.
+     */
+    private void reject(Transport client) {
+        metrics.connectionClosed();
+        try {
+            client.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * End the games from the journal whose players have not come back in time.
+     */
+    private synchronized void expireSuspended() {
+        long now = System.nanoTime();
+        Iterator<Suspended> waitingGames = suspended.values().iterator();
+        while (waitingGames.hasNext()) {
+            Suspended waitingGame = waitingGames.next();
+            if (now - waitingGame.deadline < 0) {
+                continue;
+            }
+
+            System.out.println("Gave up waiting for the players of " + waitingGame.game + ".");
+            waitingGames.remove();
+            journal.end(waitingGame.game.getId());
+            for (Transport seated : new Transport[]{waitingGame.black, waitingGame.white}) {
+                if (seated != null) {
+                    reject(seated);
+                }
+            }
+        }
+    }
+
+    /**
+     * Serve admin connections on one thread with a selector until the host stops.
+     */
+    private void serveAdmin() {
+        try (Selector selector = Selector.open()) {
+            adminChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+            while (accepting) {
+                selector.select(1000);
+                expireSuspended();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    try {
+                        if (key.isAcceptable()) {
+                            SocketChannel channel = adminChannel.accept();
+                            if (channel != null) {
+                                channel.configureBlocking(false);
+                                channel.register(selector, SelectionKey.OP_READ, new AdminConnection());
+                            }
+                        } else if (key.isReadable()) {
+                            readAdmin(key);
+                        } else if (key.isWritable()) {
+                            writeAdmin(key);
+                        }
+                    } catch (IOException ioe) {
+                        key.channel().close();
+                    }
+                }
+            }
+
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+
+    /**
+     * Read what an admin sent and answer every complete command.
+     *
+     * @param key the admin's key.
+     * @throws IOException if the connection fails.
+     */
+    private void readAdmin(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        AdminConnection admin = (AdminConnection) key.attachment();
+
+        if (channel.read(admin.in) < 0) {
+            channel.close();
+            return;
+        }
+
+        admin.in.flip();
+        int start = 0;
+        for (int i = 0; i < admin.in.limit(); i++) {
+            if (admin.in.get(i) == '\n') {
+                byte[] line = new byte[i - start];
+                admin.in.get(start, line);
+                start = i + 1;
+
+                String reply = command(new String(line, StandardCharsets.UTF_8).strip());
+                if (reply == null) {
+                    channel.close();
+                    return;
+                }
+                admin.queue(reply);
+            }
+        }
+        admin.in.position(start);
+        admin.in.compact();
+
+        if (!admin.in.hasRemaining()) {
+            channel.close();
+            return;
+        }
+
+        if (admin.out.position() > 0) {
+            writeAdmin(key);
+        }
+    }
+
+    /**
+     * Write as much of an admin's pending replies as the channel takes, and wait for it to be writable if some is
+     * left.
+     *
+     * @param key the admin's key.
+     * @throws IOException if the connection fails.
+     */
+    private void writeAdmin(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        AdminConnection admin = (AdminConnection) key.attachment();
+
+        admin.out.flip();
+        channel.write(admin.out);
+        admin.out.compact();
+
+        key.interestOps(admin.out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE :
+                SelectionKey.OP_READ);
+    }
+
+    /**
+     * Carry out an admin command.
+     *
+     * @param command the command.
+     * @return the reply, or null to close the connection.
+     */
+    private String command(String command) {
+        switch (command) {
+            case STATUS:
+                int resuming;
+                synchronized (this) {
+                    resuming = suspended.size();
+                }
+                return "games " + running.size() + " waiting " + (waiting == null ? 0 : 1) + " resuming " + resuming
+                        + " started " + started.get() + " finished " + finished.get();
+
+            case STOP:
+                stop();
+                return "stopping";
+
+            case QUIT:
+                return null;
+
+            default:
+                return "unknown command " + command;
+        }
+    }
+
+    /**
+     * Stop accepting clients. The accepting thread then ends the games and shuts down.
+     */
+    public void stop() {
+        accepting = false;
+        try {
+            clientChannel.close();
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+
+    /**
+     * End every game and release the ports.
+     */
+    private void shutdown() {
+        handshakes.shutdown();
+        try {
+            handshakes.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (ReversiServer server : running.values()) {
+            server.stop();
+        }
+
+        synchronized (this) {
+            if (waiting != null) {
+                reject(waiting);
+            }
+            // The games stay in the journal for the next time the host starts.
+            for (Suspended waitingGame : suspended.values()) {
+                for (Transport seated : new Transport[]{waitingGame.black, waitingGame.white}) {
+                    if (seated != null) {
+                        reject(seated);
+                    }
+                }
+            }
+        }
+
+        games.shutdown();
+        try {
+            if (!games.awaitTermination(5, TimeUnit.SECONDS)) {
+                games.shutdownNow();
+            }
+            adminChannel.close();
+            if (endpoint != null) {
+                endpoint.close();
+            }
+            for (NioEventLoop loop : loops) {
+                loop.close();
+            }
+            if (archive != null) {
+                archive.close();
+            }
+            if (journal != null) {
+                journal.close();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+
+        System.out.println("Host stopped after " + started.get() + " games.");
+    }
+
+    /**
+     * A game from the journal waiting for its players to reconnect.
+     */
+    private static final class Suspended {
+
+        /**
+         * The game.
+         */
+        private final JournaledGame game;
+
+        /**
+         * When to stop waiting, by {@link System#nanoTime()}.
+         */
+        private final long deadline;
+
+        /**
+         * The players that have reconnected, or null.
+         */
+        private Transport black, white;
+
+        /**
+         * Start waiting for a game's players.
+         *
+         * @param game     the game.
+         * @param deadline when to stop waiting.
+         */
+        private Suspended(JournaledGame game, long deadline) {
+            this.game = game;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * The buffers of one admin connection.
+     */
+    private static final class AdminConnection {
+
+        /**
+         * Bytes read but not yet parsed into commands.
+         */
+        private final ByteBuffer in = ByteBuffer.allocate(ADMIN_LINE_BYTES);
+
+        /**
+         * Replies not yet written.
+         */
+        private ByteBuffer out = ByteBuffer.allocate(ADMIN_LINE_BYTES);
+
+        /**
+         * Add a reply to the pending output.
+         *
+         * @param reply the reply, without the line break.
+         */
+        private void queue(String reply) {
+            byte[] bytes = (reply + "\n").getBytes(StandardCharsets.UTF_8);
+            if (out.remaining() < bytes.length) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes.length));
+                out.flip();
+                bigger.put(out);
+                out = bigger;
+            }
+            out.put(bytes);
+        }
+    }
+
+    /**
+     * Start hosting games.
+     *
+     * @param args cmd-line args. Expects the port for clients, the localhost port for admin commands, and
+     *             optionally the number of games to run at once without virtual threads, the number of event
+     *             loops to serve clients with (0, the default, for blocking connections), a localhost port to
+     *             serve metrics on (-1, the default, for none), a directory to archive finished games in (- for
+     *             none) and a directory to journal games in.
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length > 7) {
+            System.out.println("Usage: java ReversiHost #port #adminPort [#maxGames [#eventLoops [#metricsPort "
+                    + "[archiveDir|- [journalDir]]]]]");
+            System.exit(-1);
+        }
+
+        int port = Integer.parseInt(args[0]);
+        int adminPort = Integer.parseInt(args[1]);
+        int maxGames = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_GAMES;
+        int loops = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        int metricsPort = args.length > 4 ? Integer.parseInt(args[4]) : -1;
+        Path archiveDir = args.length > 5 && !args[5].equals("-") ? Paths.get(args[5]) : null;
+        Path journalDir = args.length > 6 ? Paths.get(args[6]) : null;
+
+        try {
+            new ReversiHost(port, adminPort, maxGames, loops, metricsPort, archiveDir, journalDir).run();
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+}
@@ -1,16 +1,33 @@
 package network.server;
 
 import game.PieceColor;
+import game.ReversiBoard;
 import game.ReversiGame;
+import game.MoveLog;
+import game.archive.GameArchive;
 import game.observer.ReversiObserver;
 import gui.events.ReversiEvent;
+import gui.events.ReversiMoveEvent;
+import network.BinaryDuplexer;
+import network.Capability;
 import network.Duplexer;
+import network.Handshake;
+import network.ReversiMessage;
 import network.ReversiProtocol;
+import network.Transport;
+import network.server.metrics.MetricsEndpoint;
+import network.server.journal.GameJournal;
+import network.server.journal.JournaledGame;
+import network.server.metrics.ServerMetrics;
 import util.MoveException;
 
-import java.awt.*;
+import javax.management.JMException;
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
 import java.util.Set;
@@ -28,9 +45,9 @@ public class ReversiServer implements ReversiObserver, Runnable {
     private final ReversiGame game;
 
     /**
-     * Duplexers to communicate with the two clients.
+     * Connections to communicate with the two clients.
      */
-    private Duplexer currentPlayer, otherPlayer;
+    private Transport currentPlayer, otherPlayer;
 
     /**
      * The color of the current player.
@@ -40,200 +57,533 @@ public class ReversiServer implements ReversiObserver, Runnable {
     /**
      * A boolean flag to determine when the server thread should stop looping.
      */
-    private boolean sentinel;
+    private volatile boolean sentinel;
+
+    /**
+     * Where the game's counters and timings are recorded.
+     */
+    private final ServerMetrics metrics;
+
+    /**
+     * Where the game is kept once it is finished, or null.
+     */
+    private final GameArchive archive;
+
+    /**
+     * True once the game has been played to the end.
+     */
+    private boolean finished;
+
+    /**
+     * Where accepted moves are logged before the players hear of them, or null.
+     */
+    private final GameJournal journal;
+
+    /**
+     * The game's number and seat tokens in the journal, or null.
+     */
+    private final JournaledGame journaled;
+
+    /**
+     * The ticket of the last journal record, and of the last one known to be durable.
+     */
+    private long logged, synced;
+
+    /**
+     * True if the game was stopped by its host, and should be picked up again from the journal.
+     */
+    private volatile boolean suspended;
+
+    /**
+     * Create the server.
+     *
+     * @param client1 the first client.
+     * @param client2 the second client.
+     */
+    public ReversiServer(Transport client1, Transport client2) {
+        this(client1, client2, new ServerMetrics());
+    }
+
+    /**
+     * Create the server.
+     *
+     * @param client1 the first client.
+     * @param client2 the second client.
+     * @param metrics where to record the game's counters and timings, usually shared by every game of a host.
+     */
+    public ReversiServer(Transport client1, Transport client2, ServerMetrics metrics) {
+        this(client1, client2, metrics, null);
+    }
 
     /**
      * Create the server.
      *
      * @param client1 the first client.
      * @param client2 the second client.
+     * @param metrics where to record the game's counters and timings, usually shared by every game of a host.
+     * @param archive where to keep the game once it is finished, or null to drop it.
      */
-    public ReversiServer(Duplexer client1, Duplexer client2) {
-        this.currentPlayer = client1;
-        this.otherPlayer = client2;
+    public ReversiServer(Transport client1, Transport client2, ServerMetrics metrics, GameArchive archive) {
+        this(client1, client2, metrics, archive, null, null);
+    }
+
+    /**
+     * Create the server for a game that is logged to a journal, either new or picked up again after a restart.
+     *
+     * @param black     the black player.
+     * @param white     the white player.
+     * @param metrics   where to record the game's counters and timings, usually shared by every game of a host.
+     * @param archive   where to keep the game once it is finished, or null to drop it.
+     * @param journal   where to log the game's moves, or null to not log them.
+     * @param journaled the game's number and seat tokens, and the moves to continue from. Null without a journal.
+     */
+    public ReversiServer(Transport black, Transport white, ServerMetrics metrics, GameArchive archive,
+                         GameJournal journal, JournaledGame journaled) {
+        this.metrics = metrics;
+        this.archive = archive;
+        this.journal = journal;
+        this.journaled = journaled;
+        this.currentPlayer = black;
+        this.otherPlayer = white;
         this.game = new ReversiGame();
 
         this.game.registerPlayerWithBoard(this);
 
         this.currentColor = PieceColor.BLACK;
         this.sentinel = true;
+
+        if (journaled != null) {
+            black.queue(ReversiMessage.parse(ReversiProtocol.RESUME + " " + journaled.getId() + " "
+                    + Long.toHexString(journaled.getBlackToken())));
+            white.queue(ReversiMessage.parse(ReversiProtocol.RESUME + " " + journaled.getId() + " "
+                    + Long.toHexString(journaled.getWhiteToken())));
+
+            MoveLog moves = journaled.getMoves();
+            if (moves.size() > 0 || !moves.isUsualStart()) {
+                game.loadGame(moves);
+                sendBoard();
+                changeTurn();
+            }
+        }
     }
 
     @Override
     public void handle(ReversiEvent re) {
-        int row = re.getRow();
-        int col = re.getCol();
-        PieceColor color = re.getColor();
+        ReversiMessage msg = ReversiMessage.pieceUpdate(re.getRow(), re.getCol(), re.getColor());
 
-        currentPlayer.sendMessage(ReversiProtocol.PIECE_UPDATE + " " + row + " " + col + " " + color);
-        otherPlayer.sendMessage(ReversiProtocol.PIECE_UPDATE + " " + row + " " + col + " " + color);
+        currentPlayer.queue(msg);
+        otherPlayer.queue(msg);
+    }
+
+    @Override
+    public void handleMove(ReversiMoveEvent move) {
+        ReversiMessage msg = ReversiMessage.piecesUpdate(move.getRow(), move.getCol(), move.getColor(),
+                move.getFlipped());
+
+        sendMove(currentPlayer, move, msg);
+        sendMove(otherPlayer, move, msg);
     }
 
     /**
-     * Turn the set of moves available to the current player into a string formatted for the transmission protocol.
+     * Tell a player about a move, in one message if it has the {@link Capability#MOVE_UPDATES} capability, or one
+     * for each changed disc otherwise.
      *
-     * @return the formatted string representation of the set.
+     * @param player the player.
+     * @param move   the move.
+     * @param msg    the move as one message.
      */
-    private String moveSetMsg(){
-
-        Set<Point> moveSet = game.getPossibleMoves();
-
-        StringBuilder sb = new StringBuilder();
-        for(Point p : moveSet){
-            sb.append(" ");
-            sb.append(p.x);
-            sb.append(" ");
-            sb.append(p.y);
+    private static void sendMove(Transport player, ReversiMoveEvent move, ReversiMessage msg) {
+        if (player.getCapabilities().contains(Capability.MOVE_UPDATES)) {
+            player.queue(msg);
+            return;
         }
 
-        return sb.toString();
-
+        ReversiObserver perDisc = re -> player.queue(ReversiMessage.pieceUpdate(re.getRow(), re.getCol(),
+                re.getColor()));
+        perDisc.handleMove(move);
     }
 
     @Override
     public void run() {
 
-        while (sentinel) {
+        metrics.gameStarted();
+        try {
+            if (journal != null) {
+                logged = journal.start(new JournaledGame(journaled.getId(), journaled.getBlackToken(),
+                        journaled.getWhiteToken(), game.getMoveLog()));
+                // A game picked up again may have been over already.
+                endIfOver();
+            }
+
+            while (sentinel) {
 
-            currentPlayer.sendMessage(ReversiProtocol.MAKE_MOVE + moveSetMsg());
+                // Clients that find their own moves only need to be told it is their turn.
+                long moves = 0;
+                if (!currentPlayer.getCapabilities().contains(Capability.LOCAL_MOVES)) {
+                    long start = System.nanoTime();
+                    moves = game.getMoveMask();
+                    metrics.moveGenerated(System.nanoTime() - start);
+                }
 
-            String response;
-            try {
-                response = currentPlayer.receiveMessage();
-            } catch (NoSuchElementException nsee){
-                System.out.println(currentColor + " has disconnected. Closing connection with the other player...");
-                sentinel = false;
-                break;
-            }
-            String[] tokens = response.split(" ");
-            String[] responseTokens;
+                // Everything the last turn produced goes out in one write per player, once the journal has it.
+                currentPlayer.queue(ReversiMessage.makeMove(moves));
+                if (!sync()) {
+                    break;
+                }
+                long start = System.nanoTime();
+                otherPlayer.flush();
+                currentPlayer.flush();
+                metrics.socketWritten(System.nanoTime() - start);
+
+                ReversiMessage response;
+                try {
+                    response = currentPlayer.receive();
+                } catch (NoSuchElementException | IllegalStateException e){
+                    System.out.println(currentColor + " has disconnected. Closing connection with the other player...");
+                    sentinel = false;
+                    break;
+                } catch (IllegalArgumentException iae) {
+                    System.out.println("Bad response from client! Closing connections...");
+                    metrics.protocolError();
+                    sentinel = false;
+                    break;
+                }
 
-            switch (tokens[0]) {
+                switch (response.getType()) {
 
-                case ReversiProtocol.MOVE:
+                    case ReversiProtocol.MOVE:
+                        onMove(response.getRow(), response.getCol());
+                        break;
 
-                    try {
-                        int row = Integer.parseInt(tokens[1]);
-                        int col = Integer.parseInt(tokens[2]);
-                        game.makeMove(row, col);
-
-                        currentPlayer.sendMessage(ReversiProtocol.MOVE_MADE + " " + game.getBlackScore() +
-                                " " + game.getWhiteScore());
-                        otherPlayer.sendMessage(ReversiProtocol.MOVE_MADE + " " + game.getBlackScore() +
-                                " " + game.getWhiteScore());
-
-                        // Do game end condition checking.
-                        if(game.isGameOver()){
-                            String winner = game.getWinner().toLowerCase();
-                            if(winner.contains("black")){
-                                if(currentColor == PieceColor.BLACK){
-                                    currentPlayer.sendMessage(ReversiProtocol.GAME_WON);
-                                    otherPlayer.sendMessage(ReversiProtocol.GAME_LOST);
-                                } else {
-                                    currentPlayer.sendMessage(ReversiProtocol.GAME_LOST);
-                                    otherPlayer.sendMessage(ReversiProtocol.GAME_WON);
-                                }
-                            } else if(winner.contains("white")){
-                                if(currentColor == PieceColor.WHITE){
-                                    currentPlayer.sendMessage(ReversiProtocol.GAME_WON);
-                                    otherPlayer.sendMessage(ReversiProtocol.GAME_LOST);
-                                } else {
-                                    currentPlayer.sendMessage(ReversiProtocol.GAME_LOST);
-                                    otherPlayer.sendMessage(ReversiProtocol.GAME_WON);
-                                }
-                            } else {
-                                currentPlayer.sendMessage(ReversiProtocol.GAME_TIED);
-                                otherPlayer.sendMessage(ReversiProtocol.GAME_TIED);
-                            }
-
-                            System.out.println(winner);
-                            sentinel = false;
-
-                        }
-
-                        changeTurn();
-
-                    } catch (MoveException me) {
-                        System.out.println(me.getMessage());
+                    case ReversiProtocol.PASS:
+                        onPass();
                         break;
-                    } catch (NumberFormatException nfe) {
-                        System.out.println("Bad response from client! Closing connections...");
-                        sentinel = false;
-                    }
 
-                    break;
+                    case ReversiProtocol.SAVE:
+                        onSave();
+                        break;
 
-                case ReversiProtocol.PASS:
-                    game.pass();
-                    break;
+                    case ReversiProtocol.LOAD:
+                        onLoad();
+                        break;
 
-                case ReversiProtocol.SAVE:
-                    otherPlayer.sendMessage(ReversiProtocol.SAVE);
+                    case ReversiProtocol.QUIT:
+                        onQuit();
+                        break;
 
-                    responseTokens = otherPlayer.receiveMessage().split(" ");
-                    if (responseTokens.length == 3) {
-                        if (responseTokens[2].equals("true")) {
-                            // Save the game.
-                        }
-                    } else {
-                        System.err.println("Bad response from client! Closing connections...");
+                    case ReversiProtocol.RESTART:
+                        onRestart();
+                        break;
+
+                    default:
+                        System.err.println("Unknown request from client! Closing connections...");
+                        metrics.protocolError();
                         sentinel = false;
-                    }
+                        break;
+                }
 
-                    break;
+            }
+        } catch (NoSuchElementException | IllegalStateException e) {
+            // A player can also leave while the server waits on them outside a turn, in a save or load for example.
+            System.out.println("A player has disconnected. Closing connection with the other player...");
+        } finally {
+            // The last turn's messages go out as the connections close.
+            sync();
+            try {
+                currentPlayer.close();
+                otherPlayer.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            metrics.connectionClosed();
+            metrics.connectionClosed();
+            metrics.gameFinished();
 
-                case ReversiProtocol.LOAD:
-                    otherPlayer.sendMessage(ReversiProtocol.LOAD);
+            if (journal != null && !suspended) {
+                journal.end(journaled.getId());
+            }
 
-                    responseTokens = otherPlayer.receiveMessage().split(" ");
-                    if (responseTokens.length == 3) {
-                        if (responseTokens[2].equals("true")) {
-                            // Load the game.
-                        }
-                    } else {
-                        System.err.println("Bad response from client! Closing connections...");
-                        sentinel = false;
-                    }
-                    break;
+            if (finished && archive != null) {
+                try {
+                    archive.append(game.getMoveLog());
+                } catch (IOException ioe) {
+                    ioe.printStackTrace();
+                }
+            }
+        }
+    }
 
-                case ReversiProtocol.QUIT:
-                    otherPlayer.sendMessage(ReversiProtocol.QUIT);
-
-                    responseTokens = otherPlayer.receiveMessage().split(" ");
-                    if (responseTokens.length == 2) {
-                        if (responseTokens[1].equals("true")) {
-                            game.quit();
-                            sentinel = false;
-                        }
-                    } else {
-                        System.err.println("Bad response from client! Closing connections...");
-                        sentinel = false;
-                    }
-                    break;
+    /**
+     * Make the current player's move, tell both players the scores, and check whether the game is over.
+     *
+     * @param row the row of the move.
+     * @param col the column of the move.
+     */
+    private void onMove(int row, int col) {
+        long start = System.nanoTime();
+        int plies = game.getPlyCount();
+        try {
+            game.makeMove(row, col);
+        } catch (MoveException me) {
+            System.out.println(me.getMessage());
+            metrics.illegalMove();
+            return;
+        }
+        logPlies(plies);
 
-                case ReversiProtocol.RESTART:
-                    otherPlayer.sendMessage(ReversiProtocol.RESTART);
-
-                    responseTokens = otherPlayer.receiveMessage().split(" ");
-                    if (responseTokens.length == 2) {
-                        if (responseTokens[1].equals("true")) {
-                            game.restart();
-                            sentinel = false;
-                        }
-                    } else {
-                        System.err.println("Bad response from client! Closing connections...");
-                        sentinel = false;
-                    }
-                    break;
+        ReversiMessage scores = ReversiMessage.moveMade(game.getBlackScore(), game.getWhiteScore());
+        currentPlayer.queue(scores);
+        otherPlayer.queue(scores);
 
-                default:
-                    System.err.println("Unknown request from client! Closing connections...");
-                    sentinel = false;
-                    break;
+        endIfOver();
+        changeTurn();
+        metrics.moveMade(System.nanoTime() - start);
+    }
+
+    /**
+     * Pass the current player's turn, if they have no moves.
+     */
+    private void onPass() {
+        if (game.getMoveMask() != 0) {
+            System.out.println(currentColor + " tried to pass with moves available.");
+            metrics.illegalMove();
+            return;
+        }
+
+        int plies = game.getPlyCount();
+        game.pass();
+        logPlies(plies);
+        endIfOver();
+        changeTurn();
+    }
+
+    /**
+     * Log the plies made since a point to the journal, if there is one. A move can add a pass after it.
+     *
+     * @param from the number of plies before the move.
+     */
+    private void logPlies(int from) {
+        if (journal == null) {
+            return;
+        }
+        for (int i = from; i < game.getPlyCount(); i++) {
+            logged = journal.ply(journaled.getId(), game.getPly(i));
+        }
+    }
+
+    /**
+     * Wait for the journal to make the game's records durable, so the players are never told of a move a restart
+     * would lose. Other games' records are synced along with them.
+     *
+     * @return false if the journal failed, and the game has been stopped.
+     */
+    private boolean sync() {
+        if (journal == null || synced == logged) {
+            return true;
+        }
+
+        try {
+            journal.await(journaled.getId(), logged);
+            synced = logged;
+            return true;
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            sentinel = false;
+            suspended = true;
+            return false;
+        }
+    }
+
+    /**
+     * If the game is over, tell both players who won and stop the game.
+     */
+    private void endIfOver() {
+        // Do game end condition checking.
+        if(game.isGameOver()){
+            String winner = game.getWinner().toLowerCase();
+            if(winner.contains("black")){
+                if(currentColor == PieceColor.BLACK){
+                    currentPlayer.queueMessage(ReversiProtocol.GAME_WON);
+                    otherPlayer.queueMessage(ReversiProtocol.GAME_LOST);
+                } else {
+                    currentPlayer.queueMessage(ReversiProtocol.GAME_LOST);
+                    otherPlayer.queueMessage(ReversiProtocol.GAME_WON);
+                }
+            } else if(winner.contains("white")){
+                if(currentColor == PieceColor.WHITE){
+                    currentPlayer.queueMessage(ReversiProtocol.GAME_WON);
+                    otherPlayer.queueMessage(ReversiProtocol.GAME_LOST);
+                } else {
+                    currentPlayer.queueMessage(ReversiProtocol.GAME_LOST);
+                    otherPlayer.queueMessage(ReversiProtocol.GAME_WON);
+                }
+            } else {
+                currentPlayer.queueMessage(ReversiProtocol.GAME_TIED);
+                otherPlayer.queueMessage(ReversiProtocol.GAME_TIED);
+            }
+
+            System.out.println(winner);
+            sentinel = false;
+            finished = true;
+
+        }
+    }
+
+    /**
+     * Ask the other player whether to save the game.
+     */
+    private void onSave() {
+        otherPlayer.sendMessage(ReversiProtocol.SAVE);
+
+        String[] responseTokens = otherPlayer.receiveMessage().split(" ");
+        if (responseTokens.length == 3) {
+            if (responseTokens[2].equals("true")) {
+                save(responseTokens[1]);
+            }
+        } else {
+            System.err.println("Bad response from client! Closing connections...");
+            metrics.protocolError();
+            sentinel = false;
+        }
+    }
+
+    /**
+     * Ask the other player whether to load a game.
+     */
+    private void onLoad() {
+        otherPlayer.sendMessage(ReversiProtocol.LOAD);
+
+        String[] responseTokens = otherPlayer.receiveMessage().split(" ");
+        if (responseTokens.length == 3) {
+            if (responseTokens[2].equals("true")) {
+                load(responseTokens[1]);
+            }
+        } else {
+            System.err.println("Bad response from client! Closing connections...");
+            metrics.protocolError();
+            sentinel = false;
+        }
+    }
+
+    /**
+     * Save the game in the server's working directory.
+     *
+     * @param filename the name of the file, without any directories.
+     */
+    private void save(String filename) {
+        if (!isPlainFileName(filename)) {
+            System.out.println("Refusing to save to " + filename + ".");
+            metrics.protocolError();
+            return;
+        }
+
+        try {
+            game.saveGame(filename);
+        } catch (IOException ioe) {
+            System.out.println("Could not save the game. " + ioe.getMessage());
+        }
+    }
+
+    /**
+     * Load a game from the server's working directory and send both players the new position.
+     *
+     * @param filename the name of the file, without any directories.
+     */
+    private void load(String filename) {
+        if (!isPlainFileName(filename)) {
+            System.out.println("Refusing to load from " + filename + ".");
+            metrics.protocolError();
+            return;
+        }
+
+        try {
+            game.loadGame(filename);
+        } catch (IOException ioe) {
+            System.out.println("Could not load the game. " + ioe.getMessage());
+            return;
+        }
+        if (journal != null) {
+            logged = journal.start(new JournaledGame(journaled.getId(), journaled.getBlackToken(),
+                    journaled.getWhiteToken(), game.getMoveLog()));
+        }
+
+        sendBoard();
+        changeTurn();
+        endIfOver();
+    }
+
+    /**
+     * Send both players the whole position.
+     */
+    private void sendBoard() {
+        ReversiBoard position = game.copyBoard();
+        ReversiMessage board = ReversiMessage.board(position.getBlack(), position.getWhite(),
+                game.getCurrentPlayer());
+        currentPlayer.queue(board);
+        otherPlayer.queue(board);
+    }
+
+    /**
+     * Check that a file name sent by a client cannot reach outside the server's working directory.
+     *
+     * @param filename the name.
+     * @return true if the name has no directories in it.
+     */
+    private static boolean isPlainFileName(String filename) {
+        try {
+            Path path = Paths.get(filename);
+            return !filename.isEmpty() && path.getNameCount() == 1 && !path.isAbsolute()
+                    && !filename.equals(".") && !filename.equals("..");
+        } catch (InvalidPathException ipe) {
+            return false;
+        }
+    }
+
+    /**
+     * Ask the other player whether to quit.
+     */
+    private void onQuit() {
+        otherPlayer.sendMessage(ReversiProtocol.QUIT);
+
+        String[] responseTokens = otherPlayer.receiveMessage().split(" ");
+        if (responseTokens.length == 2) {
+            if (responseTokens[1].equals("true")) {
+                game.quit();
+                sentinel = false;
             }
+        } else {
+            System.err.println("Bad response from client! Closing connections...");
+            metrics.protocolError();
+            sentinel = false;
+        }
+    }
+
+    /**
+     * Ask the other player whether to restart.
+     */
+    private void onRestart() {
+        otherPlayer.sendMessage(ReversiProtocol.RESTART);
 
+        String[] responseTokens = otherPlayer.receiveMessage().split(" ");
+        if (responseTokens.length == 2) {
+            if (responseTokens[1].equals("true")) {
+                game.restart();
+                sentinel = false;
+            }
+        } else {
+            System.err.println("Bad response from client! Closing connections...");
+            metrics.protocolError();
+            sentinel = false;
         }
+    }
 
+    /**
+     * End the game from another thread by closing both connections. The game thread exits once its read fails.
+     * A journaled game is left in the journal, to be picked up again when the host next starts.
+     */
+    public void stop() {
+        suspended = true;
+        sentinel = false;
         try {
             currentPlayer.close();
             otherPlayer.close();
@@ -243,13 +593,34 @@ public class ReversiServer implements ReversiObserver, Runnable {
     }
 
     /**
-     * Change the duplexer reference of currentPlayer to point to otherPlayer and vice-versa.
+     * Point currentPlayer at the player the game says is to move, swapping it with otherPlayer if needed. The game
+     * passes by itself for a player with no moves, so a move does not always change the turn.
      */
     private void changeTurn() {
-        Duplexer temp = currentPlayer;
+        if (game.getCurrentPlayer() == currentColor) {
+            return;
+        }
+
+        Transport temp = currentPlayer;
         currentPlayer = otherPlayer;
         otherPlayer = temp;
-        currentColor = currentColor == PieceColor.BLACK ? PieceColor.WHITE : PieceColor.BLACK;
+        currentColor = game.getCurrentPlayer();
+    }
+
+    /**
+     * Wrap a newly accepted client in the transport for the capabilities it asks for in its {@link Handshake}.
+     *
+     * @param socket the client's socket.
+     * @return the transport.
+     * @throws IOException if the socket fails.
+     */
+    public static Transport accept(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        Set<Capability> capabilities = Handshake.accept(socket, Handshake.TIMEOUT_MILLIS).getCapabilities();
+        if (capabilities.contains(Capability.BINARY)) {
+            return new BinaryDuplexer(socket, capabilities);
+        }
+        return new Duplexer(socket, capabilities);
     }
 
     /**
@@ -257,19 +628,34 @@ public class ReversiServer implements ReversiObserver, Runnable {
      * The server will keep accept a pair of clients and start a game between those two.
      * The server will then wait for that game to finish and accept another pair.
      *
-     * @param args cmd-line args. Expects the port to run the server on.
+     * @param args cmd-line args. Expects the port to run the server on, and optionally a localhost port to serve
+     *             metrics on.
      */
     public static void main(String[] args) {
 
-        if (args.length != 1) {
-            System.out.println("Usage: java ReversiServer #port");
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: java ReversiServer #port [#metricsPort]");
             System.exit(-1);
         } else {
 
             int port = Integer.parseInt(args[0]);
             System.out.println("Starting server on port " + port);
 
+            ServerMetrics metrics = new ServerMetrics();
+            MetricsEndpoint endpoint = null;
             try {
+                metrics.register();
+            } catch (JMException jme) {
+                jme.printStackTrace();
+            }
+
+            try {
+                if (args.length > 1) {
+                    endpoint = new MetricsEndpoint(metrics, Integer.parseInt(args[1]));
+                    System.out.println("Serving metrics on http://localhost:" + endpoint.getPort()
+                            + MetricsEndpoint.PATH);
+                }
+
                 ServerSocket serverSocket = new ServerSocket(port);
 
                 boolean accept = true;
@@ -277,15 +663,17 @@ public class ReversiServer implements ReversiObserver, Runnable {
 
                 while (accept) {
 
-                    Duplexer client1 = new Duplexer(serverSocket.accept());
+                    Transport client1 = accept(serverSocket.accept());
+                    metrics.connectionOpened();
                     System.out.println("Client 1 connected...");
                     client1.sendMessage(ReversiProtocol.WELCOME + " true");
 
-                    Duplexer client2 = new Duplexer(serverSocket.accept());
+                    Transport client2 = accept(serverSocket.accept());
+                    metrics.connectionOpened();
                     System.out.println("Client 2 connected...");
                     client2.sendMessage(ReversiProtocol.WELCOME + " false");
 
-                    ReversiServer server = new ReversiServer(client1, client2);
+                    ReversiServer server = new ReversiServer(client1, client2, metrics);
                     System.out.println("Starting game...");
                     Thread t = new Thread(server);
                     t.start();
@@ -306,6 +694,10 @@ public class ReversiServer implements ReversiObserver, Runnable {
 
             } catch (IOException ioe) {
                 ioe.printStackTrace();
+            } finally {
+                if (endpoint != null) {
+                    endpoint.close();
+                }
             }
 
         }
@@ -0,0 +1,160 @@
+package network.server.journal;
+
+import game.MoveLog;
+import network.server.metrics.ServerMetrics;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A write-ahead log of the games a host is playing, so they can be picked up again if the host dies. <br>
+ * Every accepted move is added to the log, and the players are only told about it once it is durable. Games are
+ * shared out by number over a few {@link JournalShard}s, each a file with its own writer. A writer syncs everything
+ * added since its last sync at once, so games share syncs rather than paying for one each.
+ * <p>
+ * Opening a journal replays its logs. The games that were started and not ended are given by {@link #getGames()}
+ * so the host can wait for their players to reconnect.
+ * </p>
+ *
+ * @author Brock Dyer.
+ */
+public class GameJournal implements AutoCloseable {
+
+    /**
+     * The number of log files of a new journal, by default.
+     */
+    public static final int DEFAULT_SHARDS = 4;
+
+    /**
+     * The logs.
+     */
+    private final JournalShard[] shards;
+
+    /**
+     * Create a journal over open logs.
+     *
+     * @param shards the logs.
+     */
+    private GameJournal(JournalShard[] shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Open a journal, creating the directory if needed. A journal that already has logs keeps its number of them,
+     * since every record of a game has to go to the same log.
+     *
+     * @param dir     the directory of the logs.
+     * @param shards  the number of logs of a new journal.
+     * @param metrics where syncs are recorded.
+     * @return the journal.
+     * @throws IOException if a log cannot be read.
+     */
+    public static GameJournal open(Path dir, int shards, ServerMetrics metrics) throws IOException {
+        Files.createDirectories(dir);
+
+        int existing = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "shard-*.log")) {
+            for (Path ignored : files) {
+                existing++;
+            }
+        }
+        int count = existing > 0 ? existing : shards;
+
+        JournalShard[] opened = new JournalShard[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                opened[i] = JournalShard.open(dir.resolve(String.format("shard-%02d.log", i)), metrics);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (JournalShard shard : opened) {
+                if (shard != null) {
+                    shard.close();
+                }
+            }
+            throw e;
+        }
+        return new GameJournal(opened);
+    }
+
+    /**
+     * Get the games that have been started and not ended.
+     *
+     * @return the games, as of the last record added.
+     */
+    public List<JournaledGame> getGames() {
+        List<JournaledGame> games = new ArrayList<>();
+        for (JournalShard shard : shards) {
+            games.addAll(shard.games());
+        }
+        return games;
+    }
+
+    /**
+     * Log the whole of a game: when it starts, and whenever its moves are replaced, such as by a load.
+     *
+     * @param game the game.
+     * @return the ticket to wait for, see {@link #await(long, long)}.
+     */
+    public long start(JournaledGame game) {
+        return shard(game.getId()).start(game);
+    }
+
+    /**
+     * Log a move or pass.
+     *
+     * @param game the number of the game.
+     * @param ply  the square of the move, or {@link MoveLog#PASS}.
+     * @return the ticket to wait for, see {@link #await(long, long)}.
+     */
+    public long ply(long game, int ply) {
+        return shard(game).ply(game, ply);
+    }
+
+    /**
+     * Log that a game is over, so it is not picked up again.
+     *
+     * @param game the number of the game.
+     * @return the ticket to wait for, see {@link #await(long, long)}.
+     */
+    public long end(long game) {
+        return shard(game).end(game);
+    }
+
+    /**
+     * Wait until a game's records up to a ticket are durable. Records added by other games in the meantime are
+     * synced along with them.
+     *
+     * @param game   the number of the game.
+     * @param ticket the ticket of its last record.
+     * @throws IOException if the log could not be written.
+     */
+    public void await(long game, long ticket) throws IOException {
+        shard(game).await(ticket);
+    }
+
+    /**
+     * Find the log of a game.
+     *
+     * @param game the number of the game.
+     * @return the shard.
+     */
+    private JournalShard shard(long game) {
+        return shards[(int) Math.floorMod(game, (long) shards.length)];
+    }
+
+    /**
+     * Write what is pending and close the logs. Games still being played stay in the journal.
+     *
+     * @throws IOException if a log cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        for (JournalShard shard : shards) {
+            shard.close();
+        }
+    }
+}
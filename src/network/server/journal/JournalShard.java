@@ -0,0 +1,573 @@
+package network.server.journal;
+
+import game.MoveLog;
+import network.server.metrics.ServerMetrics;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * One log file of a {@link GameJournal}, with the thread that writes and syncs it. <br>
+ * Records are added to a buffer in memory. The writer takes everything in the buffer at once, writes it and syncs
+ * the file, while new records go into a second buffer. However many games added records during one sync, they are
+ * all made durable by the next one, so a busy shard syncs far less often than it is written to.
+ * <p>
+ * The file keeps growing until it passes {@value #CHECKPOINT_BYTES} bytes. The writer then replaces it with a file
+ * holding one record for each game still being played.
+ * </p>
+ * <pre>
+ * header:  int magic, int version
+ * record:  int payload length, int CRC32 of the payload, payload
+ * GAME     byte 1, long game, long black token, long white token, {@link MoveLog} bytes
+ * PLY      byte 2, long game, byte square or {@link MoveLog#PASS}
+ * END      byte 3, long game
+ * </pre>
+ *
+ * @author Brock Dyer.
+ */
+final class JournalShard implements Runnable {
+
+    /**
+     * The first bytes of every log file: "RVWL".
+     */
+    static final int MAGIC = 0x5256574C;
+
+    /**
+     * The version of the file format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The size of the file header in bytes.
+     */
+    static final int HEADER_BYTES = 8;
+
+    /**
+     * The record types.
+     */
+    static final int GAME = 1, PLY = 2, END = 3;
+
+    /**
+     * The size of the length and checksum before each payload.
+     */
+    static final int RECORD_HEADER = 8;
+
+    /**
+     * The size of the log after which it is replaced by a checkpoint.
+     */
+    static final long CHECKPOINT_BYTES = 16 << 20;
+
+    /**
+     * The payload sizes of the fixed-length records, and of a GAME record without its moves.
+     */
+    private static final int PLY_PAYLOAD = 10, END_PAYLOAD = 9, GAME_FIXED = 25;
+
+    /**
+     * The log file.
+     */
+    private final Path path;
+
+    /**
+     * Where syncs are recorded.
+     */
+    private final ServerMetrics metrics;
+
+    /**
+     * The open log. Only used by the writer once the shard is running.
+     */
+    private FileChannel channel;
+
+    /**
+     * The length of the log.
+     */
+    private long fileSize;
+
+    /**
+     * The games started and not ended, as of the last record added. Guarded by this.
+     */
+    private final Map<Long, JournaledGame> live;
+
+    /**
+     * Records added and not yet taken by the writer, and the buffer the writer is writing. Pending is guarded by
+     * this.
+     */
+    private ByteBuffer pending, writing;
+    private int pendingRecords;
+
+    /**
+     * The number of records added, and the number made durable. Guarded by this.
+     */
+    private long appended, durable;
+
+    /**
+     * Why the writer stopped, or null. Guarded by this.
+     */
+    private IOException failure;
+
+    /**
+     * True once the shard is closing. Guarded by this.
+     */
+    private boolean closed;
+
+    /**
+     * Checksums records.
+     */
+    private final CRC32 crc;
+
+    /**
+     * The writer.
+     */
+    private final Thread writer;
+
+    /**
+     * Create a shard over an open log.
+     *
+     * @param path     the log file.
+     * @param channel  the open log, positioned at its end.
+     * @param live     the games in the log.
+     * @param metrics  where syncs are recorded.
+     * @throws IOException if the size of the log cannot be read.
+     */
+    private JournalShard(Path path, FileChannel channel, Map<Long, JournaledGame> live, ServerMetrics metrics)
+            throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.live = live;
+        this.metrics = metrics;
+        this.pending = ByteBuffer.allocate(4096);
+        this.writing = ByteBuffer.allocate(4096);
+        this.crc = new CRC32();
+        this.writer = new Thread(this, "reversi-journal-" + path.getFileName());
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Open a log, creating it if needed, read the games in it and start its writer. A record only partly written
+     * when the host stopped is cut off.
+     *
+     * @param path    the log file.
+     * @param metrics where syncs are recorded.
+     * @return the shard.
+     * @throws IOException if the file cannot be read or is not a journal.
+     */
+    static JournalShard open(Path path, ServerMetrics metrics) throws IOException {
+        // Left by a checkpoint that did not finish. The log it was replacing is still there.
+        Files.deleteIfExists(Paths.get(path + ".tmp"));
+
+        Map<Long, JournaledGame> live = new HashMap<>();
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                channel.write(header(), 0);
+                channel.force(true);
+                syncDirectory(path);
+            } else {
+                long end = recover(channel, live);
+                if (end < channel.size()) {
+                    System.out.println("Dropping " + (channel.size() - end)
+                            + " bytes of a partly written record from " + path + ".");
+                    channel.truncate(end);
+                    channel.force(true);
+                }
+            }
+            channel.position(channel.size());
+
+            JournalShard shard = new JournalShard(path, channel, live, metrics);
+            shard.writer.start();
+            return shard;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Replay a log into the games it leaves being played.
+     *
+     * @param channel the log.
+     * @param live    given the games.
+     * @return the offset after the last good record.
+     * @throws IOException if the file cannot be read or is not a journal.
+     */
+    private static long recover(FileChannel channel, Map<Long, JournaledGame> live) throws IOException {
+        // Checkpoints keep the log small, and reading it keeps it unmapped so it can be cut after a torn record.
+        ByteBuffer data = ByteBuffer.allocate((int) channel.size());
+        while (data.hasRemaining()) {
+            if (channel.read(data, data.position()) < 0) {
+                break;
+            }
+        }
+        if (data.capacity() < HEADER_BYTES || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a game journal.");
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IOException("Unsupported game journal version " + data.getInt(4) + ".");
+        }
+
+        CRC32 crc = new CRC32();
+        int offset = HEADER_BYTES;
+        while (offset + RECORD_HEADER <= data.capacity()) {
+            int length = data.getInt(offset);
+            if (length < END_PAYLOAD || offset + RECORD_HEADER + (long) length > data.capacity()) {
+                break;
+            }
+
+            int payload = offset + RECORD_HEADER;
+            crc.reset();
+            crc.update(data.duplicate().position(payload).limit(payload + length));
+            if ((int) crc.getValue() != data.getInt(offset + 4)) {
+                break;
+            }
+
+            long game = data.getLong(payload + 1);
+            switch (data.get(payload)) {
+                case GAME:
+                    byte[] moves = new byte[length - GAME_FIXED];
+                    data.get(payload + GAME_FIXED, moves);
+                    try {
+                        live.put(game, new JournaledGame(game, data.getLong(payload + 9), data.getLong(payload + 17),
+                                MoveLog.decode(moves)));
+                    } catch (IllegalArgumentException iae) {
+                        throw new IOException("Bad game " + game + " in the journal. " + iae.getMessage(), iae);
+                    }
+                    break;
+
+                case PLY:
+                    JournaledGame journaled = live.get(game);
+                    if (journaled != null) {
+                        add(journaled.moves, data.get(payload + 9));
+                    }
+                    break;
+
+                case END:
+                    live.remove(game);
+                    break;
+
+                default:
+                    throw new IOException("Unknown journal record type " + data.get(payload) + ".");
+            }
+            offset = payload + length;
+        }
+        return offset;
+    }
+
+    /**
+     * Add a ply to a move log.
+     *
+     * @param moves the log.
+     * @param ply   the square or {@link MoveLog#PASS}.
+     */
+    private static void add(MoveLog moves, int ply) {
+        if (ply == MoveLog.PASS) {
+            moves.addPass();
+        } else {
+            moves.addMove(ply);
+        }
+    }
+
+    /**
+     * Make the header of a log file.
+     *
+     * @return the header.
+     */
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+    }
+
+    /**
+     * Add a GAME record: the whole of a game, replacing what the log held for it before.
+     *
+     * @param game the game.
+     * @return the ticket to wait for, see {@link #await(long)}.
+     */
+    synchronized long start(JournaledGame game) {
+        live.put(game.getId(), new JournaledGame(game.getId(), game.getBlackToken(), game.getWhiteToken(),
+                game.moves));
+        pending = putGame(pending, game);
+        return added();
+    }
+
+    /**
+     * Add a PLY record.
+     *
+     * @param game the game.
+     * @param ply  the square of the move, or {@link MoveLog#PASS}.
+     * @return the ticket to wait for, see {@link #await(long)}.
+     */
+    synchronized long ply(long game, int ply) {
+        JournaledGame journaled = live.get(game);
+        if (journaled != null) {
+            add(journaled.moves, ply);
+        }
+
+        int start = begin(PLY_PAYLOAD);
+        pending.put((byte) PLY).putLong(game).put((byte) ply);
+        finish(pending, start);
+        return added();
+    }
+
+    /**
+     * Add an END record.
+     *
+     * @param game the game.
+     * @return the ticket to wait for, see {@link #await(long)}.
+     */
+    synchronized long end(long game) {
+        live.remove(game);
+
+        int start = begin(END_PAYLOAD);
+        pending.put((byte) END).putLong(game);
+        finish(pending, start);
+        return added();
+    }
+
+    /**
+     * Wait until a record is durable.
+     *
+     * @param ticket the ticket the record was added with.
+     * @throws IOException if the log could not be written.
+     */
+    synchronized void await(long ticket) throws IOException {
+        while (durable < ticket && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the game journal.");
+            }
+        }
+        if (failure != null) {
+            throw new IOException("The game journal " + path + " could not be written.", failure);
+        }
+    }
+
+    /**
+     * Get the games being played.
+     *
+     * @return copies of the games.
+     */
+    synchronized List<JournaledGame> games() {
+        List<JournaledGame> games = new ArrayList<>();
+        for (JournaledGame game : live.values()) {
+            games.add(new JournaledGame(game.getId(), game.getBlackToken(), game.getWhiteToken(), game.moves));
+        }
+        return games;
+    }
+
+    /**
+     * Count a record added to the pending buffer and wake the writer.
+     *
+     * @return the ticket of the record.
+     */
+    private long added() {
+        pendingRecords++;
+        notifyAll();
+        return ++appended;
+    }
+
+    /**
+     * Make room for a record in the pending buffer and skip its header.
+     *
+     * @param payload the length of the payload.
+     * @return where the record starts.
+     */
+    private int begin(int payload) {
+        pending = begin(pending, payload);
+        return pending.position() - RECORD_HEADER;
+    }
+
+    /**
+     * Make room for a record in a buffer and skip its header.
+     *
+     * @param buffer  the buffer.
+     * @param payload the length of the payload.
+     * @return the buffer, or a bigger copy of it.
+     */
+    private static ByteBuffer begin(ByteBuffer buffer, int payload) {
+        if (buffer.remaining() < RECORD_HEADER + payload) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2,
+                    buffer.position() + RECORD_HEADER + payload));
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+        buffer.position(buffer.position() + RECORD_HEADER);
+        return buffer;
+    }
+
+    /**
+     * Fill in the length and checksum of the record just put in a buffer.
+     *
+     * @param buffer the buffer.
+     * @param start  where the record starts.
+     */
+    private void finish(ByteBuffer buffer, int start) {
+        int payload = start + RECORD_HEADER;
+        int length = buffer.position() - payload;
+        crc.reset();
+        crc.update(buffer.array(), payload, length);
+        buffer.putInt(start, length).putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * Put a GAME record in a buffer.
+     *
+     * @param buffer the buffer, which is pending or a checkpoint.
+     * @param game   the game.
+     * @return the buffer, or a bigger copy of it.
+     */
+    private ByteBuffer putGame(ByteBuffer buffer, JournaledGame game) {
+        int length = game.moves.encodedLength();
+        buffer = begin(buffer, GAME_FIXED + length);
+        int start = buffer.position() - RECORD_HEADER;
+        buffer.put((byte) GAME).putLong(game.getId()).putLong(game.getBlackToken()).putLong(game.getWhiteToken());
+        game.moves.encode(buffer.array(), buffer.position());
+        buffer.position(buffer.position() + length);
+        finish(buffer, start);
+        return buffer;
+    }
+
+    /**
+     * Write and sync batches of records until the shard is closed and everything added has been written.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            ByteBuffer batch;
+            ByteBuffer checkpoint = null;
+            int records;
+            long sequence;
+
+            synchronized (this) {
+                while (pendingRecords == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+                if (pendingRecords == 0) {
+                    return;
+                }
+
+                batch = pending;
+                pending = writing;
+                writing = batch;
+                records = pendingRecords;
+                pendingRecords = 0;
+                sequence = appended;
+
+                // The games already include this batch, so a checkpoint replaces it.
+                if (fileSize + batch.position() > CHECKPOINT_BYTES) {
+                    checkpoint = ByteBuffer.allocate(HEADER_BYTES + 64 * live.size()).put(header());
+                    for (JournaledGame game : live.values()) {
+                        checkpoint = putGame(checkpoint, game);
+                    }
+                }
+            }
+
+            long start = System.nanoTime();
+            try {
+                if (checkpoint != null) {
+                    replace(checkpoint.flip());
+                } else {
+                    batch.flip();
+                    while (batch.hasRemaining()) {
+                        fileSize += channel.write(batch);
+                    }
+                    channel.force(false);
+                }
+            } catch (IOException ioe) {
+                synchronized (this) {
+                    failure = ioe;
+                    notifyAll();
+                }
+                return;
+            } finally {
+                batch.clear();
+            }
+            metrics.journalSynced(records, System.nanoTime() - start);
+
+            synchronized (this) {
+                durable = sequence;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Replace the log with a checkpoint.
+     *
+     * @param checkpoint the header and a GAME record for each game being played.
+     * @throws IOException if the new log cannot be written.
+     */
+    private void replace(ByteBuffer checkpoint) throws IOException {
+        Path temp = Paths.get(path + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (checkpoint.hasRemaining()) {
+                out.write(checkpoint);
+            }
+            out.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        // Until the directory is synced a crash can undo the rename, and the records the checkpoint kept with it.
+        syncDirectory(path);
+
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileSize = channel.size();
+    }
+
+    /**
+     * Make the directory entry of a file durable, so a crash cannot undo its creation or a rename to it.
+     *
+     * @param file the file.
+     * @throws IOException if the directory cannot be synced.
+     */
+    private static void syncDirectory(Path file) throws IOException {
+        FileChannel dir;
+        try {
+            dir = FileChannel.open(file.toAbsolutePath().getParent(), StandardOpenOption.READ);
+        } catch (AccessDeniedException ade) {
+            // Windows cannot open a directory, and makes renames durable on its own.
+            return;
+        }
+        try (dir) {
+            dir.force(true);
+        }
+    }
+
+    /**
+     * Write what is pending, stop the writer and close the log.
+     *
+     * @throws IOException if the log cannot be closed.
+     */
+    void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+}
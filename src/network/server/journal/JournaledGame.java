@@ -0,0 +1,82 @@
+package network.server.journal;
+
+import game.MoveLog;
+
+/**
+ * A game in the {@link GameJournal}: its number, the tokens that let each player reclaim their seat, and its moves.
+ *
+ * @author Brock Dyer.
+ */
+public final class JournaledGame {
+
+    /**
+     * The number of the game on its host.
+     */
+    private final long id;
+
+    /**
+     * The seat tokens of the two players.
+     */
+    private final long blackToken, whiteToken;
+
+    /**
+     * The moves so far.
+     */
+    final MoveLog moves;
+
+    /**
+     * Create a game.
+     *
+     * @param id         the number of the game.
+     * @param blackToken the black player's seat token.
+     * @param whiteToken the white player's seat token.
+     * @param moves      the moves so far. Copied.
+     */
+    public JournaledGame(long id, long blackToken, long whiteToken, MoveLog moves) {
+        this.id = id;
+        this.blackToken = blackToken;
+        this.whiteToken = whiteToken;
+        this.moves = new MoveLog(moves);
+    }
+
+    /**
+     * Get the number of the game.
+     *
+     * @return the id.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Get the black player's seat token.
+     *
+     * @return the token.
+     */
+    public long getBlackToken() {
+        return blackToken;
+    }
+
+    /**
+     * Get the white player's seat token.
+     *
+     * @return the token.
+     */
+    public long getWhiteToken() {
+        return whiteToken;
+    }
+
+    /**
+     * Get the moves so far.
+     *
+     * @return a copy of the moves.
+     */
+    public MoveLog getMoves() {
+        return new MoveLog(moves);
+    }
+
+    @Override
+    public String toString() {
+        return "game " + id + " after " + moves.size() + " plies";
+    }
+}
@@ -0,0 +1,155 @@
+package network.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies with log-linear buckets, in the style of HdrHistogram. <br>
+ * Each power of two is split into {@value #HALF} equal buckets, so any value is placed within about 1.6% of its true
+ * size, from a nanosecond up to centuries, in a fixed table of a few thousand counters. Recording is one atomic
+ * increment and never locks, so many game threads can share a histogram.
+ *
+ * @author Brock Dyer.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Values below {@code 1 << SUB_BITS} get a bucket each. Above that every power of two gets {@link #HALF}.
+     */
+    private static final int SUB_BITS = 7;
+
+    /**
+     * The number of buckets in each power of two.
+     */
+    private static final int HALF = 1 << (SUB_BITS - 1);
+
+    /**
+     * The number of buckets.
+     */
+    private static final int BUCKETS = (63 - SUB_BITS) * HALF + (1 << SUB_BITS);
+
+    /**
+     * The count in each bucket.
+     */
+    private final AtomicLongArray counts;
+
+    /**
+     * The number of values and their sum.
+     */
+    private final LongAdder count, sum;
+
+    /**
+     * The largest value.
+     */
+    private final AtomicLong max;
+
+    /**
+     * Create an empty histogram.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos the latency in nanoseconds. Negative values count as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Find the bucket of a value.
+     *
+     * @param value the value, not negative.
+     * @return the bucket index.
+     */
+    static int bucket(long value) {
+        if (value < (1 << SUB_BITS)) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS + 1;
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    /**
+     * Find the largest value that goes in a bucket.
+     *
+     * @param bucket the bucket index.
+     * @return the value.
+     */
+    static long highestValue(int bucket) {
+        if (bucket < (1 << SUB_BITS)) {
+            return bucket;
+        }
+        int shift = bucket / HALF - 1;
+        long sub = bucket - (long) shift * HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Find the value that a given percentage of the recorded values are at or below.
+     *
+     * @param percentile the percentile, from 0 to 100.
+     * @return the value in nanoseconds, accurate to the width of its bucket, or 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Get the number of values recorded.
+     *
+     * @return the count.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Get the sum of the values recorded.
+     *
+     * @return the sum in nanoseconds.
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Get the largest value recorded.
+     *
+     * @return the value in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getMax() {
+        return max.get();
+    }
+}
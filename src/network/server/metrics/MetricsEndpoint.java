@@ -0,0 +1,91 @@
+package network.server.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A small HTTP server on localhost that serves {@link ServerMetrics} at {@value #PATH} in the Prometheus text
+ * format, using the JDK's built-in HTTP server. Its thread keeps the JVM alive until {@link #close()}.
+ *
+ * @author Brock Dyer.
+ */
+public class MetricsEndpoint implements AutoCloseable {
+
+    /**
+     * The path the metrics are served at.
+     */
+    public static final String PATH = "/metrics";
+
+    /**
+     * The content type of the Prometheus text format.
+     */
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * The metrics served.
+     */
+    private final ServerMetrics metrics;
+
+    /**
+     * Start serving metrics.
+     *
+     * @param metrics the metrics.
+     * @param port    the localhost port to listen on.
+     * @throws IOException if the port cannot be bound.
+     */
+    public MetricsEndpoint(ServerMetrics metrics, int port) throws IOException {
+        this.metrics = metrics;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext(PATH, this::serve);
+        this.server.start();
+    }
+
+    /**
+     * Answer one request.
+     *
+     * @param exchange the request and response.
+     * @throws IOException if the response cannot be written.
+     */
+    private void serve(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] body = metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Get the port the endpoint listens on.
+     *
+     * @return the port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stop serving metrics.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
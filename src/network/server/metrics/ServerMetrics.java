@@ -0,0 +1,363 @@
+package network.server.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms shared by every game a server runs. <br>
+ * Games record into it without locking. It can be read over JMX once {@link #register()}ed, and in the Prometheus
+ * text format through {@link #toPrometheus()}, which {@link MetricsEndpoint} serves over HTTP.
+ * <p>
+ * Three stages of a turn are timed separately so a slowdown can be traced to the game logic or the I/O:
+ * </p>
+ * <pre>
+ * move processing   from receiving a MOVE to having queued everything it produced
+ * move generation   finding the legal moves for the next MAKE_MOVE
+ * socket write      flushing a turn's messages to both players
+ * </pre>
+ * With non-blocking connections the socket write only hands the messages to the event loop. A host that journals its
+ * games also records each sync of the journal, and how many records it made durable, which shows how well syncs are
+ * shared between games.
+ *
+ * @author Brock Dyer.
+ */
+public class ServerMetrics implements ServerMetricsMBean {
+
+    /**
+     * The name the metrics are registered under with JMX.
+     */
+    public static final String OBJECT_NAME = "reversi:type=ServerMetrics";
+
+    /**
+     * The shortest time {@link #getMovesPerSecond()} averages over, in nanoseconds.
+     */
+    private static final long RATE_NANOS = 1_000_000_000L;
+
+    /**
+     * The quantiles given for each histogram in the Prometheus format.
+     */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final AtomicLong activeGames, activeConnections;
+    private final LongAdder gamesStarted, gamesFinished, connectionsOpened, moves, illegalMoves, protocolErrors;
+    private final LongAdder journalRecords, journalSyncs;
+    private final LatencyHistogram moveProcessing, moveGeneration, socketWrite, journalSync;
+
+    /**
+     * The move count and time when the move rate was last worked out, and the rate. Guarded by this.
+     */
+    private long rateMoves, rateNanos;
+    private double rate;
+
+    /**
+     * Create empty metrics.
+     */
+    public ServerMetrics() {
+        this.activeGames = new AtomicLong();
+        this.activeConnections = new AtomicLong();
+        this.gamesStarted = new LongAdder();
+        this.gamesFinished = new LongAdder();
+        this.connectionsOpened = new LongAdder();
+        this.moves = new LongAdder();
+        this.illegalMoves = new LongAdder();
+        this.protocolErrors = new LongAdder();
+        this.journalRecords = new LongAdder();
+        this.journalSyncs = new LongAdder();
+        this.moveProcessing = new LatencyHistogram();
+        this.moveGeneration = new LatencyHistogram();
+        this.socketWrite = new LatencyHistogram();
+        this.journalSync = new LatencyHistogram();
+        this.rateNanos = System.nanoTime();
+    }
+
+    /**
+     * Make the metrics readable over JMX as {@value #OBJECT_NAME}.
+     *
+     * @throws JMException if the name is already taken.
+     */
+    public void register() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+    }
+
+    /**
+     * Count a game starting.
+     */
+    public void gameStarted() {
+        gamesStarted.increment();
+        activeGames.incrementAndGet();
+    }
+
+    /**
+     * Count a game ending, however it ended.
+     */
+    public void gameFinished() {
+        gamesFinished.increment();
+        activeGames.decrementAndGet();
+    }
+
+    /**
+     * Count a client connecting.
+     */
+    public void connectionOpened() {
+        connectionsOpened.increment();
+        activeConnections.incrementAndGet();
+    }
+
+    /**
+     * Count a client connection closing.
+     */
+    public void connectionClosed() {
+        activeConnections.decrementAndGet();
+    }
+
+    /**
+     * Count a legal move.
+     *
+     * @param nanos how long processing it took.
+     */
+    public void moveMade(long nanos) {
+        moves.increment();
+        moveProcessing.record(nanos);
+    }
+
+    /**
+     * Count an illegal move.
+     */
+    public void illegalMove() {
+        illegalMoves.increment();
+    }
+
+    /**
+     * Count a malformed or unexpected message from a client.
+     */
+    public void protocolError() {
+        protocolErrors.increment();
+    }
+
+    /**
+     * Record how long finding the legal moves took.
+     *
+     * @param nanos the time.
+     */
+    public void moveGenerated(long nanos) {
+        moveGeneration.record(nanos);
+    }
+
+    /**
+     * Record how long writing a turn's messages took.
+     *
+     * @param nanos the time.
+     */
+    public void socketWritten(long nanos) {
+        socketWrite.record(nanos);
+    }
+
+    /**
+     * Record one sync of the game journal.
+     *
+     * @param records the number of records it made durable.
+     * @param nanos   how long writing and syncing them took.
+     */
+    public void journalSynced(int records, long nanos) {
+        journalRecords.add(records);
+        journalSyncs.increment();
+        journalSync.record(nanos);
+    }
+
+    @Override
+    public long getActiveGames() {
+        return activeGames.get();
+    }
+
+    @Override
+    public long getGamesStarted() {
+        return gamesStarted.sum();
+    }
+
+    @Override
+    public long getGamesFinished() {
+        return gamesFinished.sum();
+    }
+
+    @Override
+    public long getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    @Override
+    public long getConnectionsOpened() {
+        return connectionsOpened.sum();
+    }
+
+    @Override
+    public long getMoves() {
+        return moves.sum();
+    }
+
+    @Override
+    public synchronized double getMovesPerSecond() {
+        long now = System.nanoTime();
+        if (now - rateNanos >= RATE_NANOS) {
+            long total = moves.sum();
+            rate = (total - rateMoves) * 1e9 / (now - rateNanos);
+            rateMoves = total;
+            rateNanos = now;
+        }
+        return rate;
+    }
+
+    @Override
+    public long getIllegalMoves() {
+        return illegalMoves.sum();
+    }
+
+    @Override
+    public long getProtocolErrors() {
+        return protocolErrors.sum();
+    }
+
+    @Override
+    public double getMoveProcessingP50Micros() {
+        return moveProcessing.getValueAtPercentile(50) / 1e3;
+    }
+
+    @Override
+    public double getMoveProcessingP99Micros() {
+        return moveProcessing.getValueAtPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getMoveProcessingMaxMicros() {
+        return moveProcessing.getMax() / 1e3;
+    }
+
+    @Override
+    public double getMoveGenerationP50Micros() {
+        return moveGeneration.getValueAtPercentile(50) / 1e3;
+    }
+
+    @Override
+    public double getMoveGenerationP99Micros() {
+        return moveGeneration.getValueAtPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getMoveGenerationMaxMicros() {
+        return moveGeneration.getMax() / 1e3;
+    }
+
+    @Override
+    public double getSocketWriteP50Micros() {
+        return socketWrite.getValueAtPercentile(50) / 1e3;
+    }
+
+    @Override
+    public double getSocketWriteP99Micros() {
+        return socketWrite.getValueAtPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getSocketWriteMaxMicros() {
+        return socketWrite.getMax() / 1e3;
+    }
+
+    @Override
+    public long getJournalRecords() {
+        return journalRecords.sum();
+    }
+
+    @Override
+    public long getJournalSyncs() {
+        return journalSyncs.sum();
+    }
+
+    @Override
+    public double getJournalSyncP50Micros() {
+        return journalSync.getValueAtPercentile(50) / 1e3;
+    }
+
+    @Override
+    public double getJournalSyncP99Micros() {
+        return journalSync.getValueAtPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getJournalSyncMaxMicros() {
+        return journalSync.getMax() / 1e3;
+    }
+
+    /**
+     * Format the metrics in the Prometheus text exposition format. Latencies are summaries in seconds.
+     *
+     * @return the metrics.
+     */
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        metric(sb, "reversi_active_games", "gauge", "Games being played.", getActiveGames());
+        metric(sb, "reversi_games_started_total", "counter", "Games started.", getGamesStarted());
+        metric(sb, "reversi_games_finished_total", "counter", "Games finished.", getGamesFinished());
+        metric(sb, "reversi_active_connections", "gauge", "Client connections open.", getActiveConnections());
+        metric(sb, "reversi_connections_total", "counter", "Client connections accepted.", getConnectionsOpened());
+        metric(sb, "reversi_moves_total", "counter", "Legal moves made.", getMoves());
+        metric(sb, "reversi_illegal_moves_total", "counter", "Illegal moves rejected.", getIllegalMoves());
+        metric(sb, "reversi_protocol_errors_total", "counter", "Malformed or unexpected client messages.",
+                getProtocolErrors());
+        summary(sb, "reversi_move_processing_seconds", "Time to process a move.", moveProcessing);
+        summary(sb, "reversi_move_generation_seconds", "Time to find the legal moves for a turn.", moveGeneration);
+        summary(sb, "reversi_socket_write_seconds", "Time to write a turn's messages to both players.", socketWrite);
+        metric(sb, "reversi_journal_records_total", "counter", "Records made durable in the game journal.",
+                getJournalRecords());
+        metric(sb, "reversi_journal_syncs_total", "counter", "Syncs of the game journal.", getJournalSyncs());
+        summary(sb, "reversi_journal_sync_seconds", "Time to write and sync a batch of journal records.",
+                journalSync);
+        return sb.toString();
+    }
+
+    /**
+     * Append a counter or gauge.
+     *
+     * @param sb    where to append.
+     * @param name  the metric name.
+     * @param type  counter or gauge.
+     * @param help  what it measures.
+     * @param value the value.
+     */
+    private static void metric(StringBuilder sb, String name, String type, String help, long value) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Append a histogram as a summary with quantiles.
+     *
+     * @param sb        where to append.
+     * @param name      the metric name.
+     * @param help      what it measures.
+     * @param histogram the latencies.
+     */
+    private static void summary(StringBuilder sb, String name, String help, LatencyHistogram histogram) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" summary\n");
+        for (double q : QUANTILES) {
+            sb.append(name).append("{quantile=\"").append(q).append("\"} ")
+                    .append(seconds(histogram.getValueAtPercentile(q * 100))).append('\n');
+        }
+        sb.append(name).append("_sum ").append(seconds(histogram.getSum())).append('\n');
+        sb.append(name).append("_count ").append(histogram.getCount()).append('\n');
+    }
+
+    /**
+     * Format nanoseconds as seconds.
+     *
+     * @param nanos the time.
+     * @return the time in seconds.
+     */
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
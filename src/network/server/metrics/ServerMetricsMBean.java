@@ -0,0 +1,124 @@
+package network.server.metrics;
+
+/**
+ * The management interface of {@link ServerMetrics}, as seen over JMX. Latencies are in microseconds.
+ *
+ * @author Brock Dyer.
+ */
+public interface ServerMetricsMBean {
+
+    /**
+     * @return the number of games being played.
+     */
+    long getActiveGames();
+
+    /**
+     * @return the number of games started.
+     */
+    long getGamesStarted();
+
+    /**
+     * @return the number of games finished.
+     */
+    long getGamesFinished();
+
+    /**
+     * @return the number of client connections open.
+     */
+    long getActiveConnections();
+
+    /**
+     * @return the number of client connections accepted.
+     */
+    long getConnectionsOpened();
+
+    /**
+     * @return the number of moves made.
+     */
+    long getMoves();
+
+    /**
+     * @return the moves made per second, over the time since this was last read, or at least the last second.
+     */
+    double getMovesPerSecond();
+
+    /**
+     * @return the number of illegal moves rejected.
+     */
+    long getIllegalMoves();
+
+    /**
+     * @return the number of malformed or unexpected messages from clients.
+     */
+    long getProtocolErrors();
+
+    /**
+     * @return the median time to process a move.
+     */
+    double getMoveProcessingP50Micros();
+
+    /**
+     * @return the 99th percentile of the time to process a move.
+     */
+    double getMoveProcessingP99Micros();
+
+    /**
+     * @return the longest time to process a move.
+     */
+    double getMoveProcessingMaxMicros();
+
+    /**
+     * @return the median time to generate the moves for a turn.
+     */
+    double getMoveGenerationP50Micros();
+
+    /**
+     * @return the 99th percentile of the time to generate the moves for a turn.
+     */
+    double getMoveGenerationP99Micros();
+
+    /**
+     * @return the longest time to generate the moves for a turn.
+     */
+    double getMoveGenerationMaxMicros();
+
+    /**
+     * @return the median time to write a turn's messages.
+     */
+    double getSocketWriteP50Micros();
+
+    /**
+     * @return the 99th percentile of the time to write a turn's messages.
+     */
+    double getSocketWriteP99Micros();
+
+    /**
+     * @return the longest time to write a turn's messages.
+     */
+    double getSocketWriteMaxMicros();
+
+    /**
+     * @return the number of records made durable in the game journal.
+     */
+    long getJournalRecords();
+
+    /**
+     * @return the number of syncs of the game journal. Fewer than the records when games share syncs.
+     */
+    long getJournalSyncs();
+
+    /**
+     * @return the median time to write and sync a batch of journal records.
+     */
+    double getJournalSyncP50Micros();
+
+    /**
+     * @return the 99th percentile of the time to write and sync a batch of journal records.
+     */
+    double getJournalSyncP99Micros();
+
+    /**
+     * @return the longest time to write and sync a batch of journal records.
+     */
+    double getJournalSyncMaxMicros();
+}